@@ -0,0 +1,113 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.NoopEntityConsumer;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.nio.support.BasicResponseProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Compares HTTP/1.1 and HTTP/2 for concurrent requests to a single origin (e.g., a gateway that
+ * serves many Things) via {@link HttpClientPool}. The origin is an embedded server that speaks both
+ * protocols and delays its responses by a configurable latency. With HTTP/1.1, the number of
+ * requests in flight is bounded by the connections per route; with HTTP/2, the requests are
+ * multiplexed over a single connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(64)
+public class TransportBenchmark {
+
+  @Param({ "false", "true" })
+  boolean http2;
+
+  /* The latency of the origin in milliseconds */
+  @Param({ "0", "10" })
+  int latency;
+
+  private HttpAsyncServer server;
+  private ScheduledExecutorService responseScheduler;
+  private URI target;
+
+  @Setup
+  public void setUp() throws Exception {
+    responseScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    server = H2ServerBootstrap.bootstrap()
+        .setVersionPolicy(HttpVersionPolicy.NEGOTIATE)
+        .register("*", new DelayedResponseHandler())
+        .create();
+    server.start();
+
+    InetSocketAddress address = (InetSocketAddress) server.listen(new InetSocketAddress(0)).get()
+        .getAddress();
+    target = URI.create("http://localhost:" + address.getPort() + "/things/0/properties/state");
+
+    HttpClientPool.setHttp2Enabled(http2);
+  }
+
+  @TearDown
+  public void tearDown() {
+    HttpClientPool.setHttp2Enabled(false);
+    server.close(CloseMode.IMMEDIATE);
+    responseScheduler.shutdownNow();
+  }
+
+  @Benchmark
+  public Object readProperty() throws IOException {
+    return HttpClientPool.execute(new HttpGet(target));
+  }
+
+  /* Responds with a small JSON payload after the configured latency, without blocking */
+  private class DelayedResponseHandler
+      implements AsyncServerRequestHandler<Message<HttpRequest, Void>> {
+
+    @Override
+    public AsyncRequestConsumer<Message<HttpRequest, Void>> prepare(HttpRequest request,
+        EntityDetails entityDetails, HttpContext context) throws HttpException {
+      return new BasicRequestConsumer<Void>(new NoopEntityConsumer());
+    }
+
+    @Override
+    public void handle(Message<HttpRequest, Void> request, ResponseTrigger responseTrigger,
+        HttpContext context) {
+      responseScheduler.schedule(() -> {
+        try {
+          responseTrigger.submitResponse(new BasicResponseProducer(200, "{\"state\":\"on\"}",
+              ContentType.APPLICATION_JSON), context);
+        } catch (HttpException | IOException e) {
+          throw new IllegalStateException(e);
+        }
+      }, latency, TimeUnit.MILLISECONDS);
+    }
+  }
+}
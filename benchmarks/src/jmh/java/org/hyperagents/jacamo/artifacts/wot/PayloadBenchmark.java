@@ -0,0 +1,205 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.clients.TDHttpRequest;
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.IntegerSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.NumberSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.StringSchema;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+
+/**
+ * Benchmarks the payload handling of {@link ThingArtifact}: the construction of request payloads via
+ * {@code TDHttpRequest} (i.e., {@code setPrimitivePayload}, {@code setObjectPayload}, and
+ * {@code setArrayPayload}), the compiled JSON and CBOR encoders and decoders used when issuing
+ * requests, and the conversion of nested lists into CArtAgO arrays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PayloadBenchmark {
+  private static final String PREFIX = "http://example.org/";
+
+  /* The number of items in array payloads and of properties in object payloads */
+  @Param({ "4", "64" })
+  int size;
+
+  private ThingArtifact artifact;
+  private Form form;
+
+  private DataSchema integerSchema;
+  private ObjectSchema objectSchema;
+  private ArraySchema arraySchema;
+
+  private JsonPayloadEncoder integerEncoder;
+  private JsonPayloadEncoder objectEncoder;
+  private JsonPayloadEncoder arrayEncoder;
+  private JsonPayloadDecoder objectDecoder;
+  private JsonPayloadDecoder arrayDecoder;
+
+  private CborPayloadEncoder objectCborEncoder;
+  private CborPayloadEncoder arrayCborEncoder;
+  private CborPayloadDecoder objectCborDecoder;
+  private CborPayloadDecoder arrayCborDecoder;
+
+  private Object[] tags;
+  private Object[] values;
+  private Object[] items;
+  private String objectJson;
+  private String arrayJson;
+  private byte[] objectCbor;
+  private byte[] arrayCbor;
+  private List<Object> nestedLists;
+
+  @Setup
+  public void setUp() {
+    artifact = new ThingArtifact();
+    form = new Form.Builder(PREFIX + "affordance")
+        .addOperationType(TD.invokeAction)
+        .build();
+
+    integerSchema = new IntegerSchema.Builder().build();
+
+    ObjectSchema.Builder objectBuilder = new ObjectSchema.Builder();
+    tags = new Object[size];
+    values = new Object[size];
+
+    StringBuilder object = new StringBuilder("{");
+    for (int i = 0; i < size; i ++) {
+      String name = "p" + i;
+
+      if (i % 2 == 0) {
+        objectBuilder.addProperty(name, new StringSchema.Builder()
+            .addSemanticType(PREFIX + name).build());
+        values[i] = "value" + i;
+        object.append('"').append(name).append("\":\"value").append(i).append('"');
+      } else {
+        objectBuilder.addProperty(name, new NumberSchema.Builder()
+            .addSemanticType(PREFIX + name).build());
+        values[i] = i + 0.5;
+        object.append('"').append(name).append("\":").append(i + 0.5);
+      }
+
+      tags[i] = PREFIX + name;
+      object.append(i + 1 < size ? "," : "}");
+    }
+    objectSchema = objectBuilder.build();
+    objectJson = object.toString();
+
+    arraySchema = new ArraySchema.Builder()
+        .addItem(new IntegerSchema.Builder().build())
+        .build();
+    items = new Object[size];
+    for (int i = 0; i < size; i ++) {
+      items[i] = i;
+    }
+    arrayJson = Arrays.toString(items).replace(" ", "");
+
+    integerEncoder = JsonPayloadEncoder.forSchema(integerSchema);
+    objectEncoder = JsonPayloadEncoder.forSchema(objectSchema);
+    arrayEncoder = JsonPayloadEncoder.forSchema(arraySchema);
+    objectDecoder = JsonPayloadDecoder.forSchema(objectSchema);
+    arrayDecoder = JsonPayloadDecoder.forSchema(arraySchema);
+
+    objectCborEncoder = CborPayloadEncoder.forSchema(objectSchema);
+    arrayCborEncoder = CborPayloadEncoder.forSchema(arraySchema);
+    objectCborDecoder = CborPayloadDecoder.forSchema(objectSchema);
+    arrayCborDecoder = CborPayloadDecoder.forSchema(arraySchema);
+    objectCbor = objectCborEncoder.encodeObject(tags, values);
+    arrayCbor = arrayCborEncoder.encodeArray(items);
+
+    // A list of lists, e.g. as produced when reading nested arrays
+    nestedLists = new ArrayList<Object>();
+    for (int i = 0; i < size; i ++) {
+      nestedLists.add(new ArrayList<Object>(Arrays.asList(i, Arrays.asList(i, i + 1), "item")));
+    }
+  }
+
+  @Benchmark
+  public TDHttpRequest setPrimitivePayload() {
+    return artifact.setPrimitivePayload(newRequest(), integerSchema, 42);
+  }
+
+  @Benchmark
+  public TDHttpRequest setObjectPayload() {
+    return artifact.setObjectPayload(newRequest(), objectSchema, tags, values);
+  }
+
+  @Benchmark
+  public TDHttpRequest setArrayPayload() {
+    return artifact.setArrayPayload(newRequest(), arraySchema, items);
+  }
+
+  @Benchmark
+  public byte[] encodePrimitive() {
+    return integerEncoder.encodePrimitive(42);
+  }
+
+  @Benchmark
+  public byte[] encodeObject() {
+    return objectEncoder.encodeObject(tags, values);
+  }
+
+  @Benchmark
+  public byte[] encodeArray() {
+    return arrayEncoder.encodeArray(items);
+  }
+
+  @Benchmark
+  public Optional<Object> decodeObject() throws IOException {
+    return objectDecoder.decode(new StringReader(objectJson));
+  }
+
+  @Benchmark
+  public Optional<Object> decodeArray() throws IOException {
+    return arrayDecoder.decode(new StringReader(arrayJson));
+  }
+
+  @Benchmark
+  public byte[] encodeObjectCbor() {
+    return objectCborEncoder.encodeObject(tags, values);
+  }
+
+  @Benchmark
+  public byte[] encodeArrayCbor() {
+    return arrayCborEncoder.encodeArray(items);
+  }
+
+  @Benchmark
+  public Optional<Object> decodeObjectCbor() throws IOException {
+    return objectCborDecoder.decode(objectCbor);
+  }
+
+  @Benchmark
+  public Optional<Object> decodeArrayCbor() throws IOException {
+    return arrayCborDecoder.decode(arrayCbor);
+  }
+
+  @Benchmark
+  public Object[] nestedListsToArrays() {
+    return artifact.nestedListsToArrays(nestedLists);
+  }
+
+  private TDHttpRequest newRequest() {
+    return new TDHttpRequest(form, TD.invokeAction);
+  }
+}
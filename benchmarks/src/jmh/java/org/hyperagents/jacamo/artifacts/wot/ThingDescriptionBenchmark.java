@@ -0,0 +1,99 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
+import ch.unisg.ics.interactions.wot.td.io.TDGraphReader;
+
+/**
+ * Benchmarks the parsing of TDs via {@link TDGraphReader}, as done when a {@link ThingArtifact} is
+ * initialized and when a workspace is notified of changes to its description. The TDs are
+ * synthetic and describe a Thing with a given number of properties and actions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ThingDescriptionBenchmark {
+
+  /* The number of property affordances and of action affordances in the TD */
+  @Param({ "10", "100" })
+  int affordances;
+
+  private String turtle;
+
+  @Setup
+  public void setUp() {
+    turtle = createThingDescription(affordances);
+  }
+
+  @Benchmark
+  public ThingDescription readFromString() {
+    return TDGraphReader.readFromString(TDFormat.RDF_TURTLE, turtle);
+  }
+
+  /* Includes the compilation of request templates and payload codecs for all affordances */
+  @Benchmark
+  public Object readAndCompile() {
+    return new AffordanceTable(TDGraphReader.readFromString(TDFormat.RDF_TURTLE, turtle));
+  }
+
+  static String createThingDescription(int affordances) {
+    StringBuilder td = new StringBuilder()
+        .append("@prefix td: <https://www.w3.org/2019/wot/td#> .\n")
+        .append("@prefix htv: <http://www.w3.org/2011/http#> .\n")
+        .append("@prefix hctl: <https://www.w3.org/2019/wot/hypermedia#> .\n")
+        .append("@prefix wotsec: <https://www.w3.org/2019/wot/security#> .\n")
+        .append("@prefix js: <https://www.w3.org/2019/wot/json-schema#> .\n")
+        .append("@prefix ex: <http://example.org/> .\n\n")
+        .append("<http://example.org/thing> a td:Thing ;\n")
+        .append("  td:title \"Thing\" ;\n")
+        .append("  td:hasSecurityConfiguration [ a wotsec:NoSecurityScheme ] ;\n")
+        .append("  td:hasBase <http://example.org/> ");
+
+    for (int i = 0; i < affordances; i ++) {
+      td.append(";\n  td:hasPropertyAffordance [\n")
+          .append("    a td:PropertyAffordance, js:IntegerSchema, ex:Property").append(i)
+          .append(" ;\n")
+          .append("    td:name \"property").append(i).append("\" ;\n")
+          .append("    td:isObservable false ;\n")
+          .append("    td:hasForm [\n")
+          .append("      htv:methodName \"GET\" ;\n")
+          .append("      hctl:hasTarget <http://example.org/properties/").append(i).append("> ;\n")
+          .append("      hctl:forContentType \"application/json\" ;\n")
+          .append("      hctl:hasOperationType td:readProperty\n")
+          .append("    ]\n")
+          .append("  ] ");
+
+      td.append(";\n  td:hasActionAffordance [\n")
+          .append("    a td:ActionAffordance, ex:Action").append(i).append(" ;\n")
+          .append("    td:name \"action").append(i).append("\" ;\n")
+          .append("    td:hasForm [\n")
+          .append("      htv:methodName \"POST\" ;\n")
+          .append("      hctl:hasTarget <http://example.org/actions/").append(i).append("> ;\n")
+          .append("      hctl:forContentType \"application/json\" ;\n")
+          .append("      hctl:hasOperationType td:invokeAction\n")
+          .append("    ] ;\n")
+          .append("    td:hasInputSchema [\n")
+          .append("      a js:ObjectSchema ;\n")
+          .append("      js:properties [\n")
+          .append("        a js:NumberSchema ;\n")
+          .append("        js:propertyName \"value\"\n")
+          .append("      ] ;\n")
+          .append("      js:required \"value\"\n")
+          .append("    ]\n")
+          .append("  ] ");
+    }
+
+    return td.append(".\n").toString();
+  }
+}
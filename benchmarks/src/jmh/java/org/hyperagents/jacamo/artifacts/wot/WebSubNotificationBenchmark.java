@@ -0,0 +1,46 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the parsing of the observable properties notified to a {@link WebSubThingArtifact} in
+ * {@code onNotification}, e.g. {@code state("on",42)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WebSubNotificationBenchmark {
+
+  /* The number of parameters of the notified observable property */
+  @Param({ "1", "16" })
+  int params;
+
+  private String message;
+
+  @Setup
+  public void setUp() {
+    StringBuilder obsProp = new StringBuilder("state(");
+
+    for (int i = 0; i < params; i ++) {
+      obsProp.append(i > 0 ? "," : "").append("\"value").append(i).append('"');
+    }
+
+    message = obsProp.append(')').toString();
+  }
+
+  @Benchmark
+  public void parseNotification(Blackhole blackhole) {
+    blackhole.consume(WebSubThingArtifact.parseFunctor(message));
+    blackhole.consume(WebSubThingArtifact.parseParams(message));
+  }
+}
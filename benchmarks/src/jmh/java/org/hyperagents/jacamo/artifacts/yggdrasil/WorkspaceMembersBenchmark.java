@@ -0,0 +1,75 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.hyperagents.jacamo.artifacts.hmas.HMAS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the extraction of parent workspaces, child workspaces, and artifacts from workspace
+ * descriptions in {@link WorkspaceThingArtifact}. The workspace graphs are synthetic: a workspace
+ * with a given number of members (one in ten is a workspace), each described by a few triples.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WorkspaceMembersBenchmark {
+  private static final String PREFIX = "http://example.org/workspaces/";
+
+  /* The number of members of the workspace */
+  @Param({ "100", "10000" })
+  int members;
+
+  private Model graph;
+  private IRI workspaceIRI;
+
+  @Setup
+  public void setUp() {
+    ValueFactory rdf = SimpleValueFactory.getInstance();
+
+    graph = new LinkedHashModel();
+    workspaceIRI = rdf.createIRI(PREFIX + "root");
+
+    graph.add(workspaceIRI, RDF.TYPE, HMAS.Workspace);
+    graph.add(workspaceIRI, HMAS.isContainedIn, rdf.createIRI(PREFIX + "parent"));
+
+    for (int i = 0; i < members; i ++) {
+      IRI member = rdf.createIRI(PREFIX + "root/members/" + i);
+
+      graph.add(workspaceIRI, HMAS.contains, member);
+      graph.add(member, RDF.TYPE, i % 10 == 0 ? HMAS.Workspace : HMAS.Artifact);
+      graph.add(member, RDFS.LABEL, rdf.createLiteral("member" + i));
+      graph.add(member, HMAS.isContainedIn, workspaceIRI);
+    }
+  }
+
+  @Benchmark
+  public List<String> getParentWorkspaces() {
+    return WorkspaceThingArtifact.getParentWorkspaces(graph, workspaceIRI);
+  }
+
+  @Benchmark
+  public List<String> getWorkspaces() {
+    return WorkspaceThingArtifact.getMembersOfType(graph, workspaceIRI, HMAS.Workspace);
+  }
+
+  @Benchmark
+  public List<String> getArtifacts() {
+    return WorkspaceThingArtifact.getMembersOfType(graph, workspaceIRI, HMAS.Artifact);
+  }
+}
@@ -0,0 +1,199 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A process-wide circuit breaker per host (i.e., scheme, host, and port), shared by all hypermedia
+ * artifacts. A breaker opens after a number of consecutive failures (transport errors or 5xx
+ * responses), such that requests to the host fail fast instead of waiting for the host to time out.
+ * Once the breaker has been open for a while, a single trial request is let through (half-open): the
+ * breaker closes if the trial succeeds and opens again otherwise.
+ *
+ * Breakers are configured by default via the system properties {@value #FAILURE_THRESHOLD_PROPERTY}
+ * and {@value #OPEN_TIMEOUT_PROPERTY} (in milliseconds), and they can be reconfigured at runtime via
+ * {@link #configure(int, long)}. Breakers are disabled (i.e., they never open) while the failure
+ * threshold is 0, which is the default.
+ *
+ */
+public final class CircuitBreaker {
+  public static final String FAILURE_THRESHOLD_PROPERTY =
+      "jacamo.hypermedia.breaker.failureThreshold";
+  public static final String OPEN_TIMEOUT_PROPERTY = "jacamo.hypermedia.breaker.openTimeout";
+
+  public static final int DEFAULT_FAILURE_THRESHOLD = 0;
+  public static final long DEFAULT_OPEN_TIMEOUT = 10000;
+
+  /** The state of a circuit breaker. */
+  public enum State {
+    /** Requests are issued normally. */
+    CLOSED,
+    /** Requests fail fast. */
+    OPEN,
+    /** A trial request is in progress, other requests fail fast. */
+    HALF_OPEN
+  }
+
+  private static final Map<String, CircuitBreaker> breakers =
+      new ConcurrentHashMap<String, CircuitBreaker>();
+
+  private static volatile int failureThreshold = Integer.getInteger(FAILURE_THRESHOLD_PROPERTY,
+      DEFAULT_FAILURE_THRESHOLD);
+  private static volatile long openTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+      Long.getLong(OPEN_TIMEOUT_PROPERTY, DEFAULT_OPEN_TIMEOUT));
+
+  private final String host;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+  private volatile State state = State.CLOSED;
+  /* The time at which the breaker was opened or the last trial request was let through */
+  private long transitionedAt;
+
+  /**
+   * Returns the breaker of the host of a request target, creating it if needed.
+   *
+   * @param target The request target.
+   * @return The breaker of the target's host.
+   */
+  public static CircuitBreaker forTarget(URI target) {
+    String host = target.getScheme() + "://" + target.getRawAuthority();
+    return breakers.computeIfAbsent(host, CircuitBreaker::new);
+  }
+
+  /**
+   * Reconfigures all breakers. Breakers that are already open keep their current state.
+   *
+   * @param failureThreshold The number of consecutive failures after which a breaker opens (0 to
+   * disable breakers).
+   * @param openTimeoutMillis The time after which an open breaker lets a trial request through.
+   */
+  public static void configure(int failureThreshold, long openTimeoutMillis) {
+    if (failureThreshold < 0 || openTimeoutMillis < 0) {
+      throw new IllegalArgumentException("The failure threshold and the open timeout cannot be "
+          + "negative.");
+    }
+
+    CircuitBreaker.failureThreshold = failureThreshold;
+    CircuitBreaker.openTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(openTimeoutMillis);
+  }
+
+  public static boolean isEnabled() {
+    return failureThreshold > 0;
+  }
+
+  /** Removes all breakers, e.g. between test runs. */
+  public static void clear() {
+    breakers.clear();
+  }
+
+  CircuitBreaker(String host) {
+    this.host = host;
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * Checks if a request to the host can be issued. If this method returns true, the outcome of the
+   * request must be recorded via {@link #recordSuccess()} or {@link #recordFailure()}.
+   *
+   * @return False if the request must fail fast.
+   */
+  public boolean tryAcquire() {
+    // Breakers that opened before they were disabled let requests through as well
+    if (state == State.CLOSED || !isEnabled()) {
+      return true;
+    }
+
+    synchronized (this) {
+      long now = System.nanoTime();
+
+      if (state == State.CLOSED) {
+        return true;
+      }
+
+      // Let a trial request through once the breaker has been open long enough (or the previous
+      // trial request was abandoned)
+      if (now - transitionedAt < openTimeoutNanos) {
+        return false;
+      }
+
+      state = State.HALF_OPEN;
+      transitionedAt = now;
+
+      return true;
+    }
+  }
+
+  /** Records a request that succeeded. */
+  public void recordSuccess() {
+    if (consecutiveFailures.get() != 0) {
+      consecutiveFailures.set(0);
+    }
+
+    if (state != State.CLOSED) {
+      synchronized (this) {
+        state = State.CLOSED;
+      }
+    }
+  }
+
+  /** Records a request that failed with a transport error or a server error. */
+  public void recordFailure() {
+    int failures = consecutiveFailures.incrementAndGet();
+
+    if (!isEnabled()) {
+      return;
+    }
+
+    if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+      synchronized (this) {
+        state = State.OPEN;
+        transitionedAt = System.nanoTime();
+      }
+    }
+  }
+
+  /**
+   * Records the outcome of a request that completed with a response: responses with a 5xx status
+   * code are failures.
+   *
+   * @param statusCode The status code of the response.
+   */
+  public void recordResponse(int statusCode) {
+    if (statusCode >= 500) {
+      recordFailure();
+    } else {
+      recordSuccess();
+    }
+  }
+
+  /**
+   * Returns the exception raised for requests that fail fast.
+   *
+   * @return The exception.
+   */
+  public OpenException openException() {
+    return new OpenException("The circuit breaker is open for host: " + host);
+  }
+
+  /**
+   * Signals that a request failed fast because the circuit breaker of its host is open.
+   */
+  public static final class OpenException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    OpenException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,254 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+
+/**
+ * Negotiates the content codings of the requests issued through {@link HttpClientPool}. Requests
+ * accept gzip and deflate responses, which are decoded while they are read from the connection.
+ *
+ * Request bodies are compressed with gzip only if their origin advertised support for gzip
+ * request bodies (i.e., via an {@code Accept-Encoding} header in a response, see RFC 7694), and if
+ * they are larger than a threshold. Origins that reject a compressed body with a 415 response are
+ * no longer sent compressed bodies.
+ *
+ * The bytes saved by content codings are recorded with the buffered entities (see
+ * {@link CodedEntity}), such that they can be counted in the request metrics.
+ */
+final class ContentCoding {
+  static final String ACCEPT_ENCODING = "gzip, deflate";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final boolean enabled = Boolean.parseBoolean(
+      System.getProperty(HttpClientPool.COMPRESSION_PROPERTY, "true"));
+  private static final long threshold = Long.getLong(
+      HttpClientPool.COMPRESSION_THRESHOLD_PROPERTY, HttpClientPool.DEFAULT_COMPRESSION_THRESHOLD);
+
+  /* Whether an origin accepts gzip request bodies; origins that did not advertise it are absent */
+  private static final Map<String, Boolean> origins = new ConcurrentHashMap<String, Boolean>();
+
+  /**
+   * Prepares a request before it is issued: accepts compressed responses, and compresses the
+   * request body if its origin accepts compressed bodies.
+   *
+   * @param request The request to be issued.
+   * @return The uncompressed entity of the request, if its body was compressed.
+   * @throws IOException If the request body could not be read.
+   */
+  static Optional<HttpEntity> prepare(ClassicHttpRequest request) throws IOException {
+    if (!enabled) {
+      return Optional.empty();
+    }
+
+    if (!request.containsHeader(HttpHeaders.ACCEPT_ENCODING)) {
+      request.setHeader(HttpHeaders.ACCEPT_ENCODING, ACCEPT_ENCODING);
+    }
+
+    HttpEntity entity = request.getEntity();
+    if (entity == null || entity.getContentEncoding() != null || !entity.isRepeatable()
+        || entity.getContentLength() < threshold
+        || !Boolean.TRUE.equals(origins.get(getOrigin(request)))) {
+      return Optional.empty();
+    }
+
+    byte[] body = EntityUtils.toByteArray(entity);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2);
+
+    try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(body);
+    }
+
+    if (compressed.size() >= body.length) {
+      return Optional.empty();
+    }
+
+    request.setEntity(new CodedEntity(compressed.toByteArray(), getContentType(entity), "gzip",
+        compressed.size(), body.length));
+
+    return Optional.of(entity);
+  }
+
+  /**
+   * Records the content codings that an origin advertised in a response, and checks if the
+   * response rejected a compressed request body.
+   *
+   * @param request The issued request.
+   * @param response The response.
+   * @return True if the request body was compressed and rejected, and should be sent again
+   * uncompressed.
+   */
+  static boolean observe(ClassicHttpRequest request, ClassicHttpResponse response) {
+    if (!enabled) {
+      return false;
+    }
+
+    HttpEntity entity = request.getEntity();
+    if (response.getCode() == HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE && entity instanceof CodedEntity
+        && entity.getContentEncoding() != null) {
+      origins.put(getOrigin(request), false);
+      return true;
+    }
+
+    Header acceptEncoding = response.getFirstHeader(HttpHeaders.ACCEPT_ENCODING);
+    if (acceptEncoding != null
+        && acceptEncoding.getValue().toLowerCase(Locale.ROOT).contains("gzip")) {
+      origins.putIfAbsent(getOrigin(request), true);
+    }
+
+    return false;
+  }
+
+  /**
+   * Reads the entity of a response into a buffered entity, and sets it as the entity of a copy of
+   * the response. Entities with a gzip or deflate coding are decoded while they are read, and the
+   * coding headers are removed from the copy. Entities are buffered such that the connection is
+   * released once the response is read: responses are decoded later by the operations that await
+   * them, and may be shared by several operations (e.g., coalesced reads).
+   *
+   * @param copy The copy of the response.
+   * @param entity The entity of the response.
+   * @throws IOException If the entity could not be read or decoded.
+   */
+  static void setBufferedEntity(ClassicHttpResponse copy, HttpEntity entity) throws IOException {
+    String coding = entity.getContentEncoding() == null ? ""
+        : entity.getContentEncoding().trim().toLowerCase(Locale.ROOT);
+    ContentType contentType = getContentType(entity);
+
+    if (!coding.equals("gzip") && !coding.equals("x-gzip") && !coding.equals("deflate")) {
+      copy.setEntity(new ByteArrayEntity(EntityUtils.toByteArray(entity), contentType,
+          entity.getContentEncoding()));
+      return;
+    }
+
+    try (CountingInputStream encoded = new CountingInputStream(entity.getContent())) {
+      byte[] decoded = coding.equals("deflate") ? inflate(encoded) : gunzip(encoded);
+
+      copy.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+      copy.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+      copy.setEntity(new CodedEntity(decoded, contentType, null, encoded.count, decoded.length));
+    }
+  }
+
+  private static byte[] gunzip(InputStream encoded) throws IOException {
+    try (InputStream in = new GZIPInputStream(encoded, BUFFER_SIZE)) {
+      return readAll(in);
+    }
+  }
+
+  private static byte[] inflate(InputStream encoded) throws IOException {
+    // Some servers send raw deflate data instead of the zlib format required by RFC 7230
+    PushbackInputStream in = new PushbackInputStream(encoded, 2);
+    byte[] header = new byte[2];
+    int length = 0;
+
+    for (int read = 0; length < 2 && read >= 0; length += Math.max(read, 0)) {
+      read = in.read(header, length, 2 - length);
+    }
+    in.unread(header, 0, length);
+
+    boolean zlib = length == 2 && (header[0] & 0x0F) == 8
+        && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+    Inflater inflater = new Inflater(!zlib);
+
+    try {
+      return readAll(new InflaterInputStream(in, inflater, BUFFER_SIZE));
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+    byte[] buffer = new byte[BUFFER_SIZE];
+
+    for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+      out.write(buffer, 0, read);
+    }
+
+    return out.toByteArray();
+  }
+
+  private static ContentType getContentType(HttpEntity entity) {
+    return entity.getContentType() == null ? null : ContentType.parse(entity.getContentType());
+  }
+
+  private static String getOrigin(ClassicHttpRequest request) {
+    return request.getScheme() + "://" + request.getAuthority();
+  }
+
+  private ContentCoding() {
+  }
+
+  /**
+   * A buffered entity that was transferred with a content coding, together with the number of
+   * bytes transferred and the number of bytes once decoded.
+   */
+  static final class CodedEntity extends ByteArrayEntity {
+    private final long transferredLength;
+    private final long decodedLength;
+
+    CodedEntity(byte[] content, ContentType contentType, String contentEncoding,
+        long transferredLength, long decodedLength) {
+      super(content, contentType, contentEncoding);
+      this.transferredLength = transferredLength;
+      this.decodedLength = decodedLength;
+    }
+
+    long getTransferredLength() {
+      return transferredLength;
+    }
+
+    /* The number of bytes saved by the content coding (negative if the coding added bytes) */
+    long getSavedBytes() {
+      return decodedLength - transferredLength;
+    }
+  }
+
+  private static final class CountingInputStream extends FilterInputStream {
+    private long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count ++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int read = super.read(buffer, offset, length);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+  }
+}
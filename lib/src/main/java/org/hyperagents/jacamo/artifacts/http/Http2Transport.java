@@ -0,0 +1,292 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.config.Configurable;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.core5.concurrent.CancellableDependency;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apache.hc.core5.net.URIAuthority;
+
+/**
+ * An HTTP/2 transport for the shared connection pool: the requests to an origin (i.e., scheme,
+ * host, and port) are multiplexed over a single connection. Plain HTTP origins are reached via
+ * h2c with prior knowledge, and HTTPS origins via ALPN.
+ *
+ * Whether an origin supports HTTP/2 is probed in the background when the origin is first
+ * requested: the HTTP/2 connection preface is sent over a connection of its own (or h2 is offered
+ * via ALPN for HTTPS origins). Until the probe completes, requests to the origin are issued via
+ * HTTP/1.1. An origin is only remembered as an HTTP/1.1 origin if it answers the preface with an
+ * HTTP/1.x response (or does not select h2 via ALPN); probes that fail otherwise (e.g., because the
+ * connection was reset) are retried later. Requests that fail via HTTP/2 are never reissued via
+ * HTTP/1.1, since they may have been processed by the origin.
+ */
+final class Http2Transport {
+  private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n"
+      .getBytes(StandardCharsets.US_ASCII);
+  /* An empty SETTINGS frame, which must follow the client preface */
+  private static final byte[] SETTINGS = { 0, 0, 0, 4, 0, 0, 0, 0, 0 };
+  private static final byte SETTINGS_TYPE = 4;
+
+  /* Origins of unknown support are not probed more often than this */
+  private static final long PROBE_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+
+  private final CloseableHttpAsyncClient client;
+  private final Executor probeExecutor;
+  private final int probeTimeout;
+
+  /* Whether an origin supports HTTP/2; origins of unknown support are absent */
+  private final Map<String, Boolean> origins = new ConcurrentHashMap<String, Boolean>();
+  /* The time (see System.nanoTime) of the last probe of an origin of unknown support */
+  private final Map<String, Long> probes = new ConcurrentHashMap<String, Long>();
+
+  private final LongAdder exchanges = new LongAdder();
+
+  /**
+   * @param defaultConfig The default configuration of requests, whose connect timeout also bounds
+   * probes.
+   * @param probeExecutor The executor that probes origins.
+   */
+  Http2Transport(RequestConfig defaultConfig, Executor probeExecutor) {
+    this.client = HttpAsyncClients.customHttp2()
+        .setDefaultRequestConfig(defaultConfig)
+        .build();
+    this.client.start();
+    this.probeExecutor = probeExecutor;
+    this.probeTimeout = (int) defaultConfig.getConnectTimeout().toMilliseconds();
+  }
+
+  /**
+   * Checks if a request can be issued via HTTP/2, i.e. its origin is known to support HTTP/2. If
+   * the support of the origin is unknown, the origin is probed in the background.
+   *
+   * @param request The request to be issued.
+   * @return False if the request must be issued via HTTP/1.1.
+   */
+  boolean accepts(ClassicHttpRequest request) {
+    String origin = getOrigin(request);
+    Boolean supported = origins.get(origin);
+
+    if (supported == null) {
+      probeLater(origin, request);
+      return false;
+    }
+
+    return supported;
+  }
+
+  /**
+   * Executes a request via HTTP/2. Cancelling the request (if it is cancellable) cancels the
+   * exchange.
+   *
+   * @param request The request to be executed.
+   * @return A future that completes with the response (with a buffered entity, if any), or
+   * completes exceptionally with an {@link IOException}.
+   */
+  CompletableFuture<ClassicHttpResponse> execute(ClassicHttpRequest request) {
+    CompletableFuture<ClassicHttpResponse> result = new CompletableFuture<>();
+
+    SimpleHttpRequest exchangeRequest;
+    try {
+      exchangeRequest = toExchangeRequest(request);
+    } catch (IOException e) {
+      result.completeExceptionally(e);
+      return result;
+    }
+
+    Future<SimpleHttpResponse> exchange = client.execute(exchangeRequest,
+        new FutureCallback<SimpleHttpResponse>() {
+
+          @Override
+          public void completed(SimpleHttpResponse response) {
+            exchanges.increment();
+
+            try {
+              result.complete(toClassicResponse(response));
+            } catch (IOException e) {
+              result.completeExceptionally(e);
+            }
+          }
+
+          @Override
+          public void failed(Exception e) {
+            result.completeExceptionally(e instanceof IOException ? e
+                : new IOException(e.getMessage(), e));
+          }
+
+          @Override
+          public void cancelled() {
+            result.completeExceptionally(new InterruptedIOException("The request was cancelled."));
+          }
+        });
+
+    if (request instanceof CancellableDependency) {
+      ((CancellableDependency) request).setDependency(() -> exchange.cancel(true));
+    }
+
+    return result;
+  }
+
+  private void probeLater(String origin, ClassicHttpRequest request) {
+    long now = System.nanoTime();
+    Long last = probes.get(origin);
+
+    if (last != null && now - last < PROBE_INTERVAL) {
+      return;
+    }
+
+    // Only the thread that records the probe issues it
+    boolean recorded = last == null ? probes.putIfAbsent(origin, now) == null
+        : probes.replace(origin, last, now);
+
+    if (recorded) {
+      String scheme = request.getScheme();
+      URIAuthority authority = request.getAuthority();
+
+      probeExecutor.execute(() -> probe(scheme, authority.getHostName(), authority.getPort(),
+          probeTimeout).ifPresent(supported -> {
+            origins.put(origin, supported);
+            probes.remove(origin);
+          }));
+    }
+  }
+
+  /**
+   * Probes whether an origin supports HTTP/2: for HTTPS origins, h2 is offered via ALPN; for plain
+   * HTTP origins, the HTTP/2 connection preface is sent and the first bytes of the answer are read.
+   *
+   * @param scheme The scheme of the origin.
+   * @param host The host of the origin.
+   * @param port The port of the origin, or a negative value for the default port of the scheme.
+   * @param timeout The connect and read timeout (in milliseconds).
+   * @return True if the origin answered with an HTTP/2 SETTINGS frame (or selected h2), false if it
+   * answered with an HTTP/1.x response (or did not select h2), or an empty optional if the probe
+   * failed otherwise.
+   */
+  static Optional<Boolean> probe(String scheme, String host, int port, int timeout) {
+    boolean secure = "https".equalsIgnoreCase(scheme);
+    InetSocketAddress address = new InetSocketAddress(host,
+        port >= 0 ? port : secure ? 443 : 80);
+
+    try (Socket socket = new Socket()) {
+      socket.connect(address, timeout);
+      socket.setSoTimeout(timeout);
+
+      if (secure) {
+        SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+
+        try (SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host,
+            address.getPort(), true)) {
+          SSLParameters parameters = sslSocket.getSSLParameters();
+          parameters.setApplicationProtocols(new String[] { "h2", "http/1.1" });
+          sslSocket.setSSLParameters(parameters);
+          sslSocket.startHandshake();
+          return Optional.of("h2".equals(sslSocket.getApplicationProtocol()));
+        }
+      }
+
+      OutputStream out = socket.getOutputStream();
+      out.write(PREFACE);
+      out.write(SETTINGS);
+      out.flush();
+
+      // The header of the first frame, or the start of an HTTP/1.x status line
+      byte[] head = new byte[SETTINGS.length];
+      InputStream in = socket.getInputStream();
+      for (int read = 0; read < head.length; ) {
+        int count = in.read(head, read, head.length - read);
+        if (count < 0) {
+          return Optional.empty();
+        }
+        read += count;
+      }
+
+      if (new String(head, 0, 5, StandardCharsets.US_ASCII).equals("HTTP/")) {
+        return Optional.of(false);
+      }
+
+      return head[3] == SETTINGS_TYPE ? Optional.of(true) : Optional.empty();
+    } catch (IOException e) {
+      return Optional.empty();
+    }
+  }
+
+  /** Number of exchanges completed via HTTP/2 so far. */
+  long getExchanges() {
+    return exchanges.sum();
+  }
+
+  private static String getOrigin(ClassicHttpRequest request) {
+    return request.getScheme() + "://" + request.getAuthority();
+  }
+
+  private static SimpleHttpRequest toExchangeRequest(ClassicHttpRequest request)
+      throws IOException {
+    SimpleHttpRequest copy = SimpleHttpRequest.copy(request);
+
+    if (request instanceof Configurable && ((Configurable) request).getConfig() != null) {
+      copy.setConfig(((Configurable) request).getConfig());
+    }
+
+    HttpEntity entity = request.getEntity();
+    if (entity != null) {
+      // The content type is set with the body
+      copy.removeHeaders("Content-Type");
+      if (entity.getContentEncoding() != null) {
+        copy.setHeader(HttpHeaders.CONTENT_ENCODING, entity.getContentEncoding());
+      }
+      copy.setBody(EntityUtils.toByteArray(entity), entity.getContentType() == null ? null
+          : ContentType.parse(entity.getContentType()));
+    }
+
+    return copy;
+  }
+
+  private static ClassicHttpResponse toClassicResponse(SimpleHttpResponse response)
+      throws IOException {
+    BasicClassicHttpResponse copy = new BasicClassicHttpResponse(response.getCode(),
+        response.getReasonPhrase());
+    copy.setVersion(response.getVersion());
+    copy.setHeaders(response.getHeaders());
+
+    byte[] body = response.getBodyBytes();
+    if (body != null) {
+      Header contentEncoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+      ContentCoding.setBufferedEntity(copy, new ByteArrayEntity(body, response.getContentType(),
+          contentEncoding == null ? null : contentEncoding.getValue()));
+    }
+
+    return copy;
+  }
+}
@@ -0,0 +1,500 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * A process-wide pool of keep-alive HTTP connections shared by all hypermedia artifacts. Requests
+ * issued through this pool reuse open connections to the same route (i.e., host and port) instead
+ * of setting up a new client and connection for each request.
+ *
+ * The pool is sized by default via the system properties {@value #MAX_CONNECTIONS_PROPERTY},
+ * {@value #MAX_CONNECTIONS_PER_ROUTE_PROPERTY}, and {@value #IDLE_TIMEOUT_PROPERTY} (in
+ * milliseconds), and it can be resized at runtime via {@link #configure(int, int)}. The default
+ * connect and response timeouts of requests are configured via the system properties
+ * {@value #CONNECT_TIMEOUT_PROPERTY} and {@value #RESPONSE_TIMEOUT_PROPERTY} (in milliseconds, 0
+ * for no timeout).
+ *
+ * Requests can be issued via HTTP/2 (see {@link #setHttp2Enabled(boolean)} and the system property
+ * {@value #HTTP2_PROPERTY}), in which case the requests to an origin are multiplexed over a single
+ * connection. Requests to an origin are issued via HTTP/1.1 until the origin is known to support
+ * HTTP/2.
+ *
+ * Requests can also be executed asynchronously on a shared I/O executor via
+ * {@link #executeAsync(ClassicHttpRequest)}, which allows artifacts to suspend their operations
+ * while the exchange is in progress. Requests executed with a timeout are cancelled if they do not
+ * complete in time, such that their connections are released.
+ *
+ * Requests accept gzip and deflate responses, unless disabled via the system property
+ * {@value #COMPRESSION_PROPERTY}. Request bodies larger than a threshold (1 KiB by default, see
+ * {@value #COMPRESSION_THRESHOLD_PROPERTY}) are compressed with gzip if their origin advertised
+ * support for compressed bodies.
+ *
+ */
+public final class HttpClientPool {
+  public static final String MAX_CONNECTIONS_PROPERTY = "jacamo.hypermedia.http.maxConnections";
+  public static final String MAX_CONNECTIONS_PER_ROUTE_PROPERTY =
+      "jacamo.hypermedia.http.maxConnectionsPerRoute";
+  public static final String IDLE_TIMEOUT_PROPERTY = "jacamo.hypermedia.http.idleTimeout";
+  public static final String CONNECT_TIMEOUT_PROPERTY = "jacamo.hypermedia.http.connectTimeout";
+  public static final String RESPONSE_TIMEOUT_PROPERTY = "jacamo.hypermedia.http.responseTimeout";
+  public static final String HTTP2_PROPERTY = "jacamo.hypermedia.http.http2";
+  public static final String COMPRESSION_PROPERTY = "jacamo.hypermedia.http.compression";
+  public static final String COMPRESSION_THRESHOLD_PROPERTY =
+      "jacamo.hypermedia.http.compressionThreshold";
+
+  public static final int DEFAULT_MAX_CONNECTIONS = 200;
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+  public static final long DEFAULT_IDLE_TIMEOUT = 30000;
+  public static final long DEFAULT_CONNECT_TIMEOUT = 10000;
+  public static final long DEFAULT_RESPONSE_TIMEOUT = 30000;
+  public static final long DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+  /* Threads of the I/O executor are terminated after being idle for this time (in milliseconds) */
+  private static final long IO_THREAD_KEEP_ALIVE = 60000;
+
+  private static final PoolingHttpClientConnectionManager connectionManager =
+      new PoolingHttpClientConnectionManager();
+
+  private static final RequestConfig defaultRequestConfig = RequestConfig.custom()
+      .setConnectTimeout(Long.getLong(CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT),
+          TimeUnit.MILLISECONDS)
+      .setResponseTimeout(Long.getLong(RESPONSE_TIMEOUT_PROPERTY, DEFAULT_RESPONSE_TIMEOUT),
+          TimeUnit.MILLISECONDS)
+      .build();
+
+  private static final CloseableHttpClient client;
+
+  /* Created when HTTP/2 is first enabled */
+  private static volatile Http2Transport http2Transport;
+  private static volatile boolean http2Enabled;
+
+  private static final AtomicInteger ioThreadCount = new AtomicInteger();
+
+  /*
+   * Executes HTTP/1.1 requests asynchronously, with at most one thread per connection of the pool
+   * (see setIoThreads); requests in excess are queued. Idle threads are terminated.
+   */
+  private static final ThreadPoolExecutor ioExecutor = new ThreadPoolExecutor(1, 1,
+      IO_THREAD_KEEP_ALIVE, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+      runnable -> {
+        Thread thread = new Thread(runnable,
+            "jacamo-hypermedia-io-" + ioThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /* Issues hedged requests and cancels requests that timed out */
+  private static final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jacamo-hypermedia-scheduler");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private static final LongAdder hedgedRequests = new LongAdder();
+
+  static {
+    ioExecutor.allowCoreThreadTimeOut(true);
+
+    connectionManager.setMaxTotal(Integer.getInteger(MAX_CONNECTIONS_PROPERTY,
+        DEFAULT_MAX_CONNECTIONS));
+    setIoThreads(connectionManager.getMaxTotal());
+    connectionManager.setDefaultMaxPerRoute(Integer.getInteger(MAX_CONNECTIONS_PER_ROUTE_PROPERTY,
+        DEFAULT_MAX_CONNECTIONS_PER_ROUTE));
+
+    client = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(defaultRequestConfig)
+        // Content codings are negotiated and decoded by ContentCoding
+        .disableContentCompression()
+        .evictExpiredConnections()
+        .evictIdleConnections(TimeValue.ofMilliseconds(Long.getLong(IDLE_TIMEOUT_PROPERTY,
+            DEFAULT_IDLE_TIMEOUT)))
+        .build();
+
+    if (Boolean.getBoolean(HTTP2_PROPERTY)) {
+      setHttp2Enabled(true);
+    }
+  }
+
+  /**
+   * Resizes the shared connection pool. Connections already leased are not affected.
+   *
+   * @param maxConnections The maximum number of connections in the pool.
+   * @param maxConnectionsPerRoute The maximum number of connections per route.
+   */
+  public static synchronized void configure(int maxConnections, int maxConnectionsPerRoute) {
+    if (maxConnections <= 0 || maxConnectionsPerRoute <= 0) {
+      throw new IllegalArgumentException("The pool size must be a positive number.");
+    }
+
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(Math.min(maxConnections, maxConnectionsPerRoute));
+    setIoThreads(maxConnections);
+  }
+
+  /* The maximum number of threads that execute requests asynchronously */
+  static int getIoThreads() {
+    return ioExecutor.getMaximumPoolSize();
+  }
+
+  /* Threads in excess of the connections of the pool would only wait for a connection */
+  private static void setIoThreads(int threads) {
+    // The core size of the executor must not exceed its maximum size
+    if (threads > ioExecutor.getMaximumPoolSize()) {
+      ioExecutor.setMaximumPoolSize(threads);
+      ioExecutor.setCorePoolSize(threads);
+    } else {
+      ioExecutor.setCorePoolSize(threads);
+      ioExecutor.setMaximumPoolSize(threads);
+    }
+  }
+
+  /**
+   * Enables or disables HTTP/2 for the requests issued through this pool. Requests already in
+   * progress are not affected.
+   *
+   * @param enabled True if requests to origins that support HTTP/2 should be issued via HTTP/2.
+   */
+  public static synchronized void setHttp2Enabled(boolean enabled) {
+    if (enabled && http2Transport == null) {
+      http2Transport = new Http2Transport(defaultRequestConfig, ioExecutor);
+    }
+
+    http2Enabled = enabled;
+  }
+
+  public static boolean isHttp2Enabled() {
+    return http2Enabled;
+  }
+
+  /** Number of exchanges completed via HTTP/2 so far. */
+  public static long getHttp2Exchanges() {
+    return http2Transport == null ? 0 : http2Transport.getExchanges();
+  }
+
+  /* Returns the HTTP/2 transport if HTTP/2 is enabled and the origin of a request supports it */
+  private static Optional<Http2Transport> getHttp2Transport(ClassicHttpRequest request) {
+    if (!http2Enabled) {
+      return Optional.empty();
+    }
+
+    return Optional.ofNullable(http2Transport).filter(transport -> transport.accepts(request));
+  }
+
+  /**
+   * Executes a request using a pooled connection. The response entity is read in full before the
+   * connection is released back to the pool, such that the returned response can be used after
+   * this method returns.
+   *
+   * @param request The request to be executed.
+   * @return The response with a buffered entity (if any).
+   * @throws IOException If the request could not be executed.
+   */
+  public static ClassicHttpResponse execute(ClassicHttpRequest request) throws IOException {
+    Optional<HttpEntity> uncompressed = ContentCoding.prepare(request);
+    ClassicHttpResponse response = send(request);
+
+    if (ContentCoding.observe(request, response) && uncompressed.isPresent()) {
+      // The origin does not accept compressed bodies after all
+      request.setEntity(uncompressed.get());
+      response = send(request);
+    }
+
+    return response;
+  }
+
+  private static ClassicHttpResponse send(ClassicHttpRequest request) throws IOException {
+    Optional<Http2Transport> http2 = getHttp2Transport(request);
+
+    if (http2.isPresent()) {
+      try {
+        return http2.get().execute(request).get();
+      } catch (ExecutionException e) {
+        throw (IOException) e.getCause();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(e.getMessage());
+      }
+    }
+
+    return executeHttp1(request);
+  }
+
+  private static ClassicHttpResponse executeHttp1(ClassicHttpRequest request) throws IOException {
+    return client.execute(request, response -> {
+      BasicClassicHttpResponse copy = new BasicClassicHttpResponse(response.getCode(),
+          response.getReasonPhrase());
+      copy.setVersion(response.getVersion());
+      copy.setHeaders(response.getHeaders());
+
+      HttpEntity entity = response.getEntity();
+      if (entity != null) {
+        ContentCoding.setBufferedEntity(copy, entity);
+      }
+
+      return copy;
+    });
+  }
+
+  /**
+   * Executes a request on the shared I/O executor using a pooled connection. The executor has at
+   * most one thread per connection of the pool, hence the number of requests in flight is bounded
+   * by the size of the pool: requests in excess are queued until a thread and a connection become
+   * available.
+   *
+   * @param request The request to be executed.
+   * @return A future that completes with the response (with a buffered entity, if any), or
+   * completes exceptionally if the request could not be executed.
+   */
+  public static CompletableFuture<ClassicHttpResponse> executeAsync(ClassicHttpRequest request) {
+    CompletableFuture<ClassicHttpResponse> future = new CompletableFuture<>();
+    Optional<HttpEntity> uncompressed;
+
+    try {
+      uncompressed = ContentCoding.prepare(request);
+    } catch (IOException e) {
+      future.completeExceptionally(e);
+      return future;
+    }
+
+    sendAsync(request).whenComplete((response, error) -> {
+      if (response == null) {
+        future.completeExceptionally(error);
+      } else if (ContentCoding.observe(request, response) && uncompressed.isPresent()) {
+        // The origin does not accept compressed bodies after all
+        request.setEntity(uncompressed.get());
+        sendAsync(request).whenComplete((retryResponse, retryError) -> {
+          if (retryResponse != null) {
+            future.complete(retryResponse);
+          } else {
+            future.completeExceptionally(retryError);
+          }
+        });
+      } else {
+        future.complete(response);
+      }
+    });
+
+    return future;
+  }
+
+  private static CompletableFuture<ClassicHttpResponse> sendAsync(ClassicHttpRequest request) {
+    Optional<Http2Transport> http2 = getHttp2Transport(request);
+
+    if (!http2.isPresent()) {
+      return executeHttp1Async(request);
+    }
+
+    // HTTP/2 exchanges do not occupy a thread of the I/O executor
+    return http2.get().execute(request);
+  }
+
+  private static CompletableFuture<ClassicHttpResponse> executeHttp1Async(
+      ClassicHttpRequest request) {
+    CompletableFuture<ClassicHttpResponse> future = new CompletableFuture<>();
+
+    ioExecutor.execute(() -> {
+      try {
+        future.complete(executeHttp1(request));
+      } catch (IOException | RuntimeException e) {
+        future.completeExceptionally(e);
+      }
+    });
+
+    return future;
+  }
+
+  /**
+   * Executes a request using a pooled connection, and cancels the request if it does not complete
+   * within a timeout. The timeout covers the entire exchange, including the time spent waiting for
+   * a connection.
+   *
+   * @param request The request to be executed.
+   * @param timeout The timeout of the request.
+   * @param unit The unit of the timeout.
+   * @return The response with a buffered entity (if any).
+   * @throws RequestTimeoutException If the request was cancelled because it timed out.
+   * @throws IOException If the request could not be executed.
+   */
+  public static ClassicHttpResponse execute(HttpUriRequestBase request, long timeout,
+      TimeUnit unit) throws IOException {
+    AtomicBoolean timedOut = new AtomicBoolean();
+    ScheduledFuture<?> timer = scheduleTimeout(request, timedOut, timeout, unit);
+
+    try {
+      return execute(request);
+    } catch (IOException | IllegalStateException e) {
+      // The request may fail before the timer has returned from cancelling it, and it fails with
+      // an IllegalStateException if it was cancelled while its connection was being set up
+      if (!timedOut.get()) {
+        throw e;
+      }
+      throw timeoutException(request, timeout, unit);
+    } finally {
+      timer.cancel(false);
+    }
+  }
+
+  /**
+   * Executes a request on the shared I/O executor using a pooled connection, and cancels the
+   * request if it does not complete within a timeout.
+   *
+   * @param request The request to be executed.
+   * @param timeout The timeout of the request.
+   * @param unit The unit of the timeout.
+   * @return A future that completes with the response (with a buffered entity, if any), or
+   * completes exceptionally with a {@link RequestTimeoutException} if the request timed out.
+   */
+  public static CompletableFuture<ClassicHttpResponse> executeAsync(HttpUriRequestBase request,
+      long timeout, TimeUnit unit) {
+    CompletableFuture<ClassicHttpResponse> result = new CompletableFuture<>();
+    AtomicBoolean timedOut = new AtomicBoolean();
+    ScheduledFuture<?> timer = scheduleTimeout(request, timedOut, timeout, unit);
+
+    executeAsync(request).whenComplete((response, error) -> {
+      timer.cancel(false);
+
+      if (response != null) {
+        result.complete(response);
+      } else if (!timedOut.get()) {
+        result.completeExceptionally(error);
+      } else {
+        // The request may fail before the timer has returned from cancelling it
+        result.completeExceptionally(timeoutException(request, timeout, unit));
+      }
+    });
+
+    return result;
+  }
+
+  /*
+   * Cancels a request once a timeout has passed. The timer records that it fired before it cancels
+   * the request, such that requests cancelled for other reasons (e.g., by the caller) are not
+   * reported as timed out
+   */
+  private static ScheduledFuture<?> scheduleTimeout(HttpUriRequestBase request,
+      AtomicBoolean timedOut, long timeout, TimeUnit unit) {
+    return scheduler.schedule(() -> {
+      timedOut.set(true);
+      request.cancel();
+    }, timeout, unit);
+  }
+
+  /**
+   * Executes a request with hedging: if the first attempt has not completed after a delay, a second
+   * attempt is issued, and the first successful response of either attempt is used. The attempt
+   * still in progress is then cancelled, such that it does not load the (slow) host any longer.
+   * Hedging trades a few duplicate requests for lower tail latencies, and must only be used for
+   * idempotent requests.
+   *
+   * @param attempt A supplier that issues an attempt of the request (e.g., via
+   * {@link #executeAsync(ClassicHttpRequest)}) each time it is invoked. Cancelling the future of an
+   * attempt should cancel its request.
+   * @param delay The delay after which the second attempt is issued.
+   * @param unit The unit of the delay.
+   * @return A future that completes with the first successful response, or completes exceptionally
+   * if all attempts failed.
+   */
+  public static CompletableFuture<ClassicHttpResponse> executeHedged(
+      Supplier<CompletableFuture<ClassicHttpResponse>> attempt, long delay, TimeUnit unit) {
+    CompletableFuture<ClassicHttpResponse> result = new CompletableFuture<>();
+    List<CompletableFuture<ClassicHttpResponse>> attempts =
+        new CopyOnWriteArrayList<CompletableFuture<ClassicHttpResponse>>();
+    AtomicInteger pending = new AtomicInteger(1);
+
+    BiConsumer<ClassicHttpResponse, Throwable> onComplete = (response, error) -> {
+      if (response != null) {
+        result.complete(response);
+      } else if (pending.decrementAndGet() == 0) {
+        // The result fails only once no other attempt is pending
+        result.completeExceptionally(error);
+      }
+    };
+
+    issueAttempt(attempt, attempts, result).whenComplete(onComplete);
+
+    ScheduledFuture<?> hedge = scheduler.schedule(() -> {
+      // Do not hedge a request that has already failed
+      if (!result.isDone() && pending.getAndUpdate(count -> count == 0 ? 0 : count + 1) > 0) {
+        hedgedRequests.increment();
+        issueAttempt(attempt, attempts, result).whenComplete(onComplete);
+      }
+    }, delay, unit);
+
+    result.whenComplete((response, error) -> {
+      hedge.cancel(false);
+      // Completed attempts are not affected
+      attempts.forEach(issued -> issued.cancel(true));
+    });
+
+    return result;
+  }
+
+  /* Issues an attempt, and cancels it right away if the result completed in the meantime */
+  private static CompletableFuture<ClassicHttpResponse> issueAttempt(
+      Supplier<CompletableFuture<ClassicHttpResponse>> attempt,
+      List<CompletableFuture<ClassicHttpResponse>> attempts,
+      CompletableFuture<ClassicHttpResponse> result) {
+    CompletableFuture<ClassicHttpResponse> issued = attempt.get();
+    attempts.add(issued);
+
+    if (result.isDone()) {
+      issued.cancel(true);
+    }
+
+    return issued;
+  }
+
+  private static RequestTimeoutException timeoutException(HttpUriRequestBase request,
+      long timeout, TimeUnit unit) {
+    return new RequestTimeoutException("The request timed out after "
+        + unit.toMillis(timeout) + " ms: " + request.getMethod() + " " + request.getRequestUri());
+  }
+
+  /** Number of hedged (i.e., duplicate) requests issued so far. */
+  public static long getHedgedRequests() {
+    return hedgedRequests.sum();
+  }
+
+  /**
+   * Returns the total statistics of the shared connection pool.
+   *
+   * @return The number of leased, pending, and available connections, and the pool size.
+   */
+  public static PoolStats getStats() {
+    return connectionManager.getTotalStats();
+  }
+
+  private HttpClientPool() {
+  }
+}
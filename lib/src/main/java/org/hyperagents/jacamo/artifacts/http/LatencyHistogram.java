@@ -0,0 +1,125 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies with logarithmic buckets. Latencies are recorded with a
+ * resolution of one microsecond, and each power of two is split into four buckets, such that
+ * quantiles are estimated with a relative error of at most 25%. Buckets are striped counters, so
+ * recording scales with the number of threads.
+ */
+public final class LatencyHistogram {
+  /* Latencies above 2^36 microseconds (about 19 hours) are counted in the last bucket */
+  private static final int MAX_EXPONENT = 36;
+  private static final int SUB_BUCKETS = 4;
+  private static final int BUCKETS = SUB_BUCKETS * (MAX_EXPONENT - 1) + SUB_BUCKETS;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sumMicros = new LongAdder();
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i ++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos The latency in nanoseconds.
+   */
+  public void record(long nanos) {
+    long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+
+    buckets[bucketIndex(micros)].increment();
+    count.increment();
+    sumMicros.add(micros);
+  }
+
+  /**
+   * Adds all latencies recorded by another histogram, e.g. to aggregate the latencies of several
+   * affordances.
+   *
+   * @param other The other histogram.
+   */
+  public void addAll(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i ++) {
+      buckets[i].add(other.buckets[i].sum());
+    }
+
+    count.add(other.count.sum());
+    sumMicros.add(other.sumMicros.sum());
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  /** The sum of all recorded latencies in microseconds. */
+  public long getSumMicros() {
+    return sumMicros.sum();
+  }
+
+  /**
+   * Estimates a quantile of the recorded latencies (i.e., the upper bound of the bucket that
+   * contains the quantile).
+   *
+   * @param quantile The quantile, between 0 and 1 (e.g., 0.99).
+   * @return The estimated latency in microseconds, or 0 if no latencies were recorded.
+   */
+  public long getQuantileMicros(double quantile) {
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+
+    for (int i = 0; i < BUCKETS; i ++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long cumulative = 0;
+
+    for (int i = 0; i < BUCKETS; i ++) {
+      cumulative += counts[i];
+
+      if (cumulative >= rank) {
+        return upperBound(i);
+      }
+    }
+
+    return upperBound(BUCKETS - 1);
+  }
+
+  static int bucketIndex(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+
+    // The two bits after the most significant bit select the sub-bucket
+    int subBucket = (int) ((micros >> (exponent - 2)) & (SUB_BUCKETS - 1));
+    return SUB_BUCKETS * (exponent - 1) + subBucket;
+  }
+
+  /* The exclusive upper bound of a bucket in microseconds */
+  static long upperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index + 1;
+    }
+
+    int exponent = index / SUB_BUCKETS + 1;
+    int subBucket = index % SUB_BUCKETS;
+
+    return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - 2);
+  }
+}
@@ -0,0 +1,39 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A servlet that exposes the request metrics of all hypermedia artifacts in the Prometheus text
+ * format. The servlet can be mounted by any local servlet container, e.g. with Jetty:
+ *
+ * <pre>
+ * ServletContextHandler context = new ServletContextHandler();
+ * context.addServlet(new ServletHolder(new MetricsServlet()), "/metrics");
+ * </pre>
+ *
+ */
+public class MetricsServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    writeMetrics(response);
+  }
+
+  /**
+   * Writes the metrics to a response, e.g. for servers that use handlers instead of servlets.
+   *
+   * @param response The response.
+   * @throws IOException If the response could not be written.
+   */
+  public static void writeMetrics(HttpServletResponse response) throws IOException {
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType(RequestMetrics.PROMETHEUS_CONTENT_TYPE);
+    RequestMetrics.writePrometheus(response.getWriter());
+  }
+}
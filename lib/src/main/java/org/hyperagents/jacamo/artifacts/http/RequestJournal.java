@@ -0,0 +1,287 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * A process-wide journal of the requests issued by hypermedia artifacts. Operations only publish a
+ * small record into a lock-free ring buffer, and the records are formatted and written by a
+ * background thread. The thread is started when the first record is published, and waits without
+ * polling while the buffer is empty. Records are dropped (and counted) rather than blocking
+ * operations when the writer falls behind.
+ *
+ * The journal is configured by default via the system properties {@value #LEVEL_PROPERTY} (one of
+ * {@code OFF}, {@code INFO}, or {@code DEBUG}), {@value #SAMPLE_RATE_PROPERTY} (the fraction of
+ * requests that are journaled), {@value #MAX_PAYLOAD_PROPERTY} (the number of payload bytes written
+ * at the {@code DEBUG} level), and {@value #CAPACITY_PROPERTY} (the size of the ring buffer). It
+ * can be reconfigured at runtime via {@link #configure(Level, double, int)}.
+ *
+ * Requests of artifacts in dry-run mode (i.e., requests that are not issued) are always journaled
+ * with their payload (truncated to the maximum payload size), whatever the level and sampling
+ * rate of the journal, since the journal is the only output of a dry run.
+ *
+ * Each record is written as a single line of space-separated {@code key=value} pairs, e.g.:
+ *
+ * <pre>
+ * ts=2021-03-01T10:00:00.000Z artifact=lamp1 agent=alice method=PUT target=http://... dryRun=false
+ * payloadBytes=4 payload="true"
+ * </pre>
+ *
+ */
+public final class RequestJournal {
+  public static final String LEVEL_PROPERTY = "jacamo.hypermedia.journal.level";
+  public static final String SAMPLE_RATE_PROPERTY = "jacamo.hypermedia.journal.sampleRate";
+  public static final String MAX_PAYLOAD_PROPERTY = "jacamo.hypermedia.journal.maxPayload";
+  public static final String CAPACITY_PROPERTY = "jacamo.hypermedia.journal.capacity";
+
+  public static final Level DEFAULT_LEVEL = Level.INFO;
+  public static final double DEFAULT_SAMPLE_RATE = 1.0;
+  public static final int DEFAULT_MAX_PAYLOAD = 256;
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  /** The verbosity of the journal. */
+  public enum Level {
+    /** No requests are journaled. */
+    OFF,
+    /** The request line of each journaled request is written. */
+    INFO,
+    /** The request line and the (truncated) payload of each journaled request are written. */
+    DEBUG
+  }
+
+  private static final RingBuffer<Entry> buffer =
+      new RingBuffer<Entry>(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+
+  private static final AtomicLong dropped = new AtomicLong();
+  private static final AtomicLong written = new AtomicLong();
+
+  private static volatile Level level = parseLevel(System.getProperty(LEVEL_PROPERTY));
+  private static volatile double sampleRate = parseSampleRate(
+      System.getProperty(SAMPLE_RATE_PROPERTY));
+  private static volatile int maxPayload = Integer.getInteger(MAX_PAYLOAD_PROPERTY,
+      DEFAULT_MAX_PAYLOAD);
+
+  private static volatile Consumer<String> sink = Logger.getLogger(RequestJournal.class.getName())
+      ::info;
+
+  /* Started when the first record is published */
+  private static volatile Thread writer;
+  /* Set while the writer waits for records, such that producers only unpark it then */
+  private static volatile boolean writerWaiting;
+
+  /**
+   * Reconfigures the journal.
+   *
+   * @param level The verbosity of the journal.
+   * @param sampleRate The fraction of requests that are journaled (between 0 and 1).
+   * @param maxPayload The maximum number of payload bytes written per request.
+   */
+  public static void configure(Level level, double sampleRate, int maxPayload) {
+    if (sampleRate < 0 || sampleRate > 1) {
+      throw new IllegalArgumentException("The sample rate must be between 0 and 1.");
+    }
+
+    if (maxPayload < 0) {
+      throw new IllegalArgumentException("The maximum payload size cannot be negative.");
+    }
+
+    RequestJournal.level = level;
+    RequestJournal.sampleRate = sampleRate;
+    RequestJournal.maxPayload = maxPayload;
+  }
+
+  /**
+   * Redirects the formatted records, e.g. to an application log. By default, records are written
+   * to the {@link java.util.logging} logger of this class. The sink is invoked by the writer
+   * thread only.
+   *
+   * @param sink The consumer of formatted records.
+   */
+  public static void setSink(Consumer<String> sink) {
+    RequestJournal.sink = sink;
+  }
+
+  /**
+   * Publishes a request to the journal, subject to the level and sampling rate of the journal
+   * (unless it is a dry-run request). This method does not block and does not format the request.
+   *
+   * @param artifact The name of the artifact that issued the request.
+   * @param agent The name of the agent on whose behalf the request was issued.
+   * @param method The request method.
+   * @param target The request target.
+   * @param payload The request payload (may be null), which must not be modified afterwards.
+   * @param dryRun True if the request was not issued (i.e., dry-run mode).
+   */
+  public static void record(String artifact, String agent, String method, URI target,
+      byte[] payload, boolean dryRun) {
+    Level currentLevel = level;
+
+    if (!dryRun) {
+      if (currentLevel == Level.OFF) {
+        return;
+      }
+
+      double rate = sampleRate;
+      if (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate) {
+        return;
+      }
+    }
+
+    Entry entry = new Entry(System.currentTimeMillis(), artifact, agent, method, target,
+        dryRun || currentLevel == Level.DEBUG ? payload : null,
+        payload == null ? 0 : payload.length, dryRun);
+
+    if (!buffer.offer(entry)) {
+      dropped.incrementAndGet();
+      return;
+    }
+
+    Thread currentWriter = writer;
+    if (currentWriter == null) {
+      startWriter();
+    } else if (writerWaiting) {
+      LockSupport.unpark(currentWriter);
+    }
+  }
+
+  /** Number of records dropped because the writer fell behind. */
+  public static long getDropped() {
+    return dropped.get();
+  }
+
+  /** Number of records written to the sink. */
+  public static long getWritten() {
+    return written.get();
+  }
+
+  static String format(Entry entry, int maxPayload) {
+    StringBuilder line = new StringBuilder(128)
+        .append("ts=").append(Instant.ofEpochMilli(entry.timestamp))
+        .append(" artifact=").append(entry.artifact)
+        .append(" agent=").append(entry.agent)
+        .append(" method=").append(entry.method)
+        .append(" target=").append(entry.target)
+        .append(" dryRun=").append(entry.dryRun)
+        .append(" payloadBytes=").append(entry.payloadLength);
+
+    if (entry.payload != null && maxPayload > 0) {
+      int length = Math.min(entry.payload.length, maxPayload);
+      String payload = new String(entry.payload, 0, length, StandardCharsets.UTF_8);
+
+      line.append(" payload=\"");
+      for (int i = 0; i < payload.length(); i ++) {
+        char c = payload.charAt(i);
+
+        if (c == '"' || c == '\\') {
+          line.append('\\').append(c);
+        } else if (c == '\n') {
+          line.append("\\n");
+        } else if (c == '\r') {
+          line.append("\\r");
+        } else {
+          line.append(c);
+        }
+      }
+      line.append('"');
+
+      if (length < entry.payload.length) {
+        line.append(" truncated=true");
+      }
+    }
+
+    return line.toString();
+  }
+
+  private static synchronized void startWriter() {
+    if (writer == null) {
+      Thread thread = new Thread(RequestJournal::drain, "jacamo-hypermedia-journal");
+      thread.setDaemon(true);
+      thread.start();
+      writer = thread;
+    } else {
+      // The writer may have been started (and found the buffer empty) by a concurrent record
+      LockSupport.unpark(writer);
+    }
+  }
+
+  private static void drain() {
+    while (true) {
+      Entry entry = buffer.poll();
+
+      if (entry == null) {
+        writerWaiting = true;
+        // Records claimed before the flag was set do not unpark the writer
+        if (buffer.isEmpty()) {
+          LockSupport.park(RequestJournal.class);
+        }
+        writerWaiting = false;
+        continue;
+      }
+
+      try {
+        sink.accept(format(entry, maxPayload));
+        written.incrementAndGet();
+      } catch (RuntimeException e) {
+        // A failing sink must not stop the journal
+        dropped.incrementAndGet();
+      }
+    }
+  }
+
+  private static double parseSampleRate(String value) {
+    if (value == null) {
+      return DEFAULT_SAMPLE_RATE;
+    }
+
+    try {
+      return Math.max(0, Math.min(1, Double.parseDouble(value)));
+    } catch (NumberFormatException e) {
+      return DEFAULT_SAMPLE_RATE;
+    }
+  }
+
+  private static Level parseLevel(String value) {
+    if (value == null) {
+      return DEFAULT_LEVEL;
+    }
+
+    try {
+      return Level.valueOf(value.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return DEFAULT_LEVEL;
+    }
+  }
+
+  /* A journaled request; the request is formatted by the writer thread only */
+  static final class Entry {
+    final long timestamp;
+    final String artifact;
+    final String agent;
+    final String method;
+    final URI target;
+    final byte[] payload;
+    final int payloadLength;
+    final boolean dryRun;
+
+    Entry(long timestamp, String artifact, String agent, String method, URI target,
+        byte[] payload, int payloadLength, boolean dryRun) {
+      this.timestamp = timestamp;
+      this.artifact = artifact;
+      this.agent = agent;
+      this.method = method;
+      this.target = target;
+      this.payload = payload;
+      this.payloadLength = payloadLength;
+      this.dryRun = dryRun;
+    }
+  }
+
+  private RequestJournal() {
+  }
+}
@@ -0,0 +1,316 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+
+/**
+ * A process-wide registry of request metrics per Thing, affordance, and operation type. For each
+ * affordance and operation type, the registry counts requests by status-code class (and transport
+ * errors), the bytes sent and received on the wire (and the bytes saved by content codings), and
+ * records a histogram of latencies. All metrics are recorded with striped counters, such that
+ * recording does not contend across threads.
+ *
+ * The metrics can be exported in the Prometheus text format via
+ * {@link #writePrometheus(Appendable)}, e.g. using {@link MetricsServlet}.
+ *
+ */
+public final class RequestMetrics {
+  public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+  private static final Map<String, AffordanceMetrics> registry =
+      new ConcurrentHashMap<String, AffordanceMetrics>();
+
+  /**
+   * Returns the metrics of an operation on an affordance, creating them if needed. The metrics are
+   * retained when the TD of the Thing is reloaded.
+   *
+   * @param thing The IRI or title of the Thing.
+   * @param affordance The name of the affordance (empty for Thing-level operations).
+   * @param operation The name of the operation type, e.g. {@code readProperty}.
+   * @return The metrics.
+   */
+  public static AffordanceMetrics forAffordance(String thing, String affordance,
+      String operation) {
+    return registry.computeIfAbsent(thing + '\u0000' + affordance + '\u0000' + operation,
+        key -> new AffordanceMetrics(thing, affordance, operation));
+  }
+
+  /**
+   * Returns the metrics recorded so far for all affordances.
+   *
+   * @return The metrics.
+   */
+  public static Collection<AffordanceMetrics> getAll() {
+    return Collections.unmodifiableCollection(registry.values());
+  }
+
+  /** Removes all metrics, e.g. between test runs. */
+  public static void clear() {
+    registry.clear();
+  }
+
+  /**
+   * Writes all metrics in the Prometheus text exposition format.
+   *
+   * @param out The output.
+   * @throws IOException If the output could not be written.
+   */
+  public static void writePrometheus(Appendable out) throws IOException {
+    List<AffordanceMetrics> metrics = new ArrayList<AffordanceMetrics>(registry.values());
+
+    out.append("# HELP jacamo_hypermedia_requests_total Requests issued to affordances by "
+        + "status-code class.\n");
+    out.append("# TYPE jacamo_hypermedia_requests_total counter\n");
+    for (AffordanceMetrics affordance : metrics) {
+      for (int statusClass = 1; statusClass <= 5; statusClass ++) {
+        long count = affordance.getRequests(statusClass);
+        if (count > 0) {
+          writeSample(out, "jacamo_hypermedia_requests_total", affordance,
+              ",status=\"" + statusClass + "xx\"", count);
+        }
+      }
+
+      if (affordance.getErrors() > 0) {
+        writeSample(out, "jacamo_hypermedia_requests_total", affordance, ",status=\"error\"",
+            affordance.getErrors());
+      }
+    }
+
+    out.append("# HELP jacamo_hypermedia_coalesced_requests_total Requests that joined an identical "
+        + "request in flight instead of being issued.\n");
+    out.append("# TYPE jacamo_hypermedia_coalesced_requests_total counter\n");
+    for (AffordanceMetrics affordance : metrics) {
+      if (affordance.getCoalesced() > 0) {
+        writeSample(out, "jacamo_hypermedia_coalesced_requests_total", affordance, "",
+            affordance.getCoalesced());
+      }
+    }
+
+    out.append("# HELP jacamo_hypermedia_request_bytes_total Payload bytes sent and received.\n");
+    out.append("# TYPE jacamo_hypermedia_request_bytes_total counter\n");
+    for (AffordanceMetrics affordance : metrics) {
+      writeSample(out, "jacamo_hypermedia_request_bytes_total", affordance,
+          ",direction=\"out\"", affordance.getBytesOut());
+      writeSample(out, "jacamo_hypermedia_request_bytes_total", affordance,
+          ",direction=\"in\"", affordance.getBytesIn());
+    }
+
+    out.append("# HELP jacamo_hypermedia_compression_saved_bytes_total Payload bytes saved on the "
+        + "wire by content codings.\n");
+    out.append("# TYPE jacamo_hypermedia_compression_saved_bytes_total counter\n");
+    for (AffordanceMetrics affordance : metrics) {
+      if (affordance.getSavedBytesOut() > 0) {
+        writeSample(out, "jacamo_hypermedia_compression_saved_bytes_total", affordance,
+            ",direction=\"out\"", affordance.getSavedBytesOut());
+      }
+
+      if (affordance.getSavedBytesIn() > 0) {
+        writeSample(out, "jacamo_hypermedia_compression_saved_bytes_total", affordance,
+            ",direction=\"in\"", affordance.getSavedBytesIn());
+      }
+    }
+
+    out.append("# HELP jacamo_hypermedia_request_duration_seconds Request latencies.\n");
+    out.append("# TYPE jacamo_hypermedia_request_duration_seconds summary\n");
+    for (AffordanceMetrics affordance : metrics) {
+      LatencyHistogram latencies = affordance.getLatencies();
+
+      for (double quantile : QUANTILES) {
+        writeSample(out, "jacamo_hypermedia_request_duration_seconds", affordance,
+            ",quantile=\"" + quantile + "\"", latencies.getQuantileMicros(quantile) / 1e6);
+      }
+
+      writeSample(out, "jacamo_hypermedia_request_duration_seconds_sum", affordance, "",
+          latencies.getSumMicros() / 1e6);
+      writeSample(out, "jacamo_hypermedia_request_duration_seconds_count", affordance, "",
+          latencies.getCount());
+    }
+  }
+
+  /**
+   * Returns all metrics in the Prometheus text exposition format.
+   *
+   * @return The metrics.
+   */
+  public static String scrape() {
+    StringBuilder out = new StringBuilder();
+
+    try {
+      writePrometheus(out);
+    } catch (IOException e) {
+      // Not thrown by StringBuilder
+      throw new IllegalStateException(e);
+    }
+
+    return out.toString();
+  }
+
+  private static void writeSample(Appendable out, String name, AffordanceMetrics affordance,
+      String labels, Object value) throws IOException {
+    out.append(name)
+        .append("{thing=\"").append(escape(affordance.getThing()))
+        .append("\",affordance=\"").append(escape(affordance.getAffordance()))
+        .append("\",operation=\"").append(escape(affordance.getOperation()))
+        .append('"').append(labels).append("} ")
+        .append(String.valueOf(value)).append('\n');
+  }
+
+  private static String escape(String label) {
+    return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  /**
+   * The metrics of an operation on an affordance.
+   */
+  public static final class AffordanceMetrics {
+    private final String thing;
+    private final String affordance;
+    private final String operation;
+
+    /* Requests by status-code class (index 1 to 5) */
+    private final LongAdder[] requests = new LongAdder[6];
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder savedOut = new LongAdder();
+    private final LongAdder savedIn = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    AffordanceMetrics(String thing, String affordance, String operation) {
+      this.thing = thing;
+      this.affordance = affordance;
+      this.operation = operation;
+
+      for (int i = 0; i < requests.length; i ++) {
+        requests[i] = new LongAdder();
+      }
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param startNanos The value of {@link System#nanoTime()} when the request was issued.
+     * @param request The request.
+     * @param response The response.
+     */
+    public void recordResponse(long startNanos, ClassicHttpRequest request,
+        ClassicHttpResponse response) {
+      latencies.record(System.nanoTime() - startNanos);
+
+      int statusClass = response.getCode() / 100;
+      if (statusClass >= 1 && statusClass <= 5) {
+        requests[statusClass].increment();
+      }
+
+      bytesOut.add(contentLength(request.getEntity()));
+      bytesIn.add(contentLength(response.getEntity()));
+      savedOut.add(savedBytes(request.getEntity()));
+      savedIn.add(savedBytes(response.getEntity()));
+    }
+
+    /**
+     * Records a request that failed without a response (e.g., a connection error).
+     *
+     * @param startNanos The value of {@link System#nanoTime()} when the request was issued.
+     * @param request The request.
+     */
+    public void recordFailure(long startNanos, ClassicHttpRequest request) {
+      latencies.record(System.nanoTime() - startNanos);
+      errors.increment();
+      bytesOut.add(contentLength(request.getEntity()));
+    }
+
+    /** Records a request that joined an identical request in flight instead of being issued. */
+    public void recordCoalesced() {
+      coalesced.increment();
+    }
+
+    public String getThing() {
+      return thing;
+    }
+
+    public String getAffordance() {
+      return affordance;
+    }
+
+    public String getOperation() {
+      return operation;
+    }
+
+    /** Number of requests that completed with a status code of the given class (1 to 5). */
+    public long getRequests(int statusClass) {
+      return requests[statusClass].sum();
+    }
+
+    /** Number of requests that completed with a response. */
+    public long getRequests() {
+      long total = 0;
+      for (int i = 1; i < requests.length; i ++) {
+        total += requests[i].sum();
+      }
+      return total;
+    }
+
+    /** Number of requests that failed without a response. */
+    public long getErrors() {
+      return errors.sum();
+    }
+
+    /** Number of requests that joined an identical request in flight. */
+    public long getCoalesced() {
+      return coalesced.sum();
+    }
+
+    public long getBytesOut() {
+      return bytesOut.sum();
+    }
+
+    public long getBytesIn() {
+      return bytesIn.sum();
+    }
+
+    /** Number of bytes that content codings saved on the wire for request bodies. */
+    public long getSavedBytesOut() {
+      return savedOut.sum();
+    }
+
+    /** Number of bytes that content codings saved on the wire for response bodies. */
+    public long getSavedBytesIn() {
+      return savedIn.sum();
+    }
+
+    public LatencyHistogram getLatencies() {
+      return latencies;
+    }
+
+    /* The bytes transferred on the wire, i.e. before a content coding was decoded */
+    private static long contentLength(HttpEntity entity) {
+      if (entity instanceof ContentCoding.CodedEntity) {
+        return ((ContentCoding.CodedEntity) entity).getTransferredLength();
+      }
+
+      return entity == null ? 0 : Math.max(0, entity.getContentLength());
+    }
+
+    private static long savedBytes(HttpEntity entity) {
+      return entity instanceof ContentCoding.CodedEntity
+          ? ((ContentCoding.CodedEntity) entity).getSavedBytes() : 0;
+    }
+  }
+
+  private RequestMetrics() {
+  }
+}
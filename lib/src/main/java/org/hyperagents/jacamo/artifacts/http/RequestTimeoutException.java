@@ -0,0 +1,14 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Signals that a request was cancelled because it did not complete within its timeout.
+ */
+public final class RequestTimeoutException extends InterruptedIOException {
+  private static final long serialVersionUID = 1L;
+
+  public RequestTimeoutException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,90 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A policy for retrying failed requests with exponential backoff and jitter. Only requests with
+ * safe methods (i.e., {@code GET} and {@code HEAD}) are retried, and only if they failed with a
+ * transport error or a transient server error.
+ *
+ * The default policy is configured via the system properties {@value #MAX_RETRIES_PROPERTY} and
+ * {@value #BACKOFF_PROPERTY} (the base backoff in milliseconds). Requests are not retried by
+ * default.
+ */
+public final class RetryPolicy {
+  public static final String MAX_RETRIES_PROPERTY = "jacamo.hypermedia.retry.maxRetries";
+  public static final String BACKOFF_PROPERTY = "jacamo.hypermedia.retry.backoff";
+
+  public static final int DEFAULT_MAX_RETRIES = 0;
+  public static final long DEFAULT_BACKOFF = 100;
+  public static final long MAX_BACKOFF = 10000;
+
+  /** A policy that never retries. */
+  public static final RetryPolicy NONE = new RetryPolicy(0, 0);
+
+  private final int maxRetries;
+  private final long backoffMillis;
+
+  /**
+   * @param maxRetries The maximum number of retries per request.
+   * @param backoffMillis The base backoff in milliseconds, which doubles with each retry.
+   */
+  public RetryPolicy(int maxRetries, long backoffMillis) {
+    if (maxRetries < 0 || backoffMillis < 0) {
+      throw new IllegalArgumentException("The number of retries and the backoff cannot be "
+          + "negative.");
+    }
+
+    this.maxRetries = maxRetries;
+    this.backoffMillis = backoffMillis;
+  }
+
+  /**
+   * Returns the policy configured via system properties.
+   *
+   * @return The default policy.
+   */
+  public static RetryPolicy getDefault() {
+    return new RetryPolicy(Integer.getInteger(MAX_RETRIES_PROPERTY, DEFAULT_MAX_RETRIES),
+        Long.getLong(BACKOFF_PROPERTY, DEFAULT_BACKOFF));
+  }
+
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  /**
+   * Returns the time to wait before a retry: the base backoff doubles with each retry (up to
+   * {@value #MAX_BACKOFF} milliseconds), and a random jitter of up to half the backoff is
+   * subtracted, such that clients do not retry in lockstep.
+   *
+   * @param retry The number of the retry, starting at 0.
+   * @return The backoff in milliseconds.
+   */
+  public long getBackoffMillis(int retry) {
+    long backoff = Math.min(MAX_BACKOFF, backoffMillis << Math.min(retry, 20));
+    long jitter = backoff / 2;
+
+    return backoff - (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+  }
+
+  /**
+   * Checks if requests with a given method can be retried (i.e., the method is safe).
+   *
+   * @param method The request method.
+   * @return True if the method is {@code GET} or {@code HEAD}.
+   */
+  public static boolean isSafe(String method) {
+    return "GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method);
+  }
+
+  /**
+   * Checks if a response indicates a transient server error.
+   *
+   * @param statusCode The status code of the response.
+   * @return True if the status code is 500, 502, 503, or 504.
+   */
+  public static boolean isRetryable(int statusCode) {
+    return statusCode == 500 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+  }
+}
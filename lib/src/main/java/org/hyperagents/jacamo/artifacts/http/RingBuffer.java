@@ -0,0 +1,110 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free ring buffer for multiple producers and a single consumer. Each slot carries a
+ * sequence number that tells producers whether the slot is free and the consumer whether it holds
+ * a published element, such that neither side ever blocks: producers fail fast when the buffer is
+ * full, and the consumer gets {@code null} when it is empty.
+ *
+ * @param <T> The type of elements.
+ */
+final class RingBuffer<T> {
+  private final int mask;
+  private final AtomicReferenceArray<T> elements;
+  private final AtomicLongArray sequences;
+
+  private final AtomicLong producerPosition = new AtomicLong();
+  private long consumerPosition = 0;
+
+  /**
+   * @param capacity The capacity of the buffer, rounded up to the next power of two.
+   */
+  RingBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("The capacity must be a positive number.");
+    }
+
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+
+    this.mask = size - 1;
+    this.elements = new AtomicReferenceArray<T>(size);
+    this.sequences = new AtomicLongArray(size);
+
+    for (int i = 0; i < size; i ++) {
+      sequences.set(i, i);
+    }
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Publishes an element. May be called concurrently by any number of threads.
+   *
+   * @param element The element to be published.
+   * @return False if the buffer is full (i.e., the element was dropped).
+   */
+  boolean offer(T element) {
+    long position = producerPosition.get();
+
+    while (true) {
+      int index = (int) (position & mask);
+      long difference = sequences.get(index) - position;
+
+      if (difference == 0) {
+        // The slot is free: claim it, then publish the element
+        if (producerPosition.compareAndSet(position, position + 1)) {
+          elements.lazySet(index, element);
+          sequences.lazySet(index, position + 1);
+          return true;
+        }
+        position = producerPosition.get();
+      } else if (difference < 0) {
+        // The consumer has not yet released this slot
+        return false;
+      } else {
+        position = producerPosition.get();
+      }
+    }
+  }
+
+  /**
+   * Checks if no element was claimed since the last element was taken. Must only be called by the
+   * consumer thread. Unlike {@link #poll()}, elements are seen as soon as a producer claimed their
+   * slot, i.e. possibly before they are published.
+   *
+   * @return True if the buffer is empty.
+   */
+  boolean isEmpty() {
+    return producerPosition.get() == consumerPosition;
+  }
+
+  /**
+   * Takes the next published element. Must only be called by a single consumer thread.
+   *
+   * @return The element, or {@code null} if no element is available.
+   */
+  T poll() {
+    int index = (int) (consumerPosition & mask);
+
+    if (sequences.get(index) != consumerPosition + 1) {
+      return null;
+    }
+
+    T element = elements.get(index);
+    elements.lazySet(index, null);
+    // Release the slot for the next lap of producers
+    sequences.lazySet(index, consumerPosition + mask + 1);
+    consumerPosition ++;
+
+    return element;
+  }
+}
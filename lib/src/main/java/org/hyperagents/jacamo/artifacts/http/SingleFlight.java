@@ -0,0 +1,140 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent calls: while a call for a key is in flight, callers with the same
+ * key join the call instead of issuing their own, and all of them receive the same result. A call
+ * leaves the flight once it completes, such that later callers issue a new call.
+ *
+ * Each caller receives its own future, which can be cancelled (e.g., when the caller times out)
+ * without affecting the other callers. The call itself is cancelled once all of its callers have
+ * cancelled their futures.
+ *
+ * @param <K> The type of the keys that identify calls.
+ * @param <V> The type of the results of calls.
+ */
+public final class SingleFlight<K, V> {
+  private final Map<K, Flight> flights = new ConcurrentHashMap<K, Flight>();
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Joins the call in flight for a key, or issues a new call if none is in flight.
+   *
+   * @param key The key that identifies the call.
+   * @param call A supplier that issues the call, invoked only if no call is in flight for the key.
+   * Cancelling the future returned by the supplier should cancel the call.
+   * @param onCoalesced A callback invoked if the caller joined a call in flight.
+   * @return A future that completes with the result of the call.
+   */
+  public CompletableFuture<V> join(K key, Supplier<CompletableFuture<V>> call,
+      Runnable onCoalesced) {
+    while (true) {
+      Flight flight = new Flight();
+      Flight current = flights.putIfAbsent(key, flight);
+
+      if (current == null) {
+        // The caller is added first, such that the flight cannot be abandoned before it starts
+        CompletableFuture<V> result = flight.addCaller();
+        flight.start(key, call);
+        return result;
+      }
+
+      // A flight that has already been abandoned by all of its callers cannot be joined
+      CompletableFuture<V> result = current.addCaller();
+      if (result != null) {
+        coalesced.increment();
+        onCoalesced.run();
+        return result;
+      }
+
+      flights.remove(key, current);
+    }
+  }
+
+  /** Number of calls that were coalesced with a call in flight so far. */
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  /** Number of calls in flight. */
+  public int getInFlight() {
+    return flights.size();
+  }
+
+  private final class Flight {
+    private final CompletableFuture<V> result = new CompletableFuture<V>();
+    private CompletableFuture<V> call;
+    private int callers;
+
+    void start(K key, Supplier<CompletableFuture<V>> supplier) {
+      CompletableFuture<V> issued;
+
+      try {
+        issued = supplier.get();
+      } catch (RuntimeException e) {
+        flights.remove(key, this);
+        throw e;
+      }
+
+      synchronized (this) {
+        call = issued;
+      }
+
+      issued.whenComplete((value, error) -> {
+        // Leave the flight before completing, such that later callers issue a new call
+        flights.remove(key, this);
+
+        if (error != null) {
+          result.completeExceptionally(error);
+        } else {
+          result.complete(value);
+        }
+      });
+    }
+
+    /* Returns the future of a new caller, or null if the flight was abandoned */
+    synchronized CompletableFuture<V> addCaller() {
+      if (callers < 0) {
+        return null;
+      }
+
+      callers ++;
+
+      CompletableFuture<V> caller = new CompletableFuture<V>();
+      result.whenComplete((value, error) -> {
+        if (error != null) {
+          caller.completeExceptionally(error);
+        } else {
+          caller.complete(value);
+        }
+      });
+      caller.whenComplete((value, error) -> {
+        if (caller.isCancelled()) {
+          removeCaller();
+        }
+      });
+
+      return caller;
+    }
+
+    private void removeCaller() {
+      CompletableFuture<V> abandoned = null;
+
+      synchronized (this) {
+        if (-- callers == 0 && call != null && !result.isDone()) {
+          callers = -1;
+          abandoned = call;
+        }
+      }
+
+      if (abandoned != null) {
+        abandoned.cancel(true);
+      }
+    }
+  }
+}
@@ -0,0 +1,480 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.apache.hc.core5.http.ContentType;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.util.Models;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.hyperagents.jacamo.artifacts.http.CircuitBreaker;
+import org.hyperagents.jacamo.artifacts.http.RequestMetrics;
+import org.hyperagents.jacamo.artifacts.http.RequestMetrics.AffordanceMetrics;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.InteractionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.security.APIKeySecurityScheme;
+import ch.unisg.ics.interactions.wot.td.security.SecurityScheme;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+import ch.unisg.ics.interactions.wot.td.vocabularies.WoTSec;
+
+/**
+ * An immutable lookup table of the affordances exposed by a TD, built once when the TD is loaded.
+ * The table maps the semantic types and names of properties and actions to prepared request
+ * templates, such that an affordance is resolved with a single hash lookup.
+ *
+ * Lookups follow the same precedence as {@link ThingDescription}: an affordance is first looked up
+ * by semantic type (the first affordance of that type in the TD is used), and then by name.
+ *
+ * The table also holds the Thing-level forms of the TD (e.g., for reading all properties in one
+ * request), which are extracted from the TD's RDF graph.
+ *
+ * Forms whose target is not a valid URI (e.g., URI templates such as {@code {?x}}) are not used if
+ * the affordance has another form for the same operation type; otherwise they are dropped with a
+ * warning, and the invalid target is reported when the operation is invoked.
+ */
+final class AffordanceTable {
+  static final String READ_ALL_PROPERTIES = "https://www.w3.org/2019/wot/td#readAllProperties";
+  static final String READ_MULTIPLE_PROPERTIES =
+      "https://www.w3.org/2019/wot/td#readMultipleProperties";
+  static final String WRITE_MULTIPLE_PROPERTIES =
+      "https://www.w3.org/2019/wot/td#writeMultipleProperties";
+
+  private static final Map<String, String> THING_OPERATION_METHODS = new HashMap<String, String>();
+
+  static {
+    // Default HTTP bindings of Thing-level operations (TD 1.1)
+    THING_OPERATION_METHODS.put(READ_ALL_PROPERTIES, "GET");
+    THING_OPERATION_METHODS.put(READ_MULTIPLE_PROPERTIES, "GET");
+    THING_OPERATION_METHODS.put(WRITE_MULTIPLE_PROPERTIES, "PUT");
+  }
+
+  private static final boolean PREFER_COMPACT_FORMS = Boolean.parseBoolean(
+      System.getProperty(PayloadCodecs.PREFER_COMPACT_PROPERTY, "true"));
+
+  private static final Logger LOGGER = Logger.getLogger(AffordanceTable.class.getName());
+
+  private static final ValueFactory rdf = SimpleValueFactory.getInstance();
+
+  private static final IRI THING = rdf.createIRI("https://www.w3.org/2019/wot/td#Thing");
+  private static final IRI HAS_FORM = rdf.createIRI("https://www.w3.org/2019/wot/td#hasForm");
+  private static final IRI HAS_TARGET =
+      rdf.createIRI("https://www.w3.org/2019/wot/hypermedia#hasTarget");
+  private static final IRI HAS_OPERATION_TYPE =
+      rdf.createIRI("https://www.w3.org/2019/wot/hypermedia#hasOperationType");
+  private static final IRI FOR_CONTENT_TYPE =
+      rdf.createIRI("https://www.w3.org/2019/wot/hypermedia#forContentType");
+  private static final IRI METHOD_NAME = rdf.createIRI("http://www.w3.org/2011/http#methodName");
+
+  private final String thing;
+  private final Map<String, AffordanceTemplate> properties;
+  private final List<AffordanceTemplate> propertyList;
+  private final Map<String, AffordanceTemplate> actions;
+  private final Map<String, RequestTemplate> thingRequests;
+  private final Optional<APIKeySecurityScheme> apiKeyScheme;
+
+  AffordanceTable(ThingDescription td) {
+    this.thing = td.getThingURI().orElse(td.getTitle());
+
+    Map<String, AffordanceTemplate> propertiesByName = new HashMap<String, AffordanceTemplate>();
+    Map<String, AffordanceTemplate> propertiesByType = new HashMap<String, AffordanceTemplate>();
+    List<AffordanceTemplate> propertiesInOrder = new ArrayList<AffordanceTemplate>();
+
+    for (PropertyAffordance property : td.getProperties()) {
+      Optional<DataSchema> schema = Optional.of(property.getDataSchema());
+      Map<String, String> invalidTargets = new HashMap<String, String>();
+      AffordanceTemplate template = new AffordanceTemplate(property, schema, schema,
+          prepareRequests(property, invalidTargets, TD.readProperty, TD.writeProperty,
+              TD.observeProperty),
+          invalidTargets);
+      register(property, template, propertiesByName, propertiesByType);
+      propertiesInOrder.add(template);
+    }
+
+    Map<String, AffordanceTemplate> actionsByName = new HashMap<String, AffordanceTemplate>();
+    Map<String, AffordanceTemplate> actionsByType = new HashMap<String, AffordanceTemplate>();
+
+    for (ActionAffordance action : td.getActions()) {
+      // Actions are invoked with their preferred form, or with their first form
+      Map<String, RequestTemplate> requests = new HashMap<String, RequestTemplate>();
+      Map<String, String> invalidTargets = new HashMap<String, String>();
+      Optional<Form> form = selectForm(action, TD.invokeAction);
+      if (!form.isPresent()) {
+        form = action.getFirstForm();
+      }
+      if (form.isPresent()) {
+        prepareRequest(form.get(), TD.invokeAction, action.getName(), invalidTargets)
+            .ifPresent(request -> requests.put(TD.invokeAction, request));
+      }
+
+      AffordanceTemplate template = new AffordanceTemplate(action, action.getInputSchema(),
+          action.getOutputSchema(), requests, invalidTargets);
+      register(action, template, actionsByName, actionsByType);
+    }
+
+    // Semantic types take precedence over names
+    propertiesByName.putAll(propertiesByType);
+    actionsByName.putAll(actionsByType);
+
+    this.properties = Collections.unmodifiableMap(propertiesByName);
+    this.propertyList = Collections.unmodifiableList(propertiesInOrder);
+    this.actions = Collections.unmodifiableMap(actionsByName);
+    this.thingRequests = Collections.unmodifiableMap(prepareThingRequests(td));
+
+    Optional<SecurityScheme> scheme = td.getFirstSecuritySchemeByType(WoTSec.APIKeySecurityScheme);
+    this.apiKeyScheme = scheme.isPresent()
+        ? Optional.of((APIKeySecurityScheme) scheme.get())
+        : Optional.empty();
+  }
+
+  /**
+   * Looks up a property.
+   *
+   * @param tag Either an IRI that identifies the property type, or the property's name.
+   * @return The property's template, if any.
+   */
+  Optional<AffordanceTemplate> getProperty(String tag) {
+    return Optional.ofNullable(properties.get(tag));
+  }
+
+  /* All properties in the order of the TD */
+  List<AffordanceTemplate> getProperties() {
+    return propertyList;
+  }
+
+  /**
+   * Looks up an action.
+   *
+   * @param tag Either an IRI that identifies the action type, or the action's name.
+   * @return The action's template, if any.
+   */
+  Optional<AffordanceTemplate> getAction(String tag) {
+    return Optional.ofNullable(actions.get(tag));
+  }
+
+  /**
+   * Looks up a Thing-level form.
+   *
+   * @param operationType The operation type, e.g. {@value #READ_ALL_PROPERTIES}.
+   * @return The request template for the operation type, if the TD provides one.
+   */
+  Optional<RequestTemplate> getThingRequest(String operationType) {
+    return Optional.ofNullable(thingRequests.get(operationType));
+  }
+
+  /* The metrics of all prepared requests, including Thing-level requests */
+  List<AffordanceMetrics> getMetrics() {
+    List<AffordanceMetrics> metrics = new ArrayList<AffordanceMetrics>();
+
+    for (Map<String, AffordanceTemplate> affordances : Arrays.asList(properties, actions)) {
+      // Affordances are indexed by both name and semantic types
+      for (AffordanceTemplate affordance : new HashSet<AffordanceTemplate>(affordances.values())) {
+        for (RequestTemplate request : affordance.requests.values()) {
+          metrics.add(request.getMetrics());
+        }
+      }
+    }
+
+    for (RequestTemplate request : thingRequests.values()) {
+      metrics.add(request.getMetrics());
+    }
+
+    return metrics;
+  }
+
+  /* The first API key security scheme of the TD (if any) */
+  Optional<APIKeySecurityScheme> getAPIKeyScheme() {
+    return apiKeyScheme;
+  }
+
+  private void register(InteractionAffordance affordance, AffordanceTemplate template,
+      Map<String, AffordanceTemplate> byName, Map<String, AffordanceTemplate> byType) {
+    byName.putIfAbsent(affordance.getName(), template);
+
+    for (String type : affordance.getSemanticTypes()) {
+      byType.putIfAbsent(type, template);
+    }
+  }
+
+  private Map<String, RequestTemplate> prepareRequests(InteractionAffordance affordance,
+      Map<String, String> invalidTargets, String... operationTypes) {
+    Map<String, RequestTemplate> requests = new HashMap<String, RequestTemplate>();
+
+    for (String operationType : operationTypes) {
+      Optional<Form> form = selectForm(affordance, operationType);
+      if (form.isPresent()) {
+        prepareRequest(form.get(), operationType, affordance.getName(), invalidTargets)
+            .ifPresent(request -> requests.put(operationType, request));
+      }
+    }
+
+    return requests;
+  }
+
+  /*
+   * Selects the form of an affordance for an operation type: forms with a valid target are
+   * preferred, then forms with a supported content type, and forms with a compact encoding are
+   * preferred over other forms (unless disabled), otherwise the first form is selected
+   */
+  private static Optional<Form> selectForm(InteractionAffordance affordance,
+      String operationType) {
+    Form selected = null;
+    int selectedRank = -2;
+
+    for (Form form : affordance.getForms()) {
+      if (!form.hasOperationType(operationType)) {
+        continue;
+      }
+
+      Optional<PayloadCodec> codec = PayloadCodecs.forContentType(form.getContentType());
+      int rank = !isValidTarget(form.getTarget()) ? -1
+          : !codec.isPresent() ? 0
+          : codec.get().isCompact() && PREFER_COMPACT_FORMS ? 2 : 1;
+
+      if (rank > selectedRank) {
+        selected = form;
+        selectedRank = rank;
+      }
+    }
+
+    return Optional.ofNullable(selected);
+  }
+
+  private static boolean isValidTarget(String target) {
+    try {
+      URI.create(target);
+      return true;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /* Extracts the Thing-level forms from the TD's RDF graph */
+  private Map<String, RequestTemplate> prepareThingRequests(ThingDescription td) {
+    Map<String, RequestTemplate> requests = new HashMap<String, RequestTemplate>();
+
+    if (!td.getGraph().isPresent()) {
+      return requests;
+    }
+
+    Model graph = td.getGraph().get();
+    Optional<Resource> thing = td.getThingURI().isPresent()
+        ? Optional.of(rdf.createIRI(td.getThingURI().get()))
+        : Models.subject(graph.filter(null, RDF.TYPE, THING));
+
+    if (!thing.isPresent()) {
+      return requests;
+    }
+
+    for (Resource formNode : Models.objectResources(graph.filter(thing.get(), HAS_FORM, null))) {
+      Optional<Value> target = Models.object(graph.filter(formNode, HAS_TARGET, null));
+      if (!target.isPresent()) {
+        continue;
+      }
+
+      String contentType = Models.objectString(graph.filter(formNode, FOR_CONTENT_TYPE, null))
+          .orElse("application/json");
+      Optional<String> method = Models.objectString(graph.filter(formNode, METHOD_NAME, null));
+
+      for (IRI type : Models.objectIRIs(graph.filter(formNode, HAS_OPERATION_TYPE, null))) {
+        String operationType = type.stringValue();
+
+        if (THING_OPERATION_METHODS.containsKey(operationType)
+            && !requests.containsKey(operationType)) {
+          Form form = new Form.Builder(target.get().stringValue())
+              .addOperationType(operationType)
+              .setMethodName(method.orElse(THING_OPERATION_METHODS.get(operationType)))
+              .setContentType(contentType)
+              .build();
+
+          // Without a valid Thing-level form, properties are requested one by one
+          prepareRequest(form, operationType, "", new HashMap<String, String>())
+              .ifPresent(request -> requests.put(operationType, request));
+        }
+      }
+    }
+
+    return requests;
+  }
+
+  /* Prepares the request template of a form, or records the target of a form that is dropped */
+  private Optional<RequestTemplate> prepareRequest(Form form, String operationType,
+      String affordanceName, Map<String, String> invalidTargets) {
+    Optional<String> method = form.getMethodName(operationType);
+    if (!method.isPresent()) {
+      return Optional.empty();
+    }
+
+    // Metrics are labeled with the local name of the operation type, e.g. readProperty
+    String operationName = operationType.substring(operationType.lastIndexOf('#') + 1);
+
+    try {
+      URI target = URI.create(form.getTarget());
+
+      return Optional.of(new RequestTemplate(form, affordanceName, operationType, method.get(),
+          target, ContentType.parse(form.getContentType()),
+          RequestMetrics.forAffordance(thing, affordanceName, operationName),
+          CircuitBreaker.forTarget(target)));
+    } catch (IllegalArgumentException e) {
+      LOGGER.warning("Dropped the " + operationName + " form of " + thing
+          + (affordanceName.isEmpty() ? "" : "#" + affordanceName) + ", invalid target "
+          + form.getTarget() + ": " + e.getMessage());
+      invalidTargets.put(operationType, form.getTarget());
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * The prepared request templates of a property or action affordance, indexed by operation type,
+   * together with the payload codecs compiled for its data schemas. Codecs are compiled for the
+   * content types of the templates in advance, and for other content types (e.g., of responses)
+   * on first use.
+   */
+  static final class AffordanceTemplate {
+    private final InteractionAffordance affordance;
+    private final Optional<DataSchema> inputSchema;
+    private final Optional<DataSchema> outputSchema;
+    private final Map<PayloadCodec, PayloadCodec.Encoder> inputEncoders =
+        new ConcurrentHashMap<PayloadCodec, PayloadCodec.Encoder>();
+    private final Map<PayloadCodec, PayloadCodec.Decoder> outputDecoders =
+        new ConcurrentHashMap<PayloadCodec, PayloadCodec.Decoder>();
+    private final Map<String, RequestTemplate> requests;
+    private final Map<String, String> invalidTargets;
+
+    AffordanceTemplate(InteractionAffordance affordance, Optional<DataSchema> inputSchema,
+        Optional<DataSchema> outputSchema, Map<String, RequestTemplate> requests,
+        Map<String, String> invalidTargets) {
+      this.affordance = affordance;
+      this.inputSchema = inputSchema;
+      this.outputSchema = outputSchema;
+      this.requests = Collections.unmodifiableMap(requests);
+      this.invalidTargets = Collections.unmodifiableMap(invalidTargets);
+
+      for (RequestTemplate request : requests.values()) {
+        getInputEncoder(request.getCodec());
+        getOutputDecoder(request.getCodec());
+      }
+    }
+
+    InteractionAffordance getAffordance() {
+      return affordance;
+    }
+
+    String getName() {
+      return affordance.getName();
+    }
+
+    Optional<DataSchema> getInputSchema() {
+      return inputSchema;
+    }
+
+    Optional<DataSchema> getOutputSchema() {
+      return outputSchema;
+    }
+
+    Optional<PayloadCodec.Encoder> getInputEncoder(PayloadCodec codec) {
+      return inputSchema.map(schema -> inputEncoders.computeIfAbsent(codec,
+          key -> key.encoderFor(schema)));
+    }
+
+    PayloadCodec.Decoder getOutputDecoder(PayloadCodec codec) {
+      return outputDecoders.computeIfAbsent(codec, key -> key.decoderFor(outputSchema));
+    }
+
+    Optional<RequestTemplate> getRequest(String operationType) {
+      return Optional.ofNullable(requests.get(operationType));
+    }
+
+    /* The target of the form that was dropped for an operation type, if any */
+    Optional<String> getInvalidTarget(String operationType) {
+      return Optional.ofNullable(invalidTargets.get(operationType));
+    }
+  }
+
+  /**
+   * A request template for one operation type of an affordance, with the form, method, target,
+   * content type, and payload codec resolved in advance, the metrics of the requests issued with
+   * the template, and the circuit breaker of the target's host.
+   */
+  static final class RequestTemplate {
+    private final Form form;
+    private final String affordanceName;
+    private final String operationType;
+    private final String method;
+    private final URI target;
+    private final ContentType contentType;
+    private final PayloadCodec codec;
+    private final AffordanceMetrics metrics;
+    private final CircuitBreaker breaker;
+
+    RequestTemplate(Form form, String affordanceName, String operationType, String method,
+        URI target, ContentType contentType, AffordanceMetrics metrics, CircuitBreaker breaker) {
+      this.form = form;
+      this.affordanceName = affordanceName;
+      this.operationType = operationType;
+      this.method = method;
+      this.target = target;
+      this.contentType = contentType;
+      // Payloads of content types without a codec are handled as JSON
+      this.codec = PayloadCodecs.forContentType(contentType.getMimeType())
+          .orElse(PayloadCodecs.json());
+      this.metrics = metrics;
+      this.breaker = breaker;
+    }
+
+    Form getForm() {
+      return form;
+    }
+
+    /* The name of the affordance, or an empty string for Thing-level forms */
+    String getAffordanceName() {
+      return affordanceName;
+    }
+
+    String getOperationType() {
+      return operationType;
+    }
+
+    String getMethod() {
+      return method;
+    }
+
+    URI getTarget() {
+      return target;
+    }
+
+    ContentType getContentType() {
+      return contentType;
+    }
+
+    PayloadCodec getCodec() {
+      return codec;
+    }
+
+    AffordanceMetrics getMetrics() {
+      return metrics;
+    }
+
+    CircuitBreaker getBreaker() {
+      return breaker;
+    }
+  }
+}
@@ -0,0 +1,495 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
+
+/**
+ * Decodes CBOR payloads (RFC 8949) in a single pass driven by the data schema of an affordance. As
+ * for {@link JsonPayloadDecoder}, decoders are compiled once per schema into a tree of readers, and
+ * payloads are decoded into the same values: arrays whose items are all of the same primitive type
+ * are decoded into arrays of that type, and maps into maps that preserve the order of their
+ * members.
+ *
+ * Tags are ignored (i.e., tagged items are decoded as the items they enclose), and byte strings
+ * that are not described by a schema are decoded as base64url strings.
+ */
+final class CborPayloadDecoder implements PayloadCodec.Decoder {
+  private static final int DEFAULT_ARRAY_CAPACITY = 16;
+  private static final int MAX_INITIAL_ARRAY_CAPACITY = 1024;
+
+  private static final int UNSIGNED_INTEGER = 0;
+  private static final int NEGATIVE_INTEGER = 1;
+  private static final int BYTE_STRING = 2;
+  private static final int TEXT_STRING = 3;
+  private static final int ARRAY = 4;
+  private static final int MAP = 5;
+  private static final int TAG = 6;
+  private static final int SIMPLE = 7;
+
+  private static final int FALSE = 0xF4;
+  private static final int TRUE = 0xF5;
+  private static final int NULL = 0xF6;
+  private static final int UNDEFINED = 0xF7;
+  private static final int BREAK = 0xFF;
+
+  /* The additional information of items with an indefinite length */
+  private static final int INDEFINITE = 31;
+
+  private static final ValueReader BOOLEAN = Input::readBoolean;
+  private static final ValueReader INTEGER = Input::readInteger;
+  private static final ValueReader NUMBER = Input::readDouble;
+  private static final ValueReader STRING = Input::readText;
+  private static final ValueReader UNTYPED = CborPayloadDecoder::readUntyped;
+
+  private static final CborPayloadDecoder UNTYPED_DECODER = new CborPayloadDecoder(UNTYPED);
+
+  private final ValueReader reader;
+
+  private CborPayloadDecoder(ValueReader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Compiles a decoder for a data schema.
+   *
+   * @param schema The schema of the payloads to be decoded.
+   * @return The decoder.
+   */
+  static CborPayloadDecoder forSchema(DataSchema schema) {
+    return new CborPayloadDecoder(compile(schema));
+  }
+
+  /**
+   * Returns a decoder for payloads that are not described by a schema.
+   *
+   * @return The decoder.
+   */
+  static CborPayloadDecoder untyped() {
+    return UNTYPED_DECODER;
+  }
+
+  @Override
+  public Optional<Object> decode(HttpEntity entity) throws IOException {
+    if (entity == null || entity.getContentLength() == 0) {
+      return Optional.empty();
+    }
+
+    return decode(EntityUtils.toByteArray(entity));
+  }
+
+  /**
+   * Decodes a CBOR payload.
+   *
+   * @param payload The payload.
+   * @return The decoded value, or an empty value if the payload is empty.
+   * @throws IOException If the payload is malformed, or if it does not match the schema.
+   */
+  Optional<Object> decode(byte[] payload) throws IOException {
+    if (payload == null || payload.length == 0) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.ofNullable(reader.read(new Input(payload)));
+    } catch (IllegalStateException | ArrayIndexOutOfBoundsException e) {
+      throw new IOException("The payload does not match the schema: " + e.getMessage(), e);
+    }
+  }
+
+  private static ValueReader compile(DataSchema schema) {
+    switch (schema.getDatatype()) {
+      case DataSchema.BOOLEAN:
+        return nullable(BOOLEAN);
+      case DataSchema.INTEGER:
+        return nullable(INTEGER);
+      case DataSchema.NUMBER:
+        return nullable(NUMBER);
+      case DataSchema.STRING:
+        return nullable(STRING);
+      case DataSchema.ARRAY:
+        return nullable(new ArrayReader((ArraySchema) schema));
+      case DataSchema.OBJECT:
+        return nullable(new ObjectReader((ObjectSchema) schema));
+      default:
+        return UNTYPED;
+    }
+  }
+
+  private static ValueReader nullable(ValueReader reader) {
+    return in -> in.nextIsNull() ? null : reader.read(in);
+  }
+
+  /* Decodes a value for which no schema is known */
+  private static Object readUntyped(Input in) {
+    switch (in.peekMajorType()) {
+      case UNSIGNED_INTEGER:
+      case NEGATIVE_INTEGER:
+        // As for JSON payloads, numbers without a schema are decoded as doubles
+        return (double) in.readLong();
+      case BYTE_STRING:
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(in.readBytes());
+      case TEXT_STRING:
+        return in.readText();
+      case ARRAY:
+        Object[] values = new Object[DEFAULT_ARRAY_CAPACITY];
+        int size = 0;
+
+        for (long length = in.readLength(ARRAY); in.hasNext(length, size); size ++) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+          }
+          values[size] = readUntyped(in);
+        }
+
+        return Arrays.copyOf(values, size);
+      case MAP:
+        Map<String, Object> members = new LinkedHashMap<String, Object>();
+
+        for (long length = in.readLength(MAP), i = 0; in.hasNext(length, i); i ++) {
+          members.put(in.readKey(), readUntyped(in));
+        }
+
+        return members;
+      default:
+        if (in.nextIsNull()) {
+          return null;
+        }
+
+        int initialByte = in.peekInitialByte();
+        return initialByte == TRUE || initialByte == FALSE ? in.readBoolean() : in.readDouble();
+    }
+  }
+
+  @FunctionalInterface
+  private interface ValueReader {
+    Object read(Input in);
+  }
+
+  /* A cursor over the data items of a payload */
+  private static final class Input {
+    private final byte[] data;
+    private int position;
+
+    Input(byte[] data) {
+      this.data = data;
+    }
+
+    int peekMajorType() {
+      return peekInitialByte() >> 5;
+    }
+
+    /* Returns the initial byte of the next item, skipping its tags (if any) */
+    int peekInitialByte() {
+      int initialByte = data[position] & 0xFF;
+
+      while (initialByte >> 5 == TAG) {
+        readArgument(TAG);
+        initialByte = data[position] & 0xFF;
+      }
+
+      return initialByte;
+    }
+
+    /* Consumes the next item if it is null (or undefined) */
+    boolean nextIsNull() {
+      int initialByte = peekInitialByte();
+
+      if (initialByte == NULL || initialByte == UNDEFINED) {
+        position ++;
+        return true;
+      }
+
+      return false;
+    }
+
+    Object readBoolean() {
+      int initialByte = peekInitialByte();
+
+      if (initialByte != TRUE && initialByte != FALSE) {
+        throw unexpected("a boolean");
+      }
+
+      position ++;
+      return initialByte == TRUE;
+    }
+
+    Object readInteger() {
+      long value = peekMajorType() == SIMPLE ? toIntegral(readFloat()) : readLong();
+
+      if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Integer out of range: " + value);
+      }
+
+      return (int) value;
+    }
+
+    Object readDouble() {
+      return peekMajorType() == SIMPLE ? readFloat() : (double) readLong();
+    }
+
+    long readLong() {
+      int majorType = peekMajorType();
+      if (majorType != UNSIGNED_INTEGER && majorType != NEGATIVE_INTEGER) {
+        throw unexpected("an integer");
+      }
+
+      long argument = readArgument(majorType);
+      if (argument < 0) {
+        throw new IllegalStateException("Integer out of range.");
+      }
+
+      return majorType == UNSIGNED_INTEGER ? argument : -1 - argument;
+    }
+
+    String readText() {
+      if (peekMajorType() != TEXT_STRING) {
+        throw unexpected("a string");
+      }
+
+      return new String(readString(TEXT_STRING), StandardCharsets.UTF_8);
+    }
+
+    byte[] readBytes() {
+      return readString(BYTE_STRING);
+    }
+
+    /* Reads a map key, which is expected to be a string */
+    String readKey() {
+      int majorType = peekMajorType();
+      return majorType == TEXT_STRING ? readText() : String.valueOf(readUntyped(this));
+    }
+
+    /* Reads the number of items of an array or map, or -1 for an indefinite length */
+    long readLength(int majorType) {
+      if (peekMajorType() != majorType) {
+        throw unexpected(majorType == ARRAY ? "an array" : "an object");
+      }
+
+      if ((data[position] & 0x1F) == INDEFINITE) {
+        position ++;
+        return -1;
+      }
+
+      return readArgument(majorType);
+    }
+
+    /* Checks if an array or map has more items, and consumes the break of indefinite lengths */
+    boolean hasNext(long length, long index) {
+      if (length >= 0) {
+        return index < length;
+      }
+
+      if ((data[position] & 0xFF) == BREAK) {
+        position ++;
+        return false;
+      }
+
+      return true;
+    }
+
+    private double readFloat() {
+      int initialByte = data[position ++] & 0xFF;
+
+      switch (initialByte) {
+        case 0xF9:
+          return toDouble((int) readBytes(2));
+        case 0xFA:
+          return Float.intBitsToFloat((int) readBytes(4));
+        case 0xFB:
+          return Double.longBitsToDouble(readBytes(8));
+        default:
+          position --;
+          throw unexpected("a number");
+      }
+    }
+
+    /* Reads a byte or text string, whose chunks are concatenated if it has an indefinite length */
+    private byte[] readString(int majorType) {
+      if ((data[position] & 0x1F) != INDEFINITE) {
+        int length = toLength(readArgument(majorType));
+        byte[] value = Arrays.copyOfRange(data, position, position + length);
+        position += length;
+        return value;
+      }
+
+      position ++;
+      byte[] value = new byte[0];
+
+      while ((data[position] & 0xFF) != BREAK) {
+        int length = toLength(readArgument(majorType));
+        value = Arrays.copyOf(value, value.length + length);
+        System.arraycopy(data, position, value, value.length - length, length);
+        position += length;
+      }
+
+      position ++;
+      return value;
+    }
+
+    /* Reads the initial byte of an item and its argument (e.g., a value or length) */
+    private long readArgument(int majorType) {
+      int initialByte = data[position] & 0xFF;
+      if (initialByte >> 5 != majorType) {
+        throw unexpected("an item of major type " + majorType);
+      }
+
+      position ++;
+      int additionalInfo = initialByte & 0x1F;
+
+      if (additionalInfo < 24) {
+        return additionalInfo;
+      } else if (additionalInfo <= 27) {
+        // Arguments of 8 bytes beyond the range of longs are negative
+        return readBytes(1 << (additionalInfo - 24));
+      }
+
+      throw new IllegalStateException("Malformed item: " + initialByte);
+    }
+
+    private long readBytes(int length) {
+      if (position + length > data.length) {
+        throw new IllegalStateException("Unexpected end of payload.");
+      }
+
+      long value = 0;
+      for (int i = 0; i < length; i ++) {
+        value = (value << 8) | (data[position ++] & 0xFF);
+      }
+
+      return value;
+    }
+
+    private int toLength(long length) {
+      if (length < 0 || length > data.length - position) {
+        throw new IllegalStateException("Unexpected end of payload.");
+      }
+
+      return (int) length;
+    }
+
+    private IllegalStateException unexpected(String expected) {
+      return new IllegalStateException("Expected " + expected + " but was " + peekMajorType()
+          + " at offset " + position);
+    }
+
+    private static long toIntegral(double value) {
+      if (value != Math.rint(value) || Math.abs(value) > Long.MAX_VALUE) {
+        throw new IllegalStateException("Expected an integer but was " + value);
+      }
+
+      return (long) value;
+    }
+
+    /* Converts a half-precision float to a double */
+    private static double toDouble(int half) {
+      int exponent = (half >> 10) & 0x1F;
+      int mantissa = half & 0x3FF;
+      double value;
+
+      if (exponent == 0) {
+        value = mantissa * Math.pow(2, -24);
+      } else if (exponent != 31) {
+        value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+      } else {
+        value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+      }
+
+      return (half & 0x8000) == 0 ? value : -value;
+    }
+  }
+
+  private static final class ArrayReader implements ValueReader {
+    private final ValueReader[] items;
+    private final IntFunction<Object[]> arrayFactory;
+    private final int initialCapacity;
+
+    ArrayReader(ArraySchema schema) {
+      List<DataSchema> itemSchemas = schema.getItems();
+
+      // Tuples are described by one schema per item, and the last one is reused if needed
+      this.items = new ValueReader[itemSchemas.size()];
+      for (int i = 0; i < items.length; i ++) {
+        items[i] = compile(itemSchemas.get(i));
+      }
+
+      // Arrays with a single item schema are decoded into arrays of the item type
+      this.arrayFactory = items.length == 1 ? arrayFactory(itemSchemas.get(0)) : Object[]::new;
+      this.initialCapacity = Math.min(schema.getMaxItems().orElse(DEFAULT_ARRAY_CAPACITY),
+          MAX_INITIAL_ARRAY_CAPACITY);
+    }
+
+    @Override
+    public Object read(Input in) {
+      long length = in.readLength(ARRAY);
+
+      // Definite lengths are known in advance, but are bounded by the payload's size
+      Object[] values = arrayFactory.apply(length >= 0
+          ? (int) Math.min(length, in.data.length - in.position) : initialCapacity);
+      int size = 0;
+
+      while (in.hasNext(length, size)) {
+        if (size == values.length) {
+          values = Arrays.copyOf(values, Math.max(DEFAULT_ARRAY_CAPACITY, size * 2));
+        }
+
+        values[size] = items.length == 0 ? readUntyped(in)
+            : items[Math.min(size, items.length - 1)].read(in);
+        size ++;
+      }
+
+      return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    private static IntFunction<Object[]> arrayFactory(DataSchema itemSchema) {
+      switch (itemSchema.getDatatype()) {
+        case DataSchema.BOOLEAN:
+          return Boolean[]::new;
+        case DataSchema.INTEGER:
+          return Integer[]::new;
+        case DataSchema.NUMBER:
+          return Double[]::new;
+        case DataSchema.STRING:
+          return String[]::new;
+        default:
+          return Object[]::new;
+      }
+    }
+  }
+
+  private static final class ObjectReader implements ValueReader {
+    private final Map<String, ValueReader> properties = new HashMap<String, ValueReader>();
+
+    ObjectReader(ObjectSchema schema) {
+      for (Map.Entry<String, DataSchema> property : schema.getProperties().entrySet()) {
+        properties.put(property.getKey(), compile(property.getValue()));
+      }
+    }
+
+    @Override
+    public Object read(Input in) {
+      Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+      for (long length = in.readLength(MAP), i = 0; in.hasNext(length, i); i ++) {
+        String name = in.readKey();
+        values.put(name, properties.getOrDefault(name, UNTYPED).read(in));
+      }
+
+      return values;
+    }
+  }
+}
@@ -0,0 +1,425 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hc.core5.util.ByteArrayBuffer;
+
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
+
+/**
+ * Encodes the payloads issued to an affordance as CBOR (RFC 8949). As for
+ * {@link JsonPayloadEncoder}, encoders are compiled once per data schema into a tree of writers
+ * that validate the payload against the schema while writing it into a buffer reused by each
+ * thread.
+ *
+ * Integers are written in their shortest form, and numbers are written as single-precision floats
+ * if no precision is lost. Arrays and objects are written with definite lengths.
+ *
+ * Encoders throw an {@link IllegalArgumentException} if a payload does not match the schema.
+ */
+final class CborPayloadEncoder implements PayloadCodec.Encoder {
+  private static final int DEFAULT_BUFFER_SIZE = 256;
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+  /* Integral doubles below this bound are written as integers */
+  private static final double MAX_EXACT_INTEGER = 1e15;
+
+  /* The major types of data items, shifted to the high-order bits of the initial byte */
+  private static final int UNSIGNED_INTEGER = 0;
+  private static final int NEGATIVE_INTEGER = 1 << 5;
+  private static final int TEXT_STRING = 3 << 5;
+  private static final int ARRAY = 4 << 5;
+  private static final int MAP = 5 << 5;
+
+  private static final int FALSE = 0xF4;
+  private static final int TRUE = 0xF5;
+  private static final int NULL = 0xF6;
+  private static final int FLOAT32 = 0xFA;
+  private static final int FLOAT64 = 0xFB;
+
+  private static final ThreadLocal<ByteArrayBuffer> buffers =
+      ThreadLocal.withInitial(() -> new ByteArrayBuffer(DEFAULT_BUFFER_SIZE));
+
+  private static final ValueWriter UNTYPED = CborPayloadEncoder::writeUntyped;
+
+  private final String datatype;
+  private final ValueWriter writer;
+  private final ObjectWriter objectWriter;
+
+  private CborPayloadEncoder(DataSchema schema) {
+    this.datatype = schema.getDatatype();
+    this.writer = compile(schema);
+    this.objectWriter = writer instanceof ObjectWriter ? (ObjectWriter) writer : null;
+  }
+
+  /**
+   * Compiles an encoder for a data schema.
+   *
+   * @param schema The schema of the payloads to be encoded.
+   * @return The encoder.
+   */
+  static CborPayloadEncoder forSchema(DataSchema schema) {
+    return new CborPayloadEncoder(schema);
+  }
+
+  @Override
+  public byte[] encodeValue(Object value) {
+    ByteArrayBuffer out = acquireBuffer();
+    writer.write(value, out);
+    return releaseBuffer(out);
+  }
+
+  @Override
+  public byte[] encodePrimitive(Object value) {
+    return encodeValue(value);
+  }
+
+  @Override
+  public byte[] encodeArray(Object[] values) {
+    if (!DataSchema.ARRAY.equals(datatype) && !DataSchema.DATA.equals(datatype)) {
+      throw mismatch(datatype);
+    }
+
+    return encodeValue(values);
+  }
+
+  @Override
+  public byte[] encodeObject(Object[] tags, Object[] values) {
+    if (objectWriter == null) {
+      throw mismatch(datatype);
+    }
+
+    ByteArrayBuffer out = acquireBuffer();
+    objectWriter.write(tags, values, out);
+    return releaseBuffer(out);
+  }
+
+  private static ByteArrayBuffer acquireBuffer() {
+    ByteArrayBuffer out = buffers.get();
+    out.clear();
+    return out;
+  }
+
+  private static byte[] releaseBuffer(ByteArrayBuffer out) {
+    byte[] payload = out.toByteArray();
+
+    // Do not retain the buffers used for large payloads
+    if (out.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+      buffers.remove();
+    }
+
+    return payload;
+  }
+
+  private static ValueWriter compile(DataSchema schema) {
+    switch (schema.getDatatype()) {
+      case DataSchema.BOOLEAN:
+        return CborPayloadEncoder::writeBoolean;
+      case DataSchema.INTEGER:
+        return CborPayloadEncoder::writeInteger;
+      case DataSchema.NUMBER:
+        return CborPayloadEncoder::writeNumber;
+      case DataSchema.STRING:
+        return CborPayloadEncoder::writeString;
+      case DataSchema.ARRAY:
+        return new ArrayWriter((ArraySchema) schema);
+      case DataSchema.OBJECT:
+        return new ObjectWriter((ObjectSchema) schema);
+      default:
+        return UNTYPED;
+    }
+  }
+
+  private static IllegalArgumentException mismatch(String datatype) {
+    return new IllegalArgumentException("TD mismatch: illegal arguments, this affordance uses a "
+        + "data schema of type " + datatype);
+  }
+
+  private static IllegalArgumentException mismatch(String datatype, Object value) {
+    return new IllegalArgumentException("TD mismatch: expected a value of type " + datatype
+        + ", but got: " + value.getClass().getCanonicalName());
+  }
+
+  private static void writeBoolean(Object value, ByteArrayBuffer out) {
+    if (value == null) {
+      out.append(NULL);
+    } else if (value instanceof Boolean) {
+      out.append(((Boolean) value) ? TRUE : FALSE);
+    } else {
+      throw mismatch(DataSchema.BOOLEAN, value);
+    }
+  }
+
+  private static void writeInteger(Object value, ByteArrayBuffer out) {
+    if (value == null) {
+      out.append(NULL);
+    } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte) {
+      writeLong(((Number) value).longValue(), out);
+    } else if ((value instanceof Double || value instanceof Float)
+        && ((Number) value).doubleValue() == Math.rint(((Number) value).doubleValue())
+        && Math.abs(((Number) value).doubleValue()) < MAX_EXACT_INTEGER) {
+      // Jason numbers may be represented as doubles
+      writeLong(((Number) value).longValue(), out);
+    } else {
+      throw mismatch(DataSchema.INTEGER, value);
+    }
+  }
+
+  private static void writeNumber(Object value, ByteArrayBuffer out) {
+    if (value == null) {
+      out.append(NULL);
+    } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte) {
+      writeLong(((Number) value).longValue(), out);
+    } else if (value instanceof Double || value instanceof Float) {
+      writeDouble(((Number) value).doubleValue(), out);
+    } else {
+      throw mismatch(DataSchema.NUMBER, value);
+    }
+  }
+
+  private static void writeString(Object value, ByteArrayBuffer out) {
+    if (value == null) {
+      out.append(NULL);
+    } else if (value instanceof String) {
+      writeText((String) value, out);
+    } else {
+      throw mismatch(DataSchema.STRING, value);
+    }
+  }
+
+  /* Writes a value for which no schema is known based on its runtime type */
+  private static void writeUntyped(Object value, ByteArrayBuffer out) {
+    if (value == null) {
+      out.append(NULL);
+    } else if (value instanceof Boolean) {
+      writeBoolean(value, out);
+    } else if (value instanceof Double || value instanceof Float) {
+      writeDouble(((Number) value).doubleValue(), out);
+    } else if (value instanceof Number) {
+      writeLong(((Number) value).longValue(), out);
+    } else if (value instanceof Object[]) {
+      writeItems(Arrays.asList((Object[]) value), out);
+    } else if (value instanceof Collection<?>) {
+      writeItems((Collection<?>) value, out);
+    } else if (value instanceof Map<?, ?>) {
+      Map<?, ?> members = (Map<?, ?>) value;
+      writeHeader(MAP, members.size(), out);
+
+      for (Map.Entry<?, ?> member : members.entrySet()) {
+        writeText(String.valueOf(member.getKey()), out);
+        writeUntyped(member.getValue(), out);
+      }
+    } else {
+      writeText(value.toString(), out);
+    }
+  }
+
+  private static void writeItems(Collection<?> items, ByteArrayBuffer out) {
+    writeHeader(ARRAY, items.size(), out);
+
+    for (Object item : items) {
+      writeUntyped(item, out);
+    }
+  }
+
+  private static void writeLong(long value, ByteArrayBuffer out) {
+    // Negative integers are encoded as -1 - n, which cannot overflow
+    if (value >= 0) {
+      writeHeader(UNSIGNED_INTEGER, value, out);
+    } else {
+      writeHeader(NEGATIVE_INTEGER, -1 - value, out);
+    }
+  }
+
+  private static void writeDouble(double value, ByteArrayBuffer out) {
+    if (value == Math.rint(value) && Math.abs(value) < MAX_EXACT_INTEGER) {
+      writeLong((long) value, out);
+    } else if ((double) (float) value == value || Double.isNaN(value)) {
+      out.append(FLOAT32);
+      writeBytes(Float.floatToIntBits((float) value), 4, out);
+    } else {
+      out.append(FLOAT64);
+      writeBytes(Double.doubleToLongBits(value), 8, out);
+    }
+  }
+
+  /* Writes a text string encoded as UTF-8 */
+  private static void writeText(String value, ByteArrayBuffer out) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeHeader(TEXT_STRING, bytes.length, out);
+    out.append(bytes, 0, bytes.length);
+  }
+
+  /* Writes the initial byte of a data item, followed by its argument in the shortest form */
+  private static void writeHeader(int majorType, long argument, ByteArrayBuffer out) {
+    if (argument < 24) {
+      out.append(majorType | (int) argument);
+    } else if (argument < 0x100) {
+      out.append(majorType | 24);
+      writeBytes(argument, 1, out);
+    } else if (argument < 0x10000) {
+      out.append(majorType | 25);
+      writeBytes(argument, 2, out);
+    } else if (argument < 0x100000000L) {
+      out.append(majorType | 26);
+      writeBytes(argument, 4, out);
+    } else {
+      out.append(majorType | 27);
+      writeBytes(argument, 8, out);
+    }
+  }
+
+  /* Writes the low-order bytes of a value in network byte order */
+  private static void writeBytes(long value, int length, ByteArrayBuffer out) {
+    for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+      out.append((int) (value >>> shift) & 0xFF);
+    }
+  }
+
+  @FunctionalInterface
+  private interface ValueWriter {
+    void write(Object value, ByteArrayBuffer out);
+  }
+
+  private static final class ArrayWriter implements ValueWriter {
+    private final ValueWriter[] items;
+
+    ArrayWriter(ArraySchema schema) {
+      List<DataSchema> itemSchemas = schema.getItems();
+
+      // Tuples are described by one schema per item, and the last one is reused if needed
+      this.items = new ValueWriter[itemSchemas.size()];
+      for (int i = 0; i < items.length; i ++) {
+        items[i] = compile(itemSchemas.get(i));
+      }
+    }
+
+    @Override
+    public void write(Object value, ByteArrayBuffer out) {
+      if (value == null) {
+        out.append(NULL);
+      } else if (value instanceof Object[]) {
+        Object[] values = (Object[]) value;
+        writeHeader(ARRAY, values.length, out);
+
+        for (int i = 0; i < values.length; i ++) {
+          writeItem(i, values[i], out);
+        }
+      } else if (value instanceof Collection<?>) {
+        Collection<?> values = (Collection<?>) value;
+        writeHeader(ARRAY, values.size(), out);
+
+        int i = 0;
+        for (Object item : values) {
+          writeItem(i ++, item, out);
+        }
+      } else {
+        throw mismatch(DataSchema.ARRAY, value);
+      }
+    }
+
+    private void writeItem(int index, Object item, ByteArrayBuffer out) {
+      if (items.length == 0) {
+        writeUntyped(item, out);
+      } else {
+        items[Math.min(index, items.length - 1)].write(item, out);
+      }
+    }
+  }
+
+  private static final class ObjectWriter implements ValueWriter {
+    private final String[] names;
+    private final byte[][] encodedNames;
+    private final ValueWriter[] writers;
+    private final boolean[] required;
+
+    /* Maps the semantic types and names of properties to their indices */
+    private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+    ObjectWriter(ObjectSchema schema) {
+      Map<String, DataSchema> properties = schema.getProperties();
+      List<String> requiredProperties = schema.getRequiredProperties();
+
+      this.names = new String[properties.size()];
+      this.encodedNames = new byte[names.length][];
+      this.writers = new ValueWriter[names.length];
+      this.required = new boolean[names.length];
+
+      Map<String, Integer> types = new HashMap<String, Integer>();
+      int index = 0;
+
+      for (Map.Entry<String, DataSchema> property : properties.entrySet()) {
+        names[index] = property.getKey();
+        writers[index] = compile(property.getValue());
+        required[index] = requiredProperties.contains(property.getKey());
+
+        ByteArrayBuffer encoded = new ByteArrayBuffer(names[index].length() + 9);
+        writeText(names[index], encoded);
+        encodedNames[index] = encoded.toByteArray();
+
+        indices.put(names[index], index);
+        for (String type : property.getValue().getSemanticTypes()) {
+          types.putIfAbsent(type, index);
+        }
+
+        index ++;
+      }
+
+      // Semantic types take precedence over names
+      indices.putAll(types);
+    }
+
+    @Override
+    public void write(Object value, ByteArrayBuffer out) {
+      if (value == null) {
+        out.append(NULL);
+      } else if (value instanceof Map<?, ?>) {
+        Map<?, ?> members = (Map<?, ?>) value;
+        write(members.keySet().toArray(), members.values().toArray(), out);
+      } else {
+        throw mismatch(DataSchema.OBJECT, value);
+      }
+    }
+
+    void write(Object[] tags, Object[] values, ByteArrayBuffer out) {
+      // The last value given for a property is used
+      int[] valueIndices = new int[names.length];
+      Arrays.fill(valueIndices, -1);
+
+      for (int i = 0; i < tags.length && i < values.length; i ++) {
+        Integer index = tags[i] instanceof String ? indices.get(tags[i]) : null;
+        if (index != null) {
+          valueIndices[index] = i;
+        }
+      }
+
+      // The number of members is written first
+      int size = 0;
+      for (int index = 0; index < names.length; index ++) {
+        if (valueIndices[index] >= 0) {
+          size ++;
+        } else if (required[index]) {
+          throw new IllegalArgumentException("Missing required property: " + names[index]);
+        }
+      }
+
+      writeHeader(MAP, size, out);
+
+      for (int index = 0; index < names.length; index ++) {
+        if (valueIndices[index] >= 0) {
+          out.append(encodedNames[index], 0, encodedNames[index].length);
+          writers[index].write(values[valueIndices[index]], out);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.hyperagents.jacamo.artifacts.http.RequestTimeoutException;
+
+import cartago.IBlockingCmd;
+
+/**
+ * A blocking command that waits for the completion of a future. Used with CArtAgO's
+ * {@code await} such that the artifact is released while the awaited computation (e.g., an HTTP
+ * exchange) is in progress. If the command has an expiry time, the future is cancelled once the
+ * expiry time has passed.
+ *
+ * @param <T> The type of the awaited result.
+ */
+class FutureCmd<T> implements IBlockingCmd {
+  private final CompletableFuture<T> future;
+  private final Optional<Long> expiry;
+  private T result;
+  private Throwable error;
+
+  FutureCmd(CompletableFuture<T> future) {
+    this(future, Optional.empty());
+  }
+
+  /**
+   * @param future The awaited future.
+   * @param expiry The time at which the future is cancelled (in nanoseconds), if any.
+   */
+  FutureCmd(CompletableFuture<T> future, Optional<Long> expiry) {
+    this.future = future;
+    this.expiry = expiry;
+  }
+
+  @Override
+  public void exec() {
+    try {
+      result = expiry.isPresent()
+          ? future.get(Math.max(0, expiry.get() - System.nanoTime()), TimeUnit.NANOSECONDS)
+          : future.get();
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      error = new RequestTimeoutException("The request timed out.");
+    } catch (ExecutionException e) {
+      error = e.getCause();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      error = e;
+    }
+  }
+
+  /**
+   * Returns the result of the completed future.
+   *
+   * @return The result of the future.
+   * @throws IOException If the future completed exceptionally or was interrupted.
+   */
+  T getResult() throws IOException {
+    if (error instanceof IOException) {
+      throw (IOException) error;
+    } else if (error != null) {
+      throw new IOException(error.getMessage(), error);
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,291 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
+
+/**
+ * Decodes JSON payloads in a single pass driven by the data schema of an affordance. Decoders are
+ * compiled once per schema (i.e., when the TD is loaded) into a tree of readers, such that the
+ * schema is not inspected again when decoding payloads.
+ *
+ * The payload is read from the response entity without being converted into a string or a JSON
+ * tree first, and JSON arrays are decoded directly into the nested arrays used for Jason lists.
+ * Note that the entities of responses are buffered by the HTTP connection pool, hence payloads are
+ * decoded from memory rather than from the connection. Arrays whose items are all of the same
+ * primitive type are decoded into arrays of that type (e.g., {@code Double[]}). JSON objects are
+ * decoded into maps that preserve the order of their members.
+ */
+final class JsonPayloadDecoder implements PayloadCodec.Decoder {
+  private static final int DEFAULT_ARRAY_CAPACITY = 16;
+  private static final int MAX_INITIAL_ARRAY_CAPACITY = 1024;
+
+  private static final ValueReader BOOLEAN = JsonReader::nextBoolean;
+  private static final ValueReader INTEGER = JsonReader::nextInt;
+  private static final ValueReader NUMBER = JsonReader::nextDouble;
+  private static final ValueReader STRING = JsonReader::nextString;
+  private static final ValueReader UNTYPED = JsonPayloadDecoder::readUntyped;
+
+  /* Reads any primitive value as a string (e.g., for payloads without a schema) */
+  private static final ValueReader TEXT = in -> in.peek() == JsonToken.BOOLEAN
+      ? String.valueOf(in.nextBoolean()) : in.nextString();
+
+  private final ValueReader reader;
+
+  private JsonPayloadDecoder(ValueReader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Compiles a decoder for a data schema.
+   *
+   * @param schema The schema of the payloads to be decoded.
+   * @return The decoder.
+   */
+  static JsonPayloadDecoder forSchema(DataSchema schema) {
+    return new JsonPayloadDecoder(compile(schema));
+  }
+
+  /**
+   * Returns a decoder that reads primitive payloads as strings, for affordances whose payloads
+   * are not described by a schema.
+   *
+   * @return The decoder.
+   */
+  static JsonPayloadDecoder forText() {
+    return new JsonPayloadDecoder(nullable(TEXT));
+  }
+
+  /**
+   * Decodes the entity of a response.
+   *
+   * @param entity The response entity (may be null).
+   * @return The decoded value, or an empty value if the response has no payload.
+   * @throws IOException If the payload could not be read, or if it does not match the schema.
+   */
+  @Override
+  public Optional<Object> decode(HttpEntity entity) throws IOException {
+    if (entity == null || entity.getContentLength() == 0) {
+      return Optional.empty();
+    }
+
+    try (JsonReader in = new JsonReader(new InputStreamReader(entity.getContent(),
+        getCharset(entity)))) {
+      return decode(in);
+    }
+  }
+
+  /**
+   * Decodes a JSON payload read from a character stream.
+   *
+   * @param payload The payload.
+   * @return The decoded value, or an empty value if the payload is empty.
+   * @throws IOException If the payload could not be read, or if it does not match the schema.
+   */
+  Optional<Object> decode(Reader payload) throws IOException {
+    try (JsonReader in = new JsonReader(payload)) {
+      return decode(in);
+    }
+  }
+
+  private Optional<Object> decode(JsonReader in) throws IOException {
+    // Lenient mode accepts top-level primitives that are not quoted (e.g., text/plain payloads)
+    in.setLenient(true);
+
+    try {
+      if (in.peek() == JsonToken.END_DOCUMENT) {
+        return Optional.empty();
+      }
+
+      return Optional.ofNullable(reader.read(in));
+    } catch (IllegalStateException | NumberFormatException e) {
+      throw new IOException("The payload does not match the schema: " + e.getMessage(), e);
+    }
+  }
+
+  private static ValueReader compile(DataSchema schema) {
+    switch (schema.getDatatype()) {
+      case DataSchema.BOOLEAN:
+        return nullable(BOOLEAN);
+      case DataSchema.INTEGER:
+        return nullable(INTEGER);
+      case DataSchema.NUMBER:
+        return nullable(NUMBER);
+      case DataSchema.STRING:
+        return nullable(STRING);
+      case DataSchema.ARRAY:
+        return nullable(new ArrayReader((ArraySchema) schema));
+      case DataSchema.OBJECT:
+        return nullable(new ObjectReader((ObjectSchema) schema));
+      default:
+        return UNTYPED;
+    }
+  }
+
+  private static ValueReader nullable(ValueReader reader) {
+    return in -> {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+
+      return reader.read(in);
+    };
+  }
+
+  /* Decodes a value for which no schema is known */
+  private static Object readUntyped(JsonReader in) throws IOException {
+    switch (in.peek()) {
+      case BEGIN_ARRAY:
+        Object[] values = new Object[DEFAULT_ARRAY_CAPACITY];
+        int size = 0;
+
+        in.beginArray();
+        while (in.hasNext()) {
+          if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+          }
+          values[size ++] = readUntyped(in);
+        }
+        in.endArray();
+
+        return Arrays.copyOf(values, size);
+      case BEGIN_OBJECT:
+        Map<String, Object> members = new LinkedHashMap<String, Object>();
+
+        in.beginObject();
+        while (in.hasNext()) {
+          members.put(in.nextName(), readUntyped(in));
+        }
+        in.endObject();
+
+        return members;
+      case BOOLEAN:
+        return in.nextBoolean();
+      case NUMBER:
+        return in.nextDouble();
+      case NULL:
+        in.nextNull();
+        return null;
+      default:
+        return in.nextString();
+    }
+  }
+
+  private static Charset getCharset(HttpEntity entity) {
+    if (entity.getContentType() == null) {
+      return StandardCharsets.UTF_8;
+    }
+
+    try {
+      Charset charset = ContentType.parse(entity.getContentType()).getCharset();
+      return charset == null ? StandardCharsets.UTF_8 : charset;
+    } catch (IllegalArgumentException e) {
+      return StandardCharsets.UTF_8;
+    }
+  }
+
+  @FunctionalInterface
+  private interface ValueReader {
+    Object read(JsonReader in) throws IOException;
+  }
+
+  private static final class ArrayReader implements ValueReader {
+    private final ValueReader[] items;
+    private final IntFunction<Object[]> arrayFactory;
+    private final int initialCapacity;
+
+    ArrayReader(ArraySchema schema) {
+      List<DataSchema> itemSchemas = schema.getItems();
+
+      // Tuples are described by one schema per item, and the last one is reused if needed
+      this.items = new ValueReader[itemSchemas.size()];
+      for (int i = 0; i < items.length; i ++) {
+        items[i] = compile(itemSchemas.get(i));
+      }
+
+      // Arrays with a single item schema are decoded into arrays of the item type
+      this.arrayFactory = items.length == 1 ? arrayFactory(itemSchemas.get(0)) : Object[]::new;
+      this.initialCapacity = Math.min(schema.getMaxItems().orElse(DEFAULT_ARRAY_CAPACITY),
+          MAX_INITIAL_ARRAY_CAPACITY);
+    }
+
+    @Override
+    public Object read(JsonReader in) throws IOException {
+      Object[] values = arrayFactory.apply(initialCapacity);
+      int size = 0;
+
+      in.beginArray();
+      while (in.hasNext()) {
+        if (size == values.length) {
+          values = Arrays.copyOf(values, Math.max(DEFAULT_ARRAY_CAPACITY, size * 2));
+        }
+
+        values[size] = items.length == 0 ? readUntyped(in)
+            : items[Math.min(size, items.length - 1)].read(in);
+        size ++;
+      }
+      in.endArray();
+
+      return size == values.length ? values : Arrays.copyOf(values, size);
+    }
+
+    private static IntFunction<Object[]> arrayFactory(DataSchema itemSchema) {
+      switch (itemSchema.getDatatype()) {
+        case DataSchema.BOOLEAN:
+          return Boolean[]::new;
+        case DataSchema.INTEGER:
+          return Integer[]::new;
+        case DataSchema.NUMBER:
+          return Double[]::new;
+        case DataSchema.STRING:
+          return String[]::new;
+        default:
+          return Object[]::new;
+      }
+    }
+  }
+
+  private static final class ObjectReader implements ValueReader {
+    private final Map<String, ValueReader> properties = new HashMap<String, ValueReader>();
+
+    ObjectReader(ObjectSchema schema) {
+      for (Map.Entry<String, DataSchema> property : schema.getProperties().entrySet()) {
+        properties.put(property.getKey(), compile(property.getValue()));
+      }
+    }
+
+    @Override
+    public Object read(JsonReader in) throws IOException {
+      Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        values.put(name, properties.getOrDefault(name, UNTYPED).read(in));
+      }
+      in.endObject();
+
+      return values;
+    }
+  }
+}
@@ -0,0 +1,522 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hc.core5.util.ByteArrayBuffer;
+
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
+
+/**
+ * Encodes the payloads issued to an affordance as UTF-8 JSON. Encoders are compiled once per data
+ * schema (i.e., when the TD is loaded) into a tree of writers that validate the payload against the
+ * schema while writing it, such that the schema is not inspected again for each request.
+ *
+ * Payloads are written directly as bytes into a buffer that is reused by each thread, and the
+ * encoded payload is the only allocation per request.
+ *
+ * Encoders throw an {@link IllegalArgumentException} if a payload does not match the schema.
+ */
+final class JsonPayloadEncoder implements PayloadCodec.Encoder {
+  private static final int DEFAULT_BUFFER_SIZE = 256;
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+  /* Integral doubles below this bound are written without a fraction */
+  private static final double MAX_EXACT_INTEGER = 1e15;
+
+  private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+  private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+  private static final byte[] NULL = { 'n', 'u', 'l', 'l' };
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  private static final ThreadLocal<ByteArrayBuffer> buffers =
+      ThreadLocal.withInitial(() -> new ByteArrayBuffer(DEFAULT_BUFFER_SIZE));
+
+  private static final ValueWriter UNTYPED = JsonPayloadEncoder::writeUntyped;
+
+  private final String datatype;
+  private final ValueWriter writer;
+  private final ObjectWriter objectWriter;
+
+  private JsonPayloadEncoder(DataSchema schema) {
+    this.datatype = schema.getDatatype();
+    this.writer = compile(schema);
+    this.objectWriter = writer instanceof ObjectWriter ? (ObjectWriter) writer : null;
+  }
+
+  /**
+   * Compiles an encoder for a data schema.
+   *
+   * @param schema The schema of the payloads to be encoded.
+   * @return The encoder.
+   */
+  static JsonPayloadEncoder forSchema(DataSchema schema) {
+    return new JsonPayloadEncoder(schema);
+  }
+
+  /**
+   * Encodes a primitive payload (i.e., a boolean, a number, or a string).
+   *
+   * @param value The payload.
+   * @return The encoded payload.
+   */
+  @Override
+  public byte[] encodePrimitive(Object value) {
+    ByteArrayBuffer out = acquireBuffer();
+    writer.write(value, out);
+    return releaseBuffer(out);
+  }
+
+  /**
+   * Encodes a payload of any type described by the schema (e.g., a map for an object schema, or
+   * an array or collection for an array schema).
+   *
+   * @param value The payload.
+   * @return The encoded payload.
+   */
+  @Override
+  public byte[] encodeValue(Object value) {
+    ByteArrayBuffer out = acquireBuffer();
+    writer.write(value, out);
+    return releaseBuffer(out);
+  }
+
+  /**
+   * Encodes an array payload.
+   *
+   * @param values The items of the array.
+   * @return The encoded payload.
+   */
+  @Override
+  public byte[] encodeArray(Object[] values) {
+    if (!DataSchema.ARRAY.equals(datatype) && !DataSchema.DATA.equals(datatype)) {
+      throw mismatch(datatype);
+    }
+
+    ByteArrayBuffer out = acquireBuffer();
+    writer.write(values, out);
+    return releaseBuffer(out);
+  }
+
+  /**
+   * Encodes an object payload.
+   *
+   * @param tags The semantic types or names of the object's properties.
+   * @param values The values of the object's properties (in the order of the tags).
+   * @return The encoded payload.
+   */
+  @Override
+  public byte[] encodeObject(Object[] tags, Object[] values) {
+    if (objectWriter == null) {
+      throw mismatch(datatype);
+    }
+
+    ByteArrayBuffer out = acquireBuffer();
+    objectWriter.write(tags, values, out);
+    return releaseBuffer(out);
+  }
+
+  private static ByteArrayBuffer acquireBuffer() {
+    ByteArrayBuffer out = buffers.get();
+    out.clear();
+    return out;
+  }
+
+  private static byte[] releaseBuffer(ByteArrayBuffer out) {
+    byte[] payload = out.toByteArray();
+
+    // Do not retain the buffers used for large payloads
+    if (out.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+      buffers.remove();
+    }
+
+    return payload;
+  }
+
+  private static ValueWriter compile(DataSchema schema) {
+    switch (schema.getDatatype()) {
+      case DataSchema.BOOLEAN:
+        return JsonPayloadEncoder::writeBoolean;
+      case DataSchema.INTEGER:
+        return JsonPayloadEncoder::writeInteger;
+      case DataSchema.NUMBER:
+        return JsonPayloadEncoder::writeNumber;
+      case DataSchema.STRING:
+        return JsonPayloadEncoder::writeString;
+      case DataSchema.ARRAY:
+        return new ArrayWriter((ArraySchema) schema);
+      case DataSchema.OBJECT:
+        return new ObjectWriter((ObjectSchema) schema);
+      default:
+        return UNTYPED;
+    }
+  }
+
+  private static IllegalArgumentException mismatch(String datatype) {
+    return new IllegalArgumentException("TD mismatch: illegal arguments, this affordance uses a "
+        + "data schema of type " + datatype);
+  }
+
+  private static IllegalArgumentException mismatch(String datatype, Object value) {
+    return new IllegalArgumentException("TD mismatch: expected a value of type " + datatype
+        + ", but got: " + value.getClass().getCanonicalName());
+  }
+
+  private static void writeBoolean(Object value, ByteArrayBuffer out) {
+    if (value == null) {
+      out.append(NULL, 0, NULL.length);
+    } else if (value instanceof Boolean) {
+      byte[] literal = ((Boolean) value) ? TRUE : FALSE;
+      out.append(literal, 0, literal.length);
+    } else {
+      throw mismatch(DataSchema.BOOLEAN, value);
+    }
+  }
+
+  private static void writeInteger(Object value, ByteArrayBuffer out) {
+    if (value == null) {
+      out.append(NULL, 0, NULL.length);
+    } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte) {
+      writeLong(((Number) value).longValue(), out);
+    } else if ((value instanceof Double || value instanceof Float)
+        && ((Number) value).doubleValue() == Math.rint(((Number) value).doubleValue())
+        && Math.abs(((Number) value).doubleValue()) < MAX_EXACT_INTEGER) {
+      // Jason numbers may be represented as doubles
+      writeLong(((Number) value).longValue(), out);
+    } else {
+      throw mismatch(DataSchema.INTEGER, value);
+    }
+  }
+
+  private static void writeNumber(Object value, ByteArrayBuffer out) {
+    if (value == null) {
+      out.append(NULL, 0, NULL.length);
+    } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+        || value instanceof Byte) {
+      writeLong(((Number) value).longValue(), out);
+    } else if (value instanceof Double || value instanceof Float) {
+      writeDouble(((Number) value).doubleValue(), out);
+    } else {
+      throw mismatch(DataSchema.NUMBER, value);
+    }
+  }
+
+  private static void writeString(Object value, ByteArrayBuffer out) {
+    if (value == null) {
+      out.append(NULL, 0, NULL.length);
+    } else if (value instanceof String) {
+      writeQuoted((String) value, out);
+    } else {
+      throw mismatch(DataSchema.STRING, value);
+    }
+  }
+
+  /* Writes a value for which no schema is known based on its runtime type */
+  private static void writeUntyped(Object value, ByteArrayBuffer out) {
+    if (value == null) {
+      out.append(NULL, 0, NULL.length);
+    } else if (value instanceof Boolean) {
+      writeBoolean(value, out);
+    } else if (value instanceof Double || value instanceof Float) {
+      writeDouble(((Number) value).doubleValue(), out);
+    } else if (value instanceof Number) {
+      writeLong(((Number) value).longValue(), out);
+    } else if (value instanceof Object[]) {
+      writeItems(Arrays.asList((Object[]) value), out);
+    } else if (value instanceof Collection<?>) {
+      writeItems((Collection<?>) value, out);
+    } else if (value instanceof Map<?, ?>) {
+      out.append('{');
+      boolean first = true;
+
+      for (Map.Entry<?, ?> member : ((Map<?, ?>) value).entrySet()) {
+        if (!first) {
+          out.append(',');
+        }
+        first = false;
+
+        writeQuoted(String.valueOf(member.getKey()), out);
+        out.append(':');
+        writeUntyped(member.getValue(), out);
+      }
+
+      out.append('}');
+    } else {
+      writeQuoted(value.toString(), out);
+    }
+  }
+
+  private static void writeItems(Collection<?> items, ByteArrayBuffer out) {
+    out.append('[');
+    boolean first = true;
+
+    for (Object item : items) {
+      if (!first) {
+        out.append(',');
+      }
+      first = false;
+
+      writeUntyped(item, out);
+    }
+
+    out.append(']');
+  }
+
+  private static void writeLong(long value, ByteArrayBuffer out) {
+    if (value == Long.MIN_VALUE) {
+      writeAscii(Long.toString(value), out);
+      return;
+    }
+
+    if (value < 0) {
+      out.append('-');
+      value = -value;
+    }
+
+    // Write the digits in reverse order, then swap them in place
+    int start = out.length();
+    do {
+      out.append((int) ('0' + value % 10));
+      value /= 10;
+    } while (value > 0);
+
+    byte[] bytes = out.array();
+    for (int i = start, j = out.length() - 1; i < j; i ++, j --) {
+      byte digit = bytes[i];
+      bytes[i] = bytes[j];
+      bytes[j] = digit;
+    }
+  }
+
+  private static void writeDouble(double value, ByteArrayBuffer out) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException("Numbers in JSON payloads must be finite: " + value);
+    }
+
+    if (value == Math.rint(value) && Math.abs(value) < MAX_EXACT_INTEGER) {
+      writeLong((long) value, out);
+    } else {
+      writeAscii(Double.toString(value), out);
+    }
+  }
+
+  private static void writeAscii(String value, ByteArrayBuffer out) {
+    for (int i = 0; i < value.length(); i ++) {
+      out.append(value.charAt(i));
+    }
+  }
+
+  /* Writes a JSON string encoded as UTF-8 */
+  private static void writeQuoted(String value, ByteArrayBuffer out) {
+    out.append('"');
+
+    for (int i = 0; i < value.length(); i ++) {
+      char c = value.charAt(i);
+
+      if (c == '"' || c == '\\') {
+        out.append('\\');
+        out.append(c);
+      } else if (c < 0x20) {
+        switch (c) {
+          case '\n':
+            out.append('\\');
+            out.append('n');
+            break;
+          case '\r':
+            out.append('\\');
+            out.append('r');
+            break;
+          case '\t':
+            out.append('\\');
+            out.append('t');
+            break;
+          default:
+            out.append('\\');
+            out.append('u');
+            out.append('0');
+            out.append('0');
+            out.append(HEX[c >> 4]);
+            out.append(HEX[c & 0xF]);
+        }
+      } else if (c < 0x80) {
+        out.append(c);
+      } else if (c < 0x800) {
+        out.append(0xC0 | (c >> 6));
+        out.append(0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++ i));
+        out.append(0xF0 | (codePoint >> 18));
+        out.append(0x80 | ((codePoint >> 12) & 0x3F));
+        out.append(0x80 | ((codePoint >> 6) & 0x3F));
+        out.append(0x80 | (codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        // Unpaired surrogates cannot be encoded as UTF-8
+        out.append('?');
+      } else {
+        out.append(0xE0 | (c >> 12));
+        out.append(0x80 | ((c >> 6) & 0x3F));
+        out.append(0x80 | (c & 0x3F));
+      }
+    }
+
+    out.append('"');
+  }
+
+  @FunctionalInterface
+  private interface ValueWriter {
+    void write(Object value, ByteArrayBuffer out);
+  }
+
+  private static final class ArrayWriter implements ValueWriter {
+    private final ValueWriter[] items;
+
+    ArrayWriter(ArraySchema schema) {
+      List<DataSchema> itemSchemas = schema.getItems();
+
+      // Tuples are described by one schema per item, and the last one is reused if needed
+      this.items = new ValueWriter[itemSchemas.size()];
+      for (int i = 0; i < items.length; i ++) {
+        items[i] = compile(itemSchemas.get(i));
+      }
+    }
+
+    @Override
+    public void write(Object value, ByteArrayBuffer out) {
+      if (value == null) {
+        out.append(NULL, 0, NULL.length);
+        return;
+      }
+
+      out.append('[');
+
+      if (value instanceof Object[]) {
+        Object[] values = (Object[]) value;
+
+        for (int i = 0; i < values.length; i ++) {
+          writeItem(i, values[i], out);
+        }
+      } else if (value instanceof Collection<?>) {
+        int i = 0;
+
+        for (Object item : (Collection<?>) value) {
+          writeItem(i ++, item, out);
+        }
+      } else {
+        throw mismatch(DataSchema.ARRAY, value);
+      }
+
+      out.append(']');
+    }
+
+    private void writeItem(int index, Object item, ByteArrayBuffer out) {
+      if (index > 0) {
+        out.append(',');
+      }
+
+      if (items.length == 0) {
+        writeUntyped(item, out);
+      } else {
+        items[Math.min(index, items.length - 1)].write(item, out);
+      }
+    }
+  }
+
+  private static final class ObjectWriter implements ValueWriter {
+    private final String[] names;
+    private final byte[][] quotedNames;
+    private final ValueWriter[] writers;
+    private final boolean[] required;
+
+    /* Maps the semantic types and names of properties to their indices */
+    private final Map<String, Integer> indices = new HashMap<String, Integer>();
+
+    ObjectWriter(ObjectSchema schema) {
+      Map<String, DataSchema> properties = schema.getProperties();
+      List<String> requiredProperties = schema.getRequiredProperties();
+
+      this.names = new String[properties.size()];
+      this.quotedNames = new byte[names.length][];
+      this.writers = new ValueWriter[names.length];
+      this.required = new boolean[names.length];
+
+      Map<String, Integer> types = new HashMap<String, Integer>();
+      int index = 0;
+
+      for (Map.Entry<String, DataSchema> property : properties.entrySet()) {
+        names[index] = property.getKey();
+        writers[index] = compile(property.getValue());
+        required[index] = requiredProperties.contains(property.getKey());
+
+        ByteArrayBuffer quoted = new ByteArrayBuffer(names[index].length() + 3);
+        writeQuoted(names[index], quoted);
+        quoted.append(':');
+        quotedNames[index] = quoted.toByteArray();
+
+        indices.put(names[index], index);
+        for (String type : property.getValue().getSemanticTypes()) {
+          types.putIfAbsent(type, index);
+        }
+
+        index ++;
+      }
+
+      // Semantic types take precedence over names
+      indices.putAll(types);
+    }
+
+    @Override
+    public void write(Object value, ByteArrayBuffer out) {
+      if (value == null) {
+        out.append(NULL, 0, NULL.length);
+      } else if (value instanceof Map<?, ?>) {
+        Map<?, ?> members = (Map<?, ?>) value;
+        write(members.keySet().toArray(), members.values().toArray(), out);
+      } else {
+        throw mismatch(DataSchema.OBJECT, value);
+      }
+    }
+
+    void write(Object[] tags, Object[] values, ByteArrayBuffer out) {
+      // The last value given for a property is used
+      int[] valueIndices = new int[names.length];
+      Arrays.fill(valueIndices, -1);
+
+      for (int i = 0; i < tags.length && i < values.length; i ++) {
+        Integer index = tags[i] instanceof String ? indices.get(tags[i]) : null;
+        if (index != null) {
+          valueIndices[index] = i;
+        }
+      }
+
+      out.append('{');
+      boolean first = true;
+
+      for (int index = 0; index < names.length; index ++) {
+        if (valueIndices[index] < 0) {
+          if (required[index]) {
+            throw new IllegalArgumentException("Missing required property: " + names[index]);
+          }
+          continue;
+        }
+
+        if (!first) {
+          out.append(',');
+        }
+        first = false;
+
+        out.append(quotedNames[index], 0, quotedNames[index].length);
+        writers[index].write(values[valueIndices[index]], out);
+      }
+
+      out.append('}');
+    }
+  }
+}
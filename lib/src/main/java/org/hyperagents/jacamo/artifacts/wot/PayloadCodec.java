@@ -0,0 +1,108 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.apache.hc.core5.http.HttpEntity;
+
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+
+/**
+ * A codec for the payloads of one content type (e.g., {@code application/json}). Codecs compile
+ * encoders and decoders for the data schemas of affordances, which are then reused for all
+ * requests issued to the affordance.
+ *
+ * Codecs are registered via {@link PayloadCodecs#register(PayloadCodec)}, and are selected by the
+ * content type of the form used for a request (or by the content type of a response).
+ */
+public interface PayloadCodec {
+
+  /**
+   * Returns the media type of the payloads handled by the codec, without parameters.
+   *
+   * @return The media type, e.g. {@code application/cbor}.
+   */
+  String getMediaType();
+
+  /**
+   * Checks if the encoding is compact (e.g., a binary encoding). Forms with compact encodings are
+   * preferred when a TD provides several forms for the same operation.
+   *
+   * @return True if the encoding is compact.
+   */
+  boolean isCompact();
+
+  /**
+   * Compiles an encoder for a data schema.
+   *
+   * @param schema The schema of the payloads to be encoded.
+   * @return The encoder.
+   */
+  Encoder encoderFor(DataSchema schema);
+
+  /**
+   * Compiles a decoder for a data schema.
+   *
+   * @param schema The schema of the payloads to be decoded, or an empty value if the payloads are
+   * not described by a schema.
+   * @return The decoder.
+   */
+  Decoder decoderFor(Optional<DataSchema> schema);
+
+  /**
+   * Encodes payloads that match a data schema. Encoders throw an {@link IllegalArgumentException}
+   * if a payload does not match the schema.
+   */
+  interface Encoder {
+
+    /**
+     * Encodes a payload of any type described by the schema (e.g., a map for an object schema, or
+     * an array or collection for an array schema).
+     *
+     * @param value The payload.
+     * @return The encoded payload.
+     */
+    byte[] encodeValue(Object value);
+
+    /**
+     * Encodes a primitive payload (i.e., a boolean, a number, or a string).
+     *
+     * @param value The payload.
+     * @return The encoded payload.
+     */
+    byte[] encodePrimitive(Object value);
+
+    /**
+     * Encodes an array payload.
+     *
+     * @param values The items of the array.
+     * @return The encoded payload.
+     */
+    byte[] encodeArray(Object[] values);
+
+    /**
+     * Encodes an object payload.
+     *
+     * @param tags The semantic types or names of the object's properties.
+     * @param values The values of the object's properties (in the order of the tags).
+     * @return The encoded payload.
+     */
+    byte[] encodeObject(Object[] tags, Object[] values);
+  }
+
+  /**
+   * Decodes payloads that match a data schema into the values used for Jason terms: arrays are
+   * decoded into arrays, and objects into maps that preserve the order of their members.
+   */
+  interface Decoder {
+
+    /**
+     * Decodes the entity of a response.
+     *
+     * @param entity The response entity (may be null).
+     * @return The decoded value, or an empty value if the response has no payload.
+     * @throws IOException If the payload could not be read, or if it does not match the schema.
+     */
+    Optional<Object> decode(HttpEntity entity) throws IOException;
+  }
+}
@@ -0,0 +1,130 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+
+/**
+ * The registry of the payload codecs used by hypermedia artifacts, indexed by media type. Codecs
+ * for JSON ({@value #JSON}) and CBOR ({@value #CBOR}) are registered by default.
+ *
+ * Media types with a structured syntax suffix (e.g., {@code application/td+json}) are handled by
+ * the codec registered for the suffix, unless a codec is registered for the media type itself.
+ */
+public final class PayloadCodecs {
+  public static final String JSON = "application/json";
+  public static final String CBOR = "application/cbor";
+
+  /* Whether forms with compact encodings are preferred when a TD provides several forms */
+  public static final String PREFER_COMPACT_PROPERTY = "jacamo.hypermedia.codecs.preferCompact";
+
+  private static final PayloadCodec JSON_CODEC = new JsonCodec();
+
+  private static final Map<String, PayloadCodec> codecs =
+      new ConcurrentHashMap<String, PayloadCodec>();
+
+  static {
+    register(JSON_CODEC);
+    register(new CborCodec());
+  }
+
+  private PayloadCodecs() { }
+
+  /**
+   * Registers a codec, which replaces the codec registered for the same media type (if any).
+   * Codecs should be registered before artifacts are created, as the codecs of an artifact are
+   * selected when its TD is loaded.
+   *
+   * @param codec The codec.
+   */
+  public static void register(PayloadCodec codec) {
+    codecs.put(codec.getMediaType().toLowerCase(Locale.ROOT), codec);
+  }
+
+  /**
+   * Looks up the codec for a content type.
+   *
+   * @param contentType The content type, possibly with parameters (e.g., a charset).
+   * @return The codec for the content type's media type, if any.
+   */
+  public static Optional<PayloadCodec> forContentType(String contentType) {
+    if (contentType == null) {
+      return Optional.empty();
+    }
+
+    int end = contentType.indexOf(';');
+    String mediaType = (end < 0 ? contentType : contentType.substring(0, end)).trim()
+        .toLowerCase(Locale.ROOT);
+
+    PayloadCodec codec = codecs.get(mediaType);
+    if (codec == null) {
+      int suffix = mediaType.lastIndexOf('+');
+      int slash = mediaType.indexOf('/');
+
+      if (suffix > slash && slash > 0) {
+        codec = codecs.get(mediaType.substring(0, slash + 1) + mediaType.substring(suffix + 1));
+      }
+    }
+
+    return Optional.ofNullable(codec);
+  }
+
+  /**
+   * Returns the JSON codec, which is used for the content types that no codec is registered for.
+   *
+   * @return The JSON codec.
+   */
+  public static PayloadCodec json() {
+    return JSON_CODEC;
+  }
+
+  private static final class JsonCodec implements PayloadCodec {
+
+    @Override
+    public String getMediaType() {
+      return JSON;
+    }
+
+    @Override
+    public boolean isCompact() {
+      return false;
+    }
+
+    @Override
+    public Encoder encoderFor(DataSchema schema) {
+      return JsonPayloadEncoder.forSchema(schema);
+    }
+
+    @Override
+    public Decoder decoderFor(Optional<DataSchema> schema) {
+      // Payloads that are not described by a schema are read as text
+      return schema.map(JsonPayloadDecoder::forSchema).orElse(JsonPayloadDecoder.forText());
+    }
+  }
+
+  private static final class CborCodec implements PayloadCodec {
+
+    @Override
+    public String getMediaType() {
+      return CBOR;
+    }
+
+    @Override
+    public boolean isCompact() {
+      return true;
+    }
+
+    @Override
+    public Encoder encoderFor(DataSchema schema) {
+      return CborPayloadEncoder.forSchema(schema);
+    }
+
+    @Override
+    public Decoder decoderFor(Optional<DataSchema> schema) {
+      return schema.map(CborPayloadDecoder::forSchema).orElse(CborPayloadDecoder.untyped());
+    }
+  }
+}
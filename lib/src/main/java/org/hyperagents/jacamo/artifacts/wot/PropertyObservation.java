@@ -0,0 +1,103 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The state of a property that is polled on behalf of one or more observers. The polling interval
+ * starts at the requested period and is doubled every time the polled value is unchanged, up to
+ * {@value #MAX_BACKOFF_FACTOR} times the period. The interval is reset when the value changes. A
+ * random jitter is applied to each interval, such that polls of different properties (or Things)
+ * do not synchronize.
+ */
+class PropertyObservation {
+  static final int MAX_BACKOFF_FACTOR = 8;
+  static final double JITTER = 0.1;
+
+  private final String propertyName;
+  private long period;
+  private long interval;
+  private int observers;
+  private boolean active;
+  private Object[] value;
+
+  PropertyObservation(String propertyName, long period) {
+    this.propertyName = propertyName;
+    this.period = period;
+    this.interval = period;
+    this.observers = 1;
+    this.active = true;
+  }
+
+  String getPropertyName() {
+    return propertyName;
+  }
+
+  synchronized long getPeriod() {
+    return period;
+  }
+
+  synchronized boolean isActive() {
+    return active;
+  }
+
+  /* The last polled value, or null if the property was not polled yet */
+  synchronized Object[] getValue() {
+    return value;
+  }
+
+  /* Registers an additional observer. The shortest requested period is used. */
+  synchronized void addObserver(long period) {
+    observers ++;
+
+    if (period < this.period) {
+      this.period = period;
+      this.interval = Math.min(interval, period);
+    }
+  }
+
+  /**
+   * Unregisters an observer. The observation is stopped once the last observer is removed.
+   *
+   * @return True if there are no observers left.
+   */
+  synchronized boolean removeObserver() {
+    observers --;
+
+    if (observers <= 0) {
+      active = false;
+    }
+
+    return !active;
+  }
+
+  /**
+   * Records a polled value and adapts the polling interval.
+   *
+   * @param polledValue The polled value.
+   * @return True if the value changed since the last poll.
+   */
+  synchronized boolean update(Object[] polledValue) {
+    boolean changed = value == null || !Arrays.deepEquals(value, polledValue);
+
+    if (changed) {
+      value = polledValue;
+      interval = period;
+    } else {
+      backOff();
+    }
+
+    return changed;
+  }
+
+  /* Backs off after an unchanged value or a failed poll */
+  synchronized void backOff() {
+    interval = Math.min(interval * 2, period * MAX_BACKOFF_FACTOR);
+  }
+
+  /* The delay until the next poll, with jitter */
+  synchronized long nextDelay() {
+    double jitter = ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+    return Math.max(1, Math.round(interval * (1 + jitter)));
+  }
+}
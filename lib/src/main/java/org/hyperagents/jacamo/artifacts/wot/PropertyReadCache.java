@@ -0,0 +1,124 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A per-artifact cache of the values read from the properties of a Thing. Cached values are fresh
+ * for a configurable time window. Stale values are kept together with their entity tags (if any),
+ * such that they can be revalidated with a conditional request.
+ *
+ * Each invalidation of a property (e.g., when it is written) starts a new generation of the cache.
+ * A read stores its value only if its property was not invalidated since the read was issued,
+ * such that a read that overlaps a write cannot cache the value from before the write.
+ */
+class PropertyReadCache {
+  private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final long ttl;
+
+  private final AtomicLong generation = new AtomicLong();
+  /* The generation started by the last invalidation of each property */
+  private final Map<String, Long> invalidations = new ConcurrentHashMap<String, Long>();
+  private volatile long clearedAt;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param ttl The freshness window of cached values in milliseconds.
+   */
+  PropertyReadCache(long ttl) {
+    this.ttl = ttl;
+  }
+
+  long getTtl() {
+    return ttl;
+  }
+
+  /* Returns the cached value of a property, whether it is fresh or stale. */
+  Optional<Entry> get(String propertyName) {
+    return Optional.ofNullable(entries.get(propertyName));
+  }
+
+  /* Returns the current generation, to be passed to put() by a read that is about to be issued. */
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /*
+   * Caches the value read from a property, unless the property was invalidated since the given
+   * generation. Returns the entry in any case.
+   */
+  Entry put(String propertyName, Object[] tags, Object[] values, Optional<String> etag,
+      long readGeneration) {
+    Entry entry = new Entry(tags, values, etag, System.currentTimeMillis() + ttl);
+    entries.compute(propertyName, (name, current) ->
+        isInvalidatedSince(name, readGeneration) ? current : entry);
+
+    return entry;
+  }
+
+  /* Marks a stale value as fresh again (i.e., after a successful revalidation). */
+  void refresh(String propertyName, Entry entry) {
+    entries.replace(propertyName, entry, new Entry(entry.tags, entry.values, entry.etag,
+        System.currentTimeMillis() + ttl));
+  }
+
+  void invalidate(String propertyName) {
+    // The generation is recorded before the entry is removed, such that a concurrent put() either
+    // sees the invalidation or stores an entry that is then removed
+    invalidations.put(propertyName, generation.incrementAndGet());
+    entries.remove(propertyName);
+  }
+
+  void clear() {
+    clearedAt = generation.incrementAndGet();
+    entries.clear();
+  }
+
+  private boolean isInvalidatedSince(String propertyName, long readGeneration) {
+    return clearedAt > readGeneration
+        || invalidations.getOrDefault(propertyName, 0L) > readGeneration;
+  }
+
+  void recordHit() {
+    hits.incrementAndGet();
+  }
+
+  void recordMiss() {
+    misses.incrementAndGet();
+  }
+
+  long getHits() {
+    return hits.get();
+  }
+
+  long getMisses() {
+    return misses.get();
+  }
+
+  double getHitRatio() {
+    long total = hits.get() + misses.get();
+    return total == 0 ? 0 : (double) hits.get() / total;
+  }
+
+  static class Entry {
+    final Object[] tags;
+    final Object[] values;
+    final Optional<String> etag;
+    final long expiresAt;
+
+    Entry(Object[] tags, Object[] values, Optional<String> etag, long expiresAt) {
+      this.tags = tags;
+      this.values = values;
+      this.etag = etag;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isFresh() {
+      return System.currentTimeMillis() < expiresAt;
+    }
+  }
+}
@@ -4,29 +4,52 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.pool.PoolStats;
+import org.hyperagents.jacamo.artifacts.http.CircuitBreaker;
+import org.hyperagents.jacamo.artifacts.http.HttpClientPool;
+import org.hyperagents.jacamo.artifacts.http.LatencyHistogram;
+import org.hyperagents.jacamo.artifacts.http.RequestJournal;
+import org.hyperagents.jacamo.artifacts.http.RequestMetrics;
+import org.hyperagents.jacamo.artifacts.http.RequestMetrics.AffordanceMetrics;
+import org.hyperagents.jacamo.artifacts.http.RequestTimeoutException;
+import org.hyperagents.jacamo.artifacts.http.RetryPolicy;
+import org.hyperagents.jacamo.artifacts.http.SingleFlight;
+import org.hyperagents.jacamo.artifacts.wot.AffordanceTable.AffordanceTemplate;
+import org.hyperagents.jacamo.artifacts.wot.AffordanceTable.RequestTemplate;
 
 import cartago.Artifact;
+import cartago.INTERNAL_OPERATION;
 import cartago.OPERATION;
 import cartago.OpFeedbackParam;
 import ch.unisg.ics.interactions.wot.td.ThingDescription;
-import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
-import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
-import ch.unisg.ics.interactions.wot.td.affordances.Form;
-import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
 import ch.unisg.ics.interactions.wot.td.clients.TDHttpRequest;
-import ch.unisg.ics.interactions.wot.td.clients.TDHttpResponse;
-import ch.unisg.ics.interactions.wot.td.io.TDGraphReader;
 import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
 import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
 import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
 import ch.unisg.ics.interactions.wot.td.security.APIKeySecurityScheme;
 import ch.unisg.ics.interactions.wot.td.security.SecurityScheme;
 import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
-import ch.unisg.ics.interactions.wot.td.vocabularies.WoTSec;
 
 /**
  * A CArtAgO artifact that can interpret a W3C WoT Thing Description (TD) and exposes the affordances
@@ -38,12 +61,47 @@ import ch.unisg.ics.interactions.wot.td.vocabularies.WoTSec;
  *
  */
 public class ThingArtifact extends Artifact {
+  public static final String COALESCE_READS_PROPERTY = "jacamo.hypermedia.coalesceReads";
+
+  /* The schema of the names of properties read with a single request */
+  private static final DataSchema NAMES_SCHEMA = new ArraySchema.Builder().build();
+
   private static final String WEBID_PREFIX = "http://hyperagents.org/";
+  /* The agent name journaled for requests that are not issued on behalf of an agent */
+  private static final String ANONYMOUS_AGENT = "-";
+
+  /* The number of latencies observed for a property before its reads are hedged */
+  private static final int HEDGE_MIN_SAMPLES = 20;
+
+  /*
+   * Identical property reads in flight, shared by all artifacts: reads of the same target on behalf
+   * of the same agent, with the same credentials and conditions, are coalesced into a single request
+   */
+  private static final SingleFlight<String, ClassicHttpResponse> readFlights =
+      new SingleFlight<String, ClassicHttpResponse>();
+  private static final boolean coalesceReads = Boolean.getBoolean(COALESCE_READS_PROPERTY);
 
   protected ThingDescription td;
+  private AffordanceTable affordances;
+  private final Map<String, String> webIdHeaders = new ConcurrentHashMap<String, String>();
   protected Optional<String> agentWebId;
   protected boolean dryRun;
+  protected boolean async;
   private Optional<String> apiKey;
+  private Optional<PropertyReadCache> readCache = Optional.empty();
+  private final Map<String, PropertyObservation> observations =
+      new ConcurrentHashMap<String, PropertyObservation>();
+  private final Map<String, Object[]> observedValues = new HashMap<String, Object[]>();
+  private final Map<AffordanceMetrics, Object[]> publishedMetrics =
+      new HashMap<AffordanceMetrics, Object[]>();
+  private boolean metricsEnabled;
+  private RetryPolicy retryPolicy = RetryPolicy.getDefault();
+  private Optional<Double> hedgePercentile = Optional.empty();
+  private long hedgeMinDelay;
+  private final Map<String, String> breakerStates = new HashMap<String, String>();
+  private Optional<RequestConfig> requestConfig = Optional.empty();
+  private long requestTimeout;
+  private final Map<String, Long> affordanceTimeouts = new HashMap<String, Long>();
 
   /**
    * Method called by CArtAgO to initialize the artifact. The W3C WoT Thing Description (TD) used by
@@ -53,7 +111,7 @@ public class ThingArtifact extends Artifact {
    */
   public void init(String url) {
     try {
-      td = TDGraphReader.readFromURL(TDFormat.RDF_TURTLE, url);
+      setThingDescription(readThingDescription(url));
 
       for (SecurityScheme scheme : td.getSecuritySchemes()) {
         defineObsProperty("securityScheme", scheme.getConfiguration());
@@ -66,6 +124,7 @@ public class ThingArtifact extends Artifact {
     this.agentWebId = Optional.empty();
     this.apiKey = Optional.empty();
     this.dryRun = false;
+    this.async = false;
   }
 
   /**
@@ -80,6 +139,43 @@ public class ThingArtifact extends Artifact {
     this.dryRun = dryRun;
   }
 
+  /**
+   * Method called by CArtAgO to initialize the artifact. The W3C WoT Thing Description (TD) used by
+   * this artifact is retrieved and parsed during initialization.
+   *
+   * In async mode, the HTTP requests for reading and writing properties and for invoking actions are
+   * issued on a shared I/O executor, and the operations are suspended until the responses are
+   * received. Other operations on this artifact can be executed in the meantime.
+   *
+   * @param url A URL that dereferences to a W3C WoT Thing Description.
+   * @param dryRun When set to true, the requests are logged, but not executed.
+   * @param async When set to true, the requests are executed without locking the artifact.
+   */
+  public void init(String url, boolean dryRun, boolean async) {
+    init(url, dryRun);
+    this.async = async;
+  }
+
+  /**
+   * Method called by CArtAgO to initialize the artifact. The W3C WoT Thing Description (TD) used by
+   * this artifact is retrieved and parsed during initialization. The HTTP connection pool shared by
+   * all hypermedia artifacts is resized before the TD is retrieved.
+   *
+   * @param url A URL that dereferences to a W3C WoT Thing Description.
+   * @param dryRun When set to true, the requests are logged, but not executed.
+   * @param maxConnections The maximum number of pooled HTTP connections.
+   * @param maxConnectionsPerRoute The maximum number of pooled HTTP connections per host.
+   */
+  public void init(String url, boolean dryRun, int maxConnections, int maxConnectionsPerRoute) {
+    try {
+      HttpClientPool.configure(maxConnections, maxConnectionsPerRoute);
+    } catch (IllegalArgumentException e) {
+      failed(e.getMessage());
+    }
+
+    init(url, dryRun);
+  }
+
   /**
    * CArtAgO operation for setting the WebID of an operating agent using the artifact.
    *
@@ -99,7 +195,7 @@ public class ThingArtifact extends Artifact {
    */
   @OPERATION
   public void readProperty(String propertyTag, OpFeedbackParam<Object[]> output) {
-    readProperty(propertyTag, Optional.empty(), output);
+    readProperty(propertyTag, Optional.empty(), output, Optional.empty());
   }
 
   /**
@@ -113,7 +209,307 @@ public class ThingArtifact extends Artifact {
   @OPERATION
   public void readProperty(String propertyTag, OpFeedbackParam<Object[]> payloadTags,
       OpFeedbackParam<Object[]> output) {
-    readProperty(propertyTag, Optional.of(payloadTags), output);
+    readProperty(propertyTag, Optional.of(payloadTags), output, Optional.empty());
+  }
+
+  /**
+   * CArtAgO operation for reading a property of a Thing within a deadline. The operation fails
+   * with a {@code timeout(PropertyName)} failure if the property could not be read in time, and the
+   * request in progress is cancelled.
+   *
+   * @param propertyTag Either an IRI that identifies the property type, or the property's name.
+   * @param deadline The time in milliseconds within which the operation must complete.
+   * @param output The read value. Can be a list of one or more primitives, or a nested list of
+   * primitives or arbitrary depth.
+   */
+  @OPERATION
+  public void readPropertyWithDeadline(String propertyTag, int deadline,
+      OpFeedbackParam<Object[]> output) {
+    readProperty(propertyTag, Optional.empty(), output, toDeadline(deadline));
+  }
+
+  /**
+   * CArtAgO operation for reading a property of a Thing within a deadline. The operation fails
+   * with a {@code timeout(PropertyName)} failure if the property could not be read in time, and the
+   * request in progress is cancelled.
+   *
+   * @param propertyTag Either an IRI that identifies the property type, or the property's name.
+   * @param deadline The time in milliseconds within which the operation must complete.
+   * @param payloadTags A list of IRIs or object property names (if property is an object schema).
+   * @param output The read value. Can be a list of one or more primitives, or a nested list of
+   * primitives or arbitrary depth.
+   */
+  @OPERATION
+  public void readPropertyWithDeadline(String propertyTag, int deadline,
+      OpFeedbackParam<Object[]> payloadTags, OpFeedbackParam<Object[]> output) {
+    readProperty(propertyTag, Optional.of(payloadTags), output, toDeadline(deadline));
+  }
+
+  /**
+   * CArtAgO operation for reading multiple properties of a Thing in one operation. If the TD
+   * provides a Thing-level form for reading multiple (or all) properties, the properties are read
+   * with a single request. Otherwise, the properties are read with concurrent requests.
+   *
+   * @param propertyTags A list of IRIs that identify property types, or property names.
+   * @param outputs The read values in the order of the given property tags. The value of a
+   * property with an object schema is a list of [Name, Value] pairs, and the value of a property
+   * that could not be read is an empty list.
+   */
+  @OPERATION
+  public void readProperties(Object[] propertyTags, OpFeedbackParam<Object[]> outputs) {
+    readProperties(propertyTags, outputs, new OpFeedbackParam<Object[]>());
+  }
+
+  /**
+   * CArtAgO operation for reading multiple properties of a Thing in one operation. If the TD
+   * provides a Thing-level form for reading multiple (or all) properties, the properties are read
+   * with a single request. Otherwise, the properties are read with concurrent requests. The
+   * operation does not fail if some of the properties cannot be read.
+   *
+   * @param propertyTags A list of IRIs that identify property types, or property names.
+   * @param outputs The read values in the order of the given property tags. The value of a
+   * property with an object schema is a list of [Name, Value] pairs, and the value of a property
+   * that could not be read is an empty list.
+   * @param failures A list of [PropertyTag, Reason] pairs for the properties that could not be read.
+   */
+  @OPERATION
+  public void readProperties(Object[] propertyTags, OpFeedbackParam<Object[]> outputs,
+      OpFeedbackParam<Object[]> failures) {
+    Object[] values = new Object[propertyTags.length];
+    List<Object> errors = new ArrayList<Object>();
+    Map<Integer, AffordanceTemplate> properties = new LinkedHashMap<Integer, AffordanceTemplate>();
+
+    for (int i = 0; i < propertyTags.length; i ++) {
+      values[i] = new Object[0];
+
+      Optional<AffordanceTemplate> property =
+          affordances.getProperty(String.valueOf(propertyTags[i]));
+      if (property.isPresent()) {
+        properties.put(i, property.get());
+      } else {
+        errors.add(new Object[] { propertyTags[i], "Unknown property: " + propertyTags[i] });
+      }
+    }
+
+    if (!properties.isEmpty()) {
+      readProperties(propertyTags, properties, values, errors,
+          AffordanceTable.READ_MULTIPLE_PROPERTIES, AffordanceTable.READ_ALL_PROPERTIES);
+    }
+
+    outputs.set(values);
+    failures.set(errors.toArray());
+  }
+
+  /**
+   * CArtAgO operation for reading all properties of a Thing in one operation.
+   *
+   * @param propertyNames The names of all properties in the order of the TD.
+   * @param outputs The read values in the order of the property names. The value of a property
+   * with an object schema is a list of [Name, Value] pairs.
+   */
+  @OPERATION
+  public void readAllProperties(OpFeedbackParam<Object[]> propertyNames,
+      OpFeedbackParam<Object[]> outputs) {
+    readAllProperties(propertyNames, outputs, new OpFeedbackParam<Object[]>());
+  }
+
+  /**
+   * CArtAgO operation for reading all properties of a Thing in one operation. If the TD provides
+   * a Thing-level form for reading all (or multiple) properties, the properties are read with a
+   * single request, and the response is decoded using the schema of each property. Otherwise, the
+   * properties are read with concurrent requests. The operation does not fail if some of the
+   * properties cannot be read.
+   *
+   * @param propertyNames The names of all properties in the order of the TD.
+   * @param outputs The read values in the order of the property names. The value of a property
+   * with an object schema is a list of [Name, Value] pairs, and the value of a property that could
+   * not be read is an empty list.
+   * @param failures A list of [PropertyName, Reason] pairs for the properties that could not be
+   * read.
+   */
+  @OPERATION
+  public void readAllProperties(OpFeedbackParam<Object[]> propertyNames,
+      OpFeedbackParam<Object[]> outputs, OpFeedbackParam<Object[]> failures) {
+    List<AffordanceTemplate> all = affordances.getProperties();
+    Object[] names = new Object[all.size()];
+    Object[] values = new Object[all.size()];
+    List<Object> errors = new ArrayList<Object>();
+    Map<Integer, AffordanceTemplate> properties = new LinkedHashMap<Integer, AffordanceTemplate>();
+
+    for (int i = 0; i < names.length; i ++) {
+      names[i] = all.get(i).getName();
+      values[i] = new Object[0];
+      properties.put(i, all.get(i));
+    }
+
+    if (!properties.isEmpty()) {
+      readProperties(names, properties, values, errors, AffordanceTable.READ_ALL_PROPERTIES,
+          AffordanceTable.READ_MULTIPLE_PROPERTIES);
+    }
+
+    propertyNames.set(names);
+    outputs.set(values);
+    failures.set(errors.toArray());
+  }
+
+  /* Reads properties with the first available Thing-level form, or with concurrent requests */
+  private void readProperties(Object[] propertyTags, Map<Integer, AffordanceTemplate> properties,
+      Object[] values, List<Object> errors, String... bulkOperationTypes) {
+    for (String operationType : bulkOperationTypes) {
+      Optional<RequestTemplate> bulkForm = affordances.getThingRequest(operationType);
+
+      if (bulkForm.isPresent()) {
+        readPropertiesInBulk(bulkForm.get(), propertyTags, properties, values, errors);
+        return;
+      }
+    }
+
+    readPropertiesConcurrently(propertyTags, properties, values, errors);
+  }
+
+  /**
+   * CArtAgO operation for observing a property of a Thing by polling. The property is polled by
+   * the artifact on behalf of all agents that observe it, and its value is exposed via the
+   * {@code propertyValue(Name, Value)} observable property, which is updated only when the value
+   * changes. While the value is unchanged, the polling interval is increased gradually.
+   *
+   * Since the observed value is shared by all observers, polls are issued anonymously: they carry
+   * neither the {@code X-Agent-LocalName} nor an agent-specific {@code X-Agent-WebID} header (only
+   * the operator's WebID, if set via {@link #setOperatorWebId(String)}). Agents that need a value
+   * read with their own identity should use {@code readProperty}.
+   *
+   * @param propertyTag Either an IRI that identifies the property type, or the property's name.
+   * @param period The polling period in milliseconds. If the property is already observed, the
+   * shortest requested period is used.
+   */
+  @OPERATION
+  public void observeProperty(String propertyTag, int period) {
+    if (period <= 0) {
+      failed("The polling period must be a positive number.");
+    }
+
+    AffordanceTemplate property = getPropertyOrFail(propertyTag);
+    if (!property.getRequest(TD.readProperty).isPresent()) {
+      failed(getInvalidFormMessage("property", property, TD.readProperty) + ".");
+    }
+
+    PropertyObservation observation = observations.get(property.getName());
+    if (observation != null) {
+      observation.addObserver(period);
+    } else {
+      observation = new PropertyObservation(property.getName(), period);
+      observations.put(property.getName(), observation);
+      execInternalOp("pollProperty", observation);
+    }
+  }
+
+  /**
+   * CArtAgO operation for stopping the observation of a property. The property is no longer
+   * polled once all agents that observe it stopped their observations.
+   *
+   * @param propertyTag Either an IRI that identifies the property type, or the property's name.
+   */
+  @OPERATION
+  public void stopObservingProperty(String propertyTag) {
+    AffordanceTemplate property = getPropertyOrFail(propertyTag);
+    PropertyObservation observation = observations.get(property.getName());
+
+    if (observation == null) {
+      failed("The property is not observed: " + propertyTag);
+    }
+
+    if (observation.removeObserver()) {
+      observations.remove(property.getName(), observation);
+    }
+  }
+
+  /**
+   * Polls an observed property until its observation is stopped. The artifact is not locked
+   * while waiting for responses or for the next poll.
+   *
+   * @param observation The observed property.
+   */
+  @INTERNAL_OPERATION
+  void pollProperty(PropertyObservation observation) {
+    String name = observation.getPropertyName();
+
+    while (observation.isActive()) {
+      try {
+        Optional<Object[]> value = pollPropertyValue(name);
+
+        if (!value.isPresent()) {
+          observation.backOff();
+        } else {
+          if (observation.update(value.get()) && observation.isActive()) {
+            publishPropertyValue(name, value.get());
+          }
+        }
+      } catch (RuntimeException e) {
+        log("Could not poll property " + name + ": " + e.getMessage());
+        observation.backOff();
+      }
+
+      await_time(observation.nextDelay());
+    }
+
+    // Remove the observable property unless the property is observed again in the meantime
+    if (!observations.containsKey(name) && observedValues.containsKey(name)) {
+      removeObsPropertyByTemplate("propertyValue", name, observedValues.remove(name));
+    }
+  }
+
+  /* Defines or updates the observable property that holds the value of an observed property */
+  private void publishPropertyValue(String propertyName, Object[] value) {
+    Object[] previous = observedValues.put(propertyName, value);
+
+    if (previous == null) {
+      defineObsProperty("propertyValue", propertyName, value);
+    } else if (!Arrays.deepEquals(previous, value)) {
+      getObsPropertyByTemplate("propertyValue", propertyName, previous)
+          .updateValues(propertyName, value);
+    }
+  }
+
+  /*
+   * Reads the value of an observed property anonymously, or returns an empty value if the read
+   * failed
+   */
+  private Optional<Object[]> pollPropertyValue(String propertyName) {
+    Optional<AffordanceTemplate> property = affordances.getProperty(propertyName);
+    if (!property.isPresent() || !property.get().getRequest(TD.readProperty).isPresent()) {
+      return Optional.empty();
+    }
+
+    RequestTemplate form = property.get().getRequest(TD.readProperty).get();
+    HttpUriRequestBase request = prepareHttpRequest(form, Optional.empty(), Collections.emptyMap(),
+        Optional.empty());
+
+    if (dryRun) {
+      return Optional.empty();
+    }
+
+    FutureCmd<ClassicHttpResponse> cmd = new FutureCmd<>(executeRead(form, request,
+        getExpiry(form, Optional.empty())));
+    await(cmd);
+    updateBreakerProperty(form.getBreaker());
+
+    try {
+      ClassicHttpResponse response = cmd.getResult();
+      if (!requestSucceeded(response.getCode())) {
+        log("Could not poll property " + propertyName + ", status code: " + response.getCode());
+        return Optional.empty();
+      }
+
+      OpFeedbackParam<Object[]> tags = new OpFeedbackParam<Object[]>();
+      OpFeedbackParam<Object[]> output = new OpFeedbackParam<Object[]>();
+      readPayload(response, getOutputDecoder(property.get(), form, response), Optional.of(tags),
+          output);
+
+      return Optional.ofNullable(output.get());
+    } catch (IOException e) {
+      log("Could not poll property " + propertyName + ": " + e.getMessage());
+      return Optional.empty();
+    }
   }
 
   /**
@@ -136,20 +532,159 @@ public class ThingArtifact extends Artifact {
    */
   @OPERATION
   public void writeProperty(String propertyTag, Object[] payloadTags, Object[] payload) {
+    writeProperty(propertyTag, payloadTags, payload, Optional.empty());
+  }
+
+  /**
+   * CArtAgO operation for writing a property of a Thing within a deadline. The operation fails
+   * with a {@code timeout(PropertyName)} failure if the property could not be written in time, and
+   * the request in progress is cancelled.
+   *
+   * @param propertyTag Either an IRI that identifies the property type, or the property's name.
+   * @param deadline The time in milliseconds within which the operation must complete.
+   * @param payload The payload to be issued when writing the property.
+   */
+  @OPERATION
+  public void writePropertyWithDeadline(String propertyTag, int deadline, Object[] payload) {
+    writeProperty(propertyTag, new Object[0], payload, toDeadline(deadline));
+  }
+
+  /**
+   * CArtAgO operation for writing a property of a Thing within a deadline. The operation fails
+   * with a {@code timeout(PropertyName)} failure if the property could not be written in time, and
+   * the request in progress is cancelled.
+   *
+   * @param propertyTag Either an IRI that identifies the property type, or the property's name.
+   * @param deadline The time in milliseconds within which the operation must complete.
+   * @param payloadTags A list of IRIs or object property names (if property is an object schema).
+   * @param payload The payload to be issued when writing the property.
+   */
+  @OPERATION
+  public void writePropertyWithDeadline(String propertyTag, int deadline, Object[] payloadTags,
+      Object[] payload) {
+    writeProperty(propertyTag, payloadTags, payload, toDeadline(deadline));
+  }
+
+  private void writeProperty(String propertyTag, Object[] payloadTags, Object[] payload,
+      Optional<Long> deadline) {
     validateParameters(propertyTag, payloadTags, payload);
     if (payload.length == 0) {
       failed("The payload used when writing a property cannot be empty.");
     }
 
-    PropertyAffordance property = getPropertyOrFail(propertyTag);
-    Optional<TDHttpResponse> response = executePropertyRequest(property, TD.writeProperty,
-        payloadTags, payload);
+    AffordanceTemplate property = getPropertyOrFail(propertyTag);
+    readCache.ifPresent(cache -> cache.invalidate(property.getName()));
+
+    try {
+      Optional<ClassicHttpResponse> response = executePropertyRequest(property, TD.writeProperty,
+          payloadTags, payload, deadline);
+
+      if (response.isPresent() && !requestSucceeded(response.get().getCode())) {
+        failed("Status code: " + response.get().getCode());
+      }
+    } finally {
+      // Reads issued while the write was awaited may have fetched the previous value
+      readCache.ifPresent(cache -> cache.invalidate(property.getName()));
+    }
+  }
+
+
+  /**
+   * CArtAgO operation for writing multiple properties of a Thing in one operation. If the TD
+   * provides a Thing-level form for writing multiple properties, the properties are written with a
+   * single request, whose payload is encoded using the schema of each property. Otherwise, the
+   * properties are written one after the other.
+   *
+   * @param propertyTags A list of IRIs that identify property types, or property names.
+   * @param values The values to be written in the order of the given property tags. The value of
+   * a property with an object schema is a list of [Name, Value] pairs.
+   */
+  @OPERATION
+  public void writeProperties(Object[] propertyTags, Object[] values) {
+    if (propertyTags.length != values.length) {
+      failed("The number of values must match the number of property tags.");
+    }
+
+    List<AffordanceTemplate> properties = new ArrayList<AffordanceTemplate>();
+    Object[] names = new Object[propertyTags.length];
+    Object[] inputs = new Object[values.length];
+
+    try {
+      for (int i = 0; i < propertyTags.length; i ++) {
+        AffordanceTemplate property = getPropertyOrFail(String.valueOf(propertyTags[i]));
+        properties.add(property);
+        names[i] = property.getName();
+        inputs[i] = toInputValue(property, values[i]);
+      }
+    } catch (IllegalArgumentException e) {
+      failed(e.getMessage());
+    }
+
+    invalidateCachedValues(properties);
 
-    if (response.isPresent() && !requestSucceeded(response.get().getStatusCode())) {
-      failed("Status code: " + response.get().getStatusCode());
+    try {
+      writeProperties(properties, names, inputs);
+    } finally {
+      // Reads issued while the writes were awaited may have fetched the previous values
+      invalidateCachedValues(properties);
+    }
+  }
+
+  /* Writes properties with a Thing-level form, or one after the other */
+  private void writeProperties(List<AffordanceTemplate> properties, Object[] names,
+      Object[] inputs) {
+    Optional<RequestTemplate> bulkForm =
+        affordances.getThingRequest(AffordanceTable.WRITE_MULTIPLE_PROPERTIES);
+
+    if (bulkForm.isPresent()) {
+      ObjectSchema.Builder schema = new ObjectSchema.Builder();
+      for (AffordanceTemplate property : properties) {
+        schema.addProperty(property.getName(), property.getInputSchema().get());
+      }
+
+      byte[] body = null;
+      try {
+        body = bulkForm.get().getCodec().encoderFor(schema.build()).encodeObject(names, inputs);
+      } catch (IllegalArgumentException e) {
+        failed(e.getMessage());
+      }
+
+      Optional<ClassicHttpResponse> response = issueHttpRequest(bulkForm.get(), Optional.of(body),
+          Collections.emptyMap(), Optional.empty());
+      if (response.isPresent() && !requestSucceeded(response.get().getCode())) {
+        failed("Status code: " + response.get().getCode());
+      }
+      return;
+    }
+
+    for (int i = 0; i < properties.size(); i ++) {
+      Optional<RequestTemplate> form = properties.get(i).getRequest(TD.writeProperty);
+      if (!form.isPresent()) {
+        failed(getInvalidFormMessage("property", properties.get(i), TD.writeProperty) + ": "
+            + names[i]);
+      }
+
+      byte[] body = null;
+      try {
+        body = properties.get(i).getInputEncoder(form.get().getCodec()).get()
+            .encodeValue(inputs[i]);
+      } catch (IllegalArgumentException e) {
+        failed(e.getMessage());
+      }
+
+      Optional<ClassicHttpResponse> response = issueHttpRequest(form.get(), Optional.of(body),
+          Collections.emptyMap(), Optional.empty());
+      if (response.isPresent() && !requestSucceeded(response.get().getCode())) {
+        failed("Status code: " + response.get().getCode() + " (" + names[i] + ")");
+      }
     }
   }
 
+  private void invalidateCachedValues(List<AffordanceTemplate> properties) {
+    for (AffordanceTemplate property : properties) {
+      readCache.ifPresent(cache -> cache.invalidate(property.getName()));
+    }
+  }
 
   @OPERATION
   public void invokeAction(String actionTag) {
@@ -201,37 +736,66 @@ public class ThingArtifact extends Artifact {
   @OPERATION
   public void invokeAction(String actionTag, Object[] payloadTags, Object[] payload,
       OpFeedbackParam<Object[]> output) {
-    //validateParameters(actionTag, payloadTags, payload);
+    invokeAction(actionTag, payloadTags, payload, output, Optional.empty());
+  }
+
+  /**
+   * CArtAgO operation for invoking an action on a Thing within a deadline. The operation fails
+   * with a {@code timeout(ActionName)} failure if the action could not be invoked in time, and the
+   * request in progress is cancelled.
+   *
+   * @param actionTag Either an IRI that identifies the action type, or the action's name.
+   * @param deadline The time in milliseconds within which the operation must complete.
+   * @param payload The payload to be issued when invoking the action.
+   */
+  @OPERATION
+  public void invokeActionWithDeadline(String actionTag, int deadline, Object[] payload) {
+    invokeAction(actionTag, new Object[0], payload, null, toDeadline(deadline));
+  }
+
+  /**
+   * CArtAgO operation for invoking an action on a Thing within a deadline. The operation fails
+   * with a {@code timeout(ActionName)} failure if the action could not be invoked in time, and the
+   * request in progress is cancelled.
+   *
+   * @param actionTag Either an IRI that identifies the action type, or the action's name.
+   * @param deadline The time in milliseconds within which the operation must complete.
+   * @param payloadTags A list of IRIs or object property names (used for object schema payloads).
+   * @param payload The payload to be issued when invoking the action.
+   * @param output The list of values of the response payload.
+   */
+  @OPERATION
+  public void invokeActionWithDeadline(String actionTag, int deadline, Object[] payloadTags,
+      Object[] payload, OpFeedbackParam<Object[]> output) {
+    invokeAction(actionTag, payloadTags, payload, output, toDeadline(deadline));
+  }
 
-    Optional<ActionAffordance> action = td.getFirstActionBySemanticType(actionTag);
+  private void invokeAction(String actionTag, Object[] payloadTags, Object[] payload,
+      OpFeedbackParam<Object[]> output, Optional<Long> deadline) {
+    //validateParameters(actionTag, payloadTags, payload);
 
-    if (!action.isPresent()) {
-      action = td.getActionByName(actionTag);
-    }
+    Optional<AffordanceTemplate> action = affordances.getAction(actionTag);
 
     if (action.isPresent()) {
-      Optional<Form> form = action.get().getFirstForm();
+      Optional<RequestTemplate> form = action.get().getRequest(TD.invokeAction);
 
       if (!form.isPresent()) {
-        // Should not happen (an exception will be raised by the TD library first)
-        failed("Invalid TD: the invoked action does not have a valid form.");
+        failed(getInvalidFormMessage("invoked action", action.get(), TD.invokeAction) + ".");
       }
 
-      Optional<DataSchema> inputSchema = action.get().getInputSchema();
-      if (!inputSchema.isPresent() && payload.length > 0) {
+      if (!action.get().getInputSchema().isPresent() && payload.length > 0) {
         failed("This type of action does not take any input: " + actionTag);
       }
 
-      Optional<TDHttpResponse> response = executeRequest(TD.invokeAction, form.get(), inputSchema,
-        payloadTags, payload);
+      Optional<ClassicHttpResponse> response = executeRequest(form.get(),
+          action.get().getInputEncoder(form.get().getCodec()), payloadTags, payload, deadline);
 
       if (!dryRun & response.isPresent()) {
-        if (!requestSucceeded(response.get().getStatusCode())) {
-          failed("Status code: " + response.get().getStatusCode());
-        } else if (action.get().getOutputSchema().isPresent()) {
-          readPayloadWithSchema(response.get(), action.get().getOutputSchema().get(), output);
+        if (!requestSucceeded(response.get().getCode())) {
+          failed("Status code: " + response.get().getCode());
         } else if (output != null) {
-          readPayloadWithSchema(response.get(), DataSchema.getEmptySchema(), output);
+          readPayload(response.get(), getOutputDecoder(action.get(), form.get(), response.get()),
+              output);
         }
       }
     } else {
@@ -240,29 +804,286 @@ public class ThingArtifact extends Artifact {
   }
 
   /**
-   * CArtAgO operation that sets an authentication token (used with APIKeySecurityScheme).
+   * CArtAgO operation for configuring the timeouts of the requests issued by this artifact. Requests
+   * that time out fail with a {@code timeout(AffordanceName)} failure, and are cancelled such that
+   * their connections are released.
    *
-   * @param token The authentication token.
+   * @param connectTimeout The timeout in milliseconds for establishing a connection.
+   * @param responseTimeout The timeout in milliseconds for receiving data from a connection.
+   * @param requestTimeout The timeout in milliseconds for completing a request, unless the
+   * affordance has its own timeout.
    */
   @OPERATION
-  public void setAPIKey(String token) {
-    if (token != null && !token.isEmpty()) {
-      this.apiKey = Optional.of(token);
+  public void setTimeouts(int connectTimeout, int responseTimeout, int requestTimeout) {
+    if (connectTimeout < 0 || responseTimeout < 0 || requestTimeout < 0) {
+      failed("Timeouts cannot be negative (use 0 for no timeout).");
     }
+
+    requestConfig = Optional.of(RequestConfig.custom()
+        .setConnectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+        .setResponseTimeout(responseTimeout, TimeUnit.MILLISECONDS)
+        .build());
+    this.requestTimeout = requestTimeout;
   }
 
-  /* Set a primitive payload. */
-  TDHttpRequest setPrimitivePayload(TDHttpRequest request, DataSchema schema, Object payload) {
-    try {
-      if (payload instanceof Boolean) {
-        // Matches to TD BooleanSchema
-        request.setPrimitivePayload(schema, (boolean) payload);
-      } else if (payload instanceof Byte || payload instanceof Integer || payload instanceof Long) {
-        // Matches to TD IntegerSchema
-        request.setPrimitivePayload(schema, Long.valueOf(String.valueOf(payload)));
-      } else if (payload instanceof Float || payload instanceof Double) {
-        // Matches to TD NumberSchema
-        request.setPrimitivePayload(schema, Double.valueOf(String.valueOf(payload)));
+  /**
+   * CArtAgO operation for setting the timeout of the requests issued for a property or an action.
+   *
+   * @param affordanceTag Either an IRI that identifies the property or action type, or the name of
+   * the property or action.
+   * @param timeout The timeout in milliseconds for completing a request (0 to use the timeout of
+   * the artifact).
+   */
+  @OPERATION
+  public void setAffordanceTimeout(String affordanceTag, int timeout) {
+    if (timeout < 0) {
+      failed("Timeouts cannot be negative.");
+    }
+
+    Optional<AffordanceTemplate> affordance = affordances.getProperty(affordanceTag);
+    if (!affordance.isPresent()) {
+      affordance = affordances.getAction(affordanceTag);
+    }
+
+    if (!affordance.isPresent()) {
+      failed("Unknown property or action: " + affordanceTag);
+    }
+
+    if (timeout == 0) {
+      affordanceTimeouts.remove(affordance.get().getName());
+    } else {
+      affordanceTimeouts.put(affordance.get().getName(), (long) timeout);
+    }
+  }
+
+  /**
+   * CArtAgO operation for configuring the retries of failed requests. Only requests with safe
+   * methods (e.g., for reading properties) are retried, and only if they failed with a transport
+   * error or a transient server error. The backoff doubles with each retry and is jittered.
+   *
+   * @param maxRetries The maximum number of retries per request (0 to disable retries).
+   * @param backoff The base backoff in milliseconds.
+   */
+  @OPERATION
+  public void setRetryPolicy(int maxRetries, int backoff) {
+    if (maxRetries < 0 || backoff < 0) {
+      failed("The number of retries and the backoff cannot be negative.");
+    }
+
+    retryPolicy = new RetryPolicy(maxRetries, backoff);
+  }
+
+  /**
+   * CArtAgO operation for configuring the circuit breakers of the Things' hosts. A breaker opens
+   * after a number of consecutive transport or server errors, such that requests to its host fail
+   * fast, and lets a trial request through after a timeout. Breakers are shared by all artifacts,
+   * and they are disabled by default.
+   *
+   * @param failureThreshold The number of consecutive failures after which a breaker opens (0 to
+   * disable breakers).
+   * @param openTimeout The time in milliseconds after which an open breaker lets a trial request
+   * through.
+   */
+  @OPERATION
+  public void setCircuitBreakers(int failureThreshold, int openTimeout) {
+    if (failureThreshold < 0 || openTimeout < 0) {
+      failed("The failure threshold and the open timeout cannot be negative.");
+    }
+
+    CircuitBreaker.configure(failureThreshold, openTimeout);
+  }
+
+  /**
+   * CArtAgO operation for enabling hedged property reads: if a read has not completed once its
+   * latency exceeds a percentile of the latencies observed for the property, a duplicate request
+   * is issued and the first response is used. Reads are only hedged once enough latencies were
+   * observed for the property.
+   *
+   * @param percentile The latency percentile after which reads are hedged (e.g., 0.95).
+   * @param minDelay The minimum delay in milliseconds before a read is hedged.
+   */
+  @OPERATION
+  public void enableHedgedReads(double percentile, int minDelay) {
+    if (percentile <= 0 || percentile >= 1 || minDelay < 0) {
+      failed("The percentile must be between 0 and 1, and the minimum delay cannot be negative.");
+    }
+
+    hedgePercentile = Optional.of(percentile);
+    hedgeMinDelay = minDelay;
+  }
+
+  /**
+   * CArtAgO operation for disabling hedged property reads.
+   */
+  @OPERATION
+  public void disableHedgedReads() {
+    hedgePercentile = Optional.empty();
+  }
+
+  /**
+   * CArtAgO operation for enabling a cache for the property values read by this artifact. Read
+   * values are served from the cache while they are fresh. Once they expire, they are revalidated
+   * with a conditional request if the Thing provided an entity tag. Cached values are invalidated
+   * when the property is written via this artifact, or when a notification is received for the
+   * Thing, and reads that overlap a write are not cached. The state of the cache is exposed via the {@code readCache(Ttl, Hits, Misses, HitRatio)}
+   * observable property.
+   *
+   * @param ttl The time window in milliseconds during which a read value is considered fresh.
+   */
+  @OPERATION
+  public void enableReadCache(int ttl) {
+    if (ttl <= 0) {
+      failed("The freshness window of the read cache must be a positive number.");
+    }
+
+    readCache = Optional.of(new PropertyReadCache(ttl));
+
+    if (getObsProperty("readCache") == null) {
+      defineObsProperty("readCache", ttl, 0L, 0L, 0.0);
+    } else {
+      updateReadCacheProperty();
+    }
+  }
+
+  /**
+   * CArtAgO operation for disabling the cache for the property values read by this artifact.
+   */
+  @OPERATION
+  public void disableReadCache() {
+    readCache = Optional.empty();
+
+    if (getObsProperty("readCache") != null) {
+      removeObsProperty("readCache");
+    }
+  }
+
+  /**
+   * CArtAgO operation for retrieving the statistics of the HTTP connection pool shared by all
+   * hypermedia artifacts.
+   *
+   * @param leased The number of connections currently in use.
+   * @param available The number of idle keep-alive connections.
+   * @param pending The number of requests waiting for a connection.
+   * @param max The maximum number of connections in the pool.
+   */
+  @OPERATION
+  public void getConnectionPoolStats(OpFeedbackParam<Integer> leased,
+      OpFeedbackParam<Integer> available, OpFeedbackParam<Integer> pending,
+      OpFeedbackParam<Integer> max) {
+    PoolStats stats = HttpClientPool.getStats();
+
+    leased.set(stats.getLeased());
+    available.set(stats.getAvailable());
+    pending.set(stats.getPending());
+    max.set(stats.getMax());
+  }
+
+  /**
+   * CArtAgO operation for retrieving the statistics of the TD cache shared by all hypermedia
+   * artifacts.
+   *
+   * @param hits The number of TDs served from the cache (including revalidated TDs).
+   * @param misses The number of TDs that were retrieved and parsed.
+   * @param revalidations The number of stale TDs that were confirmed as unchanged.
+   * @param size The number of cached TDs.
+   */
+  @OPERATION
+  public void getThingDescriptionCacheStats(OpFeedbackParam<Long> hits,
+      OpFeedbackParam<Long> misses, OpFeedbackParam<Long> revalidations,
+      OpFeedbackParam<Integer> size) {
+    ThingDescriptionCache cache = ThingDescriptionCache.getInstance();
+
+    hits.set(cache.getHits());
+    misses.set(cache.getMisses());
+    revalidations.set(cache.getRevalidations());
+    size.set(cache.size());
+  }
+
+  /**
+   * CArtAgO operation for exposing the request metrics of this Thing as observable properties of
+   * the form {@code affordanceMetrics(Affordance, Operation, Requests, Errors, BytesOut, BytesIn,
+   * P50, P99, P999)}, with latencies in milliseconds. The properties are updated periodically for
+   * all affordances that were used. The same metrics are available to monitoring systems in the
+   * Prometheus text format (see {@link RequestMetrics}).
+   *
+   * @param period The update period in milliseconds.
+   */
+  @OPERATION
+  public void enableMetrics(int period) {
+    if (period <= 0) {
+      failed("The update period must be a positive number.");
+    }
+
+    if (!metricsEnabled) {
+      metricsEnabled = true;
+      execInternalOp("publishMetrics", period);
+    }
+  }
+
+  /**
+   * CArtAgO operation for removing the observable properties that expose request metrics.
+   */
+  @OPERATION
+  public void disableMetrics() {
+    metricsEnabled = false;
+  }
+
+  @INTERNAL_OPERATION
+  void publishMetrics(int period) {
+    while (metricsEnabled) {
+      for (AffordanceMetrics metrics : affordances.getMetrics()) {
+        long requests = metrics.getRequests();
+        if (requests + metrics.getErrors() == 0) {
+          continue;
+        }
+
+        LatencyHistogram latencies = metrics.getLatencies();
+        Object[] values = new Object[] { metrics.getAffordance(), metrics.getOperation(), requests,
+            metrics.getErrors(), metrics.getBytesOut(), metrics.getBytesIn(),
+            latencies.getQuantileMicros(0.5) / 1000.0, latencies.getQuantileMicros(0.99) / 1000.0,
+            latencies.getQuantileMicros(0.999) / 1000.0 };
+
+        Object[] previous = publishedMetrics.put(metrics, values);
+        if (previous == null) {
+          defineObsProperty("affordanceMetrics", values);
+        } else if (!Arrays.equals(previous, values)) {
+          getObsPropertyByTemplate("affordanceMetrics", previous).updateValues(values);
+        }
+      }
+
+      await_time(period);
+    }
+
+    for (Object[] values : publishedMetrics.values()) {
+      removeObsPropertyByTemplate("affordanceMetrics", values);
+    }
+    publishedMetrics.clear();
+  }
+
+  /**
+   * CArtAgO operation that sets an authentication token (used with APIKeySecurityScheme).
+   *
+   * @param token The authentication token.
+   */
+  @OPERATION
+  public void setAPIKey(String token) {
+    if (token != null && !token.isEmpty()) {
+      this.apiKey = Optional.of(token);
+    }
+  }
+
+  /* Set a primitive payload. */
+  TDHttpRequest setPrimitivePayload(TDHttpRequest request, DataSchema schema, Object payload) {
+    try {
+      if (payload instanceof Boolean) {
+        // Matches to TD BooleanSchema
+        request.setPrimitivePayload(schema, (boolean) payload);
+      } else if (payload instanceof Byte || payload instanceof Integer || payload instanceof Long) {
+        // Matches to TD IntegerSchema
+        request.setPrimitivePayload(schema, Long.valueOf(String.valueOf(payload)));
+      } else if (payload instanceof Float || payload instanceof Double) {
+        // Matches to TD NumberSchema
+        request.setPrimitivePayload(schema, Double.valueOf(String.valueOf(payload)));
       } else if (payload instanceof String) {
         // Matches to TD StringSchema
         request.setPrimitivePayload(schema, (String) payload);
@@ -311,31 +1132,307 @@ public class ThingArtifact extends Artifact {
   }
 
   private void readProperty(String semanticType, Optional<OpFeedbackParam<Object[]>> tags,
-      OpFeedbackParam<Object[]> output) {
-    PropertyAffordance property = getPropertyOrFail(semanticType);
-    Optional<TDHttpResponse> response = executePropertyRequest(property, TD.readProperty,
-        new Object[0], new Object[0]);
+      OpFeedbackParam<Object[]> output, Optional<Long> deadline) {
+    AffordanceTemplate property = getPropertyOrFail(semanticType);
+
+    if (!dryRun && readCache.isPresent()) {
+      readCachedProperty(readCache.get(), property, tags, output, deadline);
+      return;
+    }
+
+    Optional<ClassicHttpResponse> response = executePropertyRequest(property, TD.readProperty,
+        new Object[0], new Object[0], deadline);
 
     if (!dryRun) {
       if (!response.isPresent()) {
         failed("Something went wrong with the read property request.");
       }
 
-      if (requestSucceeded(response.get().getStatusCode())) {
-        readPayloadWithSchema(response.get(), property.getDataSchema(), tags, output);
+      if (requestSucceeded(response.get().getCode())) {
+        readPayload(response.get(), getOutputDecoder(property,
+            property.getRequest(TD.readProperty).get(), response.get()), tags, output);
       } else {
-        failed("Status code: " + response.get().getStatusCode());
+        failed("Status code: " + response.get().getCode());
       }
     }
   }
 
-  /* Tries to retrieve a property first by semantic tag, then by name. Fails if none works. */
-  private PropertyAffordance getPropertyOrFail(String propertyTag) {
-    Optional<PropertyAffordance> property = td.getFirstPropertyBySemanticType(propertyTag);
+  private void readCachedProperty(PropertyReadCache cache, AffordanceTemplate property,
+      Optional<OpFeedbackParam<Object[]>> tags, OpFeedbackParam<Object[]> output,
+      Optional<Long> deadline) {
+    DataSchema schema = property.getOutputSchema().get();
+    // A write issued while this read is in flight prevents the read from being cached
+    long generation = cache.getGeneration();
+    Optional<PropertyReadCache.Entry> entry = cache.get(property.getName());
+
+    if (entry.isPresent() && entry.get().isFresh()) {
+      cache.recordHit();
+      setCachedOutputs(entry.get(), schema, tags, output);
+      updateReadCacheProperty();
+      return;
+    }
 
-    if (!property.isPresent()) {
-      property = td.getPropertyByName(propertyTag);
+    Optional<RequestTemplate> form = property.getRequest(TD.readProperty);
+    if (!form.isPresent()) {
+      failed(getInvalidFormMessage("property", property, TD.readProperty) + ".");
+    }
+
+    Map<String, String> conditions = new HashMap<String, String>();
+    if (entry.isPresent() && entry.get().etag.isPresent()) {
+      conditions.put(HttpHeaders.IF_NONE_MATCH, entry.get().etag.get());
+    }
+
+    Optional<ClassicHttpResponse> response = issueHttpRequest(form.get(), Optional.empty(),
+        conditions, deadline);
+
+    if (!response.isPresent()) {
+      failed("Something went wrong with the read property request.");
+    }
+
+    int statusCode = response.get().getCode();
+    if (statusCode == HttpStatus.SC_NOT_MODIFIED && entry.isPresent()) {
+      cache.recordHit();
+      cache.refresh(property.getName(), entry.get());
+      setCachedOutputs(entry.get(), schema, tags, output);
+    } else if (requestSucceeded(statusCode)) {
+      cache.recordMiss();
+
+      OpFeedbackParam<Object[]> readTags = new OpFeedbackParam<Object[]>();
+      OpFeedbackParam<Object[]> readValues = new OpFeedbackParam<Object[]>();
+      readPayload(response.get(), getOutputDecoder(property, form.get(), response.get()),
+          Optional.of(readTags), readValues);
+
+      Header etag = response.get().getFirstHeader(HttpHeaders.ETAG);
+      PropertyReadCache.Entry readEntry = cache.put(property.getName(), readTags.get(),
+          readValues.get(), Optional.ofNullable(etag == null ? null : etag.getValue()),
+          generation);
+
+      setCachedOutputs(readEntry, schema, tags, output);
+    } else {
+      failed("Status code: " + statusCode);
+    }
+
+    updateReadCacheProperty();
+  }
+
+  /* Sets the outputs of a read operation as if the cached payload was read from a response */
+  private void setCachedOutputs(PropertyReadCache.Entry entry, DataSchema schema,
+      Optional<OpFeedbackParam<Object[]>> tags, OpFeedbackParam<Object[]> output) {
+    if (DataSchema.OBJECT.equals(schema.getDatatype())) {
+      // Object payloads are only read if a list of tags is expected
+      if (tags.isPresent()) {
+        tags.get().set(entry.tags);
+        output.set(entry.values);
+      }
+    } else if (entry.values != null) {
+      output.set(entry.values);
+    }
+  }
+
+  private void updateReadCacheProperty() {
+    if (readCache.isPresent() && getObsProperty("readCache") != null) {
+      PropertyReadCache cache = readCache.get();
+      getObsProperty("readCache").updateValues(cache.getTtl(), cache.getHits(), cache.getMisses(),
+          cache.getHitRatio());
     }
+  }
+
+  /**
+   * Invalidates all property values cached by this artifact (if the read cache is enabled).
+   * Subclasses should invoke this method when they are notified that the state of the Thing
+   * has changed.
+   */
+  protected void invalidateReadCache() {
+    readCache.ifPresent(PropertyReadCache::clear);
+  }
+
+  /* Reads properties with a single request using a Thing-level form */
+  private void readPropertiesInBulk(RequestTemplate form, Object[] propertyTags,
+      Map<Integer, AffordanceTemplate> properties, Object[] values, List<Object> errors) {
+    ObjectSchema.Builder schema = new ObjectSchema.Builder();
+    List<Object> names = new ArrayList<Object>();
+
+    for (AffordanceTemplate property : properties.values()) {
+      schema.addProperty(property.getName(), property.getOutputSchema().get());
+      names.add(property.getName());
+    }
+
+    // The names of the properties to be read are sent as an array only if the form specifies a
+    // method with a body (the default GET binding has none)
+    Optional<byte[]> request = Optional.empty();
+    if (AffordanceTable.READ_MULTIPLE_PROPERTIES.equals(form.getOperationType())
+        && !"GET".equalsIgnoreCase(form.getMethod())
+        && !"HEAD".equalsIgnoreCase(form.getMethod())) {
+      request = Optional.of(form.getCodec().encoderFor(NAMES_SCHEMA)
+          .encodeArray(names.toArray()));
+    }
+
+    Optional<ClassicHttpResponse> response = issueHttpRequest(form, request,
+        Collections.emptyMap(), Optional.empty());
+    if (!response.isPresent()) {
+      return;
+    }
+
+    int statusCode = response.get().getCode();
+    Map<String, Object> payload = Collections.emptyMap();
+    String reason = "Status code: " + statusCode;
+
+    if (requestSucceeded(statusCode)) {
+      try {
+        payload = getResponseCodec(form, response.get()).decoderFor(Optional.of(schema.build()))
+            .decode(response.get().getEntity()).map(this::toMap).orElse(Collections.emptyMap());
+        reason = "The property is missing from the response.";
+      } catch (IOException | RuntimeException e) {
+        reason = e.getMessage();
+      }
+    }
+
+    collectBulkResults(propertyTags, properties, payload, reason, values, errors);
+  }
+
+  /*
+   * Sets the value of each property found in the payload of a Thing-level read at the index of its
+   * tag, and adds a [PropertyTag, Reason] pair for each property missing from the payload
+   */
+  void collectBulkResults(Object[] propertyTags, Map<Integer, AffordanceTemplate> properties,
+      Map<String, Object> payload, String reason, Object[] values, List<Object> errors) {
+    for (Map.Entry<Integer, AffordanceTemplate> property : properties.entrySet()) {
+      int index = property.getKey();
+      Object value = payload.get(property.getValue().getName());
+
+      if (value == null) {
+        errors.add(new Object[] { propertyTags[index], reason });
+      } else {
+        values[index] = toOutputValue(value);
+      }
+    }
+  }
+
+  /* Reads properties with concurrent requests that are awaited without locking the artifact */
+  private void readPropertiesConcurrently(Object[] propertyTags,
+      Map<Integer, AffordanceTemplate> properties, Object[] values, List<Object> errors) {
+    Map<Integer, CompletableFuture<ClassicHttpResponse>> responses =
+        new LinkedHashMap<Integer, CompletableFuture<ClassicHttpResponse>>();
+
+    for (Map.Entry<Integer, AffordanceTemplate> property : properties.entrySet()) {
+      Optional<RequestTemplate> form = property.getValue().getRequest(TD.readProperty);
+
+      if (!form.isPresent()) {
+        errors.add(new Object[] { propertyTags[property.getKey()],
+            getInvalidFormMessage("property", property.getValue(), TD.readProperty) + "." });
+        continue;
+      }
+
+      HttpUriRequestBase request = prepareHttpRequest(form.get(), Optional.empty(),
+          Collections.emptyMap(), Optional.of(getCurrentOpAgentId().getAgentName()));
+
+      if (!dryRun) {
+        responses.put(property.getKey(), executeRead(form.get(), request,
+            getExpiry(form.get(), Optional.empty())));
+      }
+    }
+
+    if (responses.isEmpty()) {
+      return;
+    }
+
+    // Wait for all requests to complete, whether they succeed or not
+    await(new FutureCmd<Void>(CompletableFuture.allOf(responses.values()
+        .toArray(new CompletableFuture<?>[0])).handle((result, error) -> null)));
+
+    for (Integer index : responses.keySet()) {
+      updateBreakerProperty(properties.get(index).getRequest(TD.readProperty).get().getBreaker());
+    }
+
+    collectReadResults(propertyTags, properties, responses, values, errors);
+  }
+
+  /*
+   * Sets the value of each property read at the index of its tag, and adds a [PropertyTag, Reason]
+   * pair for each property that could not be read
+   */
+  void collectReadResults(Object[] propertyTags, Map<Integer, AffordanceTemplate> properties,
+      Map<Integer, CompletableFuture<ClassicHttpResponse>> responses, Object[] values,
+      List<Object> errors) {
+    for (Map.Entry<Integer, CompletableFuture<ClassicHttpResponse>> response
+        : responses.entrySet()) {
+      int index = response.getKey();
+
+      try {
+        ClassicHttpResponse httpResponse = response.getValue().join();
+
+        if (requestSucceeded(httpResponse.getCode())) {
+          Optional<Object> payload = decodePayload(httpResponse, getOutputDecoder(
+              properties.get(index), properties.get(index).getRequest(TD.readProperty).get(),
+              httpResponse));
+
+          if (payload.isPresent()) {
+            values[index] = toOutputValue(payload.get());
+          }
+        } else {
+          errors.add(new Object[] { propertyTags[index], "Status code: " + httpResponse.getCode() });
+        }
+      } catch (CompletionException e) {
+        errors.add(new Object[] { propertyTags[index], e.getCause().getMessage() });
+      } catch (RuntimeException e) {
+        errors.add(new Object[] { propertyTags[index], e.getMessage() });
+      }
+    }
+  }
+
+  /*
+   * Converts a decoded value to the representation used for Jason lists. Objects are converted to
+   * lists of [Name, Value] pairs, as expected by writeProperties.
+   */
+  private Object[] toOutputValue(Object value) {
+    if (value instanceof Object[]) {
+      return (Object[]) value;
+    } else if (value instanceof Map<?, ?>) {
+      List<Object> members = new ArrayList<Object>();
+      for (Map.Entry<?, ?> member : ((Map<?, ?>) value).entrySet()) {
+        members.add(new Object[] { member.getKey(), member.getValue() });
+      }
+      return members.toArray();
+    }
+
+    return new Object[] { value };
+  }
+
+  /* Converts a value given by an agent to the representation expected by the property's encoder */
+  private Object toInputValue(AffordanceTemplate property, Object value) {
+    if (!(value instanceof Object[]) || !property.getInputSchema().isPresent()
+        || !DataSchema.OBJECT.equals(property.getInputSchema().get().getDatatype())) {
+      return value;
+    }
+
+    // Objects are given as lists of [Name, Value] pairs
+    Map<String, Object> members = new LinkedHashMap<String, Object>();
+
+    for (Object member : (Object[]) value) {
+      if (!(member instanceof Object[]) || ((Object[]) member).length != 2) {
+        throw new IllegalArgumentException("The value of property " + property.getName()
+            + " must be a list of [Name, Value] pairs.");
+      }
+
+      Object[] pair = (Object[]) member;
+      members.put(String.valueOf(pair[0]), pair[1]);
+    }
+
+    return members;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> toMap(Object value) {
+    if (!(value instanceof Map<?, ?>)) {
+      throw new IllegalArgumentException("The payload is not an object.");
+    }
+
+    return (Map<String, Object>) value;
+  }
+
+  /* Tries to retrieve a property first by semantic tag, then by name. Fails if none works. */
+  private AffordanceTemplate getPropertyOrFail(String propertyTag) {
+    Optional<AffordanceTemplate> property = affordances.getProperty(propertyTag);
 
     if (!property.isPresent()) {
       failed("Unknown property: " + propertyTag);
@@ -344,51 +1441,24 @@ public class ThingArtifact extends Artifact {
     return property.get();
   }
 
-  @SuppressWarnings("unchecked")
-  private void readPayloadWithSchema(TDHttpResponse response, DataSchema schema,
+  /* The failure of an operation on an affordance without a usable form for the operation type */
+  private static String getInvalidFormMessage(String affordanceKind, AffordanceTemplate affordance,
+      String operationType) {
+    Optional<String> target = affordance.getInvalidTarget(operationType);
+
+    return "Invalid TD: the " + affordanceKind + " does not have a valid form"
+        + (target.isPresent() ? " (invalid target: " + target.get() + ")" : "");
+  }
+
+  /* Sets the output of an action from the response payload */
+  private void readPayload(ClassicHttpResponse response, PayloadCodec.Decoder decoder,
       OpFeedbackParam<Object[]> output) {
+    Optional<Object> payload = decodePayload(response, decoder);
 
-    switch (schema.getDatatype()) {
-      case DataSchema.BOOLEAN:
-        output.set(new Boolean[] { response.getPayloadAsBoolean() });
-        break;
-      case DataSchema.STRING:
-      case DataSchema.DATA:
-        output.set(new String[] { response.getPayloadAsString() });
-        break;
-      case DataSchema.INTEGER:
-        output.set(new Integer[] { response.getPayloadAsInteger() });
-        break;
-      case DataSchema.NUMBER:
-        output.set(new Double[] { response.getPayloadAsDouble() });
-        break;
-      case DataSchema.OBJECT:
-        // Only consider this case if the invoked CArtAgO operation was for an object payload
-        // (i.e., a list of tags is expected).
-
-        Map<String, Object> payload = response.getPayloadAsObject((ObjectSchema) schema);
-        List<String> tagList = new ArrayList<String>();
-        List<Object> data = new ArrayList<Object>();
-        List<Object> preferredTags = new ArrayList<Object>();
-        for (String tag : payload.keySet()) {
-          if (preferredTags.contains(tag)){
-            tagList.add(tag);
-            Object value = payload.get(tag);
-            if (value instanceof Collection<?>) {
-              data.add(nestedListsToArrays((Collection<Object>) value));
-            } else {
-              data.add(value);
-              }
-          }
-        }
-        output.set(data.toArray());
-        break;
-      case DataSchema.ARRAY:
-        List<Object> arrayPayload = response.getPayloadAsArray((ArraySchema) schema);
-        output.set(nestedListsToArrays(arrayPayload));
-        break;
-      default:
-        break;
+    if (payload.isPresent()) {
+      // Object payloads are not read for actions (i.e., no list of tags is expected)
+      output.set(payload.get() instanceof Map<?, ?> ? new Object[0]
+          : toOutputValue(payload.get()));
     }
   }
 
@@ -396,52 +1466,58 @@ public class ThingArtifact extends Artifact {
   // - only the first semantic tag is retrieved for object properties (one that is not a data schema)
   // - we cannot use nested objects with the current ThingArtifact API (needs a more elaborated
   // JaCa - WoT bridge)
-  @SuppressWarnings("unchecked")
-  private void readPayloadWithSchema(TDHttpResponse response, DataSchema schema,
+  private void readPayload(ClassicHttpResponse response, PayloadCodec.Decoder decoder,
       Optional<OpFeedbackParam<Object[]>> tags, OpFeedbackParam<Object[]> output) {
+    Optional<Object> payload = decodePayload(response, decoder);
 
-    switch (schema.getDatatype()) {
-      case DataSchema.BOOLEAN:
-        output.set(new Boolean[] { response.getPayloadAsBoolean() });
-        break;
-      case DataSchema.STRING:
-        output.set(new String[] { response.getPayloadAsString() });
-        break;
-      case DataSchema.INTEGER:
-        output.set(new Integer[] { response.getPayloadAsInteger() });
-        break;
-      case DataSchema.NUMBER:
-        output.set(new Double[] { response.getPayloadAsDouble() });
-        break;
-      case DataSchema.OBJECT:
-        // Only consider this case if the invoked CArtAgO operation was for an object payload
-        // (i.e., a list of tags is expected).
-        if (tags.isPresent()) {
-          Map<String, Object> payload = response.getPayloadAsObject((ObjectSchema) schema);
-          List<String> tagList = new ArrayList<String>();
-          List<Object> data = new ArrayList<Object>();
-
-          for (String tag : payload.keySet()) {
-            tagList.add(tag);
-            Object value = payload.get(tag);
-            if (value instanceof Collection<?>) {
-              data.add(nestedListsToArrays((Collection<Object>) value));
-            } else {
-              data.add(value);
-            }
-          }
+    if (!payload.isPresent()) {
+      return;
+    }
 
-          tags.get().set(tagList.toArray());
-          output.set(data.toArray());
-        }
-        break;
-      case DataSchema.ARRAY:
-        List<Object> payload = response.getPayloadAsArray((ArraySchema) schema);
-        output.set(nestedListsToArrays(payload));
-        break;
-      default:
-        break;
+    if (payload.get() instanceof Map<?, ?>) {
+      // Only consider this case if the invoked CArtAgO operation was for an object payload
+      // (i.e., a list of tags is expected).
+      if (tags.isPresent()) {
+        Map<String, Object> object = toMap(payload.get());
+
+        tags.get().set(object.keySet().toArray());
+        output.set(object.values().toArray());
+      }
+    } else {
+      output.set(toOutputValue(payload.get()));
+    }
+  }
+
+  /*
+   * The codec of a response: responses are decoded with the codec of their content type if it is
+   * supported (e.g., if a Thing does not honor the content type of the form), and otherwise with
+   * the codec of the form
+   */
+  private PayloadCodec getResponseCodec(RequestTemplate form, ClassicHttpResponse response) {
+    HttpEntity entity = response.getEntity();
+
+    if (entity == null || entity.getContentType() == null) {
+      return form.getCodec();
     }
+
+    return PayloadCodecs.forContentType(entity.getContentType()).orElse(form.getCodec());
+  }
+
+  private PayloadCodec.Decoder getOutputDecoder(AffordanceTemplate affordance,
+      RequestTemplate form, ClassicHttpResponse response) {
+    return affordance.getOutputDecoder(getResponseCodec(form, response));
+  }
+
+  /* Decodes a response payload in a single pass using the decoder compiled for the affordance */
+  private Optional<Object> decodePayload(ClassicHttpResponse response,
+      PayloadCodec.Decoder decoder) {
+    try {
+      return decoder.decode(response.getEntity());
+    } catch (IOException e) {
+      failed("Could not read the response payload: " + e.getMessage());
+    }
+
+    return Optional.empty();
   }
 
   @SuppressWarnings("unchecked")
@@ -457,104 +1533,466 @@ public class ThingArtifact extends Artifact {
     return out;
   }
 
-  private Optional<TDHttpResponse> executePropertyRequest(PropertyAffordance property,
-    String operationType, Object[] tags, Object[] payload) {
-    Optional<Form> form = property.getFirstFormForOperationType(operationType);
+  private Optional<ClassicHttpResponse> executePropertyRequest(AffordanceTemplate property,
+    String operationType, Object[] tags, Object[] payload, Optional<Long> deadline) {
+    Optional<RequestTemplate> form = property.getRequest(operationType);
 
     if (!form.isPresent()) {
-      // Should not happen (an exception will be raised by the TD library first)
-      failed("Invalid TD: the property does not have a valid form.");
+      failed(getInvalidFormMessage("property", property, operationType) + ".");
     }
 
-    DataSchema schema = property.getDataSchema();
-
-    return executeRequest(operationType, form.get(), Optional.of(schema), tags, payload);
+    return executeRequest(form.get(), property.getInputEncoder(form.get().getCodec()), tags,
+        payload, deadline);
   }
 
-  private Optional<TDHttpResponse> executeRequest(String operationType, Form form,
-      Optional<DataSchema> schema, Object[] tags, Object[] payload) {
-    if (schema.isPresent() && payload.length > 0) {
-      // Request with payload
+  private Optional<ClassicHttpResponse> executeRequest(RequestTemplate form,
+      Optional<PayloadCodec.Encoder> encoder, Object[] tags, Object[] payload,
+      Optional<Long> deadline) {
+    if (!encoder.isPresent() || payload.length == 0) {
+      // Request without payload
+      return issueHttpRequest(form, Optional.empty(), Collections.emptyMap(), deadline);
+    }
+
+    // Request with payload, encoded with the encoder compiled for the affordance
+    byte[] body = null;
+
+    try {
       if (tags.length >= 1) {
-        return executeRequestObjectPayload(operationType, form, schema.get(), tags, payload);
+        body = encoder.get().encodeObject(tags, payload);
       } else if (payload.length == 1 && !(payload[0] instanceof Object[])) {
-        return executeRequestPrimitivePayload(operationType, form, schema.get(), payload[0]);
-      } else if (payload.length == 1 && (payload[0] instanceof Object[])) {
-        return executeRequestArrayPayload(operationType, form, schema.get(), (Object []) payload[0]);
-      } else if (payload.length >= 1) {
-        return executeRequestArrayPayload(operationType, form, schema.get(), payload);
+        body = encoder.get().encodePrimitive(payload[0]);
+      } else if (payload.length == 1) {
+        body = encoder.get().encodeArray((Object[]) payload[0]);
       } else {
-        failed("Could not detect the type of payload (primitive, object, or array).");
-        return Optional.empty();
+        body = encoder.get().encodeArray(payload);
       }
-    } else {
-      // Request without payload
-      TDHttpRequest request = new TDHttpRequest(form, operationType);
-      return issueRequest(request);
+    } catch (IllegalArgumentException e) {
+      failed(e.getMessage());
     }
+
+    return issueHttpRequest(form, Optional.of(body), Collections.emptyMap(), deadline);
   }
 
-  private Optional<TDHttpResponse> executeRequestPrimitivePayload(String operationType, Form form,
-      DataSchema schema, Object payload) {
-    TDHttpRequest request = new TDHttpRequest(form, operationType);
-    request = setPrimitivePayload(request, schema, payload);
+  /*
+   * Issues a request and retries it if needed. Each attempt is cancelled once the request timeout
+   * or the deadline of the operation (an absolute time in nanoseconds) has passed.
+   */
+  private Optional<ClassicHttpResponse> issueHttpRequest(RequestTemplate form,
+      Optional<byte[]> payload, Map<String, String> extraHeaders, Optional<Long> deadline) {
+    HttpUriRequestBase request = prepareHttpRequest(form, payload, extraHeaders,
+        Optional.of(getCurrentOpAgentId().getAgentName()));
+
+    if (this.dryRun) {
+      return Optional.empty();
+    }
+
+    // Only requests with safe methods are retried
+    int maxRetries = RetryPolicy.isSafe(form.getMethod()) ? retryPolicy.getMaxRetries() : 0;
+
+    for (int retry = 0; ; retry ++) {
+      if (hasExpired(deadline, 0)) {
+        failTimeout(form);
+      }
+
+      long backoff = retryPolicy.getBackoffMillis(retry);
+
+      try {
+        ClassicHttpResponse response = executePooledRequest(form, request,
+            getExpiry(form, deadline));
+        updateBreakerProperty(form.getBreaker());
+
+        if (retry >= maxRetries || !RetryPolicy.isRetryable(response.getCode())
+            || hasExpired(deadline, backoff)) {
+          return Optional.of(response);
+        }
+      } catch (CircuitBreaker.OpenException e) {
+        updateBreakerProperty(form.getBreaker());
+        failed(e.getMessage());
+      } catch (IOException e) {
+        updateBreakerProperty(form.getBreaker());
+
+        if (retry >= maxRetries || hasExpired(deadline, backoff)) {
+          if (e instanceof RequestTimeoutException || hasExpired(deadline, 0)) {
+            failTimeout(form);
+          }
+
+          failed(e.getMessage());
+        }
+      }
 
-    return issueRequest(request);
+      await_time(backoff);
+      // Requests that timed out were cancelled and must be reset before they are issued again
+      request.reset();
+    }
   }
 
-  private Optional<TDHttpResponse> executeRequestObjectPayload(String operationType, Form form,
-      DataSchema schema, Object[] tags, Object[] payload) {
-    if (schema.getDatatype() != DataSchema.OBJECT) {
-      failed("TD mismatch: illegal arguments, this affordance uses a data schema of type "
-          + schema.getDatatype());
+  /* Converts a relative deadline in milliseconds to an absolute time in nanoseconds */
+  private Optional<Long> toDeadline(int deadline) {
+    if (deadline <= 0) {
+      failed("The deadline must be a positive number.");
     }
 
-    TDHttpRequest request = new TDHttpRequest(form, operationType);
-    request = setObjectPayload(request, schema, tags, payload);
+    return Optional.of(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline));
+  }
 
-    return issueRequest(request);
+  /* Checks if a deadline has passed or will pass within a delay in milliseconds */
+  private boolean hasExpired(Optional<Long> deadline, long delayMillis) {
+    return deadline.isPresent()
+        && deadline.get() - System.nanoTime() <= TimeUnit.MILLISECONDS.toNanos(delayMillis);
   }
 
-  private Optional<TDHttpResponse> executeRequestArrayPayload(String operationType, Form form,
-      DataSchema schema, Object[] payload) {
-    if (schema.getDatatype() != DataSchema.ARRAY) {
-      failed("TD mismatch: illegal arguments, this affordance uses a data schema of type "
-          + schema.getDatatype());
+  /*
+   * The time at which an attempt of a request expires (in nanoseconds): the earliest of the
+   * deadline of the operation and the timeout of the affordance (or of the artifact), if any
+   */
+  private Optional<Long> getExpiry(RequestTemplate form, Optional<Long> deadline) {
+    long timeout = affordanceTimeouts.getOrDefault(form.getAffordanceName(), requestTimeout);
+    if (timeout <= 0) {
+      return deadline;
     }
 
-    TDHttpRequest request = new TDHttpRequest(form, operationType);
-    request = setArrayPayload(request, schema, payload);
+    long expiry = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    if (deadline.isPresent() && deadline.get() - expiry < 0) {
+      return deadline;
+    }
 
-    return issueRequest(request);
+    return Optional.of(expiry);
   }
 
-  private Optional<TDHttpResponse> issueRequest(TDHttpRequest request) {
-    Optional<SecurityScheme> scheme = td.getFirstSecuritySchemeByType(WoTSec.APIKeySecurityScheme);
+  private void failTimeout(RequestTemplate form) {
+    failed("The request timed out: " + form.getMethod() + " " + form.getTarget(), "timeout",
+        form.getAffordanceName());
+  }
 
-    if (scheme.isPresent() && apiKey.isPresent()) {
-      request.setAPIKey((APIKeySecurityScheme) scheme.get(), apiKey.get());
+  /*
+   * Builds a pooled request with the security and agent headers, and journals it. Requests that are
+   * not issued on behalf of an agent only carry the operator's WebID, if it is set.
+   */
+  private HttpUriRequestBase prepareHttpRequest(RequestTemplate form, Optional<byte[]> payload,
+      Map<String, String> extraHeaders, Optional<String> agentName) {
+    HttpUriRequestBase request = new HttpUriRequestBase(form.getMethod(), form.getTarget());
+    requestConfig.ifPresent(request::setConfig);
+    extraHeaders.forEach(request::setHeader);
+
+    Optional<APIKeySecurityScheme> scheme = affordances.getAPIKeyScheme();
+    if (scheme.isPresent() && apiKey.isPresent()
+        && scheme.get().getIn() == APIKeySecurityScheme.TokenLocation.HEADER
+        && scheme.get().getName().isPresent()) {
+      request.setHeader(scheme.get().getName().get(), apiKey.get());
     }
 
     // Set a header with the id of the operating agent
     if (agentWebId.isPresent()) {
-      request.addHeader("X-Agent-WebID", agentWebId.get());
-    } else {
-      request.addHeader("X-Agent-WebID", WEBID_PREFIX + getCurrentOpAgentId().getAgentName());
+      request.setHeader("X-Agent-WebID", agentWebId.get());
+    } else if (agentName.isPresent()) {
+      request.setHeader("X-Agent-WebID", webIdHeaders.computeIfAbsent(agentName.get(),
+          name -> WEBID_PREFIX + name));
     }
-    request.addHeader("X-Agent-LocalName", getCurrentOpAgentId().getAgentName());
+    agentName.ifPresent(name -> request.setHeader("X-Agent-LocalName", name));
 
-    if (this.dryRun) {
-      log(request.toString());
-      return Optional.empty();
+    if (payload.isPresent()) {
+      request.setEntity(new ByteArrayEntity(payload.get(), form.getContentType()));
     } else {
-      log(request.toString());
+      request.setHeader(HttpHeaders.CONTENT_TYPE, form.getContentType().toString());
+    }
+
+    // Responses are expected in JSON by default
+    if (form.getCodec() != PayloadCodecs.json()) {
+      request.setHeader(HttpHeaders.ACCEPT, form.getCodec().getMediaType());
+    }
+
+    RequestJournal.record(getId().getName(), agentName.orElse(ANONYMOUS_AGENT), form.getMethod(),
+        form.getTarget(), payload.orElse(null), dryRun);
+
+    return request;
+  }
+
+  /*
+   * Executes a request on the shared I/O executor in async mode, or on the operation thread. The
+   * request is cancelled if it has not completed at its expiry time (in nanoseconds), if any.
+   */
+  private ClassicHttpResponse executePooledRequest(RequestTemplate form,
+      HttpUriRequestBase request, Optional<Long> expiry) throws IOException {
+    Optional<String> flightKey = getFlightKey(form, request);
+
+    if (flightKey.isPresent()) {
+      // The operation stops waiting at its expiry time, but the read may go on for other operations
+      FutureCmd<ClassicHttpResponse> cmd = new FutureCmd<>(joinRead(flightKey.get(), form,
+          request), expiry);
+      if (async) {
+        await(cmd);
+      } else {
+        cmd.exec();
+      }
+
+      return cmd.getResult();
+    }
+
+    Optional<Long> hedgeDelay = getHedgeDelay(form);
+
+    if (hedgeDelay.isPresent()) {
+      // The duplicate request is a copy, as requests cannot be executed concurrently
+      CompletableFuture<ClassicHttpResponse> response = HttpClientPool.executeHedged(
+          new HedgedAttempts(form, request, expiry), hedgeDelay.get(), TimeUnit.MICROSECONDS);
+
+      FutureCmd<ClassicHttpResponse> cmd = new FutureCmd<>(response);
+      if (async) {
+        await(cmd);
+      } else {
+        cmd.exec();
+      }
+
+      return cmd.getResult();
+    }
+
+    if (!async) {
+      CircuitBreaker breaker = form.getBreaker();
+      if (!breaker.tryAcquire()) {
+        throw breaker.openException();
+      }
+
+      long start = System.nanoTime();
+
       try {
-        return Optional.of(request.execute());
+        ClassicHttpResponse response = expiry.isPresent()
+            ? HttpClientPool.execute(request, remainingNanos(expiry.get()), TimeUnit.NANOSECONDS)
+            : HttpClientPool.execute(request);
+        form.getMetrics().recordResponse(start, request, response);
+        breaker.recordResponse(response.getCode());
+        return response;
       } catch (IOException e) {
-        failed(e.getMessage());
+        form.getMetrics().recordFailure(start, request);
+        breaker.recordFailure();
+        throw e;
       }
     }
 
-    return Optional.empty();
+    FutureCmd<ClassicHttpResponse> cmd = new FutureCmd<>(executeAsync(form, request, expiry));
+    await(cmd);
+
+    return cmd.getResult();
+  }
+
+  /*
+   * Executes a request on the shared I/O executor, and records its metrics and outcome once it
+   * completes. The request fails fast if the circuit breaker of its host is open, and is cancelled
+   * if it has not completed at its expiry time (in nanoseconds), if any. Requests abandoned by their
+   * caller (e.g., the slower attempt of a hedged read) are not recorded as failures.
+   */
+  private CompletableFuture<ClassicHttpResponse> executeAsync(RequestTemplate form,
+      HttpUriRequestBase request, Optional<Long> expiry) {
+    CircuitBreaker breaker = form.getBreaker();
+
+    if (!breaker.tryAcquire()) {
+      CompletableFuture<ClassicHttpResponse> failure = new CompletableFuture<>();
+      failure.completeExceptionally(breaker.openException());
+      return failure;
+    }
+
+    long start = System.nanoTime();
+
+    CompletableFuture<ClassicHttpResponse> result = expiry.isPresent()
+        ? HttpClientPool.executeAsync(request, remainingNanos(expiry.get()), TimeUnit.NANOSECONDS)
+        : HttpClientPool.executeAsync(request);
+
+    return result.whenComplete((response, error) -> {
+      if (response != null) {
+        form.getMetrics().recordResponse(start, request, response);
+        breaker.recordResponse(response.getCode());
+      } else if (!request.isCancelled() || error instanceof RequestTimeoutException) {
+        form.getMetrics().recordFailure(start, request);
+        breaker.recordFailure();
+      }
+    });
+  }
+
+  /* Executes a request on the shared I/O executor, or joins an identical read in flight */
+  private CompletableFuture<ClassicHttpResponse> executeRead(RequestTemplate form,
+      HttpUriRequestBase request, Optional<Long> expiry) {
+    Optional<String> flightKey = getFlightKey(form, request);
+
+    return flightKey.isPresent() ? joinRead(flightKey.get(), form, request)
+        : executeAsync(form, request, expiry);
+  }
+
+  /*
+   * Joins an identical read in flight (e.g., of another agent or artifact), or issues a copy of the
+   * request. The read is bounded by the timeout of the property rather than by the deadline of an
+   * operation, and it is cancelled once all operations that joined it stopped waiting.
+   */
+  private CompletableFuture<ClassicHttpResponse> joinRead(String flightKey, RequestTemplate form,
+      HttpUriRequestBase request) {
+    return readFlights.join(flightKey, () -> {
+      HttpUriRequestBase read = copyRequest(form, request);
+      Optional<Long> expiry = getExpiry(form, Optional.empty());
+      Optional<Long> hedgeDelay = getHedgeDelay(form);
+
+      if (hedgeDelay.isPresent()) {
+        HedgedAttempts attempts = new HedgedAttempts(form, read, expiry);
+        return cancellable(HttpClientPool.executeHedged(attempts, hedgeDelay.get(),
+            TimeUnit.MICROSECONDS), attempts);
+      }
+
+      return cancellable(executeAsync(form, read, expiry), read);
+    }, form.getMetrics()::recordCoalesced);
+  }
+
+  /*
+   * The key of a property read that can be coalesced with identical reads in flight: reads on behalf
+   * of different agents (which Things may authorize differently), or with different credentials or
+   * conditions (i.e., cached ETags) are not identical
+   */
+  private Optional<String> getFlightKey(RequestTemplate form, HttpUriRequestBase request) {
+    if (!coalesceReads || !TD.readProperty.equals(form.getOperationType())
+        || !RetryPolicy.isSafe(form.getMethod())) {
+      return Optional.empty();
+    }
+
+    StringBuilder key = new StringBuilder(form.getMethod()).append(' ').append(form.getTarget())
+        .append('\u0000').append(apiKey.orElse(""));
+
+    // The shared read is issued with the headers of the first request
+    for (String name : new String[] { "X-Agent-WebID", "X-Agent-LocalName",
+        HttpHeaders.IF_NONE_MATCH }) {
+      Header header = request.getFirstHeader(name);
+      key.append('\u0000').append(header == null ? "" : header.getValue());
+    }
+
+    return Optional.of(key.toString());
+  }
+
+  /* Returns a future that cancels a request when the future is cancelled */
+  private static CompletableFuture<ClassicHttpResponse> cancellable(
+      CompletableFuture<ClassicHttpResponse> response, Cancellable request) {
+    CompletableFuture<ClassicHttpResponse> result = new CompletableFuture<>();
+
+    response.whenComplete((value, error) -> {
+      if (error != null) {
+        result.completeExceptionally(error);
+      } else {
+        result.complete(value);
+      }
+    });
+    result.whenComplete((value, error) -> {
+      if (result.isCancelled()) {
+        request.cancel();
+      }
+    });
+
+    return result;
+  }
+
+  /* Copies a request, e.g. to issue it again while the original may still be in progress */
+  private static HttpUriRequestBase copyRequest(RequestTemplate form,
+      HttpUriRequestBase request) {
+    HttpUriRequestBase copy = new HttpUriRequestBase(request.getMethod(), form.getTarget());
+    copy.setHeaders(request.getHeaders());
+    copy.setEntity(request.getEntity());
+    copy.setConfig(request.getConfig());
+
+    return copy;
+  }
+
+  private static long remainingNanos(long expiry) {
+    return Math.max(0, expiry - System.nanoTime());
+  }
+
+  /* The delay after which a property read is hedged, if reads are hedged and enough is known */
+  private Optional<Long> getHedgeDelay(RequestTemplate form) {
+    if (!hedgePercentile.isPresent() || !TD.readProperty.equals(form.getOperationType())
+        || !RetryPolicy.isSafe(form.getMethod())) {
+      return Optional.empty();
+    }
+
+    LatencyHistogram latencies = form.getMetrics().getLatencies();
+    if (latencies.getCount() < HEDGE_MIN_SAMPLES) {
+      return Optional.empty();
+    }
+
+    return Optional.of(Math.max(TimeUnit.MILLISECONDS.toMicros(hedgeMinDelay),
+        latencies.getQuantileMicros(hedgePercentile.get())));
+  }
+
+  /* Publishes the state of a circuit breaker if it changed since it was last published */
+  private void updateBreakerProperty(CircuitBreaker breaker) {
+    String state = breaker.getState().name().toLowerCase();
+    String previous = breakerStates.put(breaker.getHost(), state);
+
+    if (previous == null) {
+      defineObsProperty("circuitBreaker", breaker.getHost(), state);
+    } else if (!previous.equals(state)) {
+      getObsPropertyByTemplate("circuitBreaker", breaker.getHost(), previous)
+          .updateValues(breaker.getHost(), state);
+    }
+  }
+
+  /*
+   * Issues the attempts of a hedged request: the request itself, then copies of the request.
+   * Cancelling the attempts cancels all attempts in progress.
+   */
+  private class HedgedAttempts implements Supplier<CompletableFuture<ClassicHttpResponse>>,
+      Cancellable {
+    private final RequestTemplate form;
+    private final HttpUriRequestBase request;
+    private final Optional<Long> expiry;
+    private final List<HttpUriRequestBase> copies = new ArrayList<HttpUriRequestBase>();
+    private boolean issued;
+    private boolean cancelled;
+
+    HedgedAttempts(RequestTemplate form, HttpUriRequestBase request, Optional<Long> expiry) {
+      this.form = form;
+      this.request = request;
+      this.expiry = expiry;
+    }
+
+    /* The slower attempt is cancelled by HttpClientPool once the other attempt has succeeded */
+    @Override
+    public synchronized CompletableFuture<ClassicHttpResponse> get() {
+      if (!issued) {
+        issued = true;
+        return cancellable(executeAsync(form, request, expiry), request);
+      }
+
+      HttpUriRequestBase copy = copyRequest(form, request);
+      if (cancelled) {
+        copy.cancel();
+      }
+
+      copies.add(copy);
+      return cancellable(executeAsync(form, copy, expiry), copy);
+    }
+
+    @Override
+    public synchronized boolean cancel() {
+      cancelled = true;
+      request.cancel();
+      copies.forEach(HttpUriRequestBase::cancel);
+
+      return true;
+    }
+  }
+
+  /**
+   * Sets the TD used by this artifact and rebuilds the lookup table of its affordances. Subclasses
+   * that refresh the TD (e.g., upon notifications) should use this method.
+   *
+   * @param td The W3C WoT Thing Description of the Thing.
+   */
+  protected void setThingDescription(ThingDescription td) {
+    this.td = td;
+    this.affordances = new AffordanceTable(td);
+    invalidateReadCache();
+  }
+
+  /**
+   * Retrieves and parses a TD using the TD cache and the HTTP connection pool shared by all
+   * hypermedia artifacts.
+   *
+   * @param url A URL that dereferences to a W3C WoT Thing Description.
+   * @return The parsed TD.
+   * @throws IOException If the TD could not be retrieved.
+   */
+  protected static ThingDescription readThingDescription(String url) throws IOException {
+    return ThingDescriptionCache.getInstance().get(url);
   }
 }
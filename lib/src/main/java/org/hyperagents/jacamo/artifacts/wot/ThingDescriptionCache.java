@@ -0,0 +1,236 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.hyperagents.jacamo.artifacts.http.HttpClientPool;
+import org.hyperagents.jacamo.artifacts.http.RequestMetrics;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.ThingDescription.TDFormat;
+import ch.unisg.ics.interactions.wot.td.io.TDGraphReader;
+
+/**
+ * A JVM-wide cache of parsed W3C WoT Thing Descriptions (TDs) keyed by URL. The size of the cache is
+ * bounded (see {@value #MAX_ENTRIES_PROPERTY}), and the least recently used entries are evicted
+ * first.
+ *
+ * Cached TDs are fresh for the duration given by the {@code Cache-Control: max-age} directive of the
+ * response, or by default for {@value #DEFAULT_TTL_PROPERTY} milliseconds. Stale entries are
+ * revalidated with conditional requests (i.e., using the {@code ETag} and {@code Last-Modified}
+ * validators), such that unchanged TDs are neither transferred nor parsed again. Entries can be
+ * invalidated explicitly, e.g. when a WebSub notification is received for a TD.
+ *
+ */
+public final class ThingDescriptionCache {
+  public static final String MAX_ENTRIES_PROPERTY = "jacamo.hypermedia.td.cacheSize";
+  public static final String DEFAULT_TTL_PROPERTY = "jacamo.hypermedia.td.cacheTtl";
+
+  public static final int DEFAULT_MAX_ENTRIES = 1024;
+  public static final long DEFAULT_TTL = 5000;
+
+  private static final ThingDescriptionCache instance = new ThingDescriptionCache(
+      Integer.getInteger(MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES),
+      Long.getLong(DEFAULT_TTL_PROPERTY, DEFAULT_TTL));
+
+  private final Map<String, Entry> entries;
+  private final long defaultTtl;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong revalidations = new AtomicLong();
+
+  ThingDescriptionCache(int maxEntries, long defaultTtl) {
+    this.defaultTtl = defaultTtl;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Returns the cache shared by all hypermedia artifacts.
+   *
+   * @return The shared TD cache.
+   */
+  public static ThingDescriptionCache getInstance() {
+    return instance;
+  }
+
+  /**
+   * Returns the TD dereferenced by a URL. The TD is retrieved and parsed only if it is not cached,
+   * or if the cached TD is stale and has changed on the server.
+   *
+   * @param url A URL that dereferences to a W3C WoT Thing Description.
+   * @return The parsed TD.
+   * @throws IOException If the TD could not be retrieved.
+   */
+  public ThingDescription get(String url) throws IOException {
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(url);
+    }
+
+    if (entry != null && entry.isFresh()) {
+      hits.incrementAndGet();
+      return entry.td;
+    }
+
+    HttpGet request = new HttpGet(url);
+    request.setHeader(HttpHeaders.ACCEPT, "text/turtle");
+
+    if (entry != null) {
+      entry.etag.ifPresent(etag -> request.setHeader(HttpHeaders.IF_NONE_MATCH, etag));
+      entry.lastModified.ifPresent(date -> request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, date));
+    }
+
+    long start = System.nanoTime();
+    ClassicHttpResponse response = HttpClientPool.execute(request);
+    // TD retrievals are recorded as a Thing-level operation of the TD's URL
+    RequestMetrics.forAffordance(url, "", "readThingDescription")
+        .recordResponse(start, request, response);
+
+    if (entry != null && response.getCode() == HttpStatus.SC_NOT_MODIFIED) {
+      hits.incrementAndGet();
+      revalidations.incrementAndGet();
+      cache(url, response, entry.td, Optional.of(entry));
+      return entry.td;
+    }
+
+    if (response.getCode() < 200 || response.getCode() >= 300 || response.getEntity() == null) {
+      throw new IOException("Could not retrieve TD from " + url + ", status code: "
+          + response.getCode());
+    }
+
+    misses.incrementAndGet();
+
+    try {
+      ThingDescription td = TDGraphReader.readFromString(TDFormat.RDF_TURTLE,
+          EntityUtils.toString(response.getEntity()));
+      cache(url, response, td, Optional.empty());
+      return td;
+    } catch (ParseException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Removes a TD from the cache, such that it is retrieved again the next time it is requested.
+   *
+   * @param url The URL of the TD.
+   */
+  public void invalidate(String url) {
+    synchronized (entries) {
+      entries.remove(url);
+    }
+  }
+
+  /** Removes all TDs from the cache. */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /** Number of requests served from the cache, including successful revalidations. */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /** Number of requests for which the TD had to be retrieved and parsed. */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /** Number of stale entries that were confirmed as unchanged by the server. */
+  public long getRevalidations() {
+    return revalidations.get();
+  }
+
+  private void cache(String url, ClassicHttpResponse response, ThingDescription td,
+      Optional<Entry> revalidated) {
+    Optional<Long> maxAge = Optional.empty();
+    boolean noStore = false;
+
+    Header cacheControl = response.getFirstHeader(HttpHeaders.CACHE_CONTROL);
+    if (cacheControl != null) {
+      for (String directive : cacheControl.getValue().split(",")) {
+        directive = directive.trim().toLowerCase();
+
+        if (directive.equals("no-store")) {
+          noStore = true;
+        } else if (directive.equals("no-cache")) {
+          maxAge = Optional.of(0L);
+        } else if (directive.startsWith("max-age=")) {
+          try {
+            maxAge = Optional.of(Long.parseLong(directive.substring(8).replace("\"", "")) * 1000);
+          } catch (NumberFormatException e) {
+            maxAge = Optional.of(0L);
+          }
+        }
+      }
+    }
+
+    synchronized (entries) {
+      if (noStore) {
+        entries.remove(url);
+      } else {
+        // A 304 response is not required to repeat the validators of the cached response
+        Optional<String> etag = headerValue(response, HttpHeaders.ETAG);
+        Optional<String> lastModified = headerValue(response, HttpHeaders.LAST_MODIFIED);
+
+        if (revalidated.isPresent()) {
+          etag = etag.isPresent() ? etag : revalidated.get().etag;
+          lastModified = lastModified.isPresent() ? lastModified : revalidated.get().lastModified;
+        }
+
+        entries.put(url, new Entry(td, System.currentTimeMillis() + maxAge.orElse(defaultTtl),
+            etag, lastModified));
+      }
+    }
+  }
+
+  private Optional<String> headerValue(ClassicHttpResponse response, String name) {
+    Header header = response.getFirstHeader(name);
+    return header == null ? Optional.empty() : Optional.of(header.getValue());
+  }
+
+  private static class Entry {
+    final ThingDescription td;
+    final long expiresAt;
+    final Optional<String> etag;
+    final Optional<String> lastModified;
+
+    Entry(ThingDescription td, long expiresAt, Optional<String> etag,
+        Optional<String> lastModified) {
+      this.td = td;
+      this.expiresAt = expiresAt;
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+
+    boolean isFresh() {
+      return System.currentTimeMillis() < expiresAt;
+    }
+  }
+}
@@ -7,13 +7,14 @@ import java.io.IOException;
 
 import cartago.LINK;
 
+import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.core5.http.ClassicHttpResponse;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.hyperagents.jacamo.artifacts.http.HttpClientPool;
 import org.hyperagents.jacamo.artifacts.yggdrasil.Notification;
-import org.apache.hc.client5.http.fluent.Request;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,6 +41,8 @@ public class WebSubThingArtifact extends ThingArtifact {
     @LINK
     public void onNotification(Notification notification) {
         log("The state of this ThingArtifact has changed: " + notification.getMessage());
+        ThingDescriptionCache.getInstance().invalidate(notification.getEntityIRI());
+        invalidateReadCache();
 
         String obsProp = notification.getMessage();
         String functor = obsProp.substring(0, obsProp.indexOf("("));
@@ -59,7 +62,7 @@ public class WebSubThingArtifact extends ThingArtifact {
      */
     private void exposeWebSubIRIs(String url) {
         try {
-            ClassicHttpResponse classicResponse = (ClassicHttpResponse) Request.get(url).execute().returnResponse();
+            ClassicHttpResponse classicResponse = HttpClientPool.execute(new HttpGet(url));
             Header[] linkHeaders = classicResponse.getHeaders("Link");
             String contentType = classicResponse.getFirstHeader("content-type").getValue();
             HttpEntity entity = classicResponse.getEntity();
@@ -0,0 +1,79 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cartago.IBlockingCmd;
+
+/**
+ * A blocking command that waits until notifications are received, and then takes a batch of
+ * pending notifications from the queue. Used with CArtAgO's {@code await} such that the
+ * notification server is released (and does not use any CPU) while no notifications are pending.
+ *
+ * If the command has a batching window, it keeps collecting notifications for the duration of the
+ * window after the first notification was received, such that notifications received in bursts
+ * are delivered together.
+ */
+class NextNotificationsCmd implements IBlockingCmd {
+    private final NotificationQueue queue;
+    private final long batchWindowNanos;
+    private final int maxBatchSize;
+
+    private final List<Notification> batch = new ArrayList<Notification>();
+
+    /**
+     * @param queue            The queue of pending notifications.
+     * @param batchWindowNanos The batching window (in nanoseconds), or 0 to take only the
+     *                         notifications that are already pending.
+     * @param maxBatchSize     The maximum number of notifications in a batch.
+     */
+    NextNotificationsCmd(NotificationQueue queue, long batchWindowNanos,
+            int maxBatchSize) {
+        this.queue = queue;
+        this.batchWindowNanos = batchWindowNanos;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public void exec() {
+        try {
+            Notification first = queue.take();
+            if (first == null) {
+                return;
+            }
+
+            batch.add(first);
+            long deadline = System.nanoTime() + batchWindowNanos;
+
+            while (batch.size() < maxBatchSize) {
+                if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                    continue;
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+
+                Notification next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the notifications taken from the queue, in the order they were received. The batch
+     * is empty if the command was woken up without any notifications.
+     *
+     * @return The batch of notifications.
+     */
+    List<Notification> getBatch() {
+        return batch;
+    }
+}
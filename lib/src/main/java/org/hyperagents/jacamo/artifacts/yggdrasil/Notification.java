@@ -3,6 +3,7 @@ package org.hyperagents.jacamo.artifacts.yggdrasil;
 public class Notification {
     private String entityIRI;
     private String message;
+    private long receivedNanos;
 
     /**
      * Represents a notification with an entity IRI and a message.
@@ -10,6 +11,7 @@ public class Notification {
     public Notification(String entityIRI, String message) {
         this.entityIRI = entityIRI;
         this.message = message;
+        this.receivedNanos = System.nanoTime();
     }
 
     public String getEntityIRI() {
@@ -19,4 +21,11 @@ public class Notification {
     public String getMessage() {
         return message;
     }
+
+    /**
+     * Returns the value of {@link System#nanoTime()} when the notification was received.
+     */
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
 }
@@ -0,0 +1,60 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import org.hyperagents.jacamo.artifacts.http.LatencyHistogram;
+
+/**
+ * A delivery lane of a {@link NotificationServerArtifact}: a queue of pending notifications that
+ * is drained by its own delivery loop. The notifications of an artifact are always assigned to the
+ * same lane (by hashing the artifact's IRI), such that they are delivered in order, while the
+ * notifications of artifacts in different lanes are delivered in parallel.
+ */
+class NotificationLane {
+    private final int index;
+    private final NotificationQueue queue;
+    private final LatencyHistogram lags = new LatencyHistogram();
+
+    /**
+     * @param index      The index of the lane.
+     * @param capacity   The maximum number of pending notifications in the lane.
+     * @param coalescing True if a notification should replace the pending notification of the same
+     *                   artifact.
+     */
+    NotificationLane(int index, int capacity, boolean coalescing) {
+        this.index = index;
+        this.queue = new NotificationQueue(capacity, coalescing);
+    }
+
+    /**
+     * Returns the lane of an artifact.
+     *
+     * @param lanes       The lanes.
+     * @param artifactIRI The IRI of the artifact.
+     * @return The lane that delivers the notifications of the artifact.
+     */
+    static NotificationLane forArtifact(NotificationLane[] lanes, String artifactIRI) {
+        return lanes[Math.floorMod(artifactIRI.hashCode(), lanes.length)];
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    NotificationQueue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Records the delivery of a notification, i.e. the time between the reception of the
+     * notification and its delivery to the artifact.
+     *
+     * @param notification The notification that is delivered.
+     */
+    void recordDelivery(Notification notification) {
+        lags.record(System.nanoTime() - notification.getReceivedNanos());
+    }
+
+    /** The delivery lags of the notifications delivered so far. */
+    LatencyHistogram getLags() {
+        return lags;
+    }
+}
@@ -0,0 +1,228 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded queue of the notifications received by a {@link NotificationServerArtifact} that are
+ * pending delivery. Notifications that do not fit in the queue are rejected, such that the sender
+ * (i.e., a WebSub hub) can retry them later.
+ *
+ * In coalescing mode, a notification replaces the pending notification of the same entity (if
+ * any), such that only the latest state of each entity is delivered. The replacement keeps the
+ * position of the pending notification in the queue, and it does not take up capacity.
+ */
+class NotificationQueue {
+    private final int capacity;
+    private final boolean coalescing;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Deque<Entry> entries = new ArrayDeque<Entry>();
+    /* The pending entries by entity IRI (only in coalescing mode) */
+    private final Map<String, Entry> pending = new HashMap<String, Entry>();
+
+    private boolean wakeUp;
+
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param capacity   The maximum number of pending notifications.
+     * @param coalescing True if a notification should replace the pending notification of the same
+     *                   entity.
+     */
+    NotificationQueue(int capacity, boolean coalescing) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be a positive number.");
+        }
+
+        this.capacity = capacity;
+        this.coalescing = coalescing;
+    }
+
+    /**
+     * Adds a notification to the queue, or coalesces it with the pending notification of the same
+     * entity.
+     *
+     * @param notification The notification.
+     * @return False if the notification was rejected because the queue is full.
+     */
+    boolean offer(Notification notification) {
+        lock.lock();
+        try {
+            if (coalescing) {
+                Entry entry = pending.get(notification.getEntityIRI());
+
+                if (entry != null) {
+                    entry.notification = notification;
+                    coalesced.increment();
+                    return true;
+                }
+            }
+
+            if (entries.size() >= capacity) {
+                rejected.increment();
+                return false;
+            }
+
+            Entry entry = new Entry(notification);
+            entries.addLast(entry);
+            if (coalescing) {
+                pending.put(notification.getEntityIRI(), entry);
+            }
+
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next notification, waiting until a notification is received or the queue is woken
+     * up (see {@link #wakeUp()}).
+     *
+     * @return The next notification, or null if the queue was woken up.
+     * @throws InterruptedException If the current thread was interrupted while waiting.
+     */
+    Notification take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty() && !wakeUp) {
+                notEmpty.await();
+            }
+
+            wakeUp = false;
+            return entries.isEmpty() ? null : remove();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next notification, waiting up to a timeout for a notification to be received.
+     *
+     * @param timeout The timeout.
+     * @param unit    The unit of the timeout.
+     * @return The next notification, or null if the timeout has passed.
+     * @throws InterruptedException If the current thread was interrupted while waiting.
+     */
+    Notification poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) {
+                if (remaining <= 0) {
+                    return null;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+
+            return remove();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the pending notifications without waiting.
+     *
+     * @param batch       The collection to which the notifications are added.
+     * @param maxElements The maximum number of notifications to take.
+     * @return The number of notifications taken.
+     */
+    int drainTo(Collection<? super Notification> batch, int maxElements) {
+        lock.lock();
+        try {
+            int count = 0;
+            while (count < maxElements && !entries.isEmpty()) {
+                batch.add(remove());
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Wakes up a thread waiting in {@link #take()}, e.g. when the server is stopped. */
+    void wakeUp() {
+        lock.lock();
+        try {
+            wakeUp = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how long the oldest pending notification has been waiting for delivery.
+     *
+     * @return The waiting time (in nanoseconds), or 0 if no notifications are pending.
+     */
+    long getOldestWaitNanos() {
+        lock.lock();
+        try {
+            Entry oldest = entries.peekFirst();
+            return oldest == null ? 0 : System.nanoTime() - oldest.enqueuedNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Number of notifications pending delivery. */
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    boolean isCoalescing() {
+        return coalescing;
+    }
+
+    /** Number of notifications that replaced a pending notification of the same entity. */
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /** Number of notifications rejected because the queue was full. */
+    long getRejected() {
+        return rejected.sum();
+    }
+
+    private Notification remove() {
+        Entry entry = entries.removeFirst();
+        if (coalescing) {
+            pending.remove(entry.notification.getEntityIRI());
+        }
+        return entry.notification;
+    }
+
+    private static final class Entry {
+        private final long enqueuedNanos = System.nanoTime();
+        private Notification notification;
+
+        Entry(Notification notification) {
+            this.notification = notification;
+        }
+    }
+}
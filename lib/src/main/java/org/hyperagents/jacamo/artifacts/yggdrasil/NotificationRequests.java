@@ -0,0 +1,146 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Optional;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+
+/**
+ * Parses the notifications sent by WebSub hubs, i.e. the IRI of the notified artifact from the
+ * {@code Link} headers and the payload from the request body.
+ */
+final class NotificationRequests {
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private NotificationRequests() {
+    }
+
+    /**
+     * Finds the target of the link with relation type {@code self} in the {@code Link} headers of a
+     * request (see RFC 8288). A header can contain several comma-separated links, and a link can
+     * have several relation types.
+     *
+     * @param linkHeaders The values of the {@code Link} headers.
+     * @return The target of the {@code self} link, if any.
+     */
+    static Optional<String> findSelfLink(Enumeration<String> linkHeaders) {
+        while (linkHeaders.hasMoreElements()) {
+            String value = linkHeaders.nextElement();
+            int start = value.indexOf('<');
+
+            while (start >= 0) {
+                int end = value.indexOf('>', start);
+                if (end < 0) {
+                    break;
+                }
+
+                // The parameters of the link extend up to the next link (if any)
+                int next = value.indexOf('<', end);
+                String params = value.substring(end + 1, next < 0 ? value.length() : next);
+
+                if (hasSelfRelation(params)) {
+                    return Optional.of(value.substring(start + 1, end).trim());
+                }
+
+                start = next;
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private static boolean hasSelfRelation(String params) {
+        for (String param : params.split(";")) {
+            int eq = param.indexOf('=');
+            if (eq < 0 || !param.substring(0, eq).trim().equalsIgnoreCase("rel")) {
+                continue;
+            }
+
+            // The value may be quoted, and it is followed by a comma if another link follows
+            String rel = param.substring(eq + 1).replace('"', ' ').replace(',', ' ').trim();
+
+            for (String type : rel.split("\\s+")) {
+                if (type.equalsIgnoreCase("self")) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Reads the body of a request into buffers taken from a pool, and decodes it once with the
+     * charset of the request (UTF-8 by default).
+     *
+     * @param request     The request.
+     * @param bufferPool  The pool of buffers used to read the body.
+     * @param maxBodySize The maximum size of the body (in bytes).
+     * @return The body, or an empty optional if the body exceeds the maximum size.
+     * @throws IOException If the body could not be read.
+     */
+    static Optional<String> readBody(HttpServletRequest request, ByteBufferPool bufferPool,
+            int maxBodySize) throws IOException {
+        int contentLength = request.getContentLength();
+        if (contentLength > maxBodySize) {
+            return Optional.empty();
+        }
+
+        ByteBuffer buffer = bufferPool.acquire(contentLength >= 0 ? Math.max(1, contentLength)
+                : INITIAL_BUFFER_SIZE, false);
+
+        try {
+            InputStream in = request.getInputStream();
+            int length = 0;
+
+            while (contentLength < 0 || length < contentLength) {
+                if (length == buffer.capacity()) {
+                    if (length > maxBodySize) {
+                        break;
+                    }
+
+                    // Grow the buffer up to one byte more than the maximum size
+                    ByteBuffer larger = bufferPool.acquire(Math.min(maxBodySize + 1,
+                            2 * buffer.capacity()), false);
+                    System.arraycopy(buffer.array(), buffer.arrayOffset(), larger.array(),
+                            larger.arrayOffset(), length);
+                    bufferPool.release(buffer);
+                    buffer = larger;
+                }
+
+                int read = in.read(buffer.array(), buffer.arrayOffset() + length,
+                        buffer.capacity() - length);
+                if (read < 0) {
+                    break;
+                }
+                length += read;
+            }
+
+            if (length > maxBodySize) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new String(buffer.array(), buffer.arrayOffset(), length,
+                    getCharset(request)));
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private static Charset getCharset(HttpServletRequest request) {
+        String encoding = request.getCharacterEncoding();
+
+        try {
+            return encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
@@ -1,29 +1,40 @@
 package org.hyperagents.jacamo.artifacts.yggdrasil;
 
 import java.io.IOException;
-import java.util.AbstractQueue;
-import java.util.Enumeration;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
 import org.apache.http.HttpStatus;
-import org.eclipse.jetty.client.HttpClient;
-import org.eclipse.jetty.client.api.ContentResponse;
-import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.thread.ExecutorThreadPool;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.hyperagents.jacamo.artifacts.http.MetricsServlet;
 
 import cartago.Artifact;
 import cartago.ArtifactId;
 import cartago.INTERNAL_OPERATION;
 import cartago.OPERATION;
+import cartago.OpFeedbackParam;
 
 /**
  * NotificationServerArtifact is an artifact that acts as a server for receiving
@@ -31,6 +42,37 @@ import cartago.OPERATION;
  * It is responsible for registering artifacts for WebSub
  * and delivering notifications to the registered artifacts.
  *
+ * Notifications are delivered as soon as they are received. For throughput-oriented setups,
+ * notifications can be delivered in batches instead: after a notification is received, the
+ * notifications received within a batching window (in milliseconds, see
+ * {@value #BATCH_WINDOW_PROPERTY}) are delivered together, up to a maximum batch size (see
+ * {@value #MAX_BATCH_SIZE_PROPERTY}).
+ *
+ * Pending notifications are held in a bounded queue (see {@value #CAPACITY_PROPERTY}). When the
+ * queue is full, notifications are rejected with a 503 response and a {@code Retry-After} header,
+ * such that hubs retry them later. With {@value #COALESCE_PROPERTY}, a notification replaces the
+ * pending notification of the same artifact (if any), such that only the latest state of each
+ * artifact is delivered.
+ *
+ * Notifications are delivered in parallel lanes (see {@value #LANES_PROPERTY}, by default one
+ * lane per available processor). The notifications of an artifact are always delivered by the
+ * same lane, and thus in order, while a slow artifact only delays the artifacts of its own lane.
+ * The capacity of the queue is split evenly across lanes.
+ *
+ * The connector and the thread pool of the server are configured via system properties: the
+ * numbers of acceptor and selector threads ({@value #ACCEPTORS_PROPERTY},
+ * {@value #SELECTORS_PROPERTY}), the idle timeout of connections ({@value #IDLE_TIMEOUT_PROPERTY},
+ * in milliseconds), the maximum size of notification bodies ({@value #MAX_BODY_SIZE_PROPERTY}, in
+ * bytes), and the size of the thread pool ({@value #MIN_THREADS_PROPERTY},
+ * {@value #MAX_THREADS_PROPERTY}). With {@value #VIRTUAL_THREADS_PROPERTY}, requests are handled
+ * on virtual threads if the JVM supports them (Java 21 or later).
+ *
+ * WebSub subscriptions and focus requests are sent through the shared
+ * {@link org.hyperagents.jacamo.artifacts.http.HttpClientPool} (via HTTP/2 if enabled there).
+ * Artifacts can be registered in bulk, in which case requests are sent concurrently, with at most
+ * {@value #MAX_REGISTRATIONS_IN_FLIGHT_PROPERTY} requests in flight, and time out after
+ * {@value #REGISTRATION_TIMEOUT_PROPERTY} milliseconds.
+ *
  * Contributors:
  * - Andrei Ciortea (author), Interactions-HSG, University of St. Gallen
  * - Valentin Berger, Interactions-HSG, University of St. Gallen
@@ -38,13 +80,59 @@ import cartago.OPERATION;
  */
 public class NotificationServerArtifact extends Artifact {
     private Map<String, ArtifactId> artifactRegistry;
-    private AbstractQueue<Notification> notifications;
+    private NotificationLane[] lanes;
+    private long batchWindowNanos;
+    private int maxBatchSize;
 
     private String callbackUri;
 
     private Server server;
+    private ByteBufferPool bufferPool;
     private boolean httpServerRunning;
 
+    private RegistrationClient registrationClient;
+
+    public static final String BATCH_WINDOW_PROPERTY =
+            "jacamo.hypermedia.notifications.batchWindow";
+    public static final String MAX_BATCH_SIZE_PROPERTY =
+            "jacamo.hypermedia.notifications.maxBatchSize";
+    public static final String CAPACITY_PROPERTY = "jacamo.hypermedia.notifications.capacity";
+    public static final String COALESCE_PROPERTY = "jacamo.hypermedia.notifications.coalesce";
+    public static final String RETRY_AFTER_PROPERTY = "jacamo.hypermedia.notifications.retryAfter";
+    public static final String LANES_PROPERTY = "jacamo.hypermedia.notifications.lanes";
+    public static final String ACCEPTORS_PROPERTY = "jacamo.hypermedia.notifications.acceptors";
+    public static final String SELECTORS_PROPERTY = "jacamo.hypermedia.notifications.selectors";
+    public static final String IDLE_TIMEOUT_PROPERTY =
+            "jacamo.hypermedia.notifications.idleTimeout";
+    public static final String MAX_BODY_SIZE_PROPERTY =
+            "jacamo.hypermedia.notifications.maxBodySize";
+    public static final String MIN_THREADS_PROPERTY = "jacamo.hypermedia.notifications.minThreads";
+    public static final String MAX_THREADS_PROPERTY = "jacamo.hypermedia.notifications.maxThreads";
+    public static final String VIRTUAL_THREADS_PROPERTY =
+            "jacamo.hypermedia.notifications.virtualThreads";
+    public static final String MAX_REGISTRATIONS_IN_FLIGHT_PROPERTY =
+            "jacamo.hypermedia.notifications.maxRegistrationsInFlight";
+    public static final String REGISTRATION_TIMEOUT_PROPERTY =
+            "jacamo.hypermedia.notifications.registrationTimeout";
+
+    public static final long DEFAULT_BATCH_WINDOW = 0;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_RETRY_AFTER = 1;
+    /* A negative number of acceptors or selectors lets Jetty choose based on the number of cores */
+    public static final int DEFAULT_ACCEPTORS = -1;
+    public static final int DEFAULT_SELECTORS = -1;
+    public static final int DEFAULT_IDLE_TIMEOUT = 30000;
+    public static final int DEFAULT_MAX_BODY_SIZE = 1024 * 1024;
+    public static final int DEFAULT_MIN_THREADS = 8;
+    public static final int DEFAULT_MAX_THREADS = 200;
+    public static final int DEFAULT_MAX_REGISTRATIONS_IN_FLIGHT = 64;
+    public static final long DEFAULT_REGISTRATION_TIMEOUT = 10000;
+
+    /**
+     * @deprecated Notifications are no longer polled, but delivered as soon as they are received.
+     */
+    @Deprecated
     public static final int NOTIFICATION_DELIVERY_DELAY = 100;
 
     void init(String host, Integer port) {
@@ -57,11 +145,81 @@ public class NotificationServerArtifact extends Artifact {
 
         callbackUri = callbackBuilder.append("/notifications/").toString();
 
-        server = new Server(port);
+        server = createServer(port);
         server.setHandler(new NotificationHandler());
 
         artifactRegistry = new Hashtable<String, ArtifactId>();
-        notifications = new ConcurrentLinkedQueue<Notification>();
+        int laneCount = Math.max(1, Integer.getInteger(LANES_PROPERTY,
+                Runtime.getRuntime().availableProcessors()));
+        int capacity = Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY);
+
+        lanes = new NotificationLane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new NotificationLane(i, Math.max(1, (capacity + laneCount - 1) / laneCount),
+                    Boolean.getBoolean(COALESCE_PROPERTY));
+        }
+
+        batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(BATCH_WINDOW_PROPERTY,
+                DEFAULT_BATCH_WINDOW));
+        maxBatchSize = Math.max(1, Integer.getInteger(MAX_BATCH_SIZE_PROPERTY,
+                DEFAULT_MAX_BATCH_SIZE));
+    }
+
+    /**
+     * Initializes the notification server with a batching window for the delivery of notifications.
+     *
+     * @param host        The host name used in the callback IRI.
+     * @param port        The port of the server.
+     * @param batchWindow The batching window (in milliseconds), or 0 to deliver notifications as
+     *                    soon as they are received.
+     */
+    void init(String host, Integer port, Integer batchWindow) {
+        init(host, port);
+        batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, batchWindow));
+    }
+
+    private Server createServer(Integer port) {
+        Server httpServer = new Server(createThreadPool());
+        bufferPool = new ArrayByteBufferPool();
+
+        ServerConnector connector = new ServerConnector(httpServer, null, null, bufferPool,
+                Integer.getInteger(ACCEPTORS_PROPERTY, DEFAULT_ACCEPTORS),
+                Integer.getInteger(SELECTORS_PROPERTY, DEFAULT_SELECTORS),
+                new HttpConnectionFactory());
+        connector.setIdleTimeout(Integer.getInteger(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT));
+        if (port != null) {
+            connector.setPort(port);
+        }
+
+        httpServer.addConnector(connector);
+        return httpServer;
+    }
+
+    private ThreadPool createThreadPool() {
+        if (Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+            Optional<ExecutorService> executor = newVirtualThreadExecutor();
+
+            if (executor.isPresent()) {
+                return new ExecutorThreadPool(executor.get());
+            }
+            log("Virtual threads are not supported by this JVM, using a thread pool instead.");
+        }
+
+        QueuedThreadPool threadPool = new QueuedThreadPool(
+                Integer.getInteger(MAX_THREADS_PROPERTY, DEFAULT_MAX_THREADS),
+                Integer.getInteger(MIN_THREADS_PROPERTY, DEFAULT_MIN_THREADS));
+        threadPool.setName("jacamo-hypermedia-notifications");
+        return threadPool;
+    }
+
+    /* Looked up via reflection, such that the library still runs on JVMs without virtual threads */
+    private static Optional<ExecutorService> newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return Optional.of((ExecutorService) factory.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
     }
 
     /**
@@ -74,8 +232,36 @@ public class NotificationServerArtifact extends Artifact {
      */
     @OPERATION
     void registerArtifactForWebSub(String artifactIRI, ArtifactId artifactId, String hubIRI) {
-        artifactRegistry.put(artifactIRI, artifactId);
-        sendSubscribeRequest(hubIRI, artifactIRI);
+        registerArtifactsForWebSub(new Object[] { artifactIRI }, new Object[] { artifactId },
+                hubIRI, new OpFeedbackParam<Object[]>());
+    }
+
+    /**
+     * Registers artifacts for WebSub and sends subscribe requests to the specified hub. The
+     * requests are sent concurrently, with at most {@value #MAX_REGISTRATIONS_IN_FLIGHT_PROPERTY}
+     * requests in flight.
+     *
+     * @param artifactIRIs The IRIs of the artifacts.
+     * @param artifactIds  The IDs of the artifacts.
+     * @param hubIRI       The IRI of the WebSub hub.
+     * @param results      A list of [ArtifactIRI, Status] pairs, where Status is the status code
+     *                     of the response of the hub, or the reason why the request failed.
+     */
+    @OPERATION
+    void registerArtifactsForWebSub(Object[] artifactIRIs, Object[] artifactIds, String hubIRI,
+            OpFeedbackParam<Object[]> results) {
+        checkSameLength(artifactIRIs, artifactIds);
+
+        RegistrationClient client = getRegistrationClient();
+        List<HttpUriRequestBase> requests = new ArrayList<HttpUriRequestBase>();
+
+        for (int i = 0; i < artifactIRIs.length; i++) {
+            String artifactIRI = (String) artifactIRIs[i];
+            artifactRegistry.put(artifactIRI, (ArtifactId) artifactIds[i]);
+            requests.add(client.newSubscribeRequest(hubIRI, artifactIRI, callbackUri));
+        }
+
+        results.set(reportRegistrations(artifactIRIs, sendRegistrations(requests)));
     }
 
     /**
@@ -89,14 +275,46 @@ public class NotificationServerArtifact extends Artifact {
     @OPERATION
     void registerArtifactForFocus(String workspaceIRI, String artifactIRI, ArtifactId artifactId,
             String artifactName) {
-        artifactRegistry.put(artifactIRI, artifactId);
-        sendFocusRequest(workspaceIRI, artifactName);
+        registerArtifactsForFocus(workspaceIRI, new Object[] { artifactIRI },
+                new Object[] { artifactId }, new Object[] { artifactName },
+                new OpFeedbackParam<Object[]>());
+    }
+
+    /**
+     * Registers artifacts for focus in the workspace and sends focus requests. The requests are
+     * sent concurrently, with at most {@value #MAX_REGISTRATIONS_IN_FLIGHT_PROPERTY} requests in
+     * flight.
+     *
+     * @param workspaceIRI  The IRI of the workspace.
+     * @param artifactIRIs  The IRIs of the artifacts.
+     * @param artifactIds   The IDs of the artifacts.
+     * @param artifactNames The names of the artifacts.
+     * @param results       A list of [ArtifactIRI, Status] pairs, where Status is the status code
+     *                      of the response of the workspace, or the reason why the request failed.
+     */
+    @OPERATION
+    void registerArtifactsForFocus(String workspaceIRI, Object[] artifactIRIs,
+            Object[] artifactIds, Object[] artifactNames, OpFeedbackParam<Object[]> results) {
+        checkSameLength(artifactIRIs, artifactIds, artifactNames);
+
+        RegistrationClient client = getRegistrationClient();
+        // The agent is only known while the operation runs, i.e. before the requests are sent
+        String agentWebId = "http://localhost:8080/agents/" + getCurrentOpAgentId().getAgentName();
+        List<HttpUriRequestBase> requests = new ArrayList<HttpUriRequestBase>();
+
+        for (int i = 0; i < artifactIRIs.length; i++) {
+            artifactRegistry.put((String) artifactIRIs[i], (ArtifactId) artifactIds[i]);
+            requests.add(client.newFocusRequest(workspaceIRI, (String) artifactNames[i],
+                    callbackUri, agentWebId));
+        }
+
+        results.set(reportRegistrations(artifactIRIs, sendRegistrations(requests)));
     }
 
     /**
      * Starts the notification server.
      * This method sets the httpServerRunning flag to true, executes the internal
-     * operation "deliverNotifications",
+     * operation "deliverNotifications" for each delivery lane,
      * and starts the server.
      * If an exception occurs, it will be printed to the standard error stream.
      */
@@ -105,7 +323,9 @@ public class NotificationServerArtifact extends Artifact {
         try {
             httpServerRunning = true;
 
-            execInternalOp("deliverNotifications");
+            for (NotificationLane lane : lanes) {
+                execInternalOp("deliverNotifications", lane.getIndex());
+            }
 
             server.start();
         } catch (Exception e) {
@@ -121,31 +341,94 @@ public class NotificationServerArtifact extends Artifact {
         try {
             server.stop();
             httpServerRunning = false;
+            for (NotificationLane lane : lanes) {
+                lane.getQueue().wakeUp();
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Delivers notifications to registered artifacts.
-     * This method runs in an internal operation and continuously checks for
-     * notifications in the queue.
-     * If a notification is found, it retrieves the corresponding artifact and
+     * Returns the statistics of the queue of notifications pending delivery.
+     *
+     * @param depth     The number of notifications pending delivery.
+     * @param coalesced The number of notifications that replaced a pending notification.
+     * @param rejected  The number of notifications rejected because the queue was full.
+     */
+    @OPERATION
+    void getNotificationQueueStats(OpFeedbackParam<Integer> depth, OpFeedbackParam<Long> coalesced,
+            OpFeedbackParam<Long> rejected) {
+        int totalDepth = 0;
+        long totalCoalesced = 0;
+        long totalRejected = 0;
+
+        for (NotificationLane lane : lanes) {
+            totalDepth += lane.getQueue().size();
+            totalCoalesced += lane.getQueue().getCoalesced();
+            totalRejected += lane.getQueue().getRejected();
+        }
+
+        depth.set(totalDepth);
+        coalesced.set(totalCoalesced);
+        rejected.set(totalRejected);
+    }
+
+    /**
+     * Returns the delivery lag of each lane, i.e. the time between the reception and the delivery
+     * of notifications.
+     *
+     * @param depths  The number of notifications pending delivery in each lane.
+     * @param lags    The 99th percentile of the delivery lag of each lane (in milliseconds).
+     * @param waiting How long the oldest pending notification of each lane has been waiting (in
+     *                milliseconds).
+     */
+    @OPERATION
+    void getNotificationLaneStats(OpFeedbackParam<Object[]> depths, OpFeedbackParam<Object[]> lags,
+            OpFeedbackParam<Object[]> waiting) {
+        Object[] laneDepths = new Object[lanes.length];
+        Object[] laneLags = new Object[lanes.length];
+        Object[] laneWaiting = new Object[lanes.length];
+
+        for (NotificationLane lane : lanes) {
+            laneDepths[lane.getIndex()] = lane.getQueue().size();
+            laneLags[lane.getIndex()] = lane.getLags().getQuantileMicros(0.99) / 1e3;
+            laneWaiting[lane.getIndex()] = lane.getQueue().getOldestWaitNanos() / 1e6;
+        }
+
+        depths.set(laneDepths);
+        lags.set(laneLags);
+        waiting.set(laneWaiting);
+    }
+
+    /**
+     * Delivers the notifications of a lane to registered artifacts.
+     * This method runs in an internal operation (one per lane) and waits for
+     * notifications to be received, without holding the artifact while the queue
+     * of the lane is empty.
+     * For each notification, it retrieves the corresponding artifact and
      * invokes the "onNotification" method on it.
      * If an exception occurs during the invocation, it is printed to the standard
      * error stream.
+     *
+     * @param laneIndex The index of the lane.
      */
     @INTERNAL_OPERATION
-    void deliverNotifications() {
+    void deliverNotifications(Integer laneIndex) {
+        NotificationLane lane = lanes[laneIndex];
+
         while (httpServerRunning) {
-            while (!notifications.isEmpty()) {
-                Notification n = notifications.poll();
+            NextNotificationsCmd next = new NextNotificationsCmd(lane.getQueue(), batchWindowNanos,
+                    maxBatchSize);
+            await(next);
 
+            for (Notification n : next.getBatch()) {
                 ArtifactId artifactId = artifactRegistry.get(n.getEntityIRI());
 
                 if (artifactId != null) {
                     try {
 
+                        lane.recordDelivery(n);
                         execLinkedOp(artifactId, "onNotification", n);
 
                     } catch (Exception e) {
@@ -153,55 +436,52 @@ public class NotificationServerArtifact extends Artifact {
                     }
                 }
             }
-
-            await_time(NOTIFICATION_DELIVERY_DELAY);
         }
     }
 
-    private void sendSubscribeRequest(String hubIRI, String artifactIRI) {
-        HttpClient client = new HttpClient();
-        try {
-            client.start();
-
-            ContentResponse response = client.POST(hubIRI)
-                    .content(new StringContentProvider("{"
-                            + "\"hub.mode\" : \"subscribe\","
-                            + "\"hub.topic\" : \"" + artifactIRI + "\","
-                            + "\"hub.callback\" : \"" + callbackUri + "\""
-                            + "}"), "application/json")
-                    .send();
-
-            if (response.getStatus() != HttpStatus.SC_OK) {
-                log("Request failed: " + response.getStatus());
-            }
+    private List<Object> sendRegistrations(List<HttpUriRequestBase> requests) {
+        RegistrationsCmd registrations = new RegistrationsCmd(getRegistrationClient(), requests);
+        await(registrations);
+        return registrations.getResults();
+    }
 
-            client.stop();
-        } catch (Exception e) {
-            e.printStackTrace();
+    private RegistrationClient getRegistrationClient() {
+        if (registrationClient == null) {
+            registrationClient = new RegistrationClient(Math.max(1, Integer.getInteger(
+                    MAX_REGISTRATIONS_IN_FLIGHT_PROPERTY, DEFAULT_MAX_REGISTRATIONS_IN_FLIGHT)),
+                    Long.getLong(REGISTRATION_TIMEOUT_PROPERTY, DEFAULT_REGISTRATION_TIMEOUT));
         }
+
+        return registrationClient;
     }
 
-    private void sendFocusRequest(String workspaceIRI, String artifactName) {
-        HttpClient client = new HttpClient();
-        try {
-            client.start();
-
-            ContentResponse response = client.POST(workspaceIRI + "/focus")
-                    .header("X-Agent-WebID",
-                            "http://localhost:8080/agents/" + this.getCurrentOpAgentId().getAgentName())
-                    .content(new StringContentProvider("{"
-                            + "\"artifactName\" : \"" + artifactName + "\","
-                            + "\"callbackIri\" : \"" + callbackUri + "\""
-                            + "}"), "application/json")
-                    .send();
-
-            if (response.getStatus() != HttpStatus.SC_OK) {
-                log("Request failed: " + response.getStatus());
+    private Object[] reportRegistrations(Object[] artifactIRIs, List<Object> results) {
+        Object[] report = new Object[results.size()];
+
+        for (int i = 0; i < report.length; i++) {
+            Object result = results.get(i);
+
+            if (result instanceof Integer) {
+                if ((Integer) result != HttpStatus.SC_OK) {
+                    log("Request failed: " + result);
+                }
+                report[i] = new Object[] { artifactIRIs[i], result };
+            } else {
+                Throwable failure = (Throwable) result;
+                log("Request failed: " + failure);
+                report[i] = new Object[] { artifactIRIs[i], String.valueOf(failure.getMessage()) };
             }
+        }
 
-            client.stop();
-        } catch (Exception e) {
-            e.printStackTrace();
+        return report;
+    }
+
+    private static void checkSameLength(Object[] artifactIRIs, Object[]... lists) {
+        for (Object[] list : lists) {
+            if (list.length != artifactIRIs.length) {
+                throw new IllegalArgumentException("Expected " + artifactIRIs.length
+                        + " elements per list, but got " + list.length);
+            }
         }
     }
 
@@ -211,17 +491,17 @@ public class NotificationServerArtifact extends Artifact {
         public void handle(String target, Request baseRequest, HttpServletRequest request,
                 HttpServletResponse response) throws IOException, ServletException {
 
-            String artifactIRI = null;
-            Enumeration<String> linkHeadersEnum = baseRequest.getHeaders("Link");
-
-            while (linkHeadersEnum.hasMoreElements()) {
-                String value = linkHeadersEnum.nextElement();
-
-                if (value.endsWith("rel=\"self\"")) {
-                    artifactIRI = value.substring(1, value.indexOf('>'));
-                }
+            // Expose the request metrics of hypermedia artifacts to local monitoring systems
+            if ("/metrics".equals(target) && "GET".equals(request.getMethod())) {
+                MetricsServlet.writeMetrics(response);
+                writeQueueMetrics(response.getWriter());
+                baseRequest.setHandled(true);
+                return;
             }
 
+            String artifactIRI = NotificationRequests.findSelfLink(baseRequest.getHeaders("Link"))
+                    .orElse(null);
+
             if (artifactIRI == null) {
                 response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                 response.setContentType("text/plain");
@@ -229,11 +509,25 @@ public class NotificationServerArtifact extends Artifact {
                         .println("Link headers are missing! See the W3C WebSub Recommendation for details.");
             } else {
                 if (artifactRegistry.containsKey(artifactIRI)) {
-                    String payload = request.getReader().lines().collect(Collectors.joining(System.lineSeparator()));
+                    Optional<String> payload = NotificationRequests.readBody(request, bufferPool,
+                            Integer.getInteger(MAX_BODY_SIZE_PROPERTY, DEFAULT_MAX_BODY_SIZE));
 
-                    notifications.add(new Notification(artifactIRI, payload));
+                    if (!payload.isPresent()) {
+                        response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                        baseRequest.setHandled(true);
+                        return;
+                    }
 
-                    response.setStatus(HttpServletResponse.SC_OK);
+                    NotificationLane lane = NotificationLane.forArtifact(lanes, artifactIRI);
+
+                    if (lane.getQueue().offer(new Notification(artifactIRI, payload.get()))) {
+                        response.setStatus(HttpServletResponse.SC_OK);
+                    } else {
+                        // The queue is full, the hub should retry the notification later
+                        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                        response.setHeader("Retry-After", Integer.toString(
+                                Integer.getInteger(RETRY_AFTER_PROPERTY, DEFAULT_RETRY_AFTER)));
+                    }
                 } else {
                     response.setStatus(HttpServletResponse.SC_NOT_FOUND);
                 }
@@ -241,6 +535,60 @@ public class NotificationServerArtifact extends Artifact {
 
             baseRequest.setHandled(true);
         }
+
+        private void writeQueueMetrics(PrintWriter out) {
+            out.append("# HELP jacamo_hypermedia_notification_queue_depth Notifications pending "
+                    + "delivery.\n");
+            out.append("# TYPE jacamo_hypermedia_notification_queue_depth gauge\n");
+            for (NotificationLane lane : lanes) {
+                writeLaneSample(out, "jacamo_hypermedia_notification_queue_depth", lane, "",
+                        lane.getQueue().size());
+            }
+
+            out.append("# HELP jacamo_hypermedia_notification_wait_seconds How long the oldest "
+                    + "pending notification has been waiting for delivery.\n");
+            out.append("# TYPE jacamo_hypermedia_notification_wait_seconds gauge\n");
+            for (NotificationLane lane : lanes) {
+                writeLaneSample(out, "jacamo_hypermedia_notification_wait_seconds", lane, "",
+                        lane.getQueue().getOldestWaitNanos() / 1e9);
+            }
+
+            out.append("# HELP jacamo_hypermedia_notification_lag_seconds Time between the "
+                    + "reception and the delivery of notifications.\n");
+            out.append("# TYPE jacamo_hypermedia_notification_lag_seconds summary\n");
+            for (NotificationLane lane : lanes) {
+                for (double quantile : new double[] { 0.5, 0.99 }) {
+                    writeLaneSample(out, "jacamo_hypermedia_notification_lag_seconds", lane,
+                            ",quantile=\"" + quantile + "\"",
+                            lane.getLags().getQuantileMicros(quantile) / 1e6);
+                }
+                writeLaneSample(out, "jacamo_hypermedia_notification_lag_seconds_count", lane, "",
+                        lane.getLags().getCount());
+            }
+
+            out.append("# HELP jacamo_hypermedia_notifications_coalesced_total Notifications that "
+                    + "replaced a pending notification of the same artifact.\n");
+            out.append("# TYPE jacamo_hypermedia_notifications_coalesced_total counter\n");
+            for (NotificationLane lane : lanes) {
+                writeLaneSample(out, "jacamo_hypermedia_notifications_coalesced_total", lane, "",
+                        lane.getQueue().getCoalesced());
+            }
+
+            out.append("# HELP jacamo_hypermedia_notifications_rejected_total Notifications "
+                    + "rejected because the queue was full.\n");
+            out.append("# TYPE jacamo_hypermedia_notifications_rejected_total counter\n");
+            for (NotificationLane lane : lanes) {
+                writeLaneSample(out, "jacamo_hypermedia_notifications_rejected_total", lane, "",
+                        lane.getQueue().getRejected());
+            }
+        }
+
+        private void writeLaneSample(PrintWriter out, String name, NotificationLane lane,
+                String labels, Object value) {
+            out.append(name).append("{lane=\"").append(Integer.toString(lane.getIndex()))
+                    .append('"').append(labels).append("} ").append(String.valueOf(value))
+                    .append('\n');
+        }
     }
 
 }
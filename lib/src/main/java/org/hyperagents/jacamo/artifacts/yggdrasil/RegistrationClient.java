@@ -0,0 +1,105 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.hyperagents.jacamo.artifacts.http.HttpClientPool;
+
+/**
+ * A client used by a {@link NotificationServerArtifact} to send WebSub subscriptions and focus
+ * requests. Requests are sent asynchronously through the shared {@link HttpClientPool} (and thus
+ * via HTTP/2 to origins that support it), and the number of requests in flight is bounded, such
+ * that registering many artifacts does not flood hubs or exhaust connections.
+ */
+class RegistrationClient {
+    private final Semaphore inFlight;
+    private final long timeoutMillis;
+
+    /**
+     * @param maxInFlight   The maximum number of requests in flight.
+     * @param timeoutMillis The timeout of requests (in milliseconds).
+     */
+    RegistrationClient(int maxInFlight, long timeoutMillis) {
+        this.inFlight = new Semaphore(maxInFlight);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Creates a WebSub subscribe request.
+     *
+     * @param hubIRI      The IRI of the WebSub hub.
+     * @param topicIRI    The IRI of the topic, i.e. of the artifact.
+     * @param callbackIRI The IRI notifications are sent to.
+     * @return The request, which can be sent via {@link #send(HttpUriRequestBase)}.
+     */
+    HttpUriRequestBase newSubscribeRequest(String hubIRI, String topicIRI, String callbackIRI) {
+        return newJsonPost(hubIRI, "{"
+                + "\"hub.mode\" : \"subscribe\","
+                + "\"hub.topic\" : \"" + topicIRI + "\","
+                + "\"hub.callback\" : \"" + callbackIRI + "\""
+                + "}");
+    }
+
+    /**
+     * Creates a request to focus on an artifact of a workspace.
+     *
+     * @param workspaceIRI The IRI of the workspace.
+     * @param artifactName The name of the artifact.
+     * @param callbackIRI  The IRI notifications are sent to.
+     * @param agentWebId   The WebID of the agent on whose behalf the request is sent.
+     * @return The request, which can be sent via {@link #send(HttpUriRequestBase)}.
+     */
+    HttpUriRequestBase newFocusRequest(String workspaceIRI, String artifactName,
+            String callbackIRI, String agentWebId) {
+        HttpUriRequestBase request = newJsonPost(workspaceIRI + "/focus", "{"
+                + "\"artifactName\" : \"" + artifactName + "\","
+                + "\"callbackIri\" : \"" + callbackIRI + "\""
+                + "}");
+        request.setHeader("X-Agent-WebID", agentWebId);
+        return request;
+    }
+
+    private static HttpUriRequestBase newJsonPost(String uri, String json) {
+        HttpPost request = new HttpPost(uri);
+        request.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        return request;
+    }
+
+    /**
+     * Sends a request once fewer than the maximum number of requests are in flight. The calling
+     * thread waits for a request to complete if needed.
+     *
+     * @param request The request.
+     * @return A future that completes with the status code of the response, or completes
+     * exceptionally if the request failed.
+     */
+    CompletableFuture<Integer> send(HttpUriRequestBase request) {
+        CompletableFuture<Integer> status = new CompletableFuture<Integer>();
+
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status.completeExceptionally(e);
+            return status;
+        }
+
+        HttpClientPool.executeAsync(request, timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((response, error) -> {
+                    inFlight.release();
+
+                    if (response == null) {
+                        status.completeExceptionally(error);
+                    } else {
+                        status.complete(response.getCode());
+                    }
+                });
+
+        return status;
+    }
+}
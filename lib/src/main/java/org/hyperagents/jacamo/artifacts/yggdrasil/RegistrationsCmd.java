@@ -0,0 +1,62 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+
+import cartago.IBlockingCmd;
+
+/**
+ * A blocking command that sends registration requests (e.g., WebSub subscriptions) concurrently
+ * via a {@link RegistrationClient}, and waits until all requests have completed. Used with
+ * CArtAgO's {@code await} such that the notification server is released (and can deliver
+ * notifications) while the requests are in flight.
+ */
+class RegistrationsCmd implements IBlockingCmd {
+    private final RegistrationClient client;
+    private final List<HttpUriRequestBase> requests;
+
+    private final List<Object> results = new ArrayList<Object>();
+
+    /**
+     * @param client   The client used to send the requests.
+     * @param requests The requests.
+     */
+    RegistrationsCmd(RegistrationClient client, List<HttpUriRequestBase> requests) {
+        this.client = client;
+        this.requests = requests;
+    }
+
+    @Override
+    public void exec() {
+        List<CompletableFuture<Integer>> responses = new ArrayList<CompletableFuture<Integer>>();
+
+        for (HttpUriRequestBase request : requests) {
+            responses.add(client.send(request));
+        }
+
+        for (CompletableFuture<Integer> response : responses) {
+            try {
+                results.add(response.get());
+            } catch (ExecutionException e) {
+                results.add(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(e);
+            }
+        }
+    }
+
+    /**
+     * Returns the result of each request, in the order of the requests: the status code of the
+     * response, or the failure of the request.
+     *
+     * @return The results.
+     */
+    List<Object> getResults() {
+        return results;
+    }
+}
@@ -18,6 +18,7 @@ import org.eclipse.rdf4j.rio.Rio;
 import org.eclipse.rdf4j.rio.WriterConfig;
 import org.eclipse.rdf4j.rio.helpers.BasicWriterSettings;
 import org.hyperagents.jacamo.artifacts.hmas.HMAS;
+import org.hyperagents.jacamo.artifacts.wot.ThingDescriptionCache;
 import org.hyperagents.jacamo.artifacts.wot.WebSubThingArtifact;
 
 import cartago.OPERATION;
@@ -66,8 +67,11 @@ public class WorkspaceThingArtifact extends WebSubThingArtifact {
   @LINK
   @Override
   public void onNotification(Notification notification) {
+    ThingDescriptionCache.getInstance().invalidate(notification.getEntityIRI());
+
     try {
-      this.td = TDGraphReader.readFromString(TDFormat.RDF_TURTLE, notification.getMessage());
+      setThingDescription(TDGraphReader.readFromString(TDFormat.RDF_TURTLE,
+          notification.getMessage()));
       exposeMemberProperties();
     } catch (Exception e) {
       e.printStackTrace();
@@ -80,16 +84,15 @@ public class WorkspaceThingArtifact extends WebSubThingArtifact {
       this.graph = td.getGraph().get();
 
       // Extract parent workspaces (if any) from the workspace description
-      List<String> parents = Models.objectIRIs(graph.filter(workspaceIRI, HMAS.isContainedIn, null))
-        .stream().map(iri -> iri.stringValue()).collect(Collectors.toList());
+      List<String> parents = getParentWorkspaces(graph, workspaceIRI);
       exposeProperties(parents, "parentHypermediaWorkspace");
 
       // Extract child workspaces (if any) from the workspace description
-      List<String> workspaces = getMembersOfType(HMAS.Workspace);
+      List<String> workspaces = getMembersOfType(graph, workspaceIRI, HMAS.Workspace);
       exposeProperties(workspaces, "hypermediaWorkspace");
 
       // Extract artifacts (if any) from the workspace description
-      List<String> artifacts = getMembersOfType(HMAS.Artifact);
+      List<String> artifacts = getMembersOfType(graph, workspaceIRI, HMAS.Artifact);
       exposeProperties(artifacts, "hypermediaArtifact");
     } else {
       failed("Could not read RDF graph for container: " + td.getThingURI());
@@ -113,7 +116,12 @@ public class WorkspaceThingArtifact extends WebSubThingArtifact {
     return out.toString();
   }
 
-  private List<String> getMembersOfType(IRI memberType) {
+  static List<String> getParentWorkspaces(Model graph, IRI workspaceIRI) {
+    return Models.objectIRIs(graph.filter(workspaceIRI, HMAS.isContainedIn, null))
+      .stream().map(iri -> iri.stringValue()).collect(Collectors.toList());
+  }
+
+  static List<String> getMembersOfType(Model graph, IRI workspaceIRI, IRI memberType) {
     return Models.objectIRIs(graph.filter(workspaceIRI, HMAS.contains, null))
       .stream().filter(iri -> graph.contains(iri, RDF.TYPE, memberType))
       .map(iri -> iri.stringValue())
@@ -139,7 +147,7 @@ public class WorkspaceThingArtifact extends WebSubThingArtifact {
       this.memberIRI = memberIri;
 
       try {
-        ThingDescription td = TDGraphReader.readFromURL(TDFormat.RDF_TURTLE, memberIRI);
+        ThingDescription td = readThingDescription(memberIRI);
         memberName = td.getTitle();
         memberTypes = Models.objectIRIs(td.getGraph().get().filter(rdf.createIRI(memberIRI), RDF.TYPE, null))
           .stream().map(iri -> iri.stringValue()).collect(Collectors.toList());
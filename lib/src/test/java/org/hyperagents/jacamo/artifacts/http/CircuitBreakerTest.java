@@ -0,0 +1,85 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+
+import org.hyperagents.jacamo.artifacts.http.CircuitBreaker.State;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+  private CircuitBreaker breaker;
+
+  @Before
+  public void init() {
+    CircuitBreaker.configure(3, 50);
+    breaker = CircuitBreaker.forTarget(URI.create("http://example.org:8080/things/1"));
+  }
+
+  @After
+  public void reset() {
+    CircuitBreaker.clear();
+    CircuitBreaker.configure(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD,
+        CircuitBreaker.DEFAULT_OPEN_TIMEOUT);
+  }
+
+  @Test
+  public void testBreakerPerHost() {
+    assertEquals("http://example.org:8080", breaker.getHost());
+    assertSame(breaker, CircuitBreaker.forTarget(URI.create("http://example.org:8080/other")));
+  }
+
+  @Test
+  public void testOpensAfterConsecutiveFailures() {
+    breaker.recordFailure();
+    breaker.recordFailure();
+    breaker.recordResponse(200);
+    breaker.recordFailure();
+    breaker.recordResponse(503);
+    assertEquals(State.CLOSED, breaker.getState());
+
+    breaker.recordFailure();
+    assertEquals(State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+  }
+
+  @Test
+  public void testHalfOpenTrial() throws InterruptedException {
+    for (int i = 0; i < 3; i ++) {
+      breaker.recordFailure();
+    }
+    Thread.sleep(60);
+
+    // A single trial request is let through
+    assertTrue(breaker.tryAcquire());
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+
+    breaker.recordFailure();
+    assertEquals(State.OPEN, breaker.getState());
+    Thread.sleep(60);
+
+    assertTrue(breaker.tryAcquire());
+    breaker.recordResponse(204);
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+  }
+
+  @Test
+  public void testDisabledByDefault() {
+    CircuitBreaker.configure(CircuitBreaker.DEFAULT_FAILURE_THRESHOLD,
+        CircuitBreaker.DEFAULT_OPEN_TIMEOUT);
+    assertFalse(CircuitBreaker.isEnabled());
+
+    for (int i = 0; i < 10; i ++) {
+      breaker.recordFailure();
+    }
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+  }
+}
@@ -0,0 +1,186 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.classic.methods.HttpPut;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContentCodingTest {
+  private static final String PAYLOAD = "{\"values\":["
+      + String.join(",", Collections.nCopies(500, "21.5")) + "]}";
+
+  private Server server;
+  private URI target;
+
+  /* The content codings of the request bodies received by the server */
+  private final List<String> receivedCodings = Collections.synchronizedList(new ArrayList<String>());
+  private volatile boolean rejectCompressedBodies;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new Server(0);
+    server.setHandler(new AbstractHandler() {
+
+      @Override
+      public void handle(String path, Request baseRequest, HttpServletRequest request,
+          HttpServletResponse response) throws IOException {
+        baseRequest.setHandled(true);
+        response.setContentType("application/json");
+
+        if (request.getMethod().equals("PUT")) {
+          String coding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+          receivedCodings.add(coding);
+
+          if (coding != null && rejectCompressedBodies) {
+            response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+            return;
+          }
+
+          InputStream body = coding == null ? request.getInputStream()
+              : new GZIPInputStream(request.getInputStream());
+          response.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+          response.getWriter().write(Integer.toString(readAll(body).length));
+          return;
+        }
+
+        String accepted = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (accepted == null || !accepted.contains("gzip")) {
+          response.getWriter().write(PAYLOAD);
+          return;
+        }
+
+        String coding = path.substring(1);
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, coding.equals("raw") ? "deflate" : coding);
+        response.getOutputStream().write(encode(coding, PAYLOAD.getBytes(StandardCharsets.UTF_8)));
+      }
+    });
+    server.start();
+
+    int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    target = URI.create("http://localhost:" + port);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop();
+  }
+
+  @Test
+  public void testCompressedResponses() throws Exception {
+    for (String coding : new String[] { "gzip", "deflate", "raw" }) {
+      ClassicHttpResponse response = HttpClientPool.execute(new HttpGet(target.resolve(coding)));
+
+      assertEquals(200, response.getCode());
+      assertEquals(PAYLOAD, EntityUtils.toString(response.getEntity()));
+      assertNull(response.getEntity().getContentEncoding());
+      assertFalse(response.containsHeader(HttpHeaders.CONTENT_ENCODING));
+
+      long saved = ((ContentCoding.CodedEntity) response.getEntity()).getSavedBytes();
+      assertTrue(saved > PAYLOAD.length() / 2);
+    }
+  }
+
+  @Test
+  public void testCompressedResponseMetrics() throws Exception {
+    HttpGet request = new HttpGet(target.resolve("gzip"));
+    RequestMetrics.AffordanceMetrics metrics =
+        RequestMetrics.forAffordance(target.toString(), "values", "readProperty");
+
+    metrics.recordResponse(System.nanoTime(), request, HttpClientPool.execute(request));
+
+    assertTrue(metrics.getBytesIn() < PAYLOAD.length() / 2);
+    assertEquals(PAYLOAD.length(), metrics.getBytesIn() + metrics.getSavedBytesIn());
+    assertTrue(RequestMetrics.scrape().contains(
+        "jacamo_hypermedia_compression_saved_bytes_total"));
+  }
+
+  @Test
+  public void testRequestBodiesCompressedOnceAdvertised() throws Exception {
+    // The first request advertises gzip request bodies, the second request uses them
+    for (int i = 0; i < 2; i ++) {
+      ClassicHttpResponse response = HttpClientPool.execute(put());
+      assertEquals(Integer.toString(PAYLOAD.length()), EntityUtils.toString(response.getEntity()));
+    }
+
+    assertEquals(2, receivedCodings.size());
+    assertNull(receivedCodings.get(0));
+    assertEquals("gzip", receivedCodings.get(1));
+  }
+
+  @Test
+  public void testRejectedCompressedBodyIsResent() throws Exception {
+    HttpClientPool.execute(put());
+    rejectCompressedBodies = true;
+
+    ClassicHttpResponse response = HttpClientPool.executeAsync(put()).get();
+    assertEquals(200, response.getCode());
+
+    // The origin is no longer sent compressed bodies
+    HttpClientPool.execute(put());
+    assertEquals(4, receivedCodings.size());
+    assertEquals("gzip", receivedCodings.get(1));
+    assertNull(receivedCodings.get(2));
+    assertNull(receivedCodings.get(3));
+  }
+
+  private HttpPut put() {
+    HttpPut request = new HttpPut(target.resolve("values"));
+    request.setEntity(new StringEntity(PAYLOAD, ContentType.APPLICATION_JSON));
+    return request;
+  }
+
+  private static byte[] encode(String coding, byte[] payload) throws IOException {
+    ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+
+    try (OutputStream out = coding.equals("gzip") ? new GZIPOutputStream(encoded)
+        : new DeflaterOutputStream(encoded, new Deflater(Deflater.DEFAULT_COMPRESSION,
+            coding.equals("raw")))) {
+      out.write(payload);
+    }
+
+    return encoded.toByteArray();
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+
+    for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+      out.write(buffer, 0, read);
+    }
+
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,103 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.junit.Test;
+
+public class HedgedRequestTest {
+
+  /* Attempts that complete only when completed by the test */
+  private static class Attempts {
+    final List<CompletableFuture<ClassicHttpResponse>> issued =
+        new ArrayList<CompletableFuture<ClassicHttpResponse>>();
+
+    synchronized CompletableFuture<ClassicHttpResponse> issue() {
+      CompletableFuture<ClassicHttpResponse> attempt = new CompletableFuture<>();
+      issued.add(attempt);
+      return attempt;
+    }
+
+    synchronized CompletableFuture<ClassicHttpResponse> get(int index) {
+      return issued.get(index);
+    }
+
+    synchronized int size() {
+      return issued.size();
+    }
+  }
+
+  @Test
+  public void testNoHedgeForFastRequest() throws Exception {
+    Attempts attempts = new Attempts();
+    CompletableFuture<ClassicHttpResponse> result = HttpClientPool.executeHedged(attempts::issue,
+        50, TimeUnit.MILLISECONDS);
+
+    ClassicHttpResponse response = new BasicClassicHttpResponse(200);
+    attempts.get(0).complete(response);
+    Thread.sleep(100);
+
+    assertSame(response, result.get());
+    assertEquals(1, attempts.size());
+  }
+
+  @Test
+  public void testHedgeForSlowRequest() throws Exception {
+    Attempts attempts = new Attempts();
+    CompletableFuture<ClassicHttpResponse> result = HttpClientPool.executeHedged(attempts::issue,
+        10, TimeUnit.MILLISECONDS);
+
+    Thread.sleep(100);
+    assertEquals(2, attempts.size());
+
+    // The first attempt fails, but the hedged attempt succeeds
+    ClassicHttpResponse response = new BasicClassicHttpResponse(200);
+    attempts.get(0).completeExceptionally(new IOException("Connection reset"));
+    assertFalse(result.isDone());
+    attempts.get(1).complete(response);
+
+    assertSame(response, result.get());
+  }
+
+  @Test
+  public void testSlowerAttemptIsCancelled() throws Exception {
+    Attempts attempts = new Attempts();
+    CompletableFuture<ClassicHttpResponse> result = HttpClientPool.executeHedged(attempts::issue,
+        10, TimeUnit.MILLISECONDS);
+
+    Thread.sleep(100);
+    assertEquals(2, attempts.size());
+
+    // The hedged attempt wins, and the first attempt no longer occupies a connection
+    ClassicHttpResponse response = new BasicClassicHttpResponse(200);
+    attempts.get(1).complete(response);
+
+    assertSame(response, result.get());
+    assertTrue(attempts.get(0).isCancelled());
+    assertFalse(attempts.get(1).isCancelled());
+  }
+
+  @Test(expected = ExecutionException.class)
+  public void testFailureBeforeHedge() throws Exception {
+    Attempts attempts = new Attempts();
+    CompletableFuture<ClassicHttpResponse> result = HttpClientPool.executeHedged(attempts::issue,
+        50, TimeUnit.MILLISECONDS);
+
+    attempts.get(0).completeExceptionally(new IOException("Connection refused"));
+    Thread.sleep(100);
+
+    assertEquals(1, attempts.size());
+    result.get();
+  }
+}
@@ -0,0 +1,186 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.EntityDetails;
+import org.apache.hc.core5.http.HttpException;
+import org.apache.hc.core5.http.HttpRequest;
+import org.apache.hc.core5.http.HttpVersion;
+import org.apache.hc.core5.http.Message;
+import org.apache.hc.core5.http.impl.bootstrap.HttpAsyncServer;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.nio.AsyncRequestConsumer;
+import org.apache.hc.core5.http.nio.AsyncServerRequestHandler;
+import org.apache.hc.core5.http.nio.entity.NoopEntityConsumer;
+import org.apache.hc.core5.http.nio.support.BasicRequestConsumer;
+import org.apache.hc.core5.http.nio.support.BasicResponseProducer;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.http2.HttpVersionPolicy;
+import org.apache.hc.core5.http2.impl.nio.bootstrap.H2ServerBootstrap;
+import org.apache.hc.core5.io.CloseMode;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Test;
+
+public class Http2TransportTest {
+  private HttpAsyncServer h2Server;
+  private Server http1Server;
+
+  @After
+  public void tearDown() throws Exception {
+    HttpClientPool.setHttp2Enabled(false);
+
+    if (h2Server != null) {
+      h2Server.close(CloseMode.IMMEDIATE);
+    }
+
+    if (http1Server != null) {
+      http1Server.stop();
+    }
+  }
+
+  @Test
+  public void testRequestsAreMultiplexed() throws Exception {
+    URI target = startHttp2Server();
+    HttpClientPool.setHttp2Enabled(true);
+    awaitHttp2(target);
+    long exchanges = HttpClientPool.getHttp2Exchanges();
+
+    List<CompletableFuture<ClassicHttpResponse>> responses =
+        new ArrayList<CompletableFuture<ClassicHttpResponse>>();
+    for (int i = 0; i < 50; i ++) {
+      responses.add(HttpClientPool.executeAsync(new HttpGet(target)));
+    }
+
+    for (CompletableFuture<ClassicHttpResponse> response : responses) {
+      assertEquals(HttpVersion.HTTP_2, response.get().getVersion());
+      assertEquals("{\"value\":1}", EntityUtils.toString(response.get().getEntity()));
+    }
+
+    assertEquals(exchanges + 50, HttpClientPool.getHttp2Exchanges());
+  }
+
+  @Test
+  public void testHttp1OriginIsReachedViaHttp1() throws Exception {
+    URI target = startHttp1Server();
+    HttpClientPool.setHttp2Enabled(true);
+    long exchanges = HttpClientPool.getHttp2Exchanges();
+
+    // The origin is probed in the background
+    ClassicHttpResponse response = HttpClientPool.execute(new HttpGet(target));
+    assertEquals(200, response.getCode());
+    assertEquals("{\"value\":1}", EntityUtils.toString(response.getEntity()));
+
+    assertEquals(Optional.of(false), Http2Transport.probe("http", "localhost", target.getPort(),
+        1000));
+
+    response = HttpClientPool.executeAsync(new HttpGet(target)).get();
+    assertEquals(200, response.getCode());
+    assertTrue(response.getVersion().lessEquals(HttpVersion.HTTP_1_1));
+    assertEquals(exchanges, HttpClientPool.getHttp2Exchanges());
+  }
+
+  @Test
+  public void testProbeHttp2Origin() throws Exception {
+    URI target = startHttp2Server();
+
+    assertEquals(Optional.of(true), Http2Transport.probe("http", "localhost", target.getPort(),
+        1000));
+  }
+
+  @Test
+  public void testFailedProbeIsNotRemembered() throws Exception {
+    // Accepts connections and closes them without answering
+    try (ServerSocket server = new ServerSocket(0)) {
+      Thread acceptor = new Thread(() -> {
+        while (!server.isClosed()) {
+          try (Socket socket = server.accept()) {
+            socket.getInputStream().read();
+          } catch (IOException e) {
+            return;
+          }
+        }
+      });
+      acceptor.setDaemon(true);
+      acceptor.start();
+
+      assertEquals(Optional.empty(), Http2Transport.probe("http", "localhost",
+          server.getLocalPort(), 1000));
+    }
+  }
+
+  /* Issues requests until the origin is known to support HTTP/2 */
+  private static void awaitHttp2(URI target) throws Exception {
+    long deadline = System.currentTimeMillis() + 5000;
+
+    while (HttpClientPool.execute(new HttpGet(target)).getVersion() != HttpVersion.HTTP_2) {
+      assertTrue(System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  private URI startHttp2Server() throws Exception {
+    h2Server = H2ServerBootstrap.bootstrap()
+        .setVersionPolicy(HttpVersionPolicy.NEGOTIATE)
+        .register("*", new AsyncServerRequestHandler<Message<HttpRequest, Void>>() {
+
+          @Override
+          public AsyncRequestConsumer<Message<HttpRequest, Void>> prepare(HttpRequest request,
+              EntityDetails entityDetails, HttpContext context) throws HttpException {
+            return new BasicRequestConsumer<Void>(new NoopEntityConsumer());
+          }
+
+          @Override
+          public void handle(Message<HttpRequest, Void> request, ResponseTrigger responseTrigger,
+              HttpContext context) throws HttpException, IOException {
+            responseTrigger.submitResponse(new BasicResponseProducer(200, "{\"value\":1}",
+                ContentType.APPLICATION_JSON), context);
+          }
+        })
+        .create();
+    h2Server.start();
+
+    InetSocketAddress address = (InetSocketAddress) h2Server.listen(new InetSocketAddress(0))
+        .get().getAddress();
+    return URI.create("http://localhost:" + address.getPort() + "/value");
+  }
+
+  private URI startHttp1Server() throws Exception {
+    http1Server = new Server(0);
+    http1Server.setHandler(new AbstractHandler() {
+
+      @Override
+      public void handle(String target, Request baseRequest, HttpServletRequest request,
+          HttpServletResponse response) throws IOException {
+        baseRequest.setHandled(true);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.getWriter().write("{\"value\":1}");
+      }
+    });
+    http1Server.start();
+
+    int port = ((ServerConnector) http1Server.getConnectors()[0]).getLocalPort();
+    return URI.create("http://localhost:" + port + "/value");
+  }
+}
@@ -0,0 +1,249 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.pool.PoolStats;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpClientPoolTest {
+  private Origin origin;
+
+  @Before
+  public void setUp() throws Exception {
+    origin = new Origin();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    origin.release.countDown();
+    HttpClientPool.configure(HttpClientPool.DEFAULT_MAX_CONNECTIONS,
+        HttpClientPool.DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+    origin.server.stop();
+  }
+
+  @Test
+  public void testConnectionIsReused() throws IOException {
+    for (int i = 0; i < 5; i ++) {
+      ClassicHttpResponse response = HttpClientPool.execute(
+          new HttpGet(origin.getUrl("localhost") + "/value"));
+      assertEquals(200, response.getCode());
+    }
+
+    // All requests were received on the same connection, which is back in the pool
+    assertEquals(1, origin.clientPorts.size());
+    PoolStats stats = HttpClientPool.getStats();
+    assertEquals(0, stats.getLeased());
+    assertTrue(stats.getAvailable() >= 1);
+  }
+
+  @Test
+  public void testPerRouteLimit() throws Exception {
+    HttpClientPool.configure(10, 2);
+    origin.hold();
+
+    List<CompletableFuture<ClassicHttpResponse>> responses = executeAsync(
+        origin.getUrl("localhost"), 6);
+    origin.awaitInFlight(2);
+
+    PoolStats stats = HttpClientPool.getStats();
+    assertEquals(2, origin.inFlight.get());
+    assertEquals(2, stats.getLeased());
+    assertEquals(4, stats.getPending());
+
+    origin.release.countDown();
+    assertCompleted(responses);
+    assertEquals(2, origin.maxInFlight.get());
+  }
+
+  @Test
+  public void testAsyncRequestsAreQueuedBeyondPoolSize() throws Exception {
+    HttpClientPool.configure(3, 10);
+    assertEquals(3, HttpClientPool.getIoThreads());
+    origin.hold();
+
+    // Two routes to the same origin, such that only the total limit applies
+    List<CompletableFuture<ClassicHttpResponse>> responses = executeAsync(
+        origin.getUrl("localhost"), 4);
+    responses.addAll(executeAsync(origin.getUrl("127.0.0.1"), 4));
+    origin.awaitInFlight(3);
+
+    PoolStats stats = HttpClientPool.getStats();
+    assertEquals(3, origin.inFlight.get());
+    assertEquals(3, stats.getMax());
+    assertEquals(3, stats.getLeased());
+
+    origin.release.countDown();
+    assertCompleted(responses);
+    assertEquals(3, origin.maxInFlight.get());
+  }
+
+  @Test
+  public void testIoThreadsFollowPoolSize() {
+    HttpClientPool.configure(50, 10);
+    assertEquals(50, HttpClientPool.getIoThreads());
+
+    HttpClientPool.configure(4, 10);
+    assertEquals(4, HttpClientPool.getIoThreads());
+  }
+
+  @Test
+  public void testPoolIsConfiguredViaSystemProperties() throws Exception {
+    // The system properties are read when the pool is initialized, hence in a new JVM
+    Process process = new ProcessBuilder(
+        System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+        "-cp", System.getProperty("java.class.path"),
+        "-D" + HttpClientPool.MAX_CONNECTIONS_PROPERTY + "=3",
+        "-D" + HttpClientPool.MAX_CONNECTIONS_PER_ROUTE_PROPERTY + "=2",
+        "-D" + HttpClientPool.IDLE_TIMEOUT_PROPERTY + "=200",
+        ConfiguredPool.class.getName())
+        .redirectErrorStream(true)
+        .start();
+
+    String output = read(process.getInputStream());
+    assertTrue("The pool check timed out", process.waitFor(60, TimeUnit.SECONDS));
+    assertEquals(output, 0, process.exitValue());
+  }
+
+  /* Checks the pool configured via system properties; runs in a new JVM */
+  static final class ConfiguredPool {
+
+    public static void main(String[] args) {
+      try {
+        check();
+        System.exit(0);
+      } catch (Throwable e) {
+        e.printStackTrace();
+        System.exit(1);
+      }
+    }
+
+    private static void check() throws Exception {
+      assertEquals(3, HttpClientPool.getStats().getMax());
+      assertEquals(3, HttpClientPool.getIoThreads());
+
+      Origin origin = new Origin();
+      origin.hold();
+
+      List<CompletableFuture<ClassicHttpResponse>> responses = executeAsync(
+          origin.getUrl("localhost"), 3);
+      origin.awaitInFlight(2);
+      assertEquals(2, origin.inFlight.get());
+      assertEquals(1, HttpClientPool.getStats().getPending());
+
+      origin.release.countDown();
+      assertCompleted(responses);
+      assertEquals(2, HttpClientPool.getStats().getAvailable());
+
+      // Idle connections are closed once the idle timeout has passed
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (HttpClientPool.getStats().getAvailable() > 0 && System.nanoTime() < deadline) {
+        Thread.sleep(50);
+      }
+      assertEquals(0, HttpClientPool.getStats().getAvailable());
+    }
+  }
+
+  private static List<CompletableFuture<ClassicHttpResponse>> executeAsync(String baseUrl,
+      int count) {
+    List<CompletableFuture<ClassicHttpResponse>> responses =
+        new ArrayList<CompletableFuture<ClassicHttpResponse>>();
+    for (int i = 0; i < count; i ++) {
+      responses.add(HttpClientPool.executeAsync(new HttpGet(baseUrl + "/value")));
+    }
+    return responses;
+  }
+
+  private static void assertCompleted(List<CompletableFuture<ClassicHttpResponse>> responses)
+      throws Exception {
+    for (CompletableFuture<ClassicHttpResponse> response : responses) {
+      assertEquals(200, response.get(10, TimeUnit.SECONDS).getCode());
+    }
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      out.write(buffer, 0, n);
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /* A local origin that can hold requests in flight */
+  static final class Origin extends AbstractHandler {
+    final Server server = new Server(0);
+    final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    volatile CountDownLatch release = new CountDownLatch(0);
+
+    Origin() throws Exception {
+      server.setHandler(this);
+      server.start();
+    }
+
+    String getUrl(String host) {
+      return "http://" + host + ":" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+
+    /* Holds the requests received until released */
+    void hold() {
+      release = new CountDownLatch(1);
+    }
+
+    /* Waits for the requests in flight, and for requests in excess that would not be held back */
+    void awaitInFlight(int count) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (inFlight.get() < count && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      Thread.sleep(100);
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request,
+        HttpServletResponse response) throws IOException {
+      baseRequest.setHandled(true);
+      clientPorts.add(request.getRemotePort());
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      inFlight.decrementAndGet();
+      response.setStatus(HttpServletResponse.SC_OK);
+      response.setContentType("application/json");
+      response.getWriter().write("{\"value\":1}");
+    }
+  }
+}
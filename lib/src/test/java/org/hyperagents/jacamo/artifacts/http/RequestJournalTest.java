@@ -0,0 +1,90 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RequestJournalTest {
+  private final BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+
+  @After
+  public void tearDown() {
+    RequestJournal.configure(RequestJournal.DEFAULT_LEVEL, RequestJournal.DEFAULT_SAMPLE_RATE,
+        RequestJournal.DEFAULT_MAX_PAYLOAD);
+    RequestJournal.setSink(Logger.getLogger(RequestJournal.class.getName())::info);
+  }
+
+  @Test
+  public void testRecordsAreWrittenAfterIdling() throws InterruptedException {
+    RequestJournal.setSink(lines::add);
+    RequestJournal.configure(RequestJournal.Level.INFO, 1, 256);
+
+    for (int i = 0; i < 3; i ++) {
+      RequestJournal.record("lamp1", "alice", "GET", URI.create("http://example.org/lamp1"), null,
+          false);
+      String line = lines.poll(5, TimeUnit.SECONDS);
+      assertNotNull(line);
+      assertTrue(line.contains("artifact=lamp1"));
+
+      // The writer waits for the next record
+      Thread.sleep(50);
+    }
+
+    // The idle writer is parked until the next record is published, rather than polling
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("jacamo-hypermedia-journal")) {
+        assertEquals(Thread.State.WAITING, thread.getState());
+      }
+    }
+  }
+
+  @Test
+  public void testDryRunRequestsAreAlwaysJournaled() throws InterruptedException {
+    RequestJournal.setSink(lines::add);
+    RequestJournal.configure(RequestJournal.Level.OFF, 0, 8);
+    byte[] payload = "{\"state\":\"on\"}".getBytes(StandardCharsets.UTF_8);
+
+    RequestJournal.record("lamp1", "alice", "PUT", URI.create("http://example.org/lamp1"), payload,
+        false);
+    RequestJournal.record("lamp1", "alice", "PUT", URI.create("http://example.org/lamp1"), payload,
+        true);
+
+    String line = lines.poll(5, TimeUnit.SECONDS);
+    assertNotNull(line);
+    assertTrue(line.endsWith("dryRun=true payloadBytes=14 payload=\"{\\\"state\\\"\" "
+        + "truncated=true"));
+    assertNull(lines.poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testFormatRequestLine() {
+    RequestJournal.Entry entry = new RequestJournal.Entry(0, "lamp1", "alice", "GET",
+        URI.create("http://example.org/lamp1/properties/state"), null, 0, false);
+
+    assertEquals("ts=1970-01-01T00:00:00Z artifact=lamp1 agent=alice method=GET "
+        + "target=http://example.org/lamp1/properties/state dryRun=false payloadBytes=0",
+        RequestJournal.format(entry, 256));
+  }
+
+  @Test
+  public void testFormatTruncatedPayload() {
+    byte[] payload = "{\"state\":\"on\"}".getBytes(StandardCharsets.UTF_8);
+    RequestJournal.Entry entry = new RequestJournal.Entry(0, "lamp1", "alice", "PUT",
+        URI.create("http://example.org/lamp1"), payload, payload.length, true);
+
+    assertEquals("ts=1970-01-01T00:00:00Z artifact=lamp1 agent=alice method=PUT "
+        + "target=http://example.org/lamp1 dryRun=true payloadBytes=14 "
+        + "payload=\"{\\\"state\\\"\" truncated=true", RequestJournal.format(entry, 8));
+  }
+}
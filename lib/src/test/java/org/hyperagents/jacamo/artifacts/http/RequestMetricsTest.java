@@ -0,0 +1,100 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpRequest;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.hyperagents.jacamo.artifacts.http.RequestMetrics.AffordanceMetrics;
+import org.junit.After;
+import org.junit.Test;
+
+public class RequestMetricsTest {
+
+  @After
+  public void clearMetrics() {
+    RequestMetrics.clear();
+  }
+
+  @Test
+  public void testHistogramBuckets() {
+    for (long micros = 0; micros < 100000; micros ++) {
+      int index = LatencyHistogram.bucketIndex(micros);
+
+      assertTrue(micros < LatencyHistogram.upperBound(index));
+      assertTrue(index == 0 || micros >= LatencyHistogram.upperBound(index - 1));
+    }
+  }
+
+  @Test
+  public void testHistogramQuantiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getQuantileMicros(0.5));
+
+    for (int i = 0; i < 99; i ++) {
+      histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+    }
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(99 * 100 + 10000, histogram.getSumMicros());
+    assertEquals(112, histogram.getQuantileMicros(0.5));
+    assertEquals(112, histogram.getQuantileMicros(0.99));
+    assertEquals(10240, histogram.getQuantileMicros(0.999));
+  }
+
+  @Test
+  public void testHistogramAddAll() {
+    LatencyHistogram first = new LatencyHistogram();
+    LatencyHistogram second = new LatencyHistogram();
+
+    first.record(TimeUnit.MICROSECONDS.toNanos(100));
+    second.record(TimeUnit.MILLISECONDS.toNanos(10));
+    first.addAll(second);
+
+    assertEquals(2, first.getCount());
+    assertEquals(10100, first.getSumMicros());
+    assertEquals(10240, first.getQuantileMicros(1.0));
+  }
+
+  @Test
+  public void testRecordAndScrape() {
+    AffordanceMetrics metrics = RequestMetrics.forAffordance("http://example.org/lamp", "state",
+        "writeProperty");
+    assertSame(metrics, RequestMetrics.forAffordance("http://example.org/lamp", "state",
+        "writeProperty"));
+
+    ClassicHttpRequest request = new BasicClassicHttpRequest("PUT", "http://example.org/state");
+    request.setEntity(new StringEntity("true", ContentType.APPLICATION_JSON));
+
+    ClassicHttpResponse response = new BasicClassicHttpResponse(204);
+    metrics.recordResponse(System.nanoTime(), request, response);
+    metrics.recordFailure(System.nanoTime(), request);
+
+    assertEquals(1, metrics.getRequests(2));
+    assertEquals(1, metrics.getRequests());
+    assertEquals(1, metrics.getErrors());
+    assertEquals(8, metrics.getBytesOut());
+    assertEquals(0, metrics.getBytesIn());
+
+    String scrape = RequestMetrics.scrape();
+    String labels = "{thing=\"http://example.org/lamp\",affordance=\"state\","
+        + "operation=\"writeProperty\"";
+
+    assertTrue(scrape.contains("jacamo_hypermedia_requests_total" + labels
+        + ",status=\"2xx\"} 1\n"));
+    assertTrue(scrape.contains("jacamo_hypermedia_requests_total" + labels
+        + ",status=\"error\"} 1\n"));
+    assertTrue(scrape.contains("jacamo_hypermedia_request_bytes_total" + labels
+        + ",direction=\"out\"} 8\n"));
+    assertTrue(scrape.contains("jacamo_hypermedia_request_duration_seconds_count" + labels
+        + "} 2\n"));
+  }
+}
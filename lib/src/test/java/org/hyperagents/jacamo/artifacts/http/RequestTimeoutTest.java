@@ -0,0 +1,128 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestTimeoutTest {
+  /* A server that accepts connections, but never responds */
+  private ServerSocket server;
+  private URI target;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new ServerSocket(0);
+    target = URI.create("http://localhost:" + server.getLocalPort() + "/slow");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.close();
+  }
+
+  @Test
+  public void testRequestTimesOut() throws Exception {
+    HttpUriRequestBase request = new HttpUriRequestBase("GET", target);
+    long start = System.nanoTime();
+
+    try {
+      HttpClientPool.execute(request, 100, TimeUnit.MILLISECONDS);
+      fail("The request should time out.");
+    } catch (RequestTimeoutException e) {
+      assertTrue(request.isCancelled());
+      assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+  }
+
+  @Test
+  public void testAsyncRequestTimesOut() throws Exception {
+    HttpUriRequestBase request = new HttpUriRequestBase("GET", target);
+
+    try {
+      HttpClientPool.executeAsync(request, 100, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+      fail("The request should time out.");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RequestTimeoutException);
+      assertTrue(request.isCancelled());
+    }
+  }
+
+  @Test
+  public void testRequestFailingWhileCancelledTimesOut() throws Exception {
+    HttpUriRequestBase request = new SlowlyCancelledRequest(target);
+
+    try {
+      HttpClientPool.execute(request, 100, TimeUnit.MILLISECONDS);
+      fail("The request should time out.");
+    } catch (RequestTimeoutException e) {
+      assertTrue(request.isCancelled());
+    }
+  }
+
+  @Test
+  public void testAsyncRequestFailingWhileCancelledTimesOut() throws Exception {
+    HttpUriRequestBase request = new SlowlyCancelledRequest(target);
+
+    try {
+      HttpClientPool.executeAsync(request, 100, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+      fail("The request should time out.");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RequestTimeoutException);
+      assertTrue(request.isCancelled());
+    }
+  }
+
+  @Test
+  public void testCancelledRequestDoesNotTimeOut() throws Exception {
+    HttpUriRequestBase request = new HttpUriRequestBase("GET", target);
+    CompletableFuture<ClassicHttpResponse> response = HttpClientPool.executeAsync(request, 5,
+        TimeUnit.SECONDS);
+
+    Thread.sleep(100);
+    request.cancel();
+
+    try {
+      response.get(5, TimeUnit.SECONDS);
+      fail("The request should fail.");
+    } catch (ExecutionException e) {
+      assertFalse(e.getCause() instanceof RequestTimeoutException);
+    }
+  }
+
+  /*
+   * A request whose cancellation returns only after the aborted exchange has failed, such that the
+   * request fails (with "Request aborted") while its timer is still cancelling it
+   */
+  private static class SlowlyCancelledRequest extends HttpUriRequestBase {
+    private static final long serialVersionUID = 1L;
+
+    SlowlyCancelledRequest(URI target) {
+      super("GET", target);
+    }
+
+    @Override
+    public boolean cancel() {
+      boolean cancelled = super.cancel();
+
+      try {
+        Thread.sleep(500);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      return cancelled;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+  @Test
+  public void testBackoff() {
+    RetryPolicy policy = new RetryPolicy(3, 100);
+
+    for (int i = 0; i < 100; i ++) {
+      long first = policy.getBackoffMillis(0);
+      long third = policy.getBackoffMillis(2);
+
+      assertTrue(first >= 50 && first <= 100);
+      assertTrue(third >= 200 && third <= 400);
+      assertTrue(policy.getBackoffMillis(30) <= RetryPolicy.MAX_BACKOFF);
+    }
+  }
+
+  @Test
+  public void testSafeAndRetryable() {
+    assertTrue(RetryPolicy.isSafe("GET"));
+    assertFalse(RetryPolicy.isSafe("POST"));
+    assertFalse(RetryPolicy.isSafe("PUT"));
+
+    assertTrue(RetryPolicy.isRetryable(503));
+    assertFalse(RetryPolicy.isRetryable(501));
+    assertFalse(RetryPolicy.isRetryable(404));
+  }
+
+  @Test
+  public void testNoRetriesByDefault() {
+    assertEquals(0, RetryPolicy.getDefault().getMaxRetries());
+  }
+}
@@ -0,0 +1,81 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class RingBufferTest {
+
+  @Test
+  public void testCapacity() {
+    assertEquals(8, new RingBuffer<Integer>(5).capacity());
+    assertEquals(8, new RingBuffer<Integer>(8).capacity());
+  }
+
+  @Test
+  public void testOfferAndPoll() {
+    RingBuffer<Integer> buffer = new RingBuffer<Integer>(2);
+
+    assertNull(buffer.poll());
+    assertTrue(buffer.offer(1));
+    assertTrue(buffer.offer(2));
+    assertFalse(buffer.offer(3));
+
+    assertEquals((Integer) 1, buffer.poll());
+    assertTrue(buffer.offer(4));
+
+    assertEquals((Integer) 2, buffer.poll());
+    assertEquals((Integer) 4, buffer.poll());
+    assertNull(buffer.poll());
+  }
+
+  @Test
+  public void testIsEmpty() {
+    RingBuffer<Integer> buffer = new RingBuffer<Integer>(2);
+
+    assertTrue(buffer.isEmpty());
+    buffer.offer(1);
+    assertFalse(buffer.isEmpty());
+    buffer.poll();
+    assertTrue(buffer.isEmpty());
+  }
+
+  @Test
+  public void testConcurrentProducers() throws InterruptedException {
+    RingBuffer<Integer> buffer = new RingBuffer<Integer>(1024);
+    int producers = 4;
+    int perProducer = 10000;
+
+    CountDownLatch done = new CountDownLatch(producers);
+    for (int p = 0; p < producers; p ++) {
+      int offset = p * perProducer;
+
+      new Thread(() -> {
+        for (int i = 0; i < perProducer; i ++) {
+          while (!buffer.offer(offset + i)) {
+            Thread.yield();
+          }
+        }
+        done.countDown();
+      }).start();
+    }
+
+    Set<Integer> received = new HashSet<Integer>();
+    while (received.size() < producers * perProducer) {
+      Integer element = buffer.poll();
+      if (element != null) {
+        assertTrue(received.add(element));
+      }
+    }
+
+    done.await();
+    assertNull(buffer.poll());
+  }
+}
@@ -0,0 +1,84 @@
+package org.hyperagents.jacamo.artifacts.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+  @Test
+  public void testConcurrentCallsAreCoalesced() throws Exception {
+    SingleFlight<String, Object> flights = new SingleFlight<String, Object>();
+    CompletableFuture<Object> call = new CompletableFuture<Object>();
+    AtomicInteger calls = new AtomicInteger();
+    AtomicInteger coalesced = new AtomicInteger();
+
+    CompletableFuture<Object> first = flights.join("a", () -> {
+      calls.incrementAndGet();
+      return call;
+    }, coalesced::incrementAndGet);
+    CompletableFuture<Object> second = flights.join("a", () -> {
+      calls.incrementAndGet();
+      return new CompletableFuture<Object>();
+    }, coalesced::incrementAndGet);
+
+    Object result = new Object();
+    call.complete(result);
+
+    assertSame(result, first.get());
+    assertSame(result, second.get());
+    assertEquals(1, calls.get());
+    assertEquals(1, coalesced.get());
+    assertEquals(1, flights.getCoalesced());
+    assertEquals(0, flights.getInFlight());
+  }
+
+  @Test
+  public void testCallsAfterCompletionAreNotCoalesced() throws Exception {
+    SingleFlight<String, Object> flights = new SingleFlight<String, Object>();
+
+    Object first = flights.join("a", () -> CompletableFuture.completedFuture(new Object()),
+        () -> { }).get();
+    Object second = flights.join("a", () -> CompletableFuture.completedFuture(new Object()),
+        () -> { }).get();
+
+    assertNotSame(first, second);
+    assertEquals(0, flights.getCoalesced());
+  }
+
+  @Test
+  public void testCallsWithDifferentKeysAreNotCoalesced() {
+    SingleFlight<String, Object> flights = new SingleFlight<String, Object>();
+
+    flights.join("a", CompletableFuture::new, () -> { });
+    flights.join("b", CompletableFuture::new, () -> { });
+
+    assertEquals(2, flights.getInFlight());
+    assertEquals(0, flights.getCoalesced());
+  }
+
+  @Test
+  public void testCallIsCancelledOnceAbandoned() {
+    SingleFlight<String, Object> flights = new SingleFlight<String, Object>();
+    CompletableFuture<Object> call = new CompletableFuture<Object>();
+
+    CompletableFuture<Object> first = flights.join("a", () -> call, () -> { });
+    CompletableFuture<Object> second = flights.join("a", CompletableFuture::new, () -> { });
+
+    // The call goes on while a caller is waiting for it
+    first.cancel(true);
+    assertFalse(call.isCancelled());
+    assertFalse(second.isDone());
+
+    second.cancel(true);
+    assertTrue(call.isCancelled());
+    assertEquals(0, flights.getInFlight());
+  }
+}
@@ -0,0 +1,198 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.hyperagents.jacamo.artifacts.wot.AffordanceTable.AffordanceTemplate;
+import org.hyperagents.jacamo.artifacts.wot.AffordanceTable.RequestTemplate;
+import org.junit.Test;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+import ch.unisg.ics.interactions.wot.td.affordances.ActionAffordance;
+import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
+import ch.unisg.ics.interactions.wot.td.schemas.IntegerSchema;
+import ch.unisg.ics.interactions.wot.td.vocabularies.TD;
+
+public class AffordanceTableTest {
+  private static final String PREFIX = "http://example.org/";
+
+  private static Form form(String target, String operationType, String method) {
+    return new Form.Builder(target)
+        .addOperationType(operationType)
+        .setMethodName(method)
+        .build();
+  }
+
+  private static PropertyAffordance property(String name, String type, Form... forms) {
+    PropertyAffordance.Builder builder = new PropertyAffordance.Builder(name,
+        new IntegerSchema.Builder().build(), Arrays.asList(forms));
+    if (type != null) {
+      builder.addSemanticType(type);
+    }
+    return builder.build();
+  }
+
+  private static AffordanceTable table(PropertyAffordance... properties) {
+    ThingDescription.Builder td = new ThingDescription.Builder("Lamp");
+    for (PropertyAffordance property : properties) {
+      td.addProperty(property);
+    }
+    return new AffordanceTable(td.build());
+  }
+
+  @Test
+  public void testLookupByNameAndType() {
+    AffordanceTable table = table(property("level", PREFIX + "Level",
+        form(PREFIX + "level", TD.readProperty, "GET")));
+
+    AffordanceTemplate property = table.getProperty("level").get();
+    assertEquals("level", property.getName());
+    assertSame(property, table.getProperty(PREFIX + "Level").get());
+    assertFalse(table.getProperty("brightness").isPresent());
+    assertFalse(table.getAction("level").isPresent());
+  }
+
+  @Test
+  public void testTypeTakesPrecedenceOverName() {
+    AffordanceTable table = table(
+        property(PREFIX + "Level", null, form(PREFIX + "a", TD.readProperty, "GET")),
+        property("level", PREFIX + "Level", form(PREFIX + "b", TD.readProperty, "GET")));
+
+    assertEquals("level", table.getProperty(PREFIX + "Level").get().getName());
+  }
+
+  @Test
+  public void testDuplicateTypeResolvesToFirstProperty() {
+    AffordanceTable table = table(
+        property("level", PREFIX + "Level", form(PREFIX + "a", TD.readProperty, "GET")),
+        property("dimmer", PREFIX + "Level", form(PREFIX + "b", TD.readProperty, "GET")));
+
+    assertEquals("level", table.getProperty(PREFIX + "Level").get().getName());
+    // Both properties can still be looked up by name, in the order of the TD
+    assertEquals("dimmer", table.getProperty("dimmer").get().getName());
+    assertEquals(2, table.getProperties().size());
+    assertEquals("level", table.getProperties().get(0).getName());
+  }
+
+  @Test
+  public void testFormPerOperationType() {
+    AffordanceTemplate property = table(property("level", null,
+        form(PREFIX + "level", TD.readProperty, "GET"),
+        form(PREFIX + "level/value", TD.writeProperty, "PUT"))).getProperty("level").get();
+
+    assertEquals("GET", property.getRequest(TD.readProperty).get().getMethod());
+    assertEquals("PUT", property.getRequest(TD.writeProperty).get().getMethod());
+    assertEquals(PREFIX + "level/value",
+        property.getRequest(TD.writeProperty).get().getTarget().toString());
+    assertFalse(property.getRequest(TD.observeProperty).isPresent());
+  }
+
+  @Test
+  public void testCompactFormIsPreferred() {
+    Form json = new Form.Builder(PREFIX + "level.json")
+        .addOperationType(TD.readProperty)
+        .setMethodName("GET")
+        .setContentType("application/json")
+        .build();
+    Form cbor = new Form.Builder(PREFIX + "level.cbor")
+        .addOperationType(TD.readProperty)
+        .setMethodName("GET")
+        .setContentType(PayloadCodecs.CBOR)
+        .build();
+
+    RequestTemplate request = table(property("level", null, json, cbor)).getProperty("level").get()
+        .getRequest(TD.readProperty).get();
+    assertEquals(PREFIX + "level.cbor", request.getTarget().toString());
+  }
+
+  @Test
+  public void testMalformedTargetIsReported() {
+    AffordanceTemplate property = table(property("level", null,
+        form(PREFIX + "level{?unit}", TD.readProperty, "GET"))).getProperty("level").get();
+
+    assertFalse(property.getRequest(TD.readProperty).isPresent());
+    assertEquals(PREFIX + "level{?unit}", property.getInvalidTarget(TD.readProperty).get());
+    assertFalse(property.getInvalidTarget(TD.writeProperty).isPresent());
+  }
+
+  @Test
+  public void testValidFormIsPreferredOverMalformedTarget() {
+    AffordanceTemplate property = table(property("level", null,
+        form(PREFIX + "level{?unit}", TD.readProperty, "GET"),
+        form(PREFIX + "level", TD.readProperty, "GET"))).getProperty("level").get();
+
+    assertEquals(PREFIX + "level",
+        property.getRequest(TD.readProperty).get().getTarget().toString());
+    assertFalse(property.getInvalidTarget(TD.readProperty).isPresent());
+  }
+
+  @Test
+  public void testMalformedActionTargetIsReported() {
+    ThingDescription td = new ThingDescription.Builder("Lamp")
+        .addAction(new ActionAffordance.Builder("toggle",
+            form(PREFIX + "toggle{?x}", TD.invokeAction, "POST")).build())
+        .build();
+
+    AffordanceTemplate action = new AffordanceTable(td).getAction("toggle").get();
+    assertFalse(action.getRequest(TD.invokeAction).isPresent());
+    assertTrue(action.getInvalidTarget(TD.invokeAction).isPresent());
+  }
+
+  @Test
+  public void testThingLevelFormsDefaultToGet() {
+    AffordanceTable table = new AffordanceTable(thingWithForm(PREFIX + "properties", null,
+        AffordanceTable.READ_ALL_PROPERTIES, AffordanceTable.READ_MULTIPLE_PROPERTIES));
+
+    assertEquals("GET", table.getThingRequest(AffordanceTable.READ_ALL_PROPERTIES).get()
+        .getMethod());
+    assertEquals("GET", table.getThingRequest(AffordanceTable.READ_MULTIPLE_PROPERTIES).get()
+        .getMethod());
+    assertFalse(table.getThingRequest(AffordanceTable.WRITE_MULTIPLE_PROPERTIES).isPresent());
+  }
+
+  @Test
+  public void testThingLevelFormMethodIsHonored() {
+    AffordanceTable table = new AffordanceTable(thingWithForm(PREFIX + "properties", "POST",
+        AffordanceTable.READ_MULTIPLE_PROPERTIES));
+
+    assertEquals("POST", table.getThingRequest(AffordanceTable.READ_MULTIPLE_PROPERTIES).get()
+        .getMethod());
+  }
+
+  /* A TD whose graph has a Thing-level form for the given operation types */
+  private static ThingDescription thingWithForm(String target, String method,
+      String... operationTypes) {
+    ValueFactory rdf = SimpleValueFactory.getInstance();
+    IRI thing = rdf.createIRI(PREFIX + "lamp");
+    Resource form = rdf.createBNode();
+
+    Model graph = new LinkedHashModel();
+    graph.add(thing, rdf.createIRI("https://www.w3.org/2019/wot/td#hasForm"), form);
+    graph.add(form, rdf.createIRI("https://www.w3.org/2019/wot/hypermedia#hasTarget"),
+        rdf.createIRI(target));
+    for (String operationType : operationTypes) {
+      graph.add(form, rdf.createIRI("https://www.w3.org/2019/wot/hypermedia#hasOperationType"),
+          rdf.createIRI(operationType));
+    }
+    if (method != null) {
+      graph.add(form, rdf.createIRI("http://www.w3.org/2011/http#methodName"),
+          rdf.createLiteral(method));
+    }
+
+    return new ThingDescription.Builder("Lamp")
+        .addThingURI(PREFIX + "lamp")
+        .addGraph(graph)
+        .build();
+  }
+}
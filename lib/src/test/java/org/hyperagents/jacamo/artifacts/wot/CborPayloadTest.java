@@ -0,0 +1,148 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.junit.Test;
+
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.BooleanSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.IntegerSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.NumberSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.StringSchema;
+
+public class CborPayloadTest {
+  private static final String PREFIX = "http://example.org/";
+
+  @Test
+  public void testPrimitivePayloads() {
+    // Examples from RFC 8949, Appendix A
+    DataSchema integer = new IntegerSchema.Builder().build();
+    assertEquals("00", encode(integer, 0));
+    assertEquals("17", encode(integer, 23));
+    assertEquals("1818", encode(integer, 24));
+    assertEquals("1903e8", encode(integer, 1000));
+    assertEquals("1a000f4240", encode(integer, 1000000.0));
+    assertEquals("3863", encode(integer, -100));
+    assertEquals("3b7fffffffffffffff", encode(integer, Long.MIN_VALUE));
+
+    DataSchema number = new NumberSchema.Builder().build();
+    assertEquals("fa3fc00000", encode(number, 1.5));
+    assertEquals("fb3ff199999999999a", encode(number, 1.1));
+
+    assertEquals("f5", encode(new BooleanSchema.Builder().build(), true));
+    assertEquals("6449455446", encode(new StringSchema.Builder().build(), "IETF"));
+    assertEquals("62c3bc", encode(new StringSchema.Builder().build(), "\u00fc"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPrimitiveMismatch() {
+    encode(new IntegerSchema.Builder().build(), "42");
+  }
+
+  @Test
+  public void testObjectPayload() {
+    ObjectSchema schema = new ObjectSchema.Builder()
+        .addProperty("a", new IntegerSchema.Builder()
+            .addSemanticType(PREFIX + "A")
+            .build())
+        .addProperty("b", new ArraySchema.Builder()
+            .addItem(new IntegerSchema.Builder().build())
+            .build())
+        .addProperty("c", new StringSchema.Builder().build())
+        .build();
+
+    byte[] payload = CborPayloadEncoder.forSchema(schema).encodeObject(
+        new Object[] { "b", PREFIX + "A", PREFIX + "Unknown" },
+        new Object[] { new Object[] { 2, 3 }, 1, "x" });
+
+    assertEquals("a26161016162820203", toHex(payload));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRoundTrip() throws IOException {
+    ObjectSchema schema = new ObjectSchema.Builder()
+        .addProperty("name", new StringSchema.Builder().build())
+        .addProperty("samples", new ArraySchema.Builder()
+            .addItem(new NumberSchema.Builder().build())
+            .build())
+        .addProperty("on", new BooleanSchema.Builder().build())
+        .build();
+
+    byte[] payload = CborPayloadEncoder.forSchema(schema).encodeObject(
+        new Object[] { "name", "samples", "on" },
+        new Object[] { "sensor", new Object[] { 1.5, 2, -3.25, 0.1 }, false });
+
+    Map<String, Object> value = (Map<String, Object>) CborPayloadDecoder.forSchema(schema)
+        .decode(payload).get();
+
+    assertEquals("sensor", value.get("name"));
+    assertTrue(value.get("samples") instanceof Double[]);
+    assertArrayEquals(new Double[] { 1.5, 2.0, -3.25, 0.1 }, (Object[]) value.get("samples"));
+    assertFalse((Boolean) value.get("on"));
+  }
+
+  @Test
+  public void testIndefiniteLengths() throws IOException {
+    ArraySchema schema = new ArraySchema.Builder()
+        .addItem(new StringSchema.Builder().build())
+        .build();
+
+    // An indefinite array of a chunked string and a tagged string, and a half-precision float
+    Object[] values = (Object[]) CborPayloadDecoder.forSchema(schema)
+        .decode(fromHex("9f 7f 626162 6161 ff c0 626364 ff")).get();
+
+    assertArrayEquals(new String[] { "aba", "cd" }, values);
+    assertEquals(-4.0, (Double) CborPayloadDecoder.untyped().decode(fromHex("f9c400")).get(), 0);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testUntyped() throws IOException {
+    Map<String, Object> value = (Map<String, Object>) CborPayloadDecoder.untyped().decode(
+        new ByteArrayEntity(fromHex("a3616101616282f6f5616343010203"),
+            ContentType.create(PayloadCodecs.CBOR))).get();
+
+    assertEquals(1.0, value.get("a"));
+    assertNull(((Object[]) value.get("b"))[0]);
+    assertEquals(true, ((Object[]) value.get("b"))[1]);
+    assertEquals("AQID", value.get("c"));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedPayload() throws IOException {
+    CborPayloadDecoder.forSchema(new StringSchema.Builder().build()).decode(fromHex("6449455"));
+  }
+
+  private static String encode(DataSchema schema, Object value) {
+    return toHex(CborPayloadEncoder.forSchema(schema).encodePrimitive(value));
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b & 0xFF));
+    }
+    return hex.toString();
+  }
+
+  private static byte[] fromHex(String hex) {
+    hex = hex.replace(" ", "");
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i ++) {
+      bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,106 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.hyperagents.jacamo.artifacts.http.HttpClientPool;
+import org.hyperagents.jacamo.artifacts.http.RequestTimeoutException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FutureCmdTest {
+  private Server server;
+  private String baseUrl;
+
+  /* Slow reads are answered once released */
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @Before
+  public void setUp() throws Exception {
+    server = new Server(0);
+    server.setHandler(new AbstractHandler() {
+
+      @Override
+      public void handle(String target, Request baseRequest, HttpServletRequest request,
+          HttpServletResponse response) throws IOException {
+        baseRequest.setHandled(true);
+
+        if (target.equals("/slow")) {
+          try {
+            release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.getWriter().write("{\"value\":1}");
+      }
+    });
+    server.start();
+
+    baseUrl = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    server.stop();
+  }
+
+  @Test
+  public void testOtherOperationProceedsWhileReadIsInFlight() throws Exception {
+    FutureCmd<ClassicHttpResponse> read = new FutureCmd<ClassicHttpResponse>(
+        HttpClientPool.executeAsync(new HttpGet(baseUrl + "/slow")));
+
+    // The awaiting operation is suspended (as with CArtAgO's await) while the read is in flight
+    Thread awaiting = new Thread(read::exec);
+    awaiting.start();
+
+    ClassicHttpResponse response = HttpClientPool.execute(new HttpGet(baseUrl + "/fast"));
+    assertEquals(200, response.getCode());
+    assertTrue(awaiting.isAlive());
+
+    release.countDown();
+    awaiting.join(5000);
+    assertFalse(awaiting.isAlive());
+    assertEquals(200, read.getResult().getCode());
+  }
+
+  @Test
+  public void testExpiredReadIsCancelled() throws Exception {
+    CompletableFuture<ClassicHttpResponse> future =
+        HttpClientPool.executeAsync(new HttpGet(baseUrl + "/slow"));
+    FutureCmd<ClassicHttpResponse> read = new FutureCmd<ClassicHttpResponse>(future,
+        Optional.of(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100)));
+
+    read.exec();
+
+    assertTrue(future.isCancelled());
+    try {
+      read.getResult();
+      fail("Expected a RequestTimeoutException");
+    } catch (RequestTimeoutException e) {
+      // Expected
+    }
+  }
+}
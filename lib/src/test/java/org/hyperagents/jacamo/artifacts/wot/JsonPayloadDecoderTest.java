@@ -0,0 +1,115 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.junit.Test;
+
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.BooleanSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.IntegerSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.NumberSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.StringSchema;
+
+public class JsonPayloadDecoderTest {
+
+  @Test
+  public void testTypedArray() throws IOException {
+    ArraySchema schema = new ArraySchema.Builder()
+        .addItem(new NumberSchema.Builder().build())
+        .build();
+
+    Object[] values = (Object[]) decode("[1.5, 2, -3.25]", schema);
+
+    assertTrue(values instanceof Double[]);
+    assertArrayEquals(new Double[] { 1.5, 2.0, -3.25 }, values);
+  }
+
+  @Test
+  public void testLargeArray() throws IOException {
+    ArraySchema schema = new ArraySchema.Builder()
+        .addItem(new IntegerSchema.Builder().build())
+        .build();
+
+    StringBuilder payload = new StringBuilder("[0");
+    for (int i = 1; i < 10000; i ++) {
+      payload.append(',').append(i);
+    }
+    payload.append(']');
+
+    Object[] values = (Object[]) decode(payload.toString(), schema);
+
+    assertTrue(values instanceof Integer[]);
+    assertEquals(10000, values.length);
+    assertEquals(9999, values[9999]);
+  }
+
+  @Test
+  public void testNestedArrays() throws IOException {
+    ArraySchema schema = new ArraySchema.Builder()
+        .addItem(new ArraySchema.Builder()
+            .addItem(new BooleanSchema.Builder().build())
+            .build())
+        .build();
+
+    Object[] values = (Object[]) decode("[[true], [false, true], []]", schema);
+
+    assertEquals(3, values.length);
+    assertArrayEquals(new Boolean[] { true }, (Object[]) values[0]);
+    assertArrayEquals(new Boolean[] { false, true }, (Object[]) values[1]);
+    assertArrayEquals(new Boolean[0], (Object[]) values[2]);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testObject() throws IOException {
+    ObjectSchema schema = new ObjectSchema.Builder()
+        .addProperty("name", new StringSchema.Builder().build())
+        .addProperty("samples", new ArraySchema.Builder()
+            .addItem(new NumberSchema.Builder().build())
+            .build())
+        .build();
+
+    Map<String, Object> value = (Map<String, Object>) decode("{\"name\" : \"sensor\", "
+        + "\"samples\" : [0.5, 1], \"unit\" : \"C\", \"ok\" : true}", schema);
+
+    assertArrayEquals(new Object[] { "name", "samples", "unit", "ok" }, value.keySet().toArray());
+    assertEquals("sensor", value.get("name"));
+    assertArrayEquals(new Double[] { 0.5, 1.0 }, (Object[]) value.get("samples"));
+    assertEquals("C", value.get("unit"));
+    assertEquals(true, value.get("ok"));
+  }
+
+  @Test
+  public void testEntity() throws IOException {
+    ArraySchema schema = new ArraySchema.Builder()
+        .addItem(new StringSchema.Builder().build())
+        .build();
+
+    Object[] values = (Object[]) JsonPayloadDecoder.forSchema(schema)
+        .decode(new StringEntity("[\"a\", \"b\"]", ContentType.APPLICATION_JSON)).get();
+
+    assertArrayEquals(new String[] { "a", "b" }, values);
+    assertFalse(JsonPayloadDecoder.forSchema(schema).decode((HttpEntity) null).isPresent());
+  }
+
+  @Test(expected = IOException.class)
+  public void testSchemaMismatch() throws IOException {
+    decode("{\"a\" : 1}", new ArraySchema.Builder().build());
+  }
+
+  private Object decode(String payload, DataSchema schema) throws IOException {
+    return JsonPayloadDecoder.forSchema(schema).decode(new StringReader(payload)).get();
+  }
+}
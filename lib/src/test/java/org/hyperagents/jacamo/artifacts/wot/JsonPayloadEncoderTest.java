@@ -0,0 +1,103 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
+import ch.unisg.ics.interactions.wot.td.schemas.BooleanSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.IntegerSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.NumberSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.StringSchema;
+
+public class JsonPayloadEncoderTest {
+  private static final String PREFIX = "http://example.org/";
+
+  @Test
+  public void testPrimitivePayloads() {
+    assertEquals("true", encodePrimitive(new BooleanSchema.Builder().build(), true));
+    assertEquals("-42", encodePrimitive(new IntegerSchema.Builder().build(), -42));
+    assertEquals("42", encodePrimitive(new IntegerSchema.Builder().build(), 42.0));
+    assertEquals("0.05", encodePrimitive(new NumberSchema.Builder().build(), 0.05));
+    assertEquals("\"bla\\\"bla\\n\\u0001\u00e9\"",
+        encodePrimitive(new StringSchema.Builder().build(), "bla\"bla\n\u0001\u00e9"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPrimitiveMismatch() {
+    encodePrimitive(new IntegerSchema.Builder().build(), "42");
+  }
+
+  @Test
+  public void testObjectPayload() {
+    ObjectSchema schema = new ObjectSchema.Builder()
+        .addProperty("first_name", new StringSchema.Builder()
+            .addSemanticType(PREFIX + "FirstName")
+            .build())
+        .addProperty("age", new IntegerSchema.Builder()
+            .addSemanticType(PREFIX + "Age")
+            .build())
+        .build();
+
+    byte[] payload = JsonPayloadEncoder.forSchema(schema).encodeObject(
+        new Object[] { PREFIX + "Age", "first_name", PREFIX + "Unknown" },
+        new Object[] { 42, "John", "Doe" });
+
+    assertEquals("{\"first_name\":\"John\",\"age\":42}",
+        new String(payload, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testPropertiesPayload() {
+    // Payloads for writing multiple properties are objects of the properties' values
+    ObjectSchema schema = new ObjectSchema.Builder()
+        .addProperty("on", new BooleanSchema.Builder().build())
+        .addProperty("color", new ObjectSchema.Builder()
+            .addProperty("hue", new IntegerSchema.Builder().build())
+            .build())
+        .build();
+
+    Map<String, Object> color = new LinkedHashMap<String, Object>();
+    color.put("hue", 120);
+
+    byte[] payload = JsonPayloadEncoder.forSchema(schema).encodeObject(
+        new Object[] { "color", "on" }, new Object[] { color, true });
+
+    assertEquals("{\"on\":true,\"color\":{\"hue\":120}}",
+        new String(payload, StandardCharsets.UTF_8));
+    assertEquals("{\"hue\":120}", new String(JsonPayloadEncoder.forSchema(
+        schema.getProperties().get("color")).encodeValue(color), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testArrayPayload() {
+    ArraySchema schema = new ArraySchema.Builder()
+        .addItem(new NumberSchema.Builder().build())
+        .build();
+
+    byte[] payload = JsonPayloadEncoder.forSchema(schema)
+        .encodeArray(new Object[] { 1.5, 2, -3.25 });
+    assertEquals("[1.5,2,-3.25]", new String(payload, StandardCharsets.UTF_8));
+
+    payload = JsonPayloadEncoder.forSchema(new ArraySchema.Builder().build())
+        .encodeArray(new Object[] { "John", 42, true, new Object[] { 2.5 } });
+    assertEquals("[\"John\",42,true,[2.5]]", new String(payload, StandardCharsets.UTF_8));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testArrayMismatch() {
+    JsonPayloadEncoder.forSchema(new ObjectSchema.Builder().build())
+        .encodeArray(new Object[] { 1, 2 });
+  }
+
+  private String encodePrimitive(DataSchema schema, Object value) {
+    return new String(JsonPayloadEncoder.forSchema(schema).encodePrimitive(value),
+        StandardCharsets.UTF_8);
+  }
+}
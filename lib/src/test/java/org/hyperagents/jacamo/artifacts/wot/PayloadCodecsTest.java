@@ -0,0 +1,27 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+public class PayloadCodecsTest {
+
+  @Test
+  public void testLookup() {
+    assertEquals(PayloadCodecs.JSON, PayloadCodecs.forContentType("application/json; charset=UTF-8")
+        .get().getMediaType());
+    assertEquals(PayloadCodecs.CBOR, PayloadCodecs.forContentType("Application/CBOR").get()
+        .getMediaType());
+    assertFalse(PayloadCodecs.forContentType("text/plain").isPresent());
+    assertFalse(PayloadCodecs.forContentType(null).isPresent());
+  }
+
+  @Test
+  public void testStructuredSyntaxSuffix() {
+    assertEquals(PayloadCodecs.JSON, PayloadCodecs.forContentType("application/td+json").get()
+        .getMediaType());
+    assertEquals(PayloadCodecs.CBOR, PayloadCodecs.forContentType("application/senml+cbor").get()
+        .getMediaType());
+  }
+}
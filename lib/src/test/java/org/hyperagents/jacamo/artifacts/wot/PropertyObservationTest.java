@@ -0,0 +1,61 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PropertyObservationTest {
+
+  private void assertDelay(long expected, PropertyObservation observation) {
+    long delay = observation.nextDelay();
+    assertTrue(delay >= Math.round(expected * (1 - PropertyObservation.JITTER)));
+    assertTrue(delay <= Math.round(expected * (1 + PropertyObservation.JITTER)));
+  }
+
+  @Test
+  public void testBackOffWhileUnchanged() {
+    PropertyObservation observation = new PropertyObservation("temperature", 100);
+
+    assertTrue(observation.update(new Object[] { 21.5 }));
+    assertDelay(100, observation);
+
+    assertFalse(observation.update(new Object[] { 21.5 }));
+    assertDelay(200, observation);
+
+    for (int i = 0; i < 10; i ++) {
+      observation.update(new Object[] { 21.5 });
+    }
+    assertDelay(100 * PropertyObservation.MAX_BACKOFF_FACTOR, observation);
+
+    assertTrue(observation.update(new Object[] { 22.0 }));
+    assertDelay(100, observation);
+  }
+
+  @Test
+  public void testNestedValues() {
+    PropertyObservation observation = new PropertyObservation("position", 100);
+
+    assertTrue(observation.update(new Object[] { new Object[] { 1, 2 } }));
+    assertFalse(observation.update(new Object[] { new Object[] { 1, 2 } }));
+    assertTrue(observation.update(new Object[] { new Object[] { 1, 3 } }));
+  }
+
+  @Test
+  public void testSharedObservation() {
+    PropertyObservation observation = new PropertyObservation("temperature", 1000);
+    observation.addObserver(200);
+    assertEquals(200, observation.getPeriod());
+
+    observation.addObserver(500);
+    assertEquals(200, observation.getPeriod());
+
+    assertFalse(observation.removeObserver());
+    assertFalse(observation.removeObserver());
+    assertTrue(observation.isActive());
+
+    assertTrue(observation.removeObserver());
+    assertFalse(observation.isActive());
+  }
+}
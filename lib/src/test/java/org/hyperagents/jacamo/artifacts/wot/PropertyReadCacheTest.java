@@ -0,0 +1,107 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+
+import org.junit.Test;
+
+public class PropertyReadCacheTest {
+
+  @Test
+  public void testFreshEntry() {
+    PropertyReadCache cache = new PropertyReadCache(60000);
+    cache.put("temperature", null, new Object[] { 21.5 }, Optional.of("\"v1\""),
+        cache.getGeneration());
+
+    PropertyReadCache.Entry entry = cache.get("temperature").get();
+    assertTrue(entry.isFresh());
+    assertArrayEquals(new Object[] { 21.5 }, entry.values);
+    assertEquals("\"v1\"", entry.etag.get());
+  }
+
+  @Test
+  public void testStaleEntryIsKeptForRevalidation() throws InterruptedException {
+    PropertyReadCache cache = new PropertyReadCache(1);
+    cache.put("temperature", null, new Object[] { 21.5 }, Optional.of("\"v1\""),
+        cache.getGeneration());
+    Thread.sleep(5);
+
+    PropertyReadCache.Entry entry = cache.get("temperature").get();
+    assertFalse(entry.isFresh());
+
+    cache.refresh("temperature", entry);
+    assertArrayEquals(new Object[] { 21.5 }, cache.get("temperature").get().values);
+  }
+
+  @Test
+  public void testInvalidate() {
+    PropertyReadCache cache = new PropertyReadCache(60000);
+    cache.put("temperature", null, new Object[] { 21.5 }, Optional.empty(), cache.getGeneration());
+    cache.put("humidity", null, new Object[] { 40 }, Optional.empty(), cache.getGeneration());
+
+    cache.invalidate("temperature");
+    assertFalse(cache.get("temperature").isPresent());
+    assertTrue(cache.get("humidity").isPresent());
+
+    cache.clear();
+    assertFalse(cache.get("humidity").isPresent());
+  }
+
+  @Test
+  public void testReadOverlappingWriteIsNotCached() {
+    PropertyReadCache cache = new PropertyReadCache(60000);
+
+    // A read is issued, then a write is issued before the read completes
+    long read = cache.getGeneration();
+    cache.invalidate("state");
+    cache.put("state", null, new Object[] { "off" }, Optional.empty(), read);
+    assertFalse(cache.get("state").isPresent());
+
+    // A read is issued while the write is in flight, and completes before the write
+    long readDuringWrite = cache.getGeneration();
+    cache.invalidate("state");
+    PropertyReadCache.Entry entry = cache.put("state", null, new Object[] { "off" },
+        Optional.empty(), readDuringWrite);
+    assertArrayEquals(new Object[] { "off" }, entry.values);
+    assertFalse(cache.get("state").isPresent());
+
+    // A read issued once the write completed is cached
+    cache.put("state", null, new Object[] { "on" }, Optional.empty(), cache.getGeneration());
+    assertArrayEquals(new Object[] { "on" }, cache.get("state").get().values);
+  }
+
+  @Test
+  public void testWriteDoesNotPreventCachingOtherProperties() {
+    PropertyReadCache cache = new PropertyReadCache(60000);
+
+    long read = cache.getGeneration();
+    cache.invalidate("state");
+    cache.put("humidity", null, new Object[] { 40 }, Optional.empty(), read);
+    assertTrue(cache.get("humidity").isPresent());
+
+    // Clearing the cache (e.g., on a notification) prevents caching reads of all properties
+    read = cache.getGeneration();
+    cache.clear();
+    cache.put("humidity", null, new Object[] { 41 }, Optional.empty(), read);
+    assertFalse(cache.get("humidity").isPresent());
+  }
+
+  @Test
+  public void testHitRatio() {
+    PropertyReadCache cache = new PropertyReadCache(60000);
+    assertEquals(0, cache.getHitRatio(), 0.001);
+
+    cache.recordMiss();
+    cache.recordHit();
+    cache.recordHit();
+    cache.recordHit();
+
+    assertEquals(3, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(0.75, cache.getHitRatio(), 0.001);
+  }
+}
@@ -1,26 +1,39 @@
 package org.hyperagents.jacamo.artifacts.wot;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.ParseException;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.http.message.BasicClassicHttpResponse;
+import org.hyperagents.jacamo.artifacts.wot.AffordanceTable.AffordanceTemplate;
 import org.junit.Before;
 import org.junit.Test;
 
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
 import ch.unisg.ics.interactions.wot.td.affordances.Form;
+import ch.unisg.ics.interactions.wot.td.affordances.PropertyAffordance;
 import ch.unisg.ics.interactions.wot.td.clients.TDHttpRequest;
 import ch.unisg.ics.interactions.wot.td.schemas.ArraySchema;
 import ch.unisg.ics.interactions.wot.td.schemas.BooleanSchema;
+import ch.unisg.ics.interactions.wot.td.schemas.DataSchema;
 import ch.unisg.ics.interactions.wot.td.schemas.IntegerSchema;
 import ch.unisg.ics.interactions.wot.td.schemas.NumberSchema;
 import ch.unisg.ics.interactions.wot.td.schemas.ObjectSchema;
@@ -140,4 +153,120 @@ public class ThingArtifactTest {
     assertEquals("1", ((Object[]) array[1])[0]);
     assertEquals(2, ((Object[]) array[1])[1]);
   }
+
+  @Test
+  public void testReadResultsAreAlignedWithTags() {
+    AffordanceTable table = new AffordanceTable(new ThingDescription.Builder("Lamp")
+        .addProperty(readableProperty("level", new IntegerSchema.Builder().build()))
+        .addProperty(readableProperty("state", new BooleanSchema.Builder().build()))
+        .addProperty(readableProperty("color", new StringSchema.Builder().build()))
+        .build());
+
+    Object[] tags = new Object[] { "level", "state", "color" };
+    Map<Integer, AffordanceTemplate> properties = new LinkedHashMap<Integer, AffordanceTemplate>();
+    Map<Integer, CompletableFuture<ClassicHttpResponse>> responses =
+        new LinkedHashMap<Integer, CompletableFuture<ClassicHttpResponse>>();
+    for (int i = 0; i < tags.length; i ++) {
+      properties.put(i, table.getProperty((String) tags[i]).get());
+    }
+
+    CompletableFuture<ClassicHttpResponse> failed = new CompletableFuture<ClassicHttpResponse>();
+    failed.completeExceptionally(new IOException("Connection refused"));
+    responses.put(0, failed);
+
+    ClassicHttpResponse ok = new BasicClassicHttpResponse(200);
+    ok.setEntity(new StringEntity("true", ContentType.APPLICATION_JSON));
+    responses.put(1, CompletableFuture.completedFuture(ok));
+
+    responses.put(2, CompletableFuture.completedFuture(new BasicClassicHttpResponse(503)));
+
+    Object[] values = new Object[] { new Object[0], new Object[0], new Object[0] };
+    List<Object> errors = new ArrayList<Object>();
+    artifact.collectReadResults(tags, properties, responses, values, errors);
+
+    // The value of each property is at the index of its tag, whether the other reads failed or not
+    assertArrayEquals(new Object[0], (Object[]) values[0]);
+    assertArrayEquals(new Object[] { true }, (Object[]) values[1]);
+    assertArrayEquals(new Object[0], (Object[]) values[2]);
+
+    assertEquals(2, errors.size());
+    assertArrayEquals(new Object[] { "level", "Connection refused" }, (Object[]) errors.get(0));
+    assertArrayEquals(new Object[] { "color", "Status code: 503" }, (Object[]) errors.get(1));
+  }
+
+  @Test
+  public void testObjectValuesAreReadAsPairs() {
+    AffordanceTable table = new AffordanceTable(new ThingDescription.Builder("Lamp")
+        .addProperty(readableProperty("color", colorSchema()))
+        .build());
+
+    Object[] tags = new Object[] { "color" };
+    Map<Integer, AffordanceTemplate> properties = new LinkedHashMap<Integer, AffordanceTemplate>();
+    properties.put(0, table.getProperty("color").get());
+
+    // Members are returned with their names, whatever their order in the response
+    ClassicHttpResponse ok = new BasicClassicHttpResponse(200);
+    ok.setEntity(new StringEntity("{\"blue\":0,\"red\":255}", ContentType.APPLICATION_JSON));
+    Map<Integer, CompletableFuture<ClassicHttpResponse>> responses =
+        new LinkedHashMap<Integer, CompletableFuture<ClassicHttpResponse>>();
+    responses.put(0, CompletableFuture.completedFuture(ok));
+
+    Object[] values = new Object[] { new Object[0] };
+    List<Object> errors = new ArrayList<Object>();
+    artifact.collectReadResults(tags, properties, responses, values, errors);
+
+    assertColorPairs((Object[]) values[0]);
+    assertTrue(errors.isEmpty());
+  }
+
+  @Test
+  public void testObjectValuesAreReadAsPairsInBulk() {
+    AffordanceTable table = new AffordanceTable(new ThingDescription.Builder("Lamp")
+        .addProperty(readableProperty("color", colorSchema()))
+        .addProperty(readableProperty("state", new BooleanSchema.Builder().build()))
+        .build());
+
+    Object[] tags = new Object[] { "color", "state" };
+    Map<Integer, AffordanceTemplate> properties = new LinkedHashMap<Integer, AffordanceTemplate>();
+    properties.put(0, table.getProperty("color").get());
+    properties.put(1, table.getProperty("state").get());
+
+    Map<String, Object> color = new LinkedHashMap<String, Object>();
+    color.put("blue", 0);
+    color.put("red", 255);
+    Map<String, Object> payload = new LinkedHashMap<String, Object>();
+    payload.put("color", color);
+
+    Object[] values = new Object[] { new Object[0], new Object[0] };
+    List<Object> errors = new ArrayList<Object>();
+    artifact.collectBulkResults(tags, properties, payload, "Missing", values, errors);
+
+    assertColorPairs((Object[]) values[0]);
+    assertArrayEquals(new Object[0], (Object[]) values[1]);
+    assertEquals(1, errors.size());
+    assertArrayEquals(new Object[] { "state", "Missing" }, (Object[]) errors.get(0));
+  }
+
+  private static DataSchema colorSchema() {
+    return new ObjectSchema.Builder()
+        .addProperty("red", new IntegerSchema.Builder().build())
+        .addProperty("blue", new IntegerSchema.Builder().build())
+        .build();
+  }
+
+  /* Checks a color read as [[blue, 0], [red, 255]] */
+  private static void assertColorPairs(Object[] value) {
+    assertEquals(2, value.length);
+    assertArrayEquals(new Object[] { "blue", 0 }, (Object[]) value[0]);
+    assertArrayEquals(new Object[] { "red", 255 }, (Object[]) value[1]);
+  }
+
+  private static PropertyAffordance readableProperty(String name, DataSchema schema) {
+    return new PropertyAffordance.Builder(name, schema, Arrays.asList(
+        new Form.Builder(PREFIX + name)
+            .addOperationType(TD.readProperty)
+            .setMethodName("GET")
+            .build()))
+        .build();
+  }
 }
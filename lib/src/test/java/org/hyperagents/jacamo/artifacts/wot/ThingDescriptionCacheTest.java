@@ -0,0 +1,234 @@
+package org.hyperagents.jacamo.artifacts.wot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.unisg.ics.interactions.wot.td.ThingDescription;
+
+public class ThingDescriptionCacheTest {
+  private Server server;
+  private String baseUrl;
+
+  /* The state of the TDs served, by path */
+  private final Map<String, String> titles = new ConcurrentHashMap<String, String>();
+  private final Map<String, String> etags = new ConcurrentHashMap<String, String>();
+  private volatile String cacheControl = "max-age=60";
+
+  private final Map<String, AtomicInteger> requests =
+      new ConcurrentHashMap<String, AtomicInteger>();
+  private final AtomicInteger conditionalRequests = new AtomicInteger();
+
+  @Before
+  public void setUp() throws Exception {
+    server = new Server(0);
+    server.setHandler(new AbstractHandler() {
+
+      @Override
+      public void handle(String target, Request baseRequest, HttpServletRequest request,
+          HttpServletResponse response) throws IOException {
+        baseRequest.setHandled(true);
+        requests.computeIfAbsent(target, path -> new AtomicInteger()).incrementAndGet();
+
+        if (target.startsWith("/missing")) {
+          response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+          return;
+        }
+
+        String etag = etags.computeIfAbsent(target, path -> "\"1\"");
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", cacheControl);
+
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+          conditionalRequests.incrementAndGet();
+
+          if (ifNoneMatch.equals(etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+          }
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/turtle");
+        response.getWriter().write(createThingDescription(titles.getOrDefault(target, "Thing")));
+      }
+    });
+    server.start();
+
+    baseUrl = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.stop();
+  }
+
+  @Test
+  public void testFreshEntryIsHit() throws IOException {
+    ThingDescriptionCache cache = new ThingDescriptionCache(16, 60000);
+
+    ThingDescription td = cache.get(baseUrl + "/lamp");
+    assertSame(td, cache.get(baseUrl + "/lamp"));
+
+    assertEquals(1, getRequests("/lamp"));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(0, cache.getRevalidations());
+  }
+
+  @Test
+  public void testStaleEntryIsRevalidated() throws Exception {
+    cacheControl = "max-age=1";
+    ThingDescriptionCache cache = new ThingDescriptionCache(16, 60000);
+
+    ThingDescription td = cache.get(baseUrl + "/lamp");
+    Thread.sleep(1100);
+
+    // The TD is unchanged, so the server answers with 304
+    assertSame(td, cache.get(baseUrl + "/lamp"));
+    assertEquals(2, getRequests("/lamp"));
+    assertEquals(1, conditionalRequests.get());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getRevalidations());
+
+    // The revalidated entry is fresh again
+    cache.get(baseUrl + "/lamp");
+    assertEquals(2, getRequests("/lamp"));
+    assertEquals(2, cache.getHits());
+  }
+
+  @Test
+  public void testChangedEntryIsReplaced() throws IOException {
+    cacheControl = "max-age=0";
+    ThingDescriptionCache cache = new ThingDescriptionCache(16, 60000);
+
+    titles.put("/lamp", "Lamp");
+    assertEquals("Lamp", cache.get(baseUrl + "/lamp").getTitle());
+
+    titles.put("/lamp", "Dimmable lamp");
+    etags.put("/lamp", "\"2\"");
+
+    // The conditional request does not match, so the server answers with the new TD
+    assertEquals("Dimmable lamp", cache.get(baseUrl + "/lamp").getTitle());
+    assertEquals(1, conditionalRequests.get());
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertEquals(0, cache.getRevalidations());
+  }
+
+  @Test
+  public void testNoStoreIsNotCached() throws IOException {
+    cacheControl = "no-store";
+    ThingDescriptionCache cache = new ThingDescriptionCache(16, 60000);
+
+    cache.get(baseUrl + "/lamp");
+    assertEquals(0, cache.size());
+
+    cache.get(baseUrl + "/lamp");
+    assertEquals(2, getRequests("/lamp"));
+    assertEquals(0, conditionalRequests.get());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void testNoCacheIsAlwaysRevalidated() throws IOException {
+    cacheControl = "no-cache";
+    ThingDescriptionCache cache = new ThingDescriptionCache(16, 60000);
+
+    ThingDescription td = cache.get(baseUrl + "/lamp");
+    assertEquals(1, cache.size());
+
+    assertSame(td, cache.get(baseUrl + "/lamp"));
+    assertSame(td, cache.get(baseUrl + "/lamp"));
+    assertEquals(3, getRequests("/lamp"));
+    assertEquals(2, conditionalRequests.get());
+    assertEquals(2, cache.getRevalidations());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntryIsEvicted() throws IOException {
+    ThingDescriptionCache cache = new ThingDescriptionCache(2, 60000);
+
+    cache.get(baseUrl + "/a");
+    cache.get(baseUrl + "/b");
+    // Uses /a, such that /b is the least recently used entry
+    cache.get(baseUrl + "/a");
+    cache.get(baseUrl + "/c");
+    assertEquals(2, cache.size());
+
+    cache.get(baseUrl + "/a");
+    cache.get(baseUrl + "/c");
+    assertEquals(1, getRequests("/a"));
+    assertEquals(1, getRequests("/c"));
+
+    cache.get(baseUrl + "/b");
+    assertEquals(2, getRequests("/b"));
+    assertEquals(3, cache.getHits());
+    assertEquals(4, cache.getMisses());
+  }
+
+  @Test
+  public void testInvalidatedEntryIsRetrieved() throws IOException {
+    ThingDescriptionCache cache = new ThingDescriptionCache(16, 60000);
+
+    cache.get(baseUrl + "/lamp");
+    cache.invalidate(baseUrl + "/lamp");
+    assertEquals(0, cache.size());
+
+    // The entry is retrieved without validators
+    cache.get(baseUrl + "/lamp");
+    assertEquals(2, getRequests("/lamp"));
+    assertEquals(0, conditionalRequests.get());
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void testMissingThingDescriptionIsNotCached() {
+    ThingDescriptionCache cache = new ThingDescriptionCache(16, 60000);
+
+    for (int i = 0; i < 2; i ++) {
+      try {
+        cache.get(baseUrl + "/missing");
+        fail("Expected an IOException");
+      } catch (IOException e) {
+        // Expected
+      }
+    }
+
+    assertEquals(0, cache.size());
+    assertEquals(2, getRequests("/missing"));
+    assertEquals(0, cache.getMisses());
+  }
+
+  private int getRequests(String path) {
+    AtomicInteger count = requests.get(path);
+    return count == null ? 0 : count.get();
+  }
+
+  private static String createThingDescription(String title) {
+    return "@prefix td: <https://www.w3.org/2019/wot/td#> .\n"
+        + "@prefix wotsec: <https://www.w3.org/2019/wot/security#> .\n\n"
+        + "<http://example.org/thing> a td:Thing ;\n"
+        + "  td:title \"" + title + "\" ;\n"
+        + "  td:hasSecurityConfiguration [ a wotsec:NoSecurityScheme ] .\n";
+  }
+}
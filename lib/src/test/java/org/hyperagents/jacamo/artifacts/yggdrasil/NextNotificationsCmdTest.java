@@ -0,0 +1,59 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class NextNotificationsCmdTest {
+
+    @Test
+    public void testWakesUpOnNotification() throws Exception {
+        NotificationQueue queue = new NotificationQueue(100, false);
+        NextNotificationsCmd cmd = new NextNotificationsCmd(queue, 0, 256);
+
+        CompletableFuture<Void> exec = CompletableFuture.runAsync(cmd::exec);
+        Thread.sleep(50);
+        assertFalse(exec.isDone());
+
+        queue.offer(new Notification("http://example.org/lamp", "state(\"on\")"));
+        exec.get(1, TimeUnit.SECONDS);
+
+        assertEquals(1, cmd.getBatch().size());
+        assertEquals("http://example.org/lamp", cmd.getBatch().get(0).getEntityIRI());
+    }
+
+    @Test
+    public void testBatchingWindow() throws Exception {
+        NotificationQueue queue = new NotificationQueue(100, false);
+        NextNotificationsCmd cmd = new NextNotificationsCmd(queue,
+                TimeUnit.MILLISECONDS.toNanos(200), 3);
+
+        CompletableFuture<Void> exec = CompletableFuture.runAsync(cmd::exec);
+        for (int i = 0; i < 4; i++) {
+            queue.offer(new Notification("http://example.org/lamp" + i, "state(" + i + ")"));
+            Thread.sleep(10);
+        }
+        exec.get(1, TimeUnit.SECONDS);
+
+        // The batch is delivered once it is full, and the remaining notification stays pending
+        assertEquals(3, cmd.getBatch().size());
+        assertEquals("http://example.org/lamp2", cmd.getBatch().get(2).getEntityIRI());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testWakeUpWithoutNotifications() throws Exception {
+        NotificationQueue queue = new NotificationQueue(100, false);
+        NextNotificationsCmd cmd = new NextNotificationsCmd(queue, 0, 256);
+
+        queue.wakeUp();
+        cmd.exec();
+
+        assertTrue(cmd.getBatch().isEmpty());
+    }
+}
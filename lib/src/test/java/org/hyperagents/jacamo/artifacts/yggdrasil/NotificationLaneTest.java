@@ -0,0 +1,48 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class NotificationLaneTest {
+
+    @Test
+    public void testArtifactsAreShardedAcrossLanes() {
+        NotificationLane[] lanes = new NotificationLane[4];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new NotificationLane(i, 10, false);
+        }
+
+        Set<Integer> used = new HashSet<Integer>();
+        for (int i = 0; i < 100; i++) {
+            String artifactIRI = "http://example.org/workspaces/w1/artifacts/a" + i;
+            NotificationLane lane = NotificationLane.forArtifact(lanes, artifactIRI);
+
+            // The notifications of an artifact are always delivered by the same lane
+            assertSame(lane, NotificationLane.forArtifact(lanes, artifactIRI));
+            used.add(lane.getIndex());
+        }
+
+        assertEquals(lanes.length, used.size());
+    }
+
+    @Test
+    public void testRecordsDeliveryLag() throws Exception {
+        NotificationLane lane = new NotificationLane(0, 10, false);
+        Notification notification = new Notification("http://example.org/lamp", "state(1)");
+
+        lane.getQueue().offer(notification);
+        Thread.sleep(20);
+        assertTrue(lane.getQueue().getOldestWaitNanos() >= 20000000L);
+
+        lane.recordDelivery(lane.getQueue().take());
+        assertEquals(1, lane.getLags().getCount());
+        assertTrue(lane.getLags().getQuantileMicros(0.5) >= 15000);
+        assertEquals(0, lane.getQueue().getOldestWaitNanos());
+    }
+}
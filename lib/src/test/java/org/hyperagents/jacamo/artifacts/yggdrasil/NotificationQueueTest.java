@@ -0,0 +1,58 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class NotificationQueueTest {
+    private static final String LAMP = "http://example.org/lamp";
+    private static final String FAN = "http://example.org/fan";
+
+    @Test
+    public void testRejectsWhenFull() throws Exception {
+        NotificationQueue queue = new NotificationQueue(2, false);
+
+        assertTrue(queue.offer(new Notification(LAMP, "state(1)")));
+        assertTrue(queue.offer(new Notification(LAMP, "state(2)")));
+        assertFalse(queue.offer(new Notification(LAMP, "state(3)")));
+        assertEquals(1, queue.getRejected());
+
+        assertEquals("state(1)", queue.take().getMessage());
+        assertTrue(queue.offer(new Notification(LAMP, "state(3)")));
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        NotificationQueue queue = new NotificationQueue(2, true);
+
+        assertTrue(queue.offer(new Notification(LAMP, "state(1)")));
+        assertTrue(queue.offer(new Notification(FAN, "speed(1)")));
+        // The latest state of the lamp replaces the pending one, without taking up capacity
+        assertTrue(queue.offer(new Notification(LAMP, "state(2)")));
+        assertEquals(1, queue.getCoalesced());
+
+        List<Notification> batch = new ArrayList<Notification>();
+        assertEquals(2, queue.drainTo(batch, 10));
+        assertEquals("state(2)", batch.get(0).getMessage());
+        assertEquals("speed(1)", batch.get(1).getMessage());
+
+        // Notifications received after delivery are no longer coalesced with delivered ones
+        assertTrue(queue.offer(new Notification(LAMP, "state(3)")));
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.getCoalesced());
+    }
+
+    @Test
+    public void testPollTimesOut() throws Exception {
+        NotificationQueue queue = new NotificationQueue(2, false);
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,96 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.junit.Test;
+
+public class NotificationRequestsTest {
+    private static final String LAMP = "http://example.org/workspaces/w1/artifacts/lamp";
+
+    private final ByteBufferPool bufferPool = new ArrayByteBufferPool();
+
+    @Test
+    public void testFindSelfLink() {
+        assertEquals(LAMP, findSelfLink("<http://example.org/hub>; rel=\"hub\"",
+                "<" + LAMP + ">; rel=\"self\""));
+        // Several links in a single header, and several relation types
+        assertEquals(LAMP, findSelfLink("<http://example.org/hub>; rel=hub, <" + LAMP
+                + ">; rel=\"alternate self\"; type=\"text/turtle\""));
+        assertEquals(LAMP, findSelfLink("<" + LAMP + ">;rel=self"));
+        assertFalse(NotificationRequests.findSelfLink(Collections.enumeration(Arrays.asList(
+                "<http://example.org/hub>; rel=\"hub\""))).isPresent());
+    }
+
+    @Test
+    public void testReadBody() throws IOException {
+        String body = "state(\"on\")\n\u00e9t\u00e9";
+
+        assertEquals(body, readBody(body, true, 1024).get());
+        // Bodies without a content length are read into growing buffers
+        String large = String.join("", Collections.nCopies(2000, body));
+        assertEquals(large, readBody(large, false, 1024 * 1024).get());
+    }
+
+    @Test
+    public void testBodyTooLarge() throws IOException {
+        String body = String.join("", Collections.nCopies(100, "0123456789"));
+
+        assertFalse(readBody(body, true, 999).isPresent());
+        assertFalse(readBody(body, false, 999).isPresent());
+        assertEquals(body, readBody(body, false, 1000).get());
+    }
+
+    private static String findSelfLink(String... headers) {
+        return NotificationRequests.findSelfLink(Collections.enumeration(Arrays.asList(headers)))
+                .get();
+    }
+
+    private Optional<String> readBody(String body, boolean withContentLength, int maxBodySize)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+
+        ServletInputStream stream = new ServletInputStream() {
+
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                // Return short reads, as a network stream would
+                return in.read(buffer, offset, Math.min(length, 100));
+            }
+        };
+
+        HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getContentLength":
+                            return withContentLength ? bytes.length : -1;
+                        case "getInputStream":
+                            return stream;
+                        default:
+                            return null;
+                    }
+                });
+
+        return NotificationRequests.readBody(request, bufferPool, maxBodySize);
+    }
+}
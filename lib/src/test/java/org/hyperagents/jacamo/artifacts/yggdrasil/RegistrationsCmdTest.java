@@ -0,0 +1,112 @@
+package org.hyperagents.jacamo.artifacts.yggdrasil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RegistrationsCmdTest {
+    private static final String CALLBACK = "http://localhost:8081/notifications/";
+    private static final int MAX_IN_FLIGHT = 4;
+
+    private Server server;
+    private String hubIRI;
+    private RegistrationClient client;
+
+    private final Set<String> focusingAgents = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+
+            @Override
+            public void handle(String path, org.eclipse.jetty.server.Request baseRequest,
+                    HttpServletRequest request, HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+                try {
+                    // Keep requests in flight long enough for them to overlap
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                if (path.endsWith("/focus")) {
+                    focusingAgents.add(request.getHeader("X-Agent-WebID"));
+                }
+                response.setStatus(path.contains("unknown") ? HttpServletResponse.SC_NOT_FOUND
+                        : HttpServletResponse.SC_OK);
+                inFlight.decrementAndGet();
+            }
+        });
+        server.start();
+
+        int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        hubIRI = "http://localhost:" + port;
+        client = new RegistrationClient(MAX_IN_FLIGHT, 5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void testSubscriptionsAreSentConcurrently() {
+        List<HttpUriRequestBase> requests = new ArrayList<HttpUriRequestBase>();
+        for (int i = 0; i < 20; i++) {
+            requests.add(client.newSubscribeRequest(hubIRI + "/hub", hubIRI + "/artifacts/" + i,
+                    CALLBACK));
+        }
+
+        RegistrationsCmd cmd = new RegistrationsCmd(client, requests);
+        cmd.exec();
+
+        assertEquals(20, cmd.getResults().size());
+        for (Object result : cmd.getResults()) {
+            assertEquals(HttpServletResponse.SC_OK, result);
+        }
+        assertTrue(maxInFlight.get() > 1);
+        assertTrue(maxInFlight.get() <= MAX_IN_FLIGHT);
+    }
+
+    @Test
+    public void testResultsPerRequest() {
+        List<HttpUriRequestBase> requests = new ArrayList<HttpUriRequestBase>();
+        requests.add(client.newFocusRequest(hubIRI + "/workspaces/w1", "lamp", CALLBACK,
+                "http://localhost:8080/agents/alice"));
+        requests.add(client.newSubscribeRequest(hubIRI + "/unknown", hubIRI + "/lamp", CALLBACK));
+        // Nothing listens on port 1
+        requests.add(client.newSubscribeRequest("http://localhost:1/hub", hubIRI + "/lamp",
+                CALLBACK));
+
+        RegistrationsCmd cmd = new RegistrationsCmd(client, requests);
+        cmd.exec();
+
+        assertEquals(HttpServletResponse.SC_OK, cmd.getResults().get(0));
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, cmd.getResults().get(1));
+        assertTrue(cmd.getResults().get(2) instanceof Throwable);
+        assertTrue(focusingAgents.contains("http://localhost:8080/agents/alice"));
+    }
+}
@@ -0,0 +1,94 @@
+package org.hyperagents.jacamo.loadtest;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperagents.jacamo.artifacts.http.LatencyHistogram;
+import org.hyperagents.jacamo.artifacts.http.RequestMetrics;
+import org.hyperagents.jacamo.artifacts.http.RequestMetrics.AffordanceMetrics;
+
+/**
+ * Aggregates the results of a load test: the request metrics recorded by the hypermedia artifacts
+ * (see {@link RequestMetrics}), aggregated over all simulated Things per affordance and operation
+ * type, and the lag between sending a notification and its perception by an agent.
+ */
+public final class LoadReport {
+  private static final LatencyHistogram notificationLag = new LatencyHistogram();
+
+  /**
+   * Records the lag of a notification perceived by an agent.
+   *
+   * @param lagMillis The time between sending and perceiving the notification in milliseconds.
+   */
+  public static void recordNotificationLag(long lagMillis) {
+    notificationLag.record(TimeUnit.MILLISECONDS.toNanos(Math.max(0, lagMillis)));
+  }
+
+  /**
+   * Prints the report of a load test.
+   *
+   * @param out The output.
+   * @param simulator The simulator used in the load test.
+   * @param elapsedMillis The duration of the load test in milliseconds.
+   */
+  public static void print(PrintStream out, ThingSimulator simulator, long elapsedMillis) {
+    Map<String, Aggregate> aggregates = new TreeMap<String, Aggregate>();
+
+    for (AffordanceMetrics metrics : RequestMetrics.getAll()) {
+      if (!metrics.getThing().startsWith(simulator.getBaseUri())) {
+        continue;
+      }
+
+      String key = (metrics.getAffordance().isEmpty() ? "(thing)" : metrics.getAffordance())
+          + " " + metrics.getOperation();
+      aggregates.computeIfAbsent(key, k -> new Aggregate()).add(metrics);
+    }
+
+    double seconds = elapsedMillis / 1000.0;
+
+    out.println();
+    out.printf("Load test: %d Things, %.1f s%n", simulator.getThings(), seconds);
+    out.printf("%-32s %10s %8s %10s %10s %10s %10s%n", "affordance operation", "requests",
+        "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms");
+
+    long total = 0;
+    for (Map.Entry<String, Aggregate> entry : aggregates.entrySet()) {
+      Aggregate aggregate = entry.getValue();
+      total += aggregate.requests + aggregate.errors;
+
+      out.printf("%-32s %10d %8d %10.1f %10.3f %10.3f %10.3f%n", entry.getKey(), aggregate.requests,
+          aggregate.errors, (aggregate.requests + aggregate.errors) / seconds,
+          millis(aggregate.latencies, 0.5), millis(aggregate.latencies, 0.99),
+          millis(aggregate.latencies, 0.999));
+    }
+
+    out.printf("Total throughput: %.1f req/s%n", total / seconds);
+    out.printf("Notifications: %d sent, %d failed, %d perceived by agents%n",
+        simulator.getNotificationsSent(), simulator.getNotificationsFailed(),
+        notificationLag.getCount());
+    out.printf("Notification lag: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms%n",
+        millis(notificationLag, 0.5), millis(notificationLag, 0.99), millis(notificationLag, 0.999));
+  }
+
+  private static double millis(LatencyHistogram latencies, double quantile) {
+    return latencies.getQuantileMicros(quantile) / 1000.0;
+  }
+
+  /* The metrics of an affordance and operation type, aggregated over all Things */
+  private static final class Aggregate {
+    long requests;
+    long errors;
+    final LatencyHistogram latencies = new LatencyHistogram();
+
+    void add(AffordanceMetrics metrics) {
+      requests += metrics.getRequests();
+      errors += metrics.getErrors();
+      latencies.addAll(metrics.getLatencies());
+    }
+  }
+
+  private LoadReport() {
+  }
+}
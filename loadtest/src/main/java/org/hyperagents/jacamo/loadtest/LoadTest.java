@@ -0,0 +1,110 @@
+package org.hyperagents.jacamo.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import jacamo.infra.JaCaMoLauncher;
+
+/**
+ * Runs a load test of the hypermedia artifacts against a {@link ThingSimulator}: a JaCaMo MAS of
+ * driver agents is launched in the same JVM, each driver reads and updates a simulated Thing via a
+ * {@code WebSubThingArtifact} and perceives the notifications of its Thing via a shared
+ * {@code NotificationServerArtifact}. A {@link LoadReport} is printed at the end of the test.
+ *
+ * The load test is configured via system properties (with defaults in parentheses):
+ *
+ * <ul>
+ * <li>{@value #THINGS_PROPERTY}: the number of simulated Things (10);</li>
+ * <li>{@value #AGENTS_PROPERTY}: the number of driver agents, which are assigned to Things in a
+ * round-robin manner (10);</li>
+ * <li>{@value #DURATION_PROPERTY}: the duration of the test in seconds (60);</li>
+ * <li>{@value #LATENCY_PROPERTY}: the latency of the simulated Things in milliseconds (0);</li>
+ * <li>{@value #PAYLOAD_PROPERTY}: the size of property and action payloads in characters (64);</li>
+ * <li>{@value #UPDATE_RATIO_PROPERTY}: the fraction of driver iterations that update the Thing
+ * (0.1);</li>
+ * <li>{@value #PORT_PROPERTY}: the port of the simulator (8090); the notification server uses the
+ * next port.</li>
+ * </ul>
+ */
+public final class LoadTest {
+  public static final String THINGS_PROPERTY = "jacamo.hypermedia.loadtest.things";
+  public static final String AGENTS_PROPERTY = "jacamo.hypermedia.loadtest.agents";
+  public static final String DURATION_PROPERTY = "jacamo.hypermedia.loadtest.duration";
+  public static final String LATENCY_PROPERTY = "jacamo.hypermedia.loadtest.latency";
+  public static final String PAYLOAD_PROPERTY = "jacamo.hypermedia.loadtest.payload";
+  public static final String UPDATE_RATIO_PROPERTY = "jacamo.hypermedia.loadtest.updateRatio";
+  public static final String PORT_PROPERTY = "jacamo.hypermedia.loadtest.port";
+
+  public static void main(String[] args) throws Exception {
+    int things = Integer.getInteger(THINGS_PROPERTY, 10);
+    int agents = Integer.getInteger(AGENTS_PROPERTY, 10);
+    int duration = Integer.getInteger(DURATION_PROPERTY, 60);
+    int latency = Integer.getInteger(LATENCY_PROPERTY, 0);
+    int payload = Integer.getInteger(PAYLOAD_PROPERTY, 64);
+    double updateRatio = Double.parseDouble(System.getProperty(UPDATE_RATIO_PROPERTY, "0.1"));
+    int port = Integer.getInteger(PORT_PROPERTY, 8090);
+
+    if (things <= 0 || agents <= 0 || duration <= 0) {
+      throw new IllegalArgumentException("The number of Things and agents, and the duration of the "
+          + "load test must be positive numbers.");
+    }
+
+    ThingSimulator simulator = new ThingSimulator(port, things, latency, payload);
+    simulator.start();
+
+    File project = writeProject(simulator, agents, payload, updateRatio, port + 1);
+
+    Thread mas = new Thread(() -> {
+      try {
+        JaCaMoLauncher.main(new String[] { project.getAbsolutePath() });
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }, "loadtest-mas");
+    mas.setDaemon(true);
+
+    long start = System.currentTimeMillis();
+    mas.start();
+    Thread.sleep(duration * 1000L);
+
+    LoadReport.print(System.out, simulator, System.currentTimeMillis() - start);
+
+    simulator.stop();
+    System.exit(0);
+  }
+
+  /* Writes the JaCaMo project file of the driver agents */
+  static File writeProject(ThingSimulator simulator, int agents, int payload, double updateRatio,
+      int callbackPort) throws IOException {
+    char[] value = new char[payload];
+    Arrays.fill(value, 'y');
+
+    StringBuilder jcm = new StringBuilder("mas loadtest {\n\n")
+        .append("    agent coordinator : coordinator.asl {\n")
+        .append("        beliefs: callback_port(").append(callbackPort).append(")\n")
+        .append("    }\n\n");
+
+    for (int i = 0; i < agents; i ++) {
+      jcm.append("    agent driver_").append(i).append(" : driver.asl {\n")
+          .append("        beliefs: thing_url(\"")
+          .append(simulator.getThingUri(i % simulator.getThings())).append("\"),\n")
+          .append("                 update_ratio(").append(updateRatio).append("),\n")
+          .append("                 payload(\"").append(value).append("\")\n")
+          .append("    }\n");
+    }
+
+    jcm.append("\n    asl-path: ").append(new File("src/agt").getAbsolutePath()).append("\n}\n");
+
+    File file = File.createTempFile("loadtest", ".jcm");
+    file.deleteOnExit();
+    Files.write(file.toPath(), jcm.toString().getBytes(StandardCharsets.UTF_8));
+
+    return file;
+  }
+
+  private LoadTest() {
+  }
+}
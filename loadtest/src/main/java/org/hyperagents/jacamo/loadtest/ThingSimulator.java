@@ -0,0 +1,298 @@
+package org.hyperagents.jacamo.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.util.StringContentProvider;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * An embedded HTTP server that simulates a number of Things, such that hypermedia artifacts can be
+ * load tested without real devices. Each Thing is described by a Turtle TD at
+ * {@code /things/{index}} and exposes:
+ *
+ * <ul>
+ * <li>a property {@code state} that can be read ({@code GET}) and written ({@code PUT}) at
+ * {@code /things/{index}/properties/state};</li>
+ * <li>an action {@code update} ({@code POST}) at {@code /things/{index}/actions/update}, which
+ * writes the state of the Thing.</li>
+ * </ul>
+ *
+ * The TD of each Thing is served with Link headers that point to a WebSub hub at {@code /hub}.
+ * Whenever the state of a Thing is written, the hub notifies all subscribers of the Thing with an
+ * observable property {@code state(Sequence, SentAt)}, where {@code SentAt} is the time at which
+ * the notification was sent (in milliseconds since the epoch).
+ *
+ * All responses are delayed by a configurable latency, and the state of each Thing is a JSON string
+ * of a configurable size.
+ */
+public final class ThingSimulator {
+  private final int port;
+  private final int things;
+  private final long latencyMillis;
+  private final String baseUri;
+
+  private final Server server;
+  private final HttpClient client = new HttpClient();
+
+  private final AtomicReferenceArray<String> states;
+  private final Map<String, Set<String>> subscriptions = new ConcurrentHashMap<String, Set<String>>();
+
+  private final AtomicLong sequence = new AtomicLong();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder notificationsSent = new LongAdder();
+  private final LongAdder notificationsFailed = new LongAdder();
+
+  /**
+   * @param port The port of the simulator.
+   * @param things The number of simulated Things.
+   * @param latencyMillis The latency added to each response in milliseconds.
+   * @param payloadSize The number of characters in the state of each Thing.
+   */
+  public ThingSimulator(int port, int things, long latencyMillis, int payloadSize) {
+    this.port = port;
+    this.things = things;
+    this.latencyMillis = latencyMillis;
+    this.baseUri = "http://localhost:" + port;
+
+    char[] payload = new char[payloadSize];
+    Arrays.fill(payload, 'x');
+
+    this.states = new AtomicReferenceArray<String>(things);
+    for (int i = 0; i < things; i ++) {
+      states.set(i, "\"" + new String(payload) + "\"");
+    }
+
+    this.server = new Server(port);
+    this.server.setHandler(new SimulatorHandler());
+  }
+
+  public void start() throws Exception {
+    client.start();
+    server.start();
+  }
+
+  public void stop() throws Exception {
+    server.stop();
+    client.stop();
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public int getThings() {
+    return things;
+  }
+
+  public String getBaseUri() {
+    return baseUri;
+  }
+
+  /**
+   * Returns the IRI of a simulated Thing, which is also the URL of its TD.
+   *
+   * @param index The index of the Thing.
+   * @return The IRI of the Thing.
+   */
+  public String getThingUri(int index) {
+    return baseUri + "/things/" + index;
+  }
+
+  /** Number of requests served to clients (excluding the hub). */
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  /** Number of notifications sent to subscribers. */
+  public long getNotificationsSent() {
+    return notificationsSent.sum();
+  }
+
+  /** Number of notifications that could not be delivered to subscribers. */
+  public long getNotificationsFailed() {
+    return notificationsFailed.sum();
+  }
+
+  String createThingDescription(int index) {
+    String thing = getThingUri(index);
+
+    return "@prefix td: <https://www.w3.org/2019/wot/td#> .\n"
+        + "@prefix htv: <http://www.w3.org/2011/http#> .\n"
+        + "@prefix hctl: <https://www.w3.org/2019/wot/hypermedia#> .\n"
+        + "@prefix wotsec: <https://www.w3.org/2019/wot/security#> .\n"
+        + "@prefix js: <https://www.w3.org/2019/wot/json-schema#> .\n\n"
+        + "<" + thing + "> a td:Thing ;\n"
+        + "  td:title \"thing" + index + "\" ;\n"
+        + "  td:hasSecurityConfiguration [ a wotsec:NoSecurityScheme ] ;\n"
+        + "  td:hasPropertyAffordance [\n"
+        + "    a td:PropertyAffordance, js:StringSchema ;\n"
+        + "    td:name \"state\" ;\n"
+        + "    td:isObservable true ;\n"
+        + "    td:hasForm [\n"
+        + "      htv:methodName \"GET\" ;\n"
+        + "      hctl:hasTarget <" + thing + "/properties/state> ;\n"
+        + "      hctl:forContentType \"application/json\" ;\n"
+        + "      hctl:hasOperationType td:readProperty\n"
+        + "    ], [\n"
+        + "      htv:methodName \"PUT\" ;\n"
+        + "      hctl:hasTarget <" + thing + "/properties/state> ;\n"
+        + "      hctl:forContentType \"application/json\" ;\n"
+        + "      hctl:hasOperationType td:writeProperty\n"
+        + "    ]\n"
+        + "  ] ;\n"
+        + "  td:hasActionAffordance [\n"
+        + "    a td:ActionAffordance ;\n"
+        + "    td:name \"update\" ;\n"
+        + "    td:hasForm [\n"
+        + "      htv:methodName \"POST\" ;\n"
+        + "      hctl:hasTarget <" + thing + "/actions/update> ;\n"
+        + "      hctl:forContentType \"application/json\" ;\n"
+        + "      hctl:hasOperationType td:invokeAction\n"
+        + "    ] ;\n"
+        + "    td:hasInputSchema [ a js:StringSchema ]\n"
+        + "  ] .\n";
+  }
+
+  private void publish(int index) {
+    String topic = getThingUri(index);
+    Set<String> callbacks = subscriptions.get(topic);
+
+    if (callbacks == null) {
+      return;
+    }
+
+    String message = "state(" + sequence.incrementAndGet() + "," + System.currentTimeMillis() + ")";
+
+    for (String callback : callbacks) {
+      notificationsSent.increment();
+
+      client.POST(callback)
+          .header("Link", "<" + baseUri + "/hub>; rel=\"hub\"")
+          .header("Link", "<" + topic + ">; rel=\"self\"")
+          .content(new StringContentProvider(message), "text/plain")
+          .timeout(10, TimeUnit.SECONDS)
+          .send(result -> {
+            if (result.isFailed() || result.getResponse().getStatus() != HttpServletResponse.SC_OK) {
+              notificationsFailed.increment();
+            }
+          });
+    }
+  }
+
+  class SimulatorHandler extends AbstractHandler {
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request,
+        HttpServletResponse response) throws IOException {
+      baseRequest.setHandled(true);
+
+      if ("/hub".equals(target)) {
+        subscribe(request, response);
+        return;
+      }
+
+      String[] segments = target.split("/");
+      // The target is /things/{index}[/properties/state|/actions/update]
+      if (segments.length < 3 || !"things".equals(segments[1])) {
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        return;
+      }
+
+      int index;
+      try {
+        index = Integer.parseInt(segments[2]);
+      } catch (NumberFormatException e) {
+        index = -1;
+      }
+
+      if (index < 0 || index >= things) {
+        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        return;
+      }
+
+      requests.increment();
+      simulateLatency();
+
+      String affordance = target.substring(("/things/" + segments[2]).length());
+      String method = request.getMethod();
+
+      if (affordance.isEmpty() && "GET".equals(method)) {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("text/turtle; charset=utf-8");
+        response.addHeader("Link", "<" + baseUri + "/hub>; rel=\"hub\"");
+        response.addHeader("Link", "<" + getThingUri(index) + ">; rel=\"self\"");
+        response.getWriter().write(createThingDescription(index));
+      } else if ("/properties/state".equals(affordance) && "GET".equals(method)) {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.getOutputStream().write(states.get(index).getBytes(StandardCharsets.UTF_8));
+      } else if (("/properties/state".equals(affordance) && "PUT".equals(method))
+          || ("/actions/update".equals(affordance) && "POST".equals(method))) {
+        String payload = request.getReader().lines().collect(Collectors.joining());
+
+        if (payload.isEmpty()) {
+          response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+          return;
+        }
+
+        states.set(index, payload);
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+        publish(index);
+      } else {
+        response.setStatus(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+      }
+    }
+
+    private void subscribe(HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+      String body = request.getReader().lines().collect(Collectors.joining());
+
+      try {
+        JsonObject subscription = JsonParser.parseString(body).getAsJsonObject();
+        String topic = subscription.get("hub.topic").getAsString();
+        String callback = subscription.get("hub.callback").getAsString();
+
+        if ("unsubscribe".equals(subscription.get("hub.mode").getAsString())) {
+          subscriptions.getOrDefault(topic, ConcurrentHashMap.newKeySet()).remove(callback);
+        } else {
+          subscriptions.computeIfAbsent(topic, key -> ConcurrentHashMap.newKeySet()).add(callback);
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+      } catch (RuntimeException e) {
+        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      }
+    }
+
+    private void simulateLatency() {
+      if (latencyMillis <= 0) {
+        return;
+      }
+
+      try {
+        Thread.sleep(latencyMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package org.hyperagents.jacamo.loadtest;
+
+import jason.asSemantics.DefaultInternalAction;
+import jason.asSemantics.TransitionSystem;
+import jason.asSemantics.Unifier;
+import jason.asSyntax.StringTerm;
+import jason.asSyntax.Term;
+
+/**
+ * Jason internal action that records the lag of a notification perceived by an agent:
+ * {@code org.hyperagents.jacamo.loadtest.notification_lag(SentAt)}, where {@code SentAt} is the
+ * time at which the notification was sent (in milliseconds since the epoch).
+ */
+public class notification_lag extends DefaultInternalAction {
+  private static final long serialVersionUID = 1L;
+
+  @Override
+  public Object execute(TransitionSystem ts, Unifier un, Term[] args) throws Exception {
+    String sentAt = args[0].isString() ? ((StringTerm) args[0]).getString() : args[0].toString();
+
+    LoadReport.recordNotificationLag(System.currentTimeMillis() - Long.parseLong(sentAt));
+    return true;
+  }
+}